@@ -0,0 +1,198 @@
+package com.rtlservice.az.prototype_udp_srv.bench;
+
+import com.rtlservice.az.prototype_udp_srv.packet.Batch;
+import com.rtlservice.az.prototype_udp_srv.packet.Packet;
+import com.rtlservice.az.prototype_udp_srv.packet.PacketView;
+import com.rtlservice.az.prototype_udp_srv.processor.Router;
+import com.rtlservice.az.prototype_udp_srv.processor.RouterOptions;
+import com.rtlservice.az.prototype_udp_srv.udp.UDPServer;
+import com.rtlservice.az.prototype_udp_srv.udp.UDPServerOptions;
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Throughput and latency (send to processing) of UDPServer → Router → processor pipeline
+ * depending on {@link UDPServerOptions#setBatchSize(int) batch size}.
+ * <p>
+ * Usage: {@code BatchingBenchmark [batchSizes=1,8,32,128] [batchDelayUs=200] [rate=0] [seconds=10]},
+ * rate 0 means flat-out, prints CSV. Latency percentiles have power-of-two resolution.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class BatchingBenchmark {
+
+    private static final int PORT = 16051;
+    private static final int MACS = 1024;
+
+    public static void main(
+            String[] args)
+            throws Exception {
+
+        String[] batchSizes = (args.length > 0 ? args[0] : "1,8,32,128").split(",");
+        long batchDelay = args.length > 1 ? Long.parseLong(args[1]) : 200L;
+        long rate = args.length > 2 ? Long.parseLong(args[2]) : 0L;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        System.out.println("batch_size,batch_delay_us,rate,sent,processed,processed_pps,lat_mean_us,lat_p50_us,lat_p99_us");
+
+        for (String batchSize : batchSizes) {
+            run(Integer.parseInt(batchSize.trim()), batchDelay, rate, seconds);
+        }
+    }
+
+    private static void run(
+            int batchSize,
+            long batchDelay,
+            long rate,
+            int seconds)
+            throws Exception {
+
+        Vertx vertx = Vertx.vertx();
+        vertx.eventBus().registerDefaultCodec(PacketView.class, new PacketView.Codec());
+        vertx.eventBus().registerDefaultCodec(Batch.class, new Batch.Codec(new PacketView.Codec()));
+
+        LongAdder processed = new LongAdder();
+        LongAdder latencySum = new LongAdder();
+        AtomicLongArray latencies = new AtomicLongArray(64);
+
+        Router<Long, PacketView, Long> router = new Router<>(
+                "/bench/incoming/",
+                mac -> "/bench/incoming/" + mac + "/",
+                PacketView::mac,
+                msg -> {
+
+                    ByteBuf content = msg.body().content();
+                    long latency = System.nanoTime() - content.getLong(content.readerIndex() + Packet.HEADER_LENGTH);
+
+                    processed.increment();
+                    latencySum.add(latency);
+                    latencies.incrementAndGet(64 - Long.numberOfLeadingZeros(Math.max(latency, 1L)));
+
+                    return latency;
+                },
+                new RouterOptions().setLanes(Runtime.getRuntime().availableProcessors()));
+
+        UDPServer<PacketView, Object> server = new UDPServer<>(
+                datagram -> PacketView.wrap(datagram.data()),
+                router.getEndpoint(),
+                new UDPServerOptions()
+                        .setHost("127.0.0.1")
+                        .setPort(PORT)
+                        .setReceiveBufferSize(4 * 1024 * 1024)
+                        .setBatchSize(batchSize)
+                        .setBatchDelay(batchDelay));
+
+        BatchingBenchmark.<String>await(f -> vertx.deployVerticle(router, f.completer()));
+        BatchingBenchmark.<String>await(f -> vertx.deployVerticle(server, f.completer()));
+
+        long sent = 0L;
+        long processed0 = 0L;
+        long t0 = 0L;
+        long warmUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(1L);
+        long end = warmUp + TimeUnit.SECONDS.toNanos(seconds);
+
+        try (DatagramChannel channel = DatagramChannel.open()) {
+
+            channel.connect(new InetSocketAddress("127.0.0.1", PORT));
+
+            ByteBuffer packet = ByteBuffer.allocateDirect(Packet.HEADER_LENGTH + 8);
+            long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1L) / rate : 0L;
+            long next = System.nanoTime();
+
+            for (long i = 0; ; i++) {
+
+                long now = System.nanoTime();
+                if (t0 == 0L && now >= warmUp) {
+                    t0 = now;
+                    sent = 0L;
+                    processed0 = processed.sum();
+                    latencySum.reset();
+                    for (int b = 0; b < latencies.length(); b++) {
+                        latencies.set(b, 0L);
+                    }
+                }
+                if (now >= end) break;
+
+                if (interval > 0) {
+                    while (System.nanoTime() < next) {
+                        // spin
+                    }
+                    next += interval;
+                }
+
+                packet.clear();
+                packet.putLong(Packet.MAC_OFFSET, (i % MACS) << 16);
+                packet.putLong(Packet.HEADER_LENGTH, System.nanoTime());
+                channel.write(packet);
+                sent++;
+            }
+        }
+
+        // let in-flight packets complete
+        Thread.sleep(500L);
+
+        double elapsed = (System.nanoTime() - t0) / 1e9;
+        long count = processed.sum() - processed0;
+
+        System.out.printf("%d,%d,%d,%d,%d,%.0f,%.1f,%d,%d%n",
+                batchSize,
+                batchDelay,
+                rate,
+                sent,
+                count,
+                count / elapsed,
+                count > 0 ? latencySum.sum() / 1e3 / count : 0.0,
+                percentile(latencies, 0.50) / 1000L,
+                percentile(latencies, 0.99) / 1000L);
+
+        BatchingBenchmark.<Void>await(f -> vertx.close(f.completer()));
+    }
+
+    /**
+     * Upper bound (ns) of power-of-two bucket containing percentile.
+     */
+    private static long percentile(
+            AtomicLongArray latencies,
+            double p) {
+
+        long total = 0L;
+        for (int b = 0; b < latencies.length(); b++) {
+            total += latencies.get(b);
+        }
+
+        long rank = (long) Math.ceil(total * p);
+        long seen = 0L;
+        for (int b = 0; b < latencies.length(); b++) {
+            seen += latencies.get(b);
+            if (seen >= rank && seen > 0) {
+                return 1L << b;
+            }
+        }
+
+        return 0L;
+    }
+
+    private static <T> void await(
+            Consumer<Future<T>> action)
+            throws InterruptedException {
+
+        Future<T> future = Future.future();
+        action.accept(future);
+        while (!future.isComplete()) {
+            Thread.sleep(10L);
+        }
+        if (future.failed()) {
+            throw new IllegalStateException(future.cause());
+        }
+    }
+
+}
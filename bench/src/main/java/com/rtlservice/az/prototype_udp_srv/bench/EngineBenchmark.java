@@ -0,0 +1,168 @@
+package com.rtlservice.az.prototype_udp_srv.bench;
+
+import com.rtlservice.az.prototype_udp_srv.processor.EngineOptions;
+import com.rtlservice.az.prototype_udp_srv.processor.LongRouter;
+import com.rtlservice.az.prototype_udp_srv.processor.Router;
+import com.rtlservice.az.prototype_udp_srv.processor.RouterOptions;
+import com.rtlservice.az.prototype_udp_srv.processor.StripedEngine;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-JVM dispatch of trivial processor: {@link Router} over event bus (lanes mode) vs
+ * {@link StripedEngine}, both with {@value #STRIPES} lanes/stripes. Items are sent from
+ * event loop as {@link com.rtlservice.az.prototype_udp_srv.udp.UDPServer UDPServer} does.
+ * <p>
+ * {@code throughput} keeps {@value #WINDOW} items in flight, {@code latency} samples round
+ * trip of single item (see p99 of sample time). Spinning of idle stripes ({@code idleSpins})
+ * pays off only when stripes have own cores.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class EngineBenchmark {
+
+    static final int WINDOW = 10000;
+
+    static final int STRIPES = 2;
+
+    private static final String ENDPOINT = "/bench/engine/";
+
+    @Param({"ROUTER", "ENGINE"})
+    public String path;
+
+    @Param({"1000"})
+    public int macs;
+
+    @Param({"0", "1000"})
+    public int idleSpins;
+
+    private Vertx vertx;
+    private Context context;
+    private EventBus eventBus;
+    private StripedEngine<Long, Long> engine;
+    private long next = 0L;
+
+    @Setup(Level.Trial)
+    public void setup()
+            throws InterruptedException {
+
+        vertx = Vertx.vertx();
+        eventBus = vertx.eventBus();
+        context = vertx.getOrCreateContext();
+
+        if ("ENGINE".equals(path)) {
+
+            engine = new StripedEngine<>(
+                    ENDPOINT,
+                    mac -> mac,
+                    msg -> msg.body(),
+                    new EngineOptions()
+                            .setStripes(STRIPES)
+                            .setRingSize(16384)
+                            .setIdleSpins(idleSpins));
+
+            EngineBenchmark.<String>await(f -> vertx.deployVerticle(engine, f.completer()));
+
+        } else {
+
+            Router<Long, Long, Long> router = new LongRouter<>(
+                    ENDPOINT,
+                    mac -> ENDPOINT + mac + "/",
+                    mac -> mac,
+                    msg -> msg.body(),
+                    new RouterOptions()
+                            .setLanes(STRIPES)
+                            .setPendingLimit(WINDOW));
+
+            EngineBenchmark.<String>await(f -> vertx.deployVerticle(router, f.completer()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+            throws InterruptedException {
+
+        EngineBenchmark.<Void>await(f -> vertx.close(f.completer()));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(WINDOW)
+    public void throughput()
+            throws InterruptedException {
+
+        send(next, WINDOW);
+        next += WINDOW;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void latency()
+            throws InterruptedException {
+
+        send(next++, 1);
+    }
+
+    private void send(
+            long from,
+            long count)
+            throws InterruptedException {
+
+        CountDownLatch done = new CountDownLatch((int) count);
+
+        context.runOnContext(v -> {
+            for (long i = from; i < from + count; i++) {
+                if (engine != null) {
+                    engine.offer(i % macs, out -> done.countDown());
+                } else {
+                    eventBus.send(ENDPOINT, i % macs, reply -> done.countDown());
+                }
+            }
+        });
+
+        if (!done.await(120L, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Items are not processed");
+        }
+    }
+
+    private static <T> void await(
+            Consumer<Future<T>> action)
+            throws InterruptedException {
+
+        Future<T> future = Future.future();
+        action.accept(future);
+        while (!future.isComplete()) {
+            Thread.sleep(10L);
+        }
+        if (future.failed()) {
+            throw new IllegalStateException(future.cause());
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.rtlservice.az.prototype_udp_srv.bench;
+
+import com.rtlservice.az.prototype_udp_srv.processor.LongMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Per-message routing decision of {@code Router} (boxed key, {@link HashMap}) against
+ * {@code LongRouter} (primitive key, {@link LongMap}): key of message is extracted and its state
+ * is looked up. Run with {@code -prof gc} to see allocation per lookup.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class KeyLookupBenchmark {
+
+    private static final int MESSAGES = 1 << 20;
+
+    @Param({"1000000"})
+    public int macs;
+
+    /**
+     * Message with MAC, as {@code PacketView}.
+     */
+    public static final class Message {
+
+        private final long mac;
+
+        Message(
+                long mac) {
+
+            this.mac = mac;
+        }
+
+        public long mac() {
+            return mac;
+        }
+    }
+
+    private final Function<Message, Long> boxedMapper = Message::mac;
+    private final ToLongFunction<Message> longMapper = Message::mac;
+
+    private Map<Long, Object> boxed;
+    private LongMap<Object> primitive;
+    private Message[] messages;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+
+        boxed = new HashMap<>();
+        primitive = new LongMap<>();
+
+        // MACs of one vendor prefix, sparse in lower bits
+        long base = 0x001A2B000000L;
+        Random random = new Random(42);
+        long[] keys = new long[macs];
+        for (int i = 0; i < macs; i++) {
+            keys[i] = base + (i * 7L);
+            Object state = new Object();
+            boxed.put(keys[i], state);
+            primitive.put(keys[i], state);
+        }
+
+        messages = new Message[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            messages[i] = new Message(keys[random.nextInt(macs)]);
+        }
+    }
+
+    @Benchmark
+    public Object boxed() {
+        Message message = messages[next++ & (MESSAGES - 1)];
+        return boxed.get(boxedMapper.apply(message));
+    }
+
+    @Benchmark
+    public Object primitive() {
+        Message message = messages[next++ & (MESSAGES - 1)];
+        return primitive.get(longMapper.applyAsLong(message));
+    }
+
+}
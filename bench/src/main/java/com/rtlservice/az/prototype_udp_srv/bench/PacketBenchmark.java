@@ -0,0 +1,134 @@
+package com.rtlservice.az.prototype_udp_srv.bench;
+
+import com.rtlservice.az.prototype_udp_srv.packet.Packet;
+import com.rtlservice.az.prototype_udp_srv.packet.PacketLayout;
+import com.rtlservice.az.prototype_udp_srv.packet.PacketView;
+import io.vertx.core.buffer.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding, encoding, codecs and formatting of {@link Packet} and {@link PacketView}, field
+ * access of {@link PacketLayout}.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketBenchmark {
+
+    @Param({"16", "256", "1024"})
+    public int dataLength;
+
+    private final Packet.Codec packetCodec = new Packet.Codec();
+    private final PacketView.Codec viewCodec = new PacketView.Codec();
+
+    private Buffer datagram;
+    private Packet packet;
+    private PacketView view;
+    private Buffer packetWire;
+    private Buffer viewWire;
+
+    @Setup
+    public void setup() {
+
+        byte[] raw = new byte[Packet.HEADER_LENGTH + dataLength];
+        ThreadLocalRandom.current().nextBytes(raw);
+
+        datagram = Buffer.buffer(raw);
+        packet = Packet.fromBinary(datagram);
+        view = PacketView.wrap(datagram);
+
+        packetWire = Buffer.buffer();
+        packetCodec.encodeToWire(packetWire, packet);
+
+        viewWire = Buffer.buffer();
+        viewCodec.encodeToWire(viewWire, view);
+    }
+
+    @Benchmark
+    public Packet fromBinary() {
+        return Packet.fromBinary(datagram);
+    }
+
+    @Benchmark
+    public Buffer toBinary() {
+        return Packet.toBinary(packet);
+    }
+
+    @Benchmark
+    public Buffer codecEncode() {
+        Buffer buffer = Buffer.buffer(Packet.HEADER_LENGTH + dataLength);
+        packetCodec.encodeToWire(buffer, packet);
+        return buffer;
+    }
+
+    @Benchmark
+    public Packet codecDecode() {
+        return packetCodec.decodeFromWire(0, packetWire);
+    }
+
+    @Benchmark
+    public String toStringPacket() {
+        return packet.toString();
+    }
+
+    @Benchmark
+    public long viewWrapRelease() {
+        PacketView v = PacketView.wrap(datagram);
+        long mac = v.mac();
+        v.release();
+        return mac;
+    }
+
+    @Benchmark
+    public long viewWrapKeyTwice() {
+        PacketView v = PacketView.wrap(datagram);
+        // second read is cached in view
+        long key = v.key() + v.key();
+        v.release();
+        return key;
+    }
+
+    @Benchmark
+    public long layoutKeyOf() {
+        return PacketLayout.DEFAULT.keyOf(datagram.getByteBuf(), -1L);
+    }
+
+    @Benchmark
+    public Buffer viewCodecEncode() {
+        Buffer buffer = Buffer.buffer(4 + Packet.HEADER_LENGTH + dataLength);
+        viewCodec.encodeToWire(buffer, view);
+        return buffer;
+    }
+
+    @Benchmark
+    public long viewCodecDecode() {
+        PacketView v = viewCodec.decodeFromWire(0, viewWire);
+        long mac = v.mac();
+        v.release();
+        return mac;
+    }
+
+    @Benchmark
+    public String toStringView() {
+        return view.toString();
+    }
+
+}
@@ -0,0 +1,215 @@
+package com.rtlservice.az.prototype_udp_srv.bench;
+
+import com.rtlservice.az.prototype_udp_srv.packet.PacketView;
+import com.rtlservice.az.prototype_udp_srv.udp.NioDatagram;
+import com.rtlservice.az.prototype_udp_srv.udp.ReceiveEngine;
+import com.rtlservice.az.prototype_udp_srv.udp.UDPServer;
+import com.rtlservice.az.prototype_udp_srv.udp.UDPServerOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Received packets per second and garbage per datagram of {@link UDPServer} receive engines
+ * ({@link ReceiveEngine}).
+ * <p>
+ * Usage: {@code ReceiveEngineBenchmark [engines=VERTX,NIO] [senders=2] [seconds=10] [rate=0]}, prints CSV.
+ * Rate is total packets per second of senders, 0 means flat-out (which starves event loop when
+ * senders take all cores, so compare engines at rate both of them keep up with too).
+ * Decoder wraps datagram into {@link PacketView} as {@code Main} does, reads MAC and drops it, so
+ * only receive path is measured. Allocation is counted for all threads of JVM (senders do not
+ * allocate).
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class ReceiveEngineBenchmark {
+
+    private static final Logger _LOG = LoggerFactory.getLogger(ReceiveEngineBenchmark.class);
+
+    private static final int PORT = 16051;
+    private static final String ENDPOINT = "/bench/incoming/";
+
+    public static void main(
+            String[] args)
+            throws Exception {
+
+        String[] engines = (args.length > 0 ? args[0] : "VERTX,NIO").split(",");
+        int senders = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        long rate = args.length > 3 ? Long.parseLong(args[3]) : 0L;
+
+        System.out.println("engine,senders,seconds,rate,sent,received,received_pps,allocated_bytes_per_datagram,gc_count,gc_ms");
+
+        for (String engine : engines) {
+            run(ReceiveEngine.valueOf(engine.trim()), senders, seconds, rate);
+        }
+    }
+
+    private static void run(
+            ReceiveEngine engine,
+            int senders,
+            int seconds,
+            long rate)
+            throws Exception {
+
+        Vertx vertx = Vertx.vertx();
+
+        LongAdder received = new LongAdder();
+        LongAdder sent = new LongAdder();
+        long[] macs = new long[1];
+
+        UDPServerOptions options = new UDPServerOptions()
+                .setHost("127.0.0.1")
+                .setPort(PORT)
+                .setReceiveBufferSize(4 * 1024 * 1024)
+                .setReceiveEngine(engine);
+
+        Future<String> server = Future.future();
+        vertx.deployVerticle(
+                new UDPServer<PacketView, Object>(
+                        datagram -> {
+                            PacketView packet = datagram instanceof NioDatagram
+                                    ? PacketView.wrap(((NioDatagram) datagram).content())
+                                    : PacketView.wrap(datagram.data());
+                            if (packet != null) {
+                                macs[0] += packet.mac();
+                                packet.release();
+                            }
+                            received.increment();
+                            return null;
+                        },
+                        ENDPOINT,
+                        options),
+                server.completer());
+
+        while (!server.isComplete()) {
+            Thread.sleep(10L);
+        }
+        if (server.failed()) {
+            throw new IllegalStateException(server.cause());
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < senders; i++) {
+            Thread thread = new Thread(() -> {
+                try (DatagramChannel channel = DatagramChannel.open()) {
+
+                    channel.connect(new InetSocketAddress("127.0.0.1", PORT));
+
+                    ByteBuffer packet = ByteBuffer.allocateDirect(64);
+                    double perNano = rate / 1e9 / senders;
+                    long start = System.nanoTime();
+                    long count = 0L;
+
+                    while (running.get()) {
+
+                        if (rate > 0 && count >= (long) ((System.nanoTime() - start) * perNano)) {
+                            LockSupport.parkNanos(10000L);
+                            continue;
+                        }
+
+                        packet.clear();
+                        packet.putLong(12, Thread.currentThread().threadId() << 16);
+                        channel.write(packet);
+                        sent.increment();
+                        count++;
+                    }
+
+                } catch (Exception ex) {
+                    _LOG.warn("sender fail: thread={0}", ex, Thread.currentThread().getName());
+                }
+            }, "sender-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+
+        // warm up
+        Thread.sleep(TimeUnit.SECONDS.toMillis(2L));
+
+        long sent0 = sent.sum();
+        long received0 = received.sum();
+        long allocated0 = allocated();
+        long gcCount0 = gcCount();
+        long gcTime0 = gcTime();
+        long t0 = System.nanoTime();
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+
+        long sent1 = sent.sum() - sent0;
+        long received1 = received.sum() - received0;
+        long allocated1 = allocated() - allocated0;
+        long gcCount1 = gcCount() - gcCount0;
+        long gcTime1 = gcTime() - gcTime0;
+        double elapsed = (System.nanoTime() - t0) / 1e9;
+
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        System.out.printf("%s,%d,%d,%d,%d,%d,%.0f,%.1f,%d,%d%n",
+                engine,
+                senders,
+                seconds,
+                rate,
+                sent1,
+                received1,
+                received1 / elapsed,
+                received1 > 0 ? (double) allocated1 / received1 : 0.0,
+                gcCount1,
+                gcTime1);
+
+        Future<Void> closed = Future.future();
+        vertx.close(closed.completer());
+        while (!closed.isComplete()) {
+            Thread.sleep(10L);
+        }
+    }
+
+    private static long allocated() {
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        long allocated = 0L;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            allocated += Math.max(0L, bytes);
+        }
+
+        return allocated;
+    }
+
+    private static long gcCount() {
+
+        long count = 0L;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0L, gc.getCollectionCount());
+        }
+
+        return count;
+    }
+
+    private static long gcTime() {
+
+        long time = 0L;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0L, gc.getCollectionTime());
+        }
+
+        return time;
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.rtlservice.az.prototype_udp_srv.bench;
+
+import com.rtlservice.az.prototype_udp_srv.udp.UDPServer;
+import com.rtlservice.az.prototype_udp_srv.udp.UDPServerOptions;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Received packets per second of {@link UDPServer} depending on count of SO_REUSEPORT sockets.
+ * <p>
+ * Usage: {@code ReusePortBenchmark [sockets=1,2,4] [senders=8] [seconds=10]}, prints CSV.
+ * Every sender has its own source port (flow), so flows can be spread by kernel.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class ReusePortBenchmark {
+
+    private static final Logger _LOG = LoggerFactory.getLogger(ReusePortBenchmark.class);
+
+    private static final int PORT = 16050;
+    private static final String ENDPOINT = "/bench/incoming/";
+
+    public static void main(
+            String[] args)
+            throws Exception {
+
+        String[] sockets = (args.length > 0 ? args[0] : "1,2,4").split(",");
+        int senders = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        System.out.println("sockets,senders,seconds,native,sent,received,received_pps");
+
+        for (String s : sockets) {
+            run(Integer.parseInt(s.trim()), senders, seconds);
+        }
+    }
+
+    private static void run(
+            int sockets,
+            int senders,
+            int seconds)
+            throws Exception {
+
+        Vertx vertx = Vertx.vertx(new VertxOptions()
+                .setPreferNativeTransport(true));
+
+        LongAdder received = new LongAdder();
+        LongAdder sent = new LongAdder();
+
+        UDPServerOptions options = new UDPServerOptions()
+                .setHost("127.0.0.1")
+                .setPort(PORT)
+                .setReceiveBufferSize(4 * 1024 * 1024)
+                .setReusePort(true);
+
+        List<Future<String>> deployed = new ArrayList<>();
+        for (int i = 0; i < sockets; i++) {
+
+            // one sink per socket, so hand-off is spread over event loops too
+            Future<String> sink = Future.future();
+            vertx.deployVerticle(new AbstractVerticle() {
+                @Override
+                public void start() {
+                    vertx.eventBus().<Object>consumer(ENDPOINT, msg -> msg.reply(null));
+                }
+            }, sink.completer());
+            deployed.add(sink);
+
+            Future<String> server = Future.future();
+            vertx.deployVerticle(
+                    new UDPServer<Object, Object>(
+                            datagram -> {
+                                received.increment();
+                                return null;
+                            },
+                            ENDPOINT,
+                            options),
+                    server.completer());
+            deployed.add(server);
+        }
+
+        for (Future<String> future : deployed) {
+            while (!future.isComplete()) {
+                Thread.sleep(10L);
+            }
+            if (future.failed()) {
+                throw new IllegalStateException(future.cause());
+            }
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < senders; i++) {
+            Thread thread = new Thread(() -> {
+                try (DatagramChannel channel = DatagramChannel.open()) {
+
+                    channel.connect(new InetSocketAddress("127.0.0.1", PORT));
+
+                    ByteBuffer packet = ByteBuffer.allocateDirect(64);
+                    while (running.get()) {
+                        packet.clear();
+                        packet.putLong(12, Thread.currentThread().threadId() << 16);
+                        channel.write(packet);
+                        sent.increment();
+                    }
+
+                } catch (Exception ex) {
+                    _LOG.warn("sender fail: thread={0}", ex, Thread.currentThread().getName());
+                }
+            }, "sender-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+
+        // warm up
+        Thread.sleep(TimeUnit.SECONDS.toMillis(1L));
+
+        long sent0 = sent.sum();
+        long received0 = received.sum();
+        long t0 = System.nanoTime();
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+
+        long sent1 = sent.sum() - sent0;
+        long received1 = received.sum() - received0;
+        double elapsed = (System.nanoTime() - t0) / 1e9;
+
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        System.out.printf("%d,%d,%d,%s,%d,%d,%.0f%n",
+                sockets,
+                senders,
+                seconds,
+                vertx.isNativeTransportEnabled(),
+                sent1,
+                received1,
+                received1 / elapsed);
+
+        Future<Void> closed = Future.future();
+        vertx.close(closed.completer());
+        while (!closed.isComplete()) {
+            Thread.sleep(10L);
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.rtlservice.az.prototype_udp_srv.bench;
+
+import com.rtlservice.az.prototype_udp_srv.processor.LongRouter;
+import com.rtlservice.az.prototype_udp_srv.processor.Router;
+import com.rtlservice.az.prototype_udp_srv.processor.RouterOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-JVM throughput of event bus → {@link Router} → {@code ParallelProcessor} → reply,
+ * {@value #WINDOW} messages in flight, keys are spread over {@code macs} distinct values.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class RouterBenchmark {
+
+    static final int WINDOW = 1000;
+
+    private static final String ENDPOINT = "/bench/router/";
+
+    @Param({"1", "1000", "100000"})
+    public int macs;
+
+    /**
+     * 0 - processor per key.
+     */
+    @Param({"0", "4"})
+    public int lanes;
+
+    /**
+     * generic - {@link Router} with boxed keys, long - {@link LongRouter}.
+     */
+    @Param({"generic", "long"})
+    public String router;
+
+    private Vertx vertx;
+    private EventBus eventBus;
+    private long next = 0L;
+
+    @Setup(Level.Trial)
+    public void setup()
+            throws InterruptedException {
+
+        vertx = Vertx.vertx();
+        eventBus = vertx.eventBus();
+
+        RouterOptions options = new RouterOptions().setLanes(lanes).setPendingLimit(WINDOW);
+        Router<Long, Long, Long> verticle = "long".equals(router)
+                ? new LongRouter<>(ENDPOINT, mac -> ENDPOINT + mac + "/", mac -> mac, msg -> msg.body(), options)
+                : new Router<>(ENDPOINT, mac -> ENDPOINT + mac + "/", mac -> mac, msg -> msg.body(), options);
+
+        RouterBenchmark.<String>await(f -> vertx.deployVerticle(verticle, f.completer()));
+
+        // deploy processors of all keys before measurement
+        for (long mac = 0; mac < macs; mac += WINDOW) {
+            send(mac, Math.min(WINDOW, macs - mac));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+            throws InterruptedException {
+
+        RouterBenchmark.<Void>await(f -> vertx.close(f.completer()));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WINDOW)
+    public void dispatch()
+            throws InterruptedException {
+
+        send(next, WINDOW);
+        next += WINDOW;
+    }
+
+    private void send(
+            long from,
+            long count)
+            throws InterruptedException {
+
+        CountDownLatch done = new CountDownLatch((int) count);
+        for (long i = from; i < from + count; i++) {
+            eventBus.send(ENDPOINT, i % macs, reply -> done.countDown());
+        }
+
+        if (!done.await(60L, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Router does not reply");
+        }
+    }
+
+    private static <T> void await(
+            Consumer<Future<T>> action)
+            throws InterruptedException {
+
+        Future<T> future = Future.future();
+        action.accept(future);
+        while (!future.isComplete()) {
+            Thread.sleep(10L);
+        }
+        if (future.failed()) {
+            throw new IllegalStateException(future.cause());
+        }
+    }
+
+}
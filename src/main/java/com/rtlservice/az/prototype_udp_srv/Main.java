@@ -1,78 +1,488 @@
 package com.rtlservice.az.prototype_udp_srv;
 
+import com.rtlservice.az.prototype_udp_srv.cluster.ClusterOptions;
+import com.rtlservice.az.prototype_udp_srv.cluster.LocalClusterManager;
+import com.rtlservice.az.prototype_udp_srv.journal.Journal;
+import com.rtlservice.az.prototype_udp_srv.journal.JournalOptions;
+import com.rtlservice.az.prototype_udp_srv.journal.JournalReplay;
+import com.rtlservice.az.prototype_udp_srv.journal.ReplayOptions;
+import com.rtlservice.az.prototype_udp_srv.metrics.Metrics;
+import com.rtlservice.az.prototype_udp_srv.metrics.MetricsRegistry;
+import com.rtlservice.az.prototype_udp_srv.metrics.MetricsServer;
+import com.rtlservice.az.prototype_udp_srv.packet.Batch;
+import com.rtlservice.az.prototype_udp_srv.packet.LayoutOptions;
 import com.rtlservice.az.prototype_udp_srv.packet.Packet;
-import com.rtlservice.az.prototype_udp_srv.processor.Router;
+import com.rtlservice.az.prototype_udp_srv.packet.PacketLayout;
+import com.rtlservice.az.prototype_udp_srv.packet.PacketView;
+import com.rtlservice.az.prototype_udp_srv.processor.DedupOptions;
+import com.rtlservice.az.prototype_udp_srv.processor.Deduplicator;
+import com.rtlservice.az.prototype_udp_srv.processor.EngineOptions;
+import com.rtlservice.az.prototype_udp_srv.processor.LongRouter;
+import com.rtlservice.az.prototype_udp_srv.processor.RouterOptions;
+import com.rtlservice.az.prototype_udp_srv.processor.StatefulProcessor;
+import com.rtlservice.az.prototype_udp_srv.processor.StripedEngine;
+import com.rtlservice.az.prototype_udp_srv.processor.WindowAggregator;
+import com.rtlservice.az.prototype_udp_srv.processor.WindowOptions;
+import com.rtlservice.az.prototype_udp_srv.sink.ResultSink;
+import com.rtlservice.az.prototype_udp_srv.sink.SinkOptions;
+import com.rtlservice.az.prototype_udp_srv.state.StateStore;
+import com.rtlservice.az.prototype_udp_srv.udp.NioDatagram;
+import com.rtlservice.az.prototype_udp_srv.udp.RateLimiter;
+import com.rtlservice.az.prototype_udp_srv.udp.RateLimiterOptions;
 import com.rtlservice.az.prototype_udp_srv.udp.UDPServer;
+import com.rtlservice.az.prototype_udp_srv.udp.UDPServerOptions;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Verticle;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.datagram.DatagramPacket;
 import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class Main {
 
     private static final Logger _LOG = LoggerFactory.getLogger(Main.class);
 
     public static void main(
-            String[] args) {
+            String[] args)
+            throws IOException {
 
-        Vertx vertx = Vertx.vertx();
+        // optional JSON config file:
+        // { "nativeTransport": ..., "router": { ... }, "udp": { ... }, "metrics": { ... }, "journal": { ... }, "replay": { ... },
+        //   "state": { "file": ..., "maxKeys": ... }, "dedup": { ... }, "reply": ..., "cluster": { ... }, "engine": { ... },
+        //   "processingDelay": ..., "weights": { "<mac hex>": ... }, "rateLimit": { ... }, "window": { ... }, "sink": { ... },
+        //   "layout": { ... } }
+        JsonObject config = args.length > 0
+                ? new JsonObject(new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8))
+                : new JsonObject();
+
+        // several UDP sockets share port by SO_REUSEPORT, which needs native transport
+        int sockets = config.getJsonObject("udp", new JsonObject()).getInteger("sockets", 1);
+        VertxOptions vertxOptions = new VertxOptions()
+                .setPreferNativeTransport(config.getBoolean("nativeTransport", false) || sockets > 1);
+
+        JsonObject journalConfig = config.getJsonObject("journal");
+        Journal journal = journalConfig != null
+                ? new Journal(new JournalOptions(journalConfig))
+                : null;
+        if (journal != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    journal.close();
+                } catch (IOException ex) {
+                    _LOG.warn("journal closing fail", ex);
+                }
+            }));
+        }
+
+        // results of all nodes go to one sink
+        JsonObject sinkConfig = config.getJsonObject("sink");
+        ResultSink<Number> sink = sinkConfig != null
+                ? new ResultSink<Number>(Main::writeResult, new SinkOptions(sinkConfig))
+                : null;
+        if (sink != null) {
+            Metrics.REGISTRY.gauge("sink_pending_bytes", sink::getPendingBytes);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    sink.close();
+                } catch (IOException ex) {
+                    _LOG.warn("result sink closing fail", ex);
+                }
+            }));
+        }
+
+        JsonObject clusterConfig = config.getJsonObject("cluster");
+        if (clusterConfig == null) {
+            start(Vertx.vertx(vertxOptions), config, 0, journal, sink);
+            return;
+        }
+
+        // every node is clustered vert.x with its own UDP port, nodes of this JVM share local cluster manager
+        int nodes = clusterConfig.getInteger("nodes", 1);
+        String clusterName = clusterConfig.getString("name", LocalClusterManager.DEFAULT_CLUSTER);
+        int clusterPort = clusterConfig.getInteger("port", 0);
+
+        for (int i = 0; i < nodes; i++) {
+
+            int node = i;
+
+            Vertx.clusteredVertx(
+                    new VertxOptions(vertxOptions)
+                            .setClusterManager(new LocalClusterManager(clusterName))
+                            .setClusterHost(clusterConfig.getString("host", "localhost"))
+                            .setClusterPort(clusterPort > 0 ? clusterPort + node : 0),
+                    async -> {
+                        try {
+                            if (async.failed()) {
+                                throw async.cause();
+                            }
+                            start(async.result(), config, node, journal, sink);
+                        } catch (Throwable ex) {
+                            _LOG.warn("cluster node starting fail: node={0,number,#}", ex, node);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Deploy pipeline of node, node 0 also serves metrics and replays journal.
+     */
+    private static void start(
+            Vertx vertx,
+            JsonObject config,
+            int node,
+            Journal journal,
+            ResultSink<Number> sink)
+            throws IOException {
+
+        _LOG.info("native transport enabled: {0}, clustered: {1}",
+                vertx.isNativeTransportEnabled(),
+                vertx.isClustered());
+
+        // nodes of this JVM export metrics of same names side by side
+        MetricsRegistry registry = config.getJsonObject("cluster") != null
+                ? Metrics.REGISTRY.withLabel("node", String.valueOf(node))
+                : Metrics.REGISTRY;
 
         vertx.eventBus().registerDefaultCodec(
                 Packet.class,
                 new Packet.Codec());
+        // routing key and fields of packets, mac at offset 12 by default
+        JsonObject layoutConfig = config.getJsonObject("layout");
+        PacketLayout layout = layoutConfig != null
+                ? new PacketLayout(new LayoutOptions(layoutConfig))
+                : PacketLayout.DEFAULT;
+
+        vertx.eventBus().registerDefaultCodec(
+                PacketView.class,
+                new PacketView.Codec(layout));
+        vertx.eventBus().registerDefaultCodec(
+                Batch.class,
+                new Batch.Codec(new PacketView.Codec(layout)));
+
+        long processingDelay = config.getLong("processingDelay", 0L);
 
-        Router<Long, Packet, Double> incoming = new Router<>(
-                "/udp/incoming/",
-                mac -> String.format("/udp/incoming/%012X/", mac),
-                packet -> packet.mac,
-                packet -> {
+        StatefulProcessor<PacketView, Number> processor = (packet, state) -> {
 
-                    if (_LOG.isTraceEnabled()) {
-                        _LOG.trace("{0}: START PROCESSING: {1}",
+            if (_LOG.isTraceEnabled()) {
+                _LOG.trace("{0}: START PROCESSING: {1}",
+                        vertx.getOrCreateContext().deploymentID(),
+                        packet.body().toString());
+            }
+
+            // emulate processing
+            if (processingDelay > 0) {
+                try {
+                    Thread.sleep(processingDelay);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+
+            // state: count of packets (long), last processed time (long)
+            long count = state.addLong(0, 1L);
+            state.putLong(8, System.currentTimeMillis());
+
+            if (_LOG.isTraceEnabled()) {
+                _LOG.trace("{0}: PROCESSED: {1}, count={2,number,#}",
+                        vertx.getOrCreateContext().deploymentID(),
+                        packet.body().toString(),
+                        count);
+            }
+
+            // sequence number of packet (first 8 bytes of data), so sender matches reply with request
+            return packet.body().dataLength() >= 8
+                    ? packet.body().getDataLong(0, 8)
+                    : ThreadLocalRandom.current().nextLong();
+        };
+
+        int stateSize = 16;
+
+        // with window packets are not processed one by one: statistics of data length of mac
+        // are processed (and replied with mean) once per window
+        JsonObject windowConfig = config.getJsonObject("window");
+        if (windowConfig != null) {
+
+            WindowAggregator<PacketView, Number> aggregator = new WindowAggregator<>(
+                    PacketView::dataLength,
+                    packet -> System.currentTimeMillis(),
+                    stats -> {
+                        _LOG.info("{0}: WINDOW PROCESSED: {1}",
                                 vertx.getOrCreateContext().deploymentID(),
-                                packet.body().toString());
-                    }
+                                stats.toString());
+                        return stats.getMean();
+                    },
+                    new WindowOptions(windowConfig));
 
-//                    // emulate processing
-//                    try {
-//                        Thread.sleep(10000L);
-//                    } catch (InterruptedException e) {
-//                        // ignore
-//                    }
+            processor = aggregator;
+            stateSize = aggregator.getStateSize();
+        }
 
-                    _LOG.info("{0}: PROCESSED: {1}",
-                            vertx.getOrCreateContext().deploymentID(),
-                            packet.body().toString());
+        // results (of windows with window) are written with key (mac) and time of processing
+        if (sink != null) {
+            processor = sink.wrap(PacketView::key, processor);
+        }
 
-                    return Math.random();
-                });
+        // duplicates are recognized by sequence number in data or, without it, by hash of data
+        JsonObject dedupConfig = config.getJsonObject("dedup");
+        Supplier<Deduplicator<PacketView>> deduplicator = null;
+        if (dedupConfig != null) {
 
-        UDPServer udpServer = new UDPServer<>(
-                datagram -> {
+            int sequenceOffset = dedupConfig.getInteger("sequenceOffset", 0);
+            int sequenceLength = dedupConfig.getInteger("sequenceLength", 0);
 
-                    Packet packet = Packet.fromBinary(datagram.data());
-                    if (packet == null) {
-                        throw new IllegalStateException("Bad packet");
-                    }
+            deduplicator = () -> new Deduplicator<>(
+                    PacketView::key,
+                    sequenceLength > 0
+                            ? packet -> packet.getDataLong(sequenceOffset, sequenceLength)
+                            : PacketView::dataHash,
+                    new DedupOptions(dedupConfig));
+        }
+
+        // packets are dispatched either through event bus by router or by engine in this JVM
+        JsonObject engineConfig = config.getJsonObject("engine");
+        StripedEngine<PacketView, Number> engine = engineConfig != null
+                ? new StripedEngine<>("/udp/incoming/", PacketView::key, processor, stateSize, new EngineOptions(engineConfig))
+                : null;
+
+        Verticle incoming;
+        String endpoint;
+        StateStore store;
+
+        if (engine != null) {
+
+            engine.setDeduplicator(deduplicator)
+                    .setMetricsRegistry(registry);
+
+            incoming = engine;
+            endpoint = engine.getEndpoint();
+            store = engine.getStateStore();
+
+        } else {
 
-                    _LOG.info("{0}: RECEIVED: {1}",
-                            vertx.getOrCreateContext().deploymentID(),
-                            packet.toString());
+            // every node warm starts processors of macs it has seen
+            RouterOptions routerOptions = new RouterOptions(config.getJsonObject("router", new JsonObject()));
+            if (routerOptions.getWarmStartFile() != null && node > 0) {
+                routerOptions.setWarmStartFile(routerOptions.getWarmStartFile() + "." + node);
+            }
 
-                    return packet;
-                },
-                incoming.getEndpoint());
+            LongRouter<PacketView, Number> router = new LongRouter<>(
+                    "/udp/incoming/",
+                    mac -> String.format("/udp/incoming/%012X/", mac),
+                    PacketView::key,
+                    processor,
+                    stateSize,
+                    routerOptions);
+
+            router.setMetricsRegistry(registry);
+
+            if (deduplicator != null) {
+                router.setDeduplicator(deduplicator.get());
+            }
+
+            // weights of macs for FAIR scheduling policy, 1 for others
+            JsonObject weightsConfig = config.getJsonObject("weights");
+            if (weightsConfig != null) {
+
+                Map<Long, Integer> weights = new HashMap<>();
+                for (String mac : weightsConfig.fieldNames()) {
+                    weights.put(Long.parseLong(mac, 16), weightsConfig.getInteger(mac));
+                }
+
+                router.setWeights(mac -> weights.getOrDefault(mac, 1));
+            }
+
+            // keys are owned by nodes, forwarded packets go over the wire as raw datagram
+            JsonObject clusterConfig = config.getJsonObject("cluster");
+            if (clusterConfig != null) {
+                router.setCluster(
+                        new ClusterOptions(clusterConfig),
+                        packet -> Buffer.buffer(Unpooled.copiedBuffer(packet.content())),
+                        packet -> PacketView.wrap((Buffer) packet, layout));
+            }
+
+            incoming = router;
+            endpoint = router.getEndpoint();
+            store = router.getStateStore();
+        }
+
+        if (store != null) {
+            registry.gauge("state_keys", store::size);
+            registry.counter("state_evictions_total", store::getEvictions);
+        }
+
+        JsonObject stateConfig = config.getJsonObject("state");
+        if (stateConfig != null) {
+
+            Objects.requireNonNull(store);
+            store.setMaxKeys(stateConfig.getLong("maxKeys", StateStore.DEFAULT_MAX_KEYS));
+
+            Path stateFile = Paths.get(stateConfig.getString("file", "state.bin") + (node > 0 ? "." + node : ""));
+
+            if (Files.exists(stateFile)) {
+                store.restore(stateFile);
+            }
+
+            // states are written when processing is stopped
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    CountDownLatch closed = new CountDownLatch(1);
+                    vertx.close(async -> closed.countDown());
+                    closed.await(10L, TimeUnit.SECONDS);
+                    store.snapshot(stateFile);
+                } catch (IOException | InterruptedException ex) {
+                    _LOG.warn("state snapshot writing fail: file={0}", ex, stateFile);
+                }
+            }));
+        }
+
+        JsonObject udpConfig = config.getJsonObject("udp", new JsonObject());
+
+        // every socket is served by its own UDPServer (and event loop), sockets share port by SO_REUSEPORT
+        int sockets = udpConfig.getInteger("sockets", 1);
+        UDPServerOptions udpOptions = new UDPServerOptions(udpConfig)
+                .setReusePort(sockets > 1 || udpConfig.getBoolean("reusePort", false));
+        udpOptions.setPort(udpOptions.getPort() + node);
+
+        Function<DatagramPacket, PacketView> decoder = datagram -> {
+
+            // content of NIO datagram is wrapped without vert.x buffer
+            PacketView packet = datagram instanceof NioDatagram
+                    ? PacketView.wrap(((NioDatagram) datagram).content(), layout)
+                    : PacketView.wrap(datagram.data(), layout);
+            if (packet == null) {
+                throw new IllegalStateException("Bad packet");
+            }
+
+            if (journal != null) {
+                journal.append(packet.content());
+            }
+
+            if (_LOG.isTraceEnabled()) {
+                _LOG.trace("{0}: RECEIVED: {1}",
+                        vertx.getOrCreateContext().deploymentID(),
+                        packet.toString());
+            }
+
+            return packet;
+        };
+
+        // one limiter of datagrams per key (mac) for all sockets, key is read from datagram before decoding
+        JsonObject rateLimitConfig = config.getJsonObject("rateLimit");
+        RateLimiter<DatagramPacket> rateLimiter = rateLimitConfig != null
+                ? new RateLimiter<>(
+                        datagram -> {
+                            ByteBuf content = datagram instanceof NioDatagram
+                                    ? ((NioDatagram) datagram).content()
+                                    : datagram.data().getByteBuf();
+                            return layout.keyOf(content, RateLimiter.UNLIMITED);
+                        },
+                        new RateLimiterOptions(rateLimitConfig))
+                : null;
+
+        // processing result is sent back to device
+        Function<Number, Buffer> replyEncoder = config.getBoolean("reply", false)
+                ? out -> Buffer.buffer(writeResult(out, Unpooled.buffer(8)))
+                : null;
+
+        JsonObject metricsConfig = config.getJsonObject("metrics");
+        if (metricsConfig != null && node == 0) {
+            vertx.deployVerticle(
+                    new MetricsServer(
+                            Metrics.REGISTRY,
+                            metricsConfig.getString("host", "localhost"),
+                            metricsConfig.getInteger("port", 9100)),
+                    async -> {
+                        if (async.failed()) {
+                            _LOG.warn("metrics server deploying fail", async.cause());
+                        }
+                    });
+        }
+
+        JsonObject replayConfig = node == 0 ? config.getJsonObject("replay") : null;
 
         vertx.deployVerticle(
                 incoming,
                 async -> {
-                    if (async.succeeded()) {
+                    if (async.failed()) {
+
+                        _LOG.warn("processing deploying fail: node={0,number,#}", async.cause(), node);
+                        vertx.close();
+
+                    } else if (replayConfig != null) {
+
+                        // replay journal instead of receiving datagrams
+                        JournalReplay<PacketView> replay = new JournalReplay<>(
+                                datagram -> PacketView.wrap(datagram, layout),
+                                endpoint,
+                                new ReplayOptions(replayConfig));
+                        replay.completion().setHandler(done -> vertx.close());
+
                         vertx.deployVerticle(
-                                udpServer);
+                                replay,
+                                new DeploymentOptions().setWorker(true),
+                                deployed -> {
+                                    if (deployed.failed()) {
+                                        _LOG.warn("journal replay deploying fail", deployed.cause());
+                                        vertx.close();
+                                    }
+                                });
+
+                    } else {
+                        for (int i = 0; i < sockets; i++) {
+                            int socket = i;
+                            vertx.deployVerticle(
+                                    (engine != null
+                                            ? new UDPServer<>(decoder, engine, udpOptions, replyEncoder)
+                                            : new UDPServer<>(decoder, endpoint, udpOptions, replyEncoder))
+                                            .setRateLimiter(rateLimiter)
+                                            .setMetricsRegistry(registry),
+                                    deployed -> {
+                                        // node does not run without any of its sockets
+                                        if (deployed.failed()) {
+                                            _LOG.warn("UDP server deploying fail: node={0,number,#}, socket={1,number,#}",
+                                                    deployed.cause(),
+                                                    node,
+                                                    socket);
+                                            vertx.close();
+                                        }
+                                    });
+                        }
                     }
                 });
     }
 
+    /**
+     * Write processing result as 8 bytes: sequence number of packet as long (exact for every
+     * value), mean of window as double.
+     */
+    private static ByteBuf writeResult(
+            Number out,
+            ByteBuf buffer) {
+
+        return out instanceof Double
+                ? buffer.writeDouble(out.doubleValue())
+                : buffer.writeLong(out.longValue());
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+package com.rtlservice.az.prototype_udp_srv.cluster;
+
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Options of {@link Membership}.
+ *
+ * @see Membership
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class ClusterOptions {
+
+    /**
+     * Default count of points of every node on hash ring = 160.
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    /**
+     * Default period of cluster membership check = 1000 ms.
+     */
+    public static final long DEFAULT_MEMBERSHIP_CHECK_PERIOD = 1000L;
+
+    /**
+     * Default timeout of message forwarded to owner node = 30000 ms.
+     */
+    public static final long DEFAULT_SEND_TIMEOUT = 30000L;
+
+    private int virtualNodes;
+    private long membershipCheckPeriod;
+    private long sendTimeout;
+
+    public ClusterOptions() {
+        this.virtualNodes = DEFAULT_VIRTUAL_NODES;
+        this.membershipCheckPeriod = DEFAULT_MEMBERSHIP_CHECK_PERIOD;
+        this.sendTimeout = DEFAULT_SEND_TIMEOUT;
+    }
+
+    public ClusterOptions(
+            @Nonnull ClusterOptions other) {
+
+        this.virtualNodes = other.virtualNodes;
+        this.membershipCheckPeriod = other.membershipCheckPeriod;
+        this.sendTimeout = other.sendTimeout;
+    }
+
+    public ClusterOptions(
+            @Nonnull JsonObject json) {
+
+        this(new ClusterOptions()
+                .setVirtualNodes(json.getInteger("virtualNodes", DEFAULT_VIRTUAL_NODES))
+                .setMembershipCheckPeriod(json.getLong("membershipCheckPeriod", DEFAULT_MEMBERSHIP_CHECK_PERIOD))
+                .setSendTimeout(json.getLong("sendTimeout", DEFAULT_SEND_TIMEOUT)));
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    /**
+     * Set count of points of every node on hash ring, more points give more even
+     * distribution of keys.
+     */
+    public @Nonnull ClusterOptions setVirtualNodes(
+            int virtualNodes) {
+
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be >= 1");
+        }
+
+        this.virtualNodes = virtualNodes;
+        return this;
+    }
+
+    public long getMembershipCheckPeriod() {
+        return membershipCheckPeriod;
+    }
+
+    /**
+     * Set period (ms) of cluster membership check, keys are rebalanced when nodes join or leave.
+     */
+    public @Nonnull ClusterOptions setMembershipCheckPeriod(
+            long membershipCheckPeriod) {
+
+        if (membershipCheckPeriod < 1) {
+            throw new IllegalArgumentException("membershipCheckPeriod must be >= 1");
+        }
+
+        this.membershipCheckPeriod = membershipCheckPeriod;
+        return this;
+    }
+
+    public long getSendTimeout() {
+        return sendTimeout;
+    }
+
+    /**
+     * Set time (ms) to wait for result of message forwarded to owner node.
+     */
+    public @Nonnull ClusterOptions setSendTimeout(
+            long sendTimeout) {
+
+        if (sendTimeout < 1) {
+            throw new IllegalArgumentException("sendTimeout must be >= 1");
+        }
+
+        this.sendTimeout = sendTimeout;
+        return this;
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.rtlservice.az.prototype_udp_srv.cluster;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Consistent hash ring: every node owns several points on ring, key is owned by node of
+ * first point at or after hash of key.
+ * <p>
+ * When node joins or leaves, only keys between its points and preceding points change owner
+ * (about 1/N of keys), ownership of other keys is the same on rings of all nodes which see
+ * same members.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@Immutable
+public final class HashRing {
+
+    @Nonnull private final List<String> nodes;
+    @Nonnull private final long[] points;
+    @Nonnull private final String[] owners;
+
+    public HashRing(
+            @Nonnull Collection<String> nodes,
+            int virtualNodes) {
+
+        // order of members does not matter
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(nodes)));
+
+        long[] points = new long[this.nodes.size() * virtualNodes];
+        String[] owners = new String[points.length];
+
+        int n = 0;
+        for (String node : this.nodes) {
+            long h = hash(node);
+            for (int i = 0; i < virtualNodes; i++) {
+                points[n] = mix(h + i * 0x9E3779B97F4A7C15L);
+                owners[n] = node;
+                n++;
+            }
+        }
+
+        // sort points with their owners
+        Integer[] order = new Integer[points.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int c = Long.compare(points[a], points[b]);
+            return c != 0 ? c : owners[a].compareTo(owners[b]);
+        });
+
+        this.points = new long[points.length];
+        this.owners = new String[points.length];
+        for (int i = 0; i < order.length; i++) {
+            this.points[i] = points[order[i]];
+            this.owners[i] = owners[order[i]];
+        }
+    }
+
+    /**
+     * Owner of key with given hash, null if ring is empty.
+     */
+    public @Nullable String owner(
+            long hash) {
+
+        if (points.length == 0) return null;
+
+        int i = Arrays.binarySearch(points, mix(hash));
+        if (i < 0) {
+            i = -i - 1;
+            if (i == points.length) {
+                // wrap around
+                i = 0;
+            }
+        }
+
+        return owners[i];
+    }
+
+    public @Nonnull List<String> getNodes() {
+        return nodes;
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    private static long hash(
+            @Nonnull String s) {
+
+        // FNV-1a
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+
+    private static long mix(
+            long h) {
+
+        // murmur3 finalizer
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
@@ -0,0 +1,570 @@
+package com.rtlservice.az.prototype_udp_srv.cluster;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxException;
+import io.vertx.core.shareddata.AsyncMap;
+import io.vertx.core.shareddata.Counter;
+import io.vertx.core.shareddata.Lock;
+import io.vertx.core.spi.cluster.AsyncMultiMap;
+import io.vertx.core.spi.cluster.ChoosableIterable;
+import io.vertx.core.spi.cluster.ClusterManager;
+import io.vertx.core.spi.cluster.NodeListener;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Cluster manager of nodes running in one JVM, stand-in for real cluster manager in tests and
+ * local runs: cluster state is kept in memory, shared by all managers of same cluster name.
+ * <p>
+ * Event bus of nodes still talks over TCP (loopback with {@code clusterHost=localhost}), so
+ * forwarding between nodes goes through wire codecs as with real cluster manager.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@ThreadSafe
+public class LocalClusterManager
+    implements ClusterManager {
+
+    public static final String DEFAULT_CLUSTER = "default";
+
+    private static final ConcurrentMap<String, Cluster> _CLUSTERS = new ConcurrentHashMap<>();
+
+    @Nonnull private final Cluster cluster;
+    @Nonnull private final String nodeID = UUID.randomUUID().toString();
+
+    @Nullable private volatile Vertx vertx = null;
+    @Nullable private volatile NodeListener nodeListener = null;
+    private volatile boolean active = false;
+
+    public LocalClusterManager() {
+        this(DEFAULT_CLUSTER);
+    }
+
+    public LocalClusterManager(
+            @Nonnull String name) {
+
+        this.cluster = _CLUSTERS.computeIfAbsent(name, n -> new Cluster());
+    }
+
+    @Override
+    public void setVertx(
+            Vertx vertx) {
+
+        this.vertx = vertx;
+    }
+
+    private @Nonnull Vertx vertx() {
+        return Objects.requireNonNull(vertx);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> void getAsyncMultiMap(
+            String name,
+            Handler<AsyncResult<AsyncMultiMap<K, V>>> resultHandler) {
+
+        resultHandler.handle(Future.succeededFuture(
+                (AsyncMultiMap<K, V>) cluster.multiMaps.computeIfAbsent(name, n -> new LocalAsyncMultiMap<>())));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> void getAsyncMap(
+            String name,
+            Handler<AsyncResult<AsyncMap<K, V>>> resultHandler) {
+
+        resultHandler.handle(Future.succeededFuture(
+                new LocalAsyncMap<>(vertx(), (ConcurrentMap<K, V>) cluster.maps.computeIfAbsent(name, n -> new ConcurrentHashMap<>()))));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, V> getSyncMap(
+            String name) {
+
+        return (Map<K, V>) cluster.maps.computeIfAbsent(name, n -> new ConcurrentHashMap<>());
+    }
+
+    @Override
+    public void getLockWithTimeout(
+            String name,
+            long timeout,
+            Handler<AsyncResult<Lock>> resultHandler) {
+
+        Semaphore semaphore = cluster.locks.computeIfAbsent(name, n -> new Semaphore(1));
+
+        vertx().<Lock>executeBlocking(
+                (future) -> {
+                    try {
+                        if (semaphore.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                            future.complete(new LocalLock(semaphore));
+                        } else {
+                            future.fail(new VertxException("Timed out waiting to get lock " + name));
+                        }
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        future.fail(ex);
+                    }
+                },
+                false,
+                resultHandler);
+    }
+
+    @Override
+    public void getCounter(
+            String name,
+            Handler<AsyncResult<Counter>> resultHandler) {
+
+        resultHandler.handle(Future.succeededFuture(
+                new LocalCounter(cluster.counters.computeIfAbsent(name, n -> new AtomicLong()))));
+    }
+
+    @Override
+    public String getNodeID() {
+        return nodeID;
+    }
+
+    @Override
+    public List<String> getNodes() {
+
+        List<String> nodes = new ArrayList<>();
+        for (LocalClusterManager member : cluster.members) {
+            nodes.add(member.nodeID);
+        }
+        return nodes;
+    }
+
+    @Override
+    public void nodeListener(
+            NodeListener listener) {
+
+        this.nodeListener = listener;
+    }
+
+    @Override
+    public void join(
+            Handler<AsyncResult<Void>> resultHandler) {
+
+        vertx().<Void>executeBlocking(
+                (future) -> {
+                    synchronized (cluster) {
+                        if (!active) {
+                            active = true;
+                            cluster.members.add(this);
+                            cluster.notify(this, true);
+                        }
+                    }
+                    future.complete();
+                },
+                resultHandler);
+    }
+
+    @Override
+    public void leave(
+            Handler<AsyncResult<Void>> resultHandler) {
+
+        vertx().<Void>executeBlocking(
+                (future) -> {
+                    synchronized (cluster) {
+                        if (active) {
+                            active = false;
+                            cluster.members.remove(this);
+                            cluster.notify(this, false);
+                        }
+                    }
+                    future.complete();
+                },
+                resultHandler);
+    }
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * State of cluster shared by its members.
+     */
+    private static class Cluster {
+
+        @Nonnull final List<LocalClusterManager> members = new CopyOnWriteArrayList<>();
+        @Nonnull final ConcurrentMap<String, LocalAsyncMultiMap<?, ?>> multiMaps = new ConcurrentHashMap<>();
+        @Nonnull final ConcurrentMap<String, ConcurrentMap<?, ?>> maps = new ConcurrentHashMap<>();
+        @Nonnull final ConcurrentMap<String, Semaphore> locks = new ConcurrentHashMap<>();
+        @Nonnull final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+        // listeners are called in order of membership changes, outside of joining/leaving thread
+        @Nonnull final ExecutorService events = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "local-cluster-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        void notify(
+                @Nonnull LocalClusterManager changed,
+                boolean added) {
+
+            for (LocalClusterManager member : members) {
+                if (member == changed) continue;
+
+                events.execute(() -> {
+                    NodeListener listener = member.nodeListener;
+                    if (listener != null && member.active) {
+                        if (added) {
+                            listener.nodeAdded(changed.nodeID);
+                        } else {
+                            listener.nodeLeft(changed.nodeID);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Multi-map, values of key are chosen round-robin.
+     */
+    private static class LocalAsyncMultiMap<K, V>
+        implements AsyncMultiMap<K, V> {
+
+        @Nonnull private final ConcurrentMap<K, Values<V>> map = new ConcurrentHashMap<>();
+
+        @Override
+        public void add(
+                K k,
+                V v,
+                Handler<AsyncResult<Void>> completionHandler) {
+
+            map.computeIfAbsent(k, key -> new Values<>()).values.add(v);
+            completionHandler.handle(Future.succeededFuture());
+        }
+
+        @Override
+        public void get(
+                K k,
+                Handler<AsyncResult<ChoosableIterable<V>>> resultHandler) {
+
+            Values<V> values = map.get(k);
+            resultHandler.handle(Future.succeededFuture(values != null ? values : new Values<>()));
+        }
+
+        @Override
+        public void remove(
+                K k,
+                V v,
+                Handler<AsyncResult<Boolean>> completionHandler) {
+
+            Values<V> values = map.get(k);
+            completionHandler.handle(Future.succeededFuture(values != null && values.values.remove(v)));
+        }
+
+        @Override
+        public void removeAllForValue(
+                V v,
+                Handler<AsyncResult<Void>> completionHandler) {
+
+            removeAllMatching(v::equals, completionHandler);
+        }
+
+        @Override
+        public void removeAllMatching(
+                Predicate<V> p,
+                Handler<AsyncResult<Void>> completionHandler) {
+
+            for (Values<V> values : map.values()) {
+                values.values.removeIf(p);
+            }
+            completionHandler.handle(Future.succeededFuture());
+        }
+    }
+
+    private static class Values<V>
+        implements ChoosableIterable<V> {
+
+        @Nonnull final Set<V> values = new CopyOnWriteArraySet<>();
+        @Nonnull private final AtomicInteger next = new AtomicInteger();
+
+        @Override
+        public boolean isEmpty() {
+            return values.isEmpty();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public @Nullable V choose() {
+
+            Object[] snapshot = values.toArray();
+            if (snapshot.length == 0) return null;
+
+            return (V) snapshot[Math.floorMod(next.getAndIncrement(), snapshot.length)];
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return values.iterator();
+        }
+    }
+
+    /**
+     * Async view of shared map, entries with TTL are removed by timer of node which put them.
+     */
+    private static class LocalAsyncMap<K, V>
+        implements AsyncMap<K, V> {
+
+        @Nonnull private final Vertx vertx;
+        @Nonnull private final ConcurrentMap<K, V> map;
+
+        LocalAsyncMap(
+                @Nonnull Vertx vertx,
+                @Nonnull ConcurrentMap<K, V> map) {
+
+            this.vertx = vertx;
+            this.map = map;
+        }
+
+        private void expire(
+                K k,
+                V v,
+                long ttl) {
+
+            vertx.setTimer(ttl, timer -> map.remove(k, v));
+        }
+
+        @Override
+        public void get(
+                K k,
+                Handler<AsyncResult<V>> resultHandler) {
+
+            resultHandler.handle(Future.succeededFuture(map.get(k)));
+        }
+
+        @Override
+        public void put(
+                K k,
+                V v,
+                Handler<AsyncResult<Void>> completionHandler) {
+
+            map.put(k, v);
+            completionHandler.handle(Future.succeededFuture());
+        }
+
+        @Override
+        public void put(
+                K k,
+                V v,
+                long ttl,
+                Handler<AsyncResult<Void>> completionHandler) {
+
+            map.put(k, v);
+            expire(k, v, ttl);
+            completionHandler.handle(Future.succeededFuture());
+        }
+
+        @Override
+        public void putIfAbsent(
+                K k,
+                V v,
+                Handler<AsyncResult<V>> completionHandler) {
+
+            completionHandler.handle(Future.succeededFuture(map.putIfAbsent(k, v)));
+        }
+
+        @Override
+        public void putIfAbsent(
+                K k,
+                V v,
+                long ttl,
+                Handler<AsyncResult<V>> completionHandler) {
+
+            V previous = map.putIfAbsent(k, v);
+            if (previous == null) {
+                expire(k, v, ttl);
+            }
+            completionHandler.handle(Future.succeededFuture(previous));
+        }
+
+        @Override
+        public void remove(
+                K k,
+                Handler<AsyncResult<V>> resultHandler) {
+
+            resultHandler.handle(Future.succeededFuture(map.remove(k)));
+        }
+
+        @Override
+        public void removeIfPresent(
+                K k,
+                V v,
+                Handler<AsyncResult<Boolean>> resultHandler) {
+
+            resultHandler.handle(Future.succeededFuture(map.remove(k, v)));
+        }
+
+        @Override
+        public void replace(
+                K k,
+                V v,
+                Handler<AsyncResult<V>> resultHandler) {
+
+            resultHandler.handle(Future.succeededFuture(map.replace(k, v)));
+        }
+
+        @Override
+        public void replaceIfPresent(
+                K k,
+                V oldValue,
+                V newValue,
+                Handler<AsyncResult<Boolean>> resultHandler) {
+
+            resultHandler.handle(Future.succeededFuture(map.replace(k, oldValue, newValue)));
+        }
+
+        @Override
+        public void clear(
+                Handler<AsyncResult<Void>> resultHandler) {
+
+            map.clear();
+            resultHandler.handle(Future.succeededFuture());
+        }
+
+        @Override
+        public void size(
+                Handler<AsyncResult<Integer>> resultHandler) {
+
+            resultHandler.handle(Future.succeededFuture(map.size()));
+        }
+
+        @Override
+        public void keys(
+                Handler<AsyncResult<Set<K>>> resultHandler) {
+
+            resultHandler.handle(Future.succeededFuture(new HashSet<>(map.keySet())));
+        }
+
+        @Override
+        public void values(
+                Handler<AsyncResult<List<V>>> resultHandler) {
+
+            resultHandler.handle(Future.succeededFuture(new ArrayList<>(map.values())));
+        }
+
+        @Override
+        public void entries(
+                Handler<AsyncResult<Map<K, V>>> resultHandler) {
+
+            resultHandler.handle(Future.succeededFuture(new HashMap<>(map)));
+        }
+    }
+
+    private static class LocalLock
+        implements Lock {
+
+        @Nonnull private final Semaphore semaphore;
+        @Nonnull private final AtomicBoolean released = new AtomicBoolean();
+
+        LocalLock(
+                @Nonnull Semaphore semaphore) {
+
+            this.semaphore = semaphore;
+        }
+
+        @Override
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                semaphore.release();
+            }
+        }
+    }
+
+    private static class LocalCounter
+        implements Counter {
+
+        @Nonnull private final AtomicLong value;
+
+        LocalCounter(
+                @Nonnull AtomicLong value) {
+
+            this.value = value;
+        }
+
+        @Override
+        public void get(
+                Handler<AsyncResult<Long>> resultHandler) {
+
+            resultHandler.handle(Future.succeededFuture(value.get()));
+        }
+
+        @Override
+        public void incrementAndGet(
+                Handler<AsyncResult<Long>> resultHandler) {
+
+            resultHandler.handle(Future.succeededFuture(value.incrementAndGet()));
+        }
+
+        @Override
+        public void getAndIncrement(
+                Handler<AsyncResult<Long>> resultHandler) {
+
+            resultHandler.handle(Future.succeededFuture(value.getAndIncrement()));
+        }
+
+        @Override
+        public void decrementAndGet(
+                Handler<AsyncResult<Long>> resultHandler) {
+
+            resultHandler.handle(Future.succeededFuture(value.decrementAndGet()));
+        }
+
+        @Override
+        public void addAndGet(
+                long value,
+                Handler<AsyncResult<Long>> resultHandler) {
+
+            resultHandler.handle(Future.succeededFuture(this.value.addAndGet(value)));
+        }
+
+        @Override
+        public void getAndAdd(
+                long value,
+                Handler<AsyncResult<Long>> resultHandler) {
+
+            resultHandler.handle(Future.succeededFuture(this.value.getAndAdd(value)));
+        }
+
+        @Override
+        public void compareAndSet(
+                long expected,
+                long value,
+                Handler<AsyncResult<Boolean>> resultHandler) {
+
+            resultHandler.handle(Future.succeededFuture(this.value.compareAndSet(expected, value)));
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.rtlservice.az.prototype_udp_srv.cluster;
+
+import com.rtlservice.az.prototype_udp_srv.HandlerLoggable;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.VertxInternal;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.spi.cluster.ClusterManager;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ownership of keys by nodes of clustered vert.x: every key is owned by exactly one node
+ * (see {@link HashRing}), ring is rebuilt when members of cluster change.
+ * <p>
+ * Members are taken from cluster manager every {@link ClusterOptions#setMembershipCheckPeriod(long)
+ * membership check period}, node listener of cluster manager is left to vert.x.
+ * Nodes see change at slightly different times, so key can be processed by old and new owner
+ * while ownership is moving.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@NotThreadSafe
+public class Membership {
+
+    private static final Logger _LOG = LoggerFactory.getLogger(Membership.class);
+
+    @Nonnull private final Vertx vertx;
+    @Nonnull private final ClusterOptions options;
+
+    @Nullable private ClusterManager clusterManager = null;
+    @Nullable private String nodeID = null;
+    @Nonnull private volatile HashRing ring = new HashRing(Collections.emptyList(), 1);
+    @Nonnull private final LongAdder rebalances = new LongAdder();
+
+    private long timer = -1L;
+
+    public Membership(
+            @Nonnull Vertx vertx,
+            @Nonnull ClusterOptions options) {
+
+        this.vertx = vertx;
+        this.options = new ClusterOptions(options);
+    }
+
+    /**
+     * Build ring of current members and start membership check, vert.x must be clustered.
+     */
+    public void start() {
+
+        if (!vertx.isClustered()) {
+            throw new IllegalStateException("Vert.x is not clustered");
+        }
+
+        clusterManager = ((VertxInternal) vertx).getClusterManager();
+        nodeID = clusterManager.getNodeID();
+
+        check();
+
+        timer = vertx.setPeriodic(
+                options.getMembershipCheckPeriod(),
+                (HandlerLoggable<Long>) (t) -> check());
+    }
+
+    public void stop() {
+
+        if (timer != -1L) {
+            vertx.cancelTimer(timer);
+            timer = -1L;
+        }
+    }
+
+    private void check() {
+
+        ClusterManager clusterManager = Objects.requireNonNull(this.clusterManager);
+        if (!clusterManager.isActive()) return;
+
+        HashSet<String> nodes = new HashSet<>(clusterManager.getNodes());
+        // node is member even if cluster manager does not list it yet
+        nodes.add(getNodeID());
+
+        HashRing ring = this.ring;
+        if (nodes.equals(new HashSet<>(ring.getNodes()))) return;
+
+        this.ring = new HashRing(nodes, options.getVirtualNodes());
+        if (!ring.isEmpty()) {
+            rebalances.increment();
+        }
+
+        _LOG.info("{0}: cluster membership changed: nodes={1}",
+                getNodeID(),
+                this.ring.getNodes());
+    }
+
+    public @Nonnull String getNodeID() {
+        return Objects.requireNonNull(nodeID);
+    }
+
+    /**
+     * Owner node of key with given hash.
+     */
+    public @Nonnull String owner(
+            long hash) {
+
+        return Objects.requireNonNull(ring.owner(hash));
+    }
+
+    public boolean isLocal(
+            long hash) {
+
+        return getNodeID().equals(ring.owner(hash));
+    }
+
+    /**
+     * Count of nodes on ring.
+     */
+    public int size() {
+        return ring.getNodes().size();
+    }
+
+    /**
+     * Count of ownership changes after start.
+     */
+    public long getRebalances() {
+        return rebalances.sum();
+    }
+
+    public @Nonnull ClusterOptions getOptions() {
+        return options;
+    }
+
+}
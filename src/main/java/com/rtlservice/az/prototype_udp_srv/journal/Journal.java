@@ -0,0 +1,304 @@
+package com.rtlservice.az.prototype_udp_srv.journal;
+
+import com.rtlservice.az.prototype_udp_srv.metrics.Metrics;
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of raw datagrams in memory-mapped segment files.
+ * <p>
+ * Segment: 16 bytes header (magic, version, creation time ms) followed by records
+ * (4 bytes length, 8 bytes receive time ns since epoch, datagram), zero length marks end of segment.
+ * Segments are named by sequence number and are created, pre-faulted and forced to disk by
+ * background thread, so {@link #append(ByteBuf)} only copies datagram into mapped memory and never
+ * blocks on I/O or allocates: when next segment is not ready yet, datagram is dropped.
+ * <p>
+ * Appending threads do not contend on lock: record is placed by CAS on write position of segment,
+ * lock is taken only to roll over to next segment.
+ *
+ * @see JournalReader
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@ThreadSafe
+public class Journal
+        implements Closeable {
+
+    private static final Logger _LOG = LoggerFactory.getLogger(Journal.class);
+
+    static final int MAGIC = 0x4A524E4C;
+    static final int VERSION = 1;
+    static final int SEGMENT_HEADER_LENGTH = 16;
+    static final int RECORD_HEADER_LENGTH = 12;
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    private static final int PAGE_SIZE = 4096;
+
+    @Nonnull private final Path directory;
+    private final int segmentSize;
+    @Nonnull private final ExecutorService io;
+
+    private final long epochNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    private final long baseNanos = System.nanoTime();
+
+    // accessed from io thread only
+    private long nextIndex;
+
+    // replaced under this on roll over
+    @Nonnull private volatile Segment current;
+    private volatile boolean closed = false;
+
+    // guarded by this
+    @Nonnull private Future<Segment> next;
+
+    public Journal(
+            @Nonnull JournalOptions options)
+            throws IOException {
+
+        this.directory = Paths.get(options.getDirectory());
+        this.segmentSize = options.getSegmentSize();
+
+        Files.createDirectories(directory);
+        try (Stream<Path> segments = Files.list(directory)) {
+            this.nextIndex = segments
+                    .map(JournalReader::indexOf)
+                    .filter(index -> index >= 0)
+                    .mapToLong(index -> index + 1)
+                    .max()
+                    .orElse(0L);
+        }
+
+        this.io = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.current = allocate();
+        this.next = io.submit(this::allocate);
+
+        _LOG.info("journal opened: directory={0}, segment={1}",
+                directory,
+                current.path.getFileName());
+    }
+
+    /**
+     * Receive time of datagram, ns since epoch.
+     */
+    private long timestamp() {
+        return epochNanos + (System.nanoTime() - baseNanos);
+    }
+
+    /**
+     * Append datagram ({@code readableBytes} of buffer), buffer indexes are not changed.
+     *
+     * @return false if datagram is dropped (journal is closed, datagram does not fit segment or
+     * next segment is not ready)
+     */
+    public boolean append(
+            @Nonnull ByteBuf datagram) {
+
+        int length = datagram.readableBytes();
+        int recordLength = RECORD_HEADER_LENGTH + length;
+        long timestamp = timestamp();
+
+        if (closed
+                || length == 0
+                || recordLength > segmentSize - SEGMENT_HEADER_LENGTH) {
+
+            Metrics.JOURNAL_DROPPED.increment();
+            return false;
+        }
+
+        Segment segment = current;
+        int position;
+        while ((position = segment.reserve(recordLength)) < 0) {
+            segment = roll(segment);
+            if (segment == null) {
+                Metrics.JOURNAL_DROPPED.increment();
+                return false;
+            }
+        }
+
+        // absolute access only, buffer is shared by appending threads
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putLong(position + 4, timestamp);
+
+        int from = datagram.readerIndex();
+        int to = position + RECORD_HEADER_LENGTH;
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            buffer.putLong(to + i, datagram.getLong(from + i));
+        }
+        for (; i < length; i++) {
+            buffer.put(to + i, datagram.getByte(from + i));
+        }
+
+        // length goes last, it makes record visible for reader
+        buffer.putInt(position, length);
+
+        Metrics.JOURNAL_APPENDED.increment();
+        return true;
+    }
+
+    /**
+     * Switch to next segment if it is ready, rest of current segment stays zeroed (end mark).
+     *
+     * @param full segment which record does not fit
+     * @return segment to append to, null if journal is closed or next segment is not ready
+     */
+    private synchronized @Nullable Segment roll(
+            @Nonnull Segment full) {
+
+        if (closed) {
+            return null;
+        }
+
+        // rolled over by other thread
+        if (current != full) {
+            return current;
+        }
+
+        if (!next.isDone()) {
+            return null;
+        }
+
+        Segment segment;
+        try {
+            segment = next.get();
+        } catch (InterruptedException | ExecutionException ex) {
+            _LOG.warn("journal segment allocating fail: directory={0}",
+                    ex,
+                    directory);
+            next = io.submit(this::allocate);
+            return null;
+        }
+
+        // force is queued behind allocating of next segment, records still being copied by
+        // appending threads are done by then
+        io.execute(() -> full.buffer.force());
+
+        current = segment;
+        next = io.submit(this::allocate);
+
+        _LOG.debug("journal rolled over: segment={0}",
+                segment.path.getFileName());
+
+        return segment;
+    }
+
+    private @Nonnull Segment allocate()
+            throws IOException {
+
+        Path path = directory.resolve(JournalReader.nameOf(nextIndex++));
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(
+                path,
+                StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+
+        // fault pages in now, not on first append
+        for (int i = 0; i < segmentSize; i += PAGE_SIZE) {
+            buffer.put(i, (byte) 0);
+        }
+
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, System.currentTimeMillis());
+
+        return new Segment(path, buffer);
+    }
+
+    /**
+     * Force appended records to disk and stop, pre-allocated unused segment is deleted.
+     */
+    @Override
+    public void close()
+            throws IOException {
+
+        Segment unused = null;
+
+        synchronized (this) {
+
+            if (closed) return;
+            closed = true;
+
+            current.buffer.force();
+
+            try {
+                unused = next.get();
+            } catch (InterruptedException | ExecutionException ex) {
+                // nothing to delete
+            }
+        }
+
+        io.shutdown();
+
+        if (unused != null) {
+            Files.deleteIfExists(unused.path);
+        }
+
+        _LOG.info("journal closed: directory={0}",
+                directory);
+    }
+
+    private static final class Segment {
+
+        @Nonnull final Path path;
+        @Nonnull final MappedByteBuffer buffer;
+
+        // write position, never moves past end of segment
+        @Nonnull final AtomicInteger position = new AtomicInteger(SEGMENT_HEADER_LENGTH);
+
+        Segment(
+                @Nonnull Path path,
+                @Nonnull MappedByteBuffer buffer) {
+
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        /**
+         * @return position of reserved record, -1 if record does not fit segment
+         */
+        int reserve(
+                int recordLength) {
+
+            while (true) {
+                int position = this.position.get();
+                if (position + recordLength > buffer.capacity()) {
+                    return -1;
+                }
+                if (this.position.compareAndSet(position, position + recordLength)) {
+                    return position;
+                }
+            }
+        }
+    }
+
+}
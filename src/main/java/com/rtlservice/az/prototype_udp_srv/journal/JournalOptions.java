@@ -0,0 +1,82 @@
+package com.rtlservice.az.prototype_udp_srv.journal;
+
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Options of {@link Journal}.
+ *
+ * @see Journal
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class JournalOptions {
+
+    /**
+     * Default directory of segment files = journal.
+     */
+    public static final String DEFAULT_DIRECTORY = "journal";
+
+    /**
+     * Default size of segment file = 64 MiB.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    @Nonnull private String directory;
+    private int segmentSize;
+
+    public JournalOptions() {
+        this.directory = DEFAULT_DIRECTORY;
+        this.segmentSize = DEFAULT_SEGMENT_SIZE;
+    }
+
+    public JournalOptions(
+            @Nonnull JournalOptions other) {
+
+        this.directory = other.directory;
+        this.segmentSize = other.segmentSize;
+    }
+
+    public JournalOptions(
+            @Nonnull JsonObject json) {
+
+        this(new JournalOptions()
+                .setDirectory(json.getString("directory", DEFAULT_DIRECTORY))
+                .setSegmentSize(json.getInteger("segmentSize", DEFAULT_SEGMENT_SIZE)));
+    }
+
+    public @Nonnull String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Set directory of segment files, created if absent.
+     */
+    public @Nonnull JournalOptions setDirectory(
+            @Nonnull String directory) {
+
+        this.directory = directory;
+        return this;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Set size (bytes) of segment file, segment is pre-allocated with this size and
+     * journal rolls over to next segment when record does not fit.
+     */
+    public @Nonnull JournalOptions setSegmentSize(
+            int segmentSize) {
+
+        if (segmentSize < 4096) {
+            throw new IllegalArgumentException("segmentSize must be >= 4096");
+        }
+
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.rtlservice.az.prototype_udp_srv.journal;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.rtlservice.az.prototype_udp_srv.journal.Journal.MAGIC;
+import static com.rtlservice.az.prototype_udp_srv.journal.Journal.RECORD_HEADER_LENGTH;
+import static com.rtlservice.az.prototype_udp_srv.journal.Journal.SEGMENT_HEADER_LENGTH;
+import static com.rtlservice.az.prototype_udp_srv.journal.Journal.SEGMENT_SUFFIX;
+
+/**
+ * Sequential reader of {@link Journal} records, segment by segment in order of their sequence numbers.
+ * <p>
+ * <pre>
+ * while (reader.next()) {
+ *     reader.timestamp(); reader.read(allocator);
+ * }
+ * </pre>
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@NotThreadSafe
+public class JournalReader
+        implements Closeable {
+
+    private static final Logger _LOG = LoggerFactory.getLogger(JournalReader.class);
+
+    @Nonnull private final Iterator<Path> segments;
+
+    @Nullable private MappedByteBuffer segment = null;
+    private int position = 0;
+    private int length = 0;
+
+    public JournalReader(
+            @Nonnull String directory)
+            throws IOException {
+
+        try (Stream<Path> files = Files.list(Paths.get(directory))) {
+            this.segments = files
+                    .filter(path -> indexOf(path) >= 0)
+                    .sorted((a, b) -> Long.compare(indexOf(a), indexOf(b)))
+                    .collect(Collectors.toList())
+                    .iterator();
+        }
+    }
+
+    static @Nonnull String nameOf(
+            long index) {
+
+        return String.format("%020d%s", index, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * @return sequence number of segment file, -1 if it is not segment
+     */
+    static long indexOf(
+            @Nonnull Path path) {
+
+        String name = path.getFileName().toString();
+        if (!name.endsWith(SEGMENT_SUFFIX)) {
+            return -1L;
+        }
+
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException ex) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Move to next record.
+     *
+     * @return false if there are no more records
+     */
+    public boolean next()
+            throws IOException {
+
+        while (true) {
+
+            MappedByteBuffer segment = this.segment;
+            if (segment != null) {
+
+                position += length == 0 ? 0 : RECORD_HEADER_LENGTH + length;
+
+                if (position + RECORD_HEADER_LENGTH <= segment.capacity()) {
+                    length = segment.getInt(position);
+                    if (length > 0 && position + RECORD_HEADER_LENGTH + length <= segment.capacity()) {
+                        return true;
+                    }
+                }
+            }
+
+            length = 0;
+            if (!open()) {
+                return false;
+            }
+        }
+    }
+
+    private boolean open()
+            throws IOException {
+
+        while (segments.hasNext()) {
+
+            Path path = segments.next();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (segment.capacity() < SEGMENT_HEADER_LENGTH || segment.getInt(0) != MAGIC) {
+                    _LOG.warn("not a journal segment, skipped: file={0}",
+                            path);
+                    continue;
+                }
+
+                this.segment = segment;
+                this.position = SEGMENT_HEADER_LENGTH;
+                return true;
+            }
+        }
+
+        this.segment = null;
+        return false;
+    }
+
+    private @Nonnull MappedByteBuffer segment() {
+
+        MappedByteBuffer segment = this.segment;
+        if (segment == null || length == 0) {
+            throw new IllegalStateException("No current record");
+        }
+
+        return segment;
+    }
+
+    /**
+     * Receive time of current record, ns since epoch.
+     */
+    public long timestamp() {
+        return segment().getLong(position + 4);
+    }
+
+    /**
+     * Length of datagram of current record.
+     */
+    public int length() {
+        segment();
+        return length;
+    }
+
+    /**
+     * Copy datagram of current record into buffer from {@code allocator}, caller owns it.
+     */
+    public @Nonnull ByteBuf read(
+            @Nonnull ByteBufAllocator allocator) {
+
+        MappedByteBuffer segment = segment();
+
+        ByteBuf datagram = allocator.directBuffer(length, length);
+        segment.limit(position + RECORD_HEADER_LENGTH + length).position(position + RECORD_HEADER_LENGTH);
+        datagram.writeBytes(segment);
+        segment.clear();
+
+        return datagram;
+    }
+
+    @Override
+    public void close() {
+        this.segment = null;
+        this.length = 0;
+        while (segments.hasNext()) {
+            segments.next();
+        }
+    }
+
+}
@@ -0,0 +1,223 @@
+package com.rtlservice.az.prototype_udp_srv.journal;
+
+import com.rtlservice.az.prototype_udp_srv.HandlerLoggable;
+import com.rtlservice.az.prototype_udp_srv.metrics.Traced;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Feeds datagrams of {@link Journal} to processor endpoint (e.g. {@code Router}), same way
+ * as {@code UDPServer} does, as fast as possible or with original timing.
+ * <p>
+ * Reads segment files, so it should be deployed as worker verticle. {@link #completion()}
+ * completes when all records are sent and replied.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class JournalReplay<I>
+        extends AbstractVerticle {
+
+    private static final Logger _LOG = LoggerFactory.getLogger(JournalReplay.class);
+
+    @Nonnull private final Function<ByteBuf, I> decoder;
+    @Nonnull private final String incomingProcessorEndpoint;
+    @Nonnull private final ReplayOptions options;
+    @Nonnull private final Future<Void> completion = Future.future();
+
+    // accessed from replay context only
+    @Nullable private JournalReader reader = null;
+    private boolean hasRecord = false;
+    private boolean waiting = false;
+    private int inFlight = 0;
+    private long firstTimestamp = 0L;
+    private long startNanos = 0L;
+    private long sent = 0L;
+    private long replied = 0L;
+    private long failed = 0L;
+
+    /**
+     * @param decoder datagram to message, returns null for bad datagram;
+     *                decoder gets its own reference of datagram, which is released after decoding
+     */
+    public JournalReplay(
+            @Nonnull Function<ByteBuf, I> decoder,
+            @Nonnull String incomingProcessorEndpoint,
+            @Nonnull ReplayOptions options) {
+
+        this.decoder = decoder;
+        this.incomingProcessorEndpoint = incomingProcessorEndpoint;
+        this.options = new ReplayOptions(options);
+    }
+
+    /**
+     * Completes when journal is replayed.
+     */
+    public @Nonnull Future<Void> completion() {
+        return completion;
+    }
+
+    public void start(
+            @Nonnull Future<Void> start)
+            throws Exception {
+
+        try {
+
+            _LOG.debug("{0}: try start journal replay: directory={1}, timing={2}",
+                    deploymentID(),
+                    options.getDirectory(),
+                    options.getTiming());
+
+            JournalReader reader = new JournalReader(options.getDirectory());
+            this.reader = reader;
+
+            hasRecord = reader.next();
+            firstTimestamp = hasRecord ? reader.timestamp() : 0L;
+            startNanos = System.nanoTime();
+
+            start.complete();
+
+            _LOG.info("{0}: journal replay successfully started: directory={1}, timing={2}",
+                    deploymentID(),
+                    options.getDirectory(),
+                    options.getTiming());
+
+            context.runOnContext((HandlerLoggable<Void>) (v) -> pump());
+
+        } catch (Throwable ex) {
+
+            start.fail(ex);
+
+            _LOG.warn("{0}: journal replay starting fail: directory={1}",
+                    ex,
+                    deploymentID(),
+                    options.getDirectory());
+        }
+    }
+
+    @Override
+    public void stop(
+            @Nonnull Future<Void> stop)
+            throws Exception {
+
+        JournalReader reader = this.reader;
+        if (reader != null) {
+            reader.close();
+        }
+
+        if (!completion.isComplete()) {
+            completion.fail("Journal replay is stopped");
+        }
+
+        super.stop(stop);
+    }
+
+    private void pump() {
+
+        try {
+
+            JournalReader reader = Objects.requireNonNull(this.reader);
+
+            while (hasRecord && inFlight < options.getWindow()) {
+
+                if (options.getTiming() == ReplayTiming.ORIGINAL) {
+
+                    long delay = (reader.timestamp() - firstTimestamp) - (System.nanoTime() - startNanos);
+                    if (delay > 0) {
+
+                        if (!waiting) {
+                            waiting = true;
+                            getVertx().setTimer(
+                                    Math.max(1L, TimeUnit.NANOSECONDS.toMillis(delay)),
+                                    (HandlerLoggable<Long>) (timer) -> {
+                                        waiting = false;
+                                        pump();
+                                    });
+                        }
+
+                        return;
+                    }
+                }
+
+                ByteBuf datagram = reader.read(PooledByteBufAllocator.DEFAULT);
+                I in;
+                try {
+                    in = decoder.apply(datagram);
+                } finally {
+                    datagram.release();
+                }
+
+                hasRecord = reader.next();
+
+                if (in == null) {
+                    failed++;
+                    continue;
+                }
+
+                if (in instanceof Traced) {
+                    ((Traced) in).setReceivedNanos(System.nanoTime());
+                }
+
+                send(in);
+            }
+
+            if (!hasRecord && inFlight == 0 && !completion.isComplete()) {
+
+                _LOG.info("{0}: journal replayed: sent={1,number,#}, replied={2,number,#}, failed={3,number,#}, time={4,number,#} ms",
+                        deploymentID(),
+                        sent,
+                        replied,
+                        failed,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+
+                completion.complete();
+            }
+
+        } catch (Throwable ex) {
+
+            hasRecord = false;
+            if (!completion.isComplete()) {
+                completion.fail(ex);
+            }
+
+            _LOG.warn("{0}: journal replay fail: directory={1}",
+                    ex,
+                    deploymentID(),
+                    options.getDirectory());
+        }
+    }
+
+    private void send(
+            @Nonnull Object in) {
+
+        inFlight++;
+        sent++;
+
+        getVertx().eventBus().send(
+                incomingProcessorEndpoint,
+                in,
+                (HandlerLoggable<AsyncResult<Message<Object>>>) (async) -> {
+
+                    inFlight--;
+                    if (async.succeeded()) {
+                        replied++;
+                    } else {
+                        failed++;
+                    }
+
+                    pump();
+                });
+    }
+
+}
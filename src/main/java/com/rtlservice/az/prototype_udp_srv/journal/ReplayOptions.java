@@ -0,0 +1,104 @@
+package com.rtlservice.az.prototype_udp_srv.journal;
+
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Options of {@link JournalReplay}.
+ *
+ * @see JournalReplay
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class ReplayOptions {
+
+    /**
+     * Default directory of segment files = {@link JournalOptions#DEFAULT_DIRECTORY}.
+     */
+    public static final String DEFAULT_DIRECTORY = JournalOptions.DEFAULT_DIRECTORY;
+
+    /**
+     * Default pace = {@link ReplayTiming#FAST}.
+     */
+    public static final ReplayTiming DEFAULT_TIMING = ReplayTiming.FAST;
+
+    /**
+     * Default limit of records sent and not yet replied = 1024.
+     */
+    public static final int DEFAULT_WINDOW = 1024;
+
+    @Nonnull private String directory;
+    @Nonnull private ReplayTiming timing;
+    private int window;
+
+    public ReplayOptions() {
+        this.directory = DEFAULT_DIRECTORY;
+        this.timing = DEFAULT_TIMING;
+        this.window = DEFAULT_WINDOW;
+    }
+
+    public ReplayOptions(
+            @Nonnull ReplayOptions other) {
+
+        this.directory = other.directory;
+        this.timing = other.timing;
+        this.window = other.window;
+    }
+
+    public ReplayOptions(
+            @Nonnull JsonObject json) {
+
+        this(new ReplayOptions()
+                .setDirectory(json.getString("directory", DEFAULT_DIRECTORY))
+                .setTiming(ReplayTiming.valueOf(json.getString("timing", DEFAULT_TIMING.name())))
+                .setWindow(json.getInteger("window", DEFAULT_WINDOW)));
+    }
+
+    public @Nonnull String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Set directory of journal to replay.
+     */
+    public @Nonnull ReplayOptions setDirectory(
+            @Nonnull String directory) {
+
+        this.directory = directory;
+        return this;
+    }
+
+    public @Nonnull ReplayTiming getTiming() {
+        return timing;
+    }
+
+    /**
+     * Set pace of replay.
+     */
+    public @Nonnull ReplayOptions setTiming(
+            @Nonnull ReplayTiming timing) {
+
+        this.timing = timing;
+        return this;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Set limit of records sent and not yet replied, replay waits for replies when it is reached.
+     */
+    public @Nonnull ReplayOptions setWindow(
+            int window) {
+
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be >= 1");
+        }
+
+        this.window = window;
+        return this;
+    }
+
+}
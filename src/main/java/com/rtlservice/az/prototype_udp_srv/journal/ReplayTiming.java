@@ -0,0 +1,20 @@
+package com.rtlservice.az.prototype_udp_srv.journal;
+
+/**
+ * Pace of {@link JournalReplay}.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public enum ReplayTiming {
+
+    /**
+     * Records are sent as fast as pipeline accepts them (limited by replay window).
+     */
+    FAST,
+
+    /**
+     * Records are sent with original intervals between them.
+     */
+    ORIGINAL
+
+}
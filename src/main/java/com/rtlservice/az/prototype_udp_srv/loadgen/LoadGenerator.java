@@ -0,0 +1,392 @@
+package com.rtlservice.az.prototype_udp_srv.loadgen;
+
+import com.rtlservice.az.prototype_udp_srv.metrics.Histogram;
+import com.rtlservice.az.prototype_udp_srv.packet.Packet;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * UDP load generator: sends {@link Packet}s to {@code UDPServer} at target rate or flat-out
+ * and reports sent, acked (replies received back), lost packets and achieved PPS.
+ * <p>
+ * Packet: 8 bytes sequence number of sender thread, 4 zero bytes, 6 bytes mac, payload. First
+ * 8 bytes of payload (if any) are unique sequence number of packet ({@code thread << 40 | count}),
+ * reply carrying it back (as long, see {@code Main}) gives latency of packet.
+ * <p>
+ * With {@link LoadGeneratorOptions#setNoisyMacs(int) noisy MACs} one more sender thread sends
+ * bursts to them only, latency of regular and noisy MACs is reported separately.
+ *
+ * @see LoadGeneratorOptions
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class LoadGenerator {
+
+    private static final Logger _LOG = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private static final String RECEIVED_METRIC = "udp_received_total";
+
+    private static final int SEQUENCE_BITS = 40;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    // send times of last packets of sender thread, older replies are not measured
+    private static final int SENT_BITS = 16;
+    private static final int SENT_MASK = (1 << SENT_BITS) - 1;
+
+    @Nonnull private final LoadGeneratorOptions options;
+    @Nonnull private final MacSampler sampler;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder acked = new LongAdder();
+    private final Histogram latency = new Histogram();
+    private final Histogram noisyLatency = new Histogram();
+
+    public LoadGenerator(
+            @Nonnull LoadGeneratorOptions options) {
+
+        if (options.getNoisyMacs() >= options.getMacs()) {
+            throw new IllegalArgumentException("noisyMacs must be < macs");
+        }
+
+        this.options = new LoadGeneratorOptions(options);
+        this.sampler = MacSampler.create(
+                options.getMacs() - options.getNoisyMacs(),
+                options.getSkew(),
+                options.getZipfExponent());
+    }
+
+    /**
+     * Send load and wait for late replies, blocks for duration of run.
+     */
+    public @Nonnull LoadReport run()
+            throws IOException, InterruptedException {
+
+        InetSocketAddress target = new InetSocketAddress(options.getHost(), options.getPort());
+        int threads = options.getThreads();
+
+        long receivedBefore = scrapeReceived();
+
+        List<DatagramChannel> channels = new ArrayList<>(threads);
+        List<Thread> senders = new ArrayList<>(threads);
+        List<Thread> receivers = new ArrayList<>(threads);
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(options.getDuration());
+
+        int noisyMacs = options.getNoisyMacs();
+        boolean bursts = noisyMacs > 0 && options.getBurstRate() > 0;
+
+        // last thread sends bursts to noisy macs
+        for (int i = 0; i < threads + (bursts ? 1 : 0); i++) {
+
+            DatagramChannel channel = DatagramChannel.open();
+            channel.connect(target);
+            channels.add(channel);
+
+            boolean noisy = i == threads;
+            int index = i;
+            AtomicLongArray sentAt = new AtomicLongArray(2 << SENT_BITS);
+
+            Thread receiver = new Thread(
+                    () -> receive(channel, index, sentAt, noisy ? noisyLatency : latency),
+                    "loadgen-receiver-" + i);
+            receiver.setDaemon(true);
+            receiver.start();
+            receivers.add(receiver);
+
+            Thread sender;
+            if (noisy) {
+
+                long burst = TimeUnit.MILLISECONDS.toNanos(Math.min(options.getBurstLength(), options.getBurstPeriod()));
+                long period = TimeUnit.MILLISECONDS.toNanos(options.getBurstPeriod());
+
+                sender = new Thread(
+                        () -> send(channel, index, sentAt, start, deadline, Long.MAX_VALUE, options.getBurstRate(), burst, period,
+                                () -> ThreadLocalRandom.current().nextLong(noisyMacs)),
+                        "loadgen-sender-noisy");
+
+            } else {
+
+                long limit = options.getCount() > 0
+                        ? options.getCount() / threads + (i < options.getCount() % threads ? 1 : 0)
+                        : Long.MAX_VALUE;
+                double rate = (double) options.getRate() / threads;
+
+                sender = new Thread(
+                        () -> send(channel, index, sentAt, start, deadline, limit, rate, Long.MAX_VALUE, Long.MAX_VALUE,
+                                () -> noisyMacs + sampler.next()),
+                        "loadgen-sender-" + i);
+            }
+            sender.start();
+            senders.add(sender);
+        }
+
+        long reported = 0L;
+        long reportedAt = start;
+        for (Thread sender : senders) {
+            while (sender.isAlive()) {
+
+                sender.join(1000L);
+
+                long now = System.nanoTime();
+                if (now - reportedAt >= TimeUnit.SECONDS.toNanos(1L)) {
+
+                    long total = sent.sum();
+                    _LOG.info("sent={0,number,#}, acked={1,number,#}, pps={2,number,#}",
+                            total,
+                            acked.sum(),
+                            (total - reported) * 1e9 / (now - reportedAt));
+
+                    reported = total;
+                    reportedAt = now;
+                }
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        Thread.sleep(options.getDrainTimeout());
+
+        for (DatagramChannel channel : channels) {
+            channel.close();
+        }
+        for (Thread receiver : receivers) {
+            receiver.join();
+        }
+
+        long receivedAfter = scrapeReceived();
+
+        return new LoadReport(
+                sent.sum(),
+                acked.sum(),
+                receivedBefore >= 0 && receivedAfter >= 0 ? receivedAfter - receivedBefore : -1L,
+                elapsed,
+                LoadReport.Latency.of(latency),
+                LoadReport.Latency.of(noisyLatency));
+    }
+
+    /**
+     * Send packets at {@code rate} during last {@code burst} ns of every {@code period} ns
+     * (all the time if they are equal).
+     */
+    private void send(
+            @Nonnull DatagramChannel channel,
+            int index,
+            @Nonnull AtomicLongArray sentAt,
+            long start,
+            long deadline,
+            long limit,
+            double rate,
+            long burst,
+            long period,
+            @Nonnull LongSupplier macs) {
+
+        ByteBuffer packet = ByteBuffer.allocateDirect(Packet.HEADER_LENGTH + options.getPayloadSize());
+        byte[] payload = new byte[options.getPayloadSize()];
+        ThreadLocalRandom.current().nextBytes(payload);
+        packet.position(Packet.HEADER_LENGTH);
+        packet.put(payload);
+
+        double perNano = rate / 1e9;
+        long count = 0L;
+
+        try {
+
+            while (count < limit) {
+
+                long now = System.nanoTime();
+                if (now >= deadline) {
+                    break;
+                }
+
+                // ahead of schedule: wait for next packet time or next burst
+                if (rate > 0 && count >= scheduled(now - start, perNano, burst, period)) {
+                    long quiet = period - burst - (now - start) % period;
+                    LockSupport.parkNanos(Math.max(1000L, Math.min(deadline - now, quiet > 0 ? quiet : (long) (1.0 / perNano) / 2)));
+                    continue;
+                }
+
+                long mac = macs.getAsLong();
+                packet.putLong(0, count);
+                packet.putShort(Packet.MAC_OFFSET, (short) (mac >>> 32));
+                packet.putInt(Packet.MAC_OFFSET + 2, (int) mac);
+                if (options.getPayloadSize() >= 8) {
+                    packet.putLong(Packet.HEADER_LENGTH, (long) index << SEQUENCE_BITS | count);
+                }
+                packet.clear();
+
+                // count first, time second: receiver checks count around reading time
+                int slot = (int) (count & SENT_MASK) << 1;
+                sentAt.set(slot, -1L);
+                sentAt.set(slot + 1, System.nanoTime());
+                sentAt.set(slot, count);
+
+                try {
+                    channel.write(packet);
+                } catch (PortUnreachableException e) {
+                    // nobody listens yet (ICMP from previous packet), packet is counted as lost
+                }
+
+                count++;
+                sent.increment();
+            }
+
+        } catch (IOException e) {
+            _LOG.error("load generator sending fail", e);
+        }
+    }
+
+    /**
+     * Count of packets sent until {@code elapsed} ns of run.
+     */
+    private static long scheduled(
+            long elapsed,
+            double perNano,
+            long burst,
+            long period) {
+
+        long active = elapsed / period * burst + Math.max(0L, elapsed % period - (period - burst));
+        return (long) (active * perNano);
+    }
+
+    private void receive(
+            @Nonnull DatagramChannel channel,
+            int index,
+            @Nonnull AtomicLongArray sentAt,
+            @Nonnull Histogram latency) {
+
+        ByteBuffer reply = ByteBuffer.allocateDirect(65536);
+
+        while (true) {
+            try {
+
+                reply.clear();
+                if (channel.receive(reply) != null) {
+                    acked.increment();
+                    if (reply.position() >= 8) {
+                        measure(reply.getLong(0), index, sentAt, latency);
+                    }
+                }
+
+            } catch (PortUnreachableException e) {
+                // ICMP of packet sent to closed port
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                _LOG.error("load generator receiving fail", e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Record latency of reply to packet of sender thread, if packet is still known.
+     */
+    private static void measure(
+            long sequence,
+            int index,
+            @Nonnull AtomicLongArray sentAt,
+            @Nonnull Histogram latency) {
+
+        if (sequence >>> SEQUENCE_BITS != index) {
+            return;
+        }
+
+        long count = sequence & SEQUENCE_MASK;
+        int slot = (int) (count & SENT_MASK) << 1;
+
+        if (sentAt.get(slot) == count) {
+            long time = sentAt.get(slot + 1);
+            if (sentAt.get(slot) == count) {
+                latency.record(System.nanoTime() - time);
+            }
+        }
+    }
+
+    /**
+     * @return value of {@value #RECEIVED_METRIC} of server, -1 if metrics are not configured or unavailable
+     */
+    private long scrapeReceived() {
+
+        String url = options.getMetricsUrl();
+        if (url == null) {
+            return -1L;
+        }
+
+        try {
+
+            HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(RECEIVED_METRIC + " ")) {
+                        return (long) Double.parseDouble(line.substring(RECEIVED_METRIC.length() + 1).trim());
+                    }
+                }
+            } finally {
+                connection.disconnect();
+            }
+
+        } catch (IOException | IllegalArgumentException e) {
+            // NumberFormatException of value, malformed URL
+            _LOG.warn("server metrics reading fail: url={0}", e, url);
+        }
+
+        return -1L;
+    }
+
+    public static void main(
+            String[] args)
+            throws IOException, InterruptedException {
+
+        // optional JSON config file: { "host": ..., "port": ..., "rate": ..., "macs": ..., "skew": ..., ... }
+        JsonObject config = args.length > 0
+                ? new JsonObject(new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8))
+                : new JsonObject();
+
+        LoadGeneratorOptions options = new LoadGeneratorOptions(config);
+
+        _LOG.info("load: target={0}:{1,number,#}, rate={2,number,#}, macs={3,number,#}, skew={4}, threads={5,number,#}, "
+                        + "noisyMacs={6,number,#}, burstRate={7,number,#}",
+                options.getHost(),
+                options.getPort(),
+                options.getRate(),
+                options.getMacs(),
+                options.getSkew(),
+                options.getThreads(),
+                options.getNoisyMacs(),
+                options.getBurstRate());
+
+        LoadReport report = new LoadGenerator(options).run();
+
+        _LOG.info("load: {0}", report);
+        System.out.println(report.toJson().encode());
+    }
+
+}
@@ -0,0 +1,452 @@
+package com.rtlservice.az.prototype_udp_srv.loadgen;
+
+import com.rtlservice.az.prototype_udp_srv.udp.UDPServer;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Options of {@link LoadGenerator}.
+ *
+ * @see LoadGenerator
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class LoadGeneratorOptions {
+
+    /**
+     * Default target host = localhost.
+     */
+    public static final String DEFAULT_HOST = "localhost";
+
+    /**
+     * Default target port = {@link UDPServer#PORT}.
+     */
+    public static final int DEFAULT_PORT = UDPServer.PORT;
+
+    /**
+     * Default target rate = 0 (flat-out).
+     */
+    public static final long DEFAULT_RATE = 0L;
+
+    /**
+     * Default duration of run = 10000 ms.
+     */
+    public static final long DEFAULT_DURATION = 10000L;
+
+    /**
+     * Default count of packets to send = 0 (limited by duration only).
+     */
+    public static final long DEFAULT_COUNT = 0L;
+
+    /**
+     * Default count of distinct MACs = 1000.
+     */
+    public static final int DEFAULT_MACS = 1000;
+
+    /**
+     * Default distribution of MACs = {@link Skew#UNIFORM}.
+     */
+    public static final Skew DEFAULT_SKEW = Skew.UNIFORM;
+
+    /**
+     * Default exponent of {@link Skew#ZIPF} distribution = 1.0.
+     */
+    public static final double DEFAULT_ZIPF_EXPONENT = 1.0;
+
+    /**
+     * Default size of packet data (after header) = 64 bytes.
+     */
+    public static final int DEFAULT_PAYLOAD_SIZE = 64;
+
+    /**
+     * Default count of sender threads = 1.
+     */
+    public static final int DEFAULT_THREADS = 1;
+
+    /**
+     * Default time to wait for late replies after last packet is sent = 1000 ms.
+     */
+    public static final long DEFAULT_DRAIN_TIMEOUT = 1000L;
+
+    /**
+     * Default count of noisy MACs = 0 (no bursts).
+     */
+    public static final int DEFAULT_NOISY_MACS = 0;
+
+    /**
+     * Default rate of noisy MACs during burst = 0 (no bursts).
+     */
+    public static final long DEFAULT_BURST_RATE = 0L;
+
+    /**
+     * Default length of burst = 1000 ms.
+     */
+    public static final long DEFAULT_BURST_LENGTH = 1000L;
+
+    /**
+     * Default period of bursts = 5000 ms.
+     */
+    public static final long DEFAULT_BURST_PERIOD = 5000L;
+
+    @Nonnull private String host;
+    private int port;
+    private long rate;
+    private long duration;
+    private long count;
+    private int macs;
+    @Nonnull private Skew skew;
+    private double zipfExponent;
+    private int payloadSize;
+    private int threads;
+    private long drainTimeout;
+    @Nullable private String metricsUrl;
+    private int noisyMacs;
+    private long burstRate;
+    private long burstLength;
+    private long burstPeriod;
+
+    public LoadGeneratorOptions() {
+        this.host = DEFAULT_HOST;
+        this.port = DEFAULT_PORT;
+        this.rate = DEFAULT_RATE;
+        this.duration = DEFAULT_DURATION;
+        this.count = DEFAULT_COUNT;
+        this.macs = DEFAULT_MACS;
+        this.skew = DEFAULT_SKEW;
+        this.zipfExponent = DEFAULT_ZIPF_EXPONENT;
+        this.payloadSize = DEFAULT_PAYLOAD_SIZE;
+        this.threads = DEFAULT_THREADS;
+        this.drainTimeout = DEFAULT_DRAIN_TIMEOUT;
+        this.metricsUrl = null;
+        this.noisyMacs = DEFAULT_NOISY_MACS;
+        this.burstRate = DEFAULT_BURST_RATE;
+        this.burstLength = DEFAULT_BURST_LENGTH;
+        this.burstPeriod = DEFAULT_BURST_PERIOD;
+    }
+
+    public LoadGeneratorOptions(
+            @Nonnull LoadGeneratorOptions other) {
+
+        this.host = other.host;
+        this.port = other.port;
+        this.rate = other.rate;
+        this.duration = other.duration;
+        this.count = other.count;
+        this.macs = other.macs;
+        this.skew = other.skew;
+        this.zipfExponent = other.zipfExponent;
+        this.payloadSize = other.payloadSize;
+        this.threads = other.threads;
+        this.drainTimeout = other.drainTimeout;
+        this.metricsUrl = other.metricsUrl;
+        this.noisyMacs = other.noisyMacs;
+        this.burstRate = other.burstRate;
+        this.burstLength = other.burstLength;
+        this.burstPeriod = other.burstPeriod;
+    }
+
+    public LoadGeneratorOptions(
+            @Nonnull JsonObject json) {
+
+        this(new LoadGeneratorOptions()
+                .setHost(json.getString("host", DEFAULT_HOST))
+                .setPort(json.getInteger("port", DEFAULT_PORT))
+                .setRate(json.getLong("rate", DEFAULT_RATE))
+                .setDuration(json.getLong("duration", DEFAULT_DURATION))
+                .setCount(json.getLong("count", DEFAULT_COUNT))
+                .setMacs(json.getInteger("macs", DEFAULT_MACS))
+                .setSkew(Skew.valueOf(json.getString("skew", DEFAULT_SKEW.name())))
+                .setZipfExponent(json.getDouble("zipfExponent", DEFAULT_ZIPF_EXPONENT))
+                .setPayloadSize(json.getInteger("payloadSize", DEFAULT_PAYLOAD_SIZE))
+                .setThreads(json.getInteger("threads", DEFAULT_THREADS))
+                .setDrainTimeout(json.getLong("drainTimeout", DEFAULT_DRAIN_TIMEOUT))
+                .setMetricsUrl(json.getString("metricsUrl"))
+                .setNoisyMacs(json.getInteger("noisyMacs", DEFAULT_NOISY_MACS))
+                .setBurstRate(json.getLong("burstRate", DEFAULT_BURST_RATE))
+                .setBurstLength(json.getLong("burstLength", DEFAULT_BURST_LENGTH))
+                .setBurstPeriod(json.getLong("burstPeriod", DEFAULT_BURST_PERIOD)));
+    }
+
+    public @Nonnull String getHost() {
+        return host;
+    }
+
+    /**
+     * Set host of {@link UDPServer} under load.
+     */
+    public @Nonnull LoadGeneratorOptions setHost(
+            @Nonnull String host) {
+
+        this.host = host;
+        return this;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Set port of {@link UDPServer} under load.
+     */
+    public @Nonnull LoadGeneratorOptions setPort(
+            int port) {
+
+        if (port < 1 || port > 65535) {
+            throw new IllegalArgumentException("port must be in [1, 65535]");
+        }
+
+        this.port = port;
+        return this;
+    }
+
+    public long getRate() {
+        return rate;
+    }
+
+    /**
+     * Set target rate (packets per second) of all sender threads together,
+     * 0 means flat-out.
+     */
+    public @Nonnull LoadGeneratorOptions setRate(
+            long rate) {
+
+        if (rate < 0) {
+            throw new IllegalArgumentException("rate must be >= 0");
+        }
+
+        this.rate = rate;
+        return this;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Set duration (ms) of sending.
+     */
+    public @Nonnull LoadGeneratorOptions setDuration(
+            long duration) {
+
+        if (duration < 1) {
+            throw new IllegalArgumentException("duration must be >= 1");
+        }
+
+        this.duration = duration;
+        return this;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Set count of packets to send by all sender threads together, sending stops at count or duration,
+     * whatever comes first. 0 means limited by duration only.
+     */
+    public @Nonnull LoadGeneratorOptions setCount(
+            long count) {
+
+        if (count < 0) {
+            throw new IllegalArgumentException("count must be >= 0");
+        }
+
+        this.count = count;
+        return this;
+    }
+
+    public int getMacs() {
+        return macs;
+    }
+
+    /**
+     * Set count of distinct MACs, MACs are {@code [0, macs)}.
+     */
+    public @Nonnull LoadGeneratorOptions setMacs(
+            int macs) {
+
+        if (macs < 1) {
+            throw new IllegalArgumentException("macs must be >= 1");
+        }
+
+        this.macs = macs;
+        return this;
+    }
+
+    public @Nonnull Skew getSkew() {
+        return skew;
+    }
+
+    /**
+     * Set distribution of MACs over packets.
+     */
+    public @Nonnull LoadGeneratorOptions setSkew(
+            @Nonnull Skew skew) {
+
+        this.skew = skew;
+        return this;
+    }
+
+    public double getZipfExponent() {
+        return zipfExponent;
+    }
+
+    /**
+     * Set exponent of {@link Skew#ZIPF} distribution, greater is more skewed.
+     */
+    public @Nonnull LoadGeneratorOptions setZipfExponent(
+            double zipfExponent) {
+
+        if (!(zipfExponent > 0.0)) {
+            throw new IllegalArgumentException("zipfExponent must be > 0");
+        }
+
+        this.zipfExponent = zipfExponent;
+        return this;
+    }
+
+    public int getPayloadSize() {
+        return payloadSize;
+    }
+
+    /**
+     * Set size (bytes) of packet data after header.
+     */
+    public @Nonnull LoadGeneratorOptions setPayloadSize(
+            int payloadSize) {
+
+        if (payloadSize < 1) {
+            throw new IllegalArgumentException("payloadSize must be >= 1");
+        }
+
+        this.payloadSize = payloadSize;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set count of sender threads, every thread sends from its own socket.
+     */
+    public @Nonnull LoadGeneratorOptions setThreads(
+            int threads) {
+
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be >= 1");
+        }
+
+        this.threads = threads;
+        return this;
+    }
+
+    public long getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    /**
+     * Set time (ms) to wait for late replies after last packet is sent.
+     */
+    public @Nonnull LoadGeneratorOptions setDrainTimeout(
+            long drainTimeout) {
+
+        if (drainTimeout < 0) {
+            throw new IllegalArgumentException("drainTimeout must be >= 0");
+        }
+
+        this.drainTimeout = drainTimeout;
+        return this;
+    }
+
+    public @Nullable String getMetricsUrl() {
+        return metricsUrl;
+    }
+
+    /**
+     * Set URL of server metrics (e.g. {@code http://localhost:9100/metrics}), when set
+     * packets received by server are taken from there and lost are counted against them.
+     */
+    public @Nonnull LoadGeneratorOptions setMetricsUrl(
+            @Nullable String metricsUrl) {
+
+        this.metricsUrl = metricsUrl;
+        return this;
+    }
+
+    public int getNoisyMacs() {
+        return noisyMacs;
+    }
+
+    /**
+     * Set count of noisy MACs, MACs {@code [0, noisyMacs)} are sent in bursts by own sender
+     * thread only, regular traffic goes to the rest.
+     */
+    public @Nonnull LoadGeneratorOptions setNoisyMacs(
+            int noisyMacs) {
+
+        if (noisyMacs < 0) {
+            throw new IllegalArgumentException("noisyMacs must be >= 0");
+        }
+
+        this.noisyMacs = noisyMacs;
+        return this;
+    }
+
+    public long getBurstRate() {
+        return burstRate;
+    }
+
+    /**
+     * Set rate (packets per second) of noisy MACs during burst, 0 means no bursts.
+     */
+    public @Nonnull LoadGeneratorOptions setBurstRate(
+            long burstRate) {
+
+        if (burstRate < 0) {
+            throw new IllegalArgumentException("burstRate must be >= 0");
+        }
+
+        this.burstRate = burstRate;
+        return this;
+    }
+
+    public long getBurstLength() {
+        return burstLength;
+    }
+
+    /**
+     * Set length (ms) of burst, burst takes end of every {@link #setBurstPeriod(long) period}.
+     */
+    public @Nonnull LoadGeneratorOptions setBurstLength(
+            long burstLength) {
+
+        if (burstLength < 1) {
+            throw new IllegalArgumentException("burstLength must be >= 1");
+        }
+
+        this.burstLength = burstLength;
+        return this;
+    }
+
+    public long getBurstPeriod() {
+        return burstPeriod;
+    }
+
+    /**
+     * Set period (ms) of bursts.
+     */
+    public @Nonnull LoadGeneratorOptions setBurstPeriod(
+            long burstPeriod) {
+
+        if (burstPeriod < 1) {
+            throw new IllegalArgumentException("burstPeriod must be >= 1");
+        }
+
+        this.burstPeriod = burstPeriod;
+        return this;
+    }
+
+}
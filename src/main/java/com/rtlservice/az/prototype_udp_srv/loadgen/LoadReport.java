@@ -0,0 +1,167 @@
+package com.rtlservice.az.prototype_udp_srv.loadgen;
+
+import com.rtlservice.az.prototype_udp_srv.metrics.Histogram;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Result of {@link LoadGenerator} run.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@Immutable
+public class LoadReport {
+
+    /**
+     * Packets sent.
+     */
+    public final long sent;
+
+    /**
+     * Replies received back on sender sockets.
+     */
+    public final long acked;
+
+    /**
+     * Packets received by server according to its metrics, -1 if metrics are not configured.
+     */
+    public final long received;
+
+    /**
+     * Packets sent and not received by server (or not acked, if server metrics are not configured).
+     */
+    public final long lost;
+
+    /**
+     * Time (ns) of sending.
+     */
+    public final long elapsed;
+
+    /**
+     * Latency of replies to regular MACs, null if no reply is matched with packet.
+     */
+    @Nullable public final Latency latency;
+
+    /**
+     * Latency of replies to noisy MACs, null if no reply is matched with packet.
+     */
+    @Nullable public final Latency noisyLatency;
+
+    LoadReport(
+            long sent,
+            long acked,
+            long received,
+            long elapsed,
+            @Nullable Latency latency,
+            @Nullable Latency noisyLatency) {
+
+        this.sent = sent;
+        this.acked = acked;
+        this.received = received;
+        this.lost = Math.max(0L, sent - (received >= 0 ? received : acked));
+        this.elapsed = elapsed;
+        this.latency = latency;
+        this.noisyLatency = noisyLatency;
+    }
+
+    /**
+     * Achieved send rate, packets per second.
+     */
+    public double pps() {
+        return elapsed > 0 ? sent * 1e9 / elapsed : 0.0;
+    }
+
+    /**
+     * Achieved reply rate, replies per second of sending.
+     */
+    public double ackedPps() {
+        return elapsed > 0 ? acked * 1e9 / elapsed : 0.0;
+    }
+
+    public @Nonnull JsonObject toJson() {
+
+        JsonObject json = new JsonObject()
+                .put("sent", sent)
+                .put("acked", acked)
+                .put("received", received)
+                .put("lost", lost)
+                .put("elapsedMs", elapsed / 1000000L)
+                .put("pps", Math.round(pps()))
+                .put("ackedPps", Math.round(ackedPps()));
+
+        if (latency != null) {
+            json.put("latencyUs", latency.toJson());
+        }
+        if (noisyLatency != null) {
+            json.put("noisyLatencyUs", noisyLatency.toJson());
+        }
+
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return toJson().encode();
+    }
+
+    /**
+     * Latency (µs) of replies, from sending of packet to receiving of reply.
+     */
+    @Immutable
+    public static class Latency {
+
+        /**
+         * Replies matched with packets.
+         */
+        public final long count;
+
+        public final long p50;
+        public final long p99;
+        public final long max;
+
+        Latency(
+                long count,
+                long p50,
+                long p99,
+                long max) {
+
+            this.count = count;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        /**
+         * @return latency of values (ns) of histogram, null if it is empty
+         */
+        static @Nullable Latency of(
+                @Nonnull Histogram histogram) {
+
+            return histogram.getCount() > 0
+                    ? new Latency(
+                            histogram.getCount(),
+                            histogram.getPercentile(0.5) / 1000L,
+                            histogram.getPercentile(0.99) / 1000L,
+                            histogram.getMax() / 1000L)
+                    : null;
+        }
+
+        public @Nonnull JsonObject toJson() {
+            return new JsonObject()
+                    .put("count", count)
+                    .put("p50", p50)
+                    .put("p99", p99)
+                    .put("max", max);
+        }
+
+        @Override
+        public String toString() {
+            return toJson().encode();
+        }
+
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.rtlservice.az.prototype_udp_srv.loadgen;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws MACs {@code [0, macs)} with given {@link Skew}, lower MACs are hotter with {@link Skew#ZIPF}.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@ThreadSafe
+final class MacSampler {
+
+    private final int macs;
+    private final double[] cdf;
+
+    private MacSampler(
+            int macs,
+            double[] cdf) {
+
+        this.macs = macs;
+        this.cdf = cdf;
+    }
+
+    static @Nonnull MacSampler create(
+            int macs,
+            @Nonnull Skew skew,
+            double exponent) {
+
+        if (skew == Skew.UNIFORM) {
+            return new MacSampler(macs, null);
+        }
+
+        double[] cdf = new double[macs];
+        double sum = 0.0;
+        for (int k = 0; k < macs; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < macs; k++) {
+            cdf[k] /= sum;
+        }
+
+        return new MacSampler(macs, cdf);
+    }
+
+    long next() {
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (cdf == null) {
+            return random.nextInt(macs);
+        }
+
+        // first rank with cdf >= u
+        double u = random.nextDouble();
+        int lo = 0;
+        int hi = macs - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cdf[mid] < u) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+}
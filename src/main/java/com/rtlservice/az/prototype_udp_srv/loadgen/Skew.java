@@ -0,0 +1,20 @@
+package com.rtlservice.az.prototype_udp_srv.loadgen;
+
+/**
+ * Distribution of MACs over packets sent by {@link LoadGenerator}.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public enum Skew {
+
+    /**
+     * Every MAC is equally likely.
+     */
+    UNIFORM,
+
+    /**
+     * MAC of rank {@code k} is chosen with probability proportional to {@code 1 / k^s}.
+     */
+    ZIPF
+
+}
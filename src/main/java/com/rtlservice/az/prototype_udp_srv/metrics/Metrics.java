@@ -0,0 +1,80 @@
+package com.rtlservice.az.prototype_udp_srv.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of receive→route→process pipeline, always on.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public final class Metrics {
+
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    /** Datagrams received by UDP servers. */
+    public static final LongAdder RECEIVED = REGISTRY.counter("udp_received_total");
+
+    /** Datagrams dropped by NIO receive engine since its queue is full. */
+    public static final LongAdder RECEIVE_DROPPED = REGISTRY.counter("udp_receive_dropped_total");
+
+    /** Datagrams which decoder failed to decode. */
+    public static final LongAdder DECODE_FAILURES = REGISTRY.counter("udp_decode_failures_total");
+
+    /** Messages (datagrams or batches) of UDP servers successfully replied by pipeline. */
+    public static final LongAdder REPLIES = REGISTRY.counter("udp_replies_total");
+
+    /** Messages (datagrams or batches) of UDP servers failed by pipeline. */
+    public static final LongAdder FAILURES = REGISTRY.counter("udp_failures_total");
+
+    /** Items of batches failed by pipeline, they are not replied while other items of batch are. */
+    public static final LongAdder BATCH_ITEM_FAILURES = REGISTRY.counter("router_batch_item_failures_total");
+
+    /** Replies sent back to sources of datagrams. */
+    public static final LongAdder REPLIES_SENT = REGISTRY.counter("udp_replies_sent_total");
+
+    /** Replies which failed to be sent. */
+    public static final LongAdder REPLY_FAILURES = REGISTRY.counter("udp_reply_failures_total");
+
+    /** Messages forwarded to owner nodes of their keys. */
+    public static final LongAdder CLUSTER_FORWARDED = REGISTRY.counter("cluster_forwarded_total");
+
+    /** Messages received from other nodes for keys owned by node. */
+    public static final LongAdder CLUSTER_RECEIVED = REGISTRY.counter("cluster_received_total");
+
+    /** Exceptions thrown by processors. */
+    public static final LongAdder PROCESSOR_FAILURES = REGISTRY.counter("processor_failures_total");
+
+    /** Datagrams appended to journal. */
+    public static final LongAdder JOURNAL_APPENDED = REGISTRY.counter("journal_appended_total");
+
+    /** Datagrams dropped by journal (next segment is not ready or datagram is too big). */
+    public static final LongAdder JOURNAL_DROPPED = REGISTRY.counter("journal_dropped_total");
+
+    /** Results appended to result sink. */
+    public static final LongAdder SINK_APPENDED = REGISTRY.counter("sink_appended_total");
+
+    /** Results dropped by result sink (memory limit stayed reached, sink is closed or segment writing failed). */
+    public static final LongAdder SINK_DROPPED = REGISTRY.counter("sink_dropped_total");
+
+    /** Appends which waited for memory of result sink. */
+    public static final LongAdder SINK_BLOCKED = REGISTRY.counter("sink_blocked_total");
+
+    /** Segments written by result sink. */
+    public static final LongAdder SINK_SEGMENTS = REGISTRY.counter("sink_segments_total");
+
+    /** Time of writing segment of result sink (group commit). */
+    public static final Histogram SINK_FLUSH = REGISTRY.histogram("sink_flush_seconds");
+
+    /** Time from datagram receive to its dispatch by router. */
+    public static final Histogram RECEIVE_TO_ROUTED = REGISTRY.histogram("pipeline_receive_to_routed_seconds");
+
+    /** Time from dispatch by router to start of processing. */
+    public static final Histogram ROUTED_TO_START = REGISTRY.histogram("pipeline_routed_to_start_seconds");
+
+    /** Time of processing. */
+    public static final Histogram PROCESSING = REGISTRY.histogram("pipeline_processing_seconds");
+
+    private Metrics() {
+    }
+
+}
@@ -0,0 +1,378 @@
+package com.rtlservice.az.prototype_udp_srv.metrics;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Named counters, gauges and histograms, exported as Prometheus text and as JMX attributes.
+ * Labeled counters are exported as Prometheus text only.
+ * <p>
+ * {@link #withLabel(String, String) View} of registry registers metrics of same names with label,
+ * e.g. of node of cluster, so several instances of component export their metrics side by side.
+ *
+ * @see Metrics
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@ThreadSafe
+public class MetricsRegistry
+        implements DynamicMBean {
+
+    private static final double[] _QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    // series (name or name{labels}) of one name go together, as Prometheus text requires
+    private static final Comparator<String> _SERIES = Comparator
+            .comparing(MetricsRegistry::nameOf)
+            .thenComparing(Comparator.naturalOrder());
+
+    // shared by registry and its views, keyed by series
+    private final Map<String, LongAdder> adders;
+    private final Map<String, LongSupplier> counters;
+    private final Map<String, LongSupplier> gauges;
+    private final Map<String, Histogram> histograms;
+    private final Map<String, Labeled> labeled;
+
+    // labels of series registered through this view, empty for registry itself
+    @Nonnull private final String labels;
+
+    public MetricsRegistry() {
+        this.adders = new ConcurrentSkipListMap<>(_SERIES);
+        this.counters = new ConcurrentSkipListMap<>(_SERIES);
+        this.gauges = new ConcurrentSkipListMap<>(_SERIES);
+        this.histograms = new ConcurrentSkipListMap<>(_SERIES);
+        this.labeled = new ConcurrentSkipListMap<>(_SERIES);
+        this.labels = "";
+    }
+
+    private MetricsRegistry(
+            @Nonnull MetricsRegistry registry,
+            @Nonnull String labels) {
+
+        this.adders = registry.adders;
+        this.counters = registry.counters;
+        this.gauges = registry.gauges;
+        this.histograms = registry.histograms;
+        this.labeled = registry.labeled;
+        this.labels = labels;
+    }
+
+    /**
+     * View of registry, which registers metrics with label added (e.g. {@code node="1"}),
+     * they are exported by registry.
+     */
+    public @Nonnull MetricsRegistry withLabel(
+            @Nonnull String label,
+            @Nonnull String value) {
+
+        return new MetricsRegistry(this, (labels.isEmpty() ? "" : labels + ",") + label + "=\"" + value + "\"");
+    }
+
+    private @Nonnull String seriesOf(
+            @Nonnull String name) {
+
+        return labels.isEmpty() ? name : name + "{" + labels + "}";
+    }
+
+    private static @Nonnull String nameOf(
+            @Nonnull String series) {
+
+        int i = series.indexOf('{');
+        return i < 0 ? series : series.substring(0, i);
+    }
+
+    /**
+     * Series of other name with same labels, e.g. {@code x_sum{node="1"}} of {@code x{node="1"}}.
+     */
+    private static @Nonnull String rename(
+            @Nonnull String series,
+            @Nonnull String suffix) {
+
+        int i = series.indexOf('{');
+        return i < 0 ? series + suffix : series.substring(0, i) + suffix + series.substring(i);
+    }
+
+    /**
+     * Series with one more label.
+     */
+    private static @Nonnull String label(
+            @Nonnull String series,
+            @Nonnull String label,
+            @Nonnull String value) {
+
+        return series.endsWith("}")
+                ? series.substring(0, series.length() - 1) + "," + label + "=\"" + value + "\"}"
+                : series + "{" + label + "=\"" + value + "\"}";
+    }
+
+    public @Nonnull LongAdder counter(
+            @Nonnull String name) {
+
+        return adders.computeIfAbsent(seriesOf(name), n -> {
+            LongAdder adder = new LongAdder();
+            counters.put(n, adder::sum);
+            return adder;
+        });
+    }
+
+    /**
+     * Register (or replace) counter kept elsewhere, supplier is called on every export.
+     */
+    public void counter(
+            @Nonnull String name,
+            @Nonnull LongSupplier supplier) {
+
+        counters.put(seriesOf(name), supplier);
+    }
+
+    /**
+     * Register (or replace) gauge, supplier is called on every export.
+     */
+    public void gauge(
+            @Nonnull String name,
+            @Nonnull LongSupplier supplier) {
+
+        gauges.put(seriesOf(name), supplier);
+    }
+
+    /**
+     * Register (or replace) counters of one name distinguished by label, supplier returns
+     * label values and counts and is called on every export.
+     */
+    public void counters(
+            @Nonnull String name,
+            @Nonnull String label,
+            @Nonnull Supplier<Map<String, Long>> supplier) {
+
+        labeled.put(seriesOf(name), new Labeled(label, supplier));
+    }
+
+    /**
+     * Histogram of durations in nanoseconds.
+     */
+    public @Nonnull Histogram histogram(
+            @Nonnull String name) {
+
+        return histograms.computeIfAbsent(seriesOf(name), n -> new Histogram());
+    }
+
+    /**
+     * Prometheus text exposition format (0.0.4), histograms are exported as summaries in seconds.
+     */
+    public @Nonnull StringBuilder toPrometheus(
+            @Nonnull StringBuilder sb) {
+
+        String type = null;
+        for (Map.Entry<String, LongSupplier> e : counters.entrySet()) {
+            type = type(sb, type, e.getKey(), "counter");
+            sb.append(e.getKey()).append(' ').append(e.getValue().getAsLong()).append('\n');
+        }
+
+        type = null;
+        for (Map.Entry<String, LongSupplier> e : gauges.entrySet()) {
+            type = type(sb, type, e.getKey(), "gauge");
+            sb.append(e.getKey()).append(' ').append(e.getValue().getAsLong()).append('\n');
+        }
+
+        type = null;
+        for (Map.Entry<String, Labeled> e : labeled.entrySet()) {
+            type = type(sb, type, e.getKey(), "counter");
+            for (Map.Entry<String, Long> value : e.getValue().supplier.get().entrySet()) {
+                sb.append(label(e.getKey(), e.getValue().label, value.getKey()))
+                        .append(' ').append(value.getValue()).append('\n');
+            }
+        }
+
+        // summaries of all series of name, then their maximums
+        List<Map.Entry<String, Histogram>> family = new ArrayList<>();
+        for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+            if (!family.isEmpty() && !nameOf(family.get(0).getKey()).equals(nameOf(e.getKey()))) {
+                summaries(sb, family);
+                family.clear();
+            }
+            family.add(e);
+        }
+        if (!family.isEmpty()) {
+            summaries(sb, family);
+        }
+
+        return sb;
+    }
+
+    /**
+     * Append type of metric, if series starts new name.
+     *
+     * @return name of series
+     */
+    private static @Nonnull String type(
+            @Nonnull StringBuilder sb,
+            @Nullable String previous,
+            @Nonnull String series,
+            @Nonnull String type) {
+
+        String name = nameOf(series);
+        if (!name.equals(previous)) {
+            sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+
+        return name;
+    }
+
+    private static void summaries(
+            @Nonnull StringBuilder sb,
+            @Nonnull List<Map.Entry<String, Histogram>> family) {
+
+        String name = nameOf(family.get(0).getKey());
+
+        sb.append("# TYPE ").append(name).append(" summary\n");
+        for (Map.Entry<String, Histogram> e : family) {
+
+            String series = e.getKey();
+            Histogram h = e.getValue();
+
+            for (double q : _QUANTILES) {
+                sb.append(label(series, "quantile", String.valueOf(q))).append(' ')
+                        .append(h.getPercentile(q) / 1e9).append('\n');
+            }
+            sb.append(rename(series, "_sum")).append(' ').append(h.getSum() / 1e9).append('\n');
+            sb.append(rename(series, "_count")).append(' ').append(h.getCount()).append('\n');
+        }
+
+        sb.append("# TYPE ").append(name).append("_max gauge\n");
+        for (Map.Entry<String, Histogram> e : family) {
+            sb.append(rename(e.getKey(), "_max")).append(' ').append(e.getValue().getMax() / 1e9).append('\n');
+        }
+    }
+
+    // JMX: counters and gauges as is, histograms as <name>_count, <name>_p50_ns, ... attributes
+
+    @Override
+    public Object getAttribute(
+            String attribute)
+            throws AttributeNotFoundException {
+
+        LongSupplier counter = counters.get(attribute);
+        if (counter != null) {
+            return counter.getAsLong();
+        }
+
+        LongSupplier gauge = gauges.get(attribute);
+        if (gauge != null) {
+            return gauge.getAsLong();
+        }
+
+        for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+
+            if (!attribute.startsWith(e.getKey() + "_")) continue;
+
+            Histogram h = e.getValue();
+            switch (attribute.substring(e.getKey().length() + 1)) {
+                case "count":   return h.getCount();
+                case "max_ns":  return h.getMax();
+                case "p50_ns":  return h.getPercentile(0.5);
+                case "p99_ns":  return h.getPercentile(0.99);
+                case "p999_ns": return h.getPercentile(0.999);
+                default:        break;
+            }
+        }
+
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public void setAttribute(
+            Attribute attribute)
+            throws AttributeNotFoundException {
+
+        throw new AttributeNotFoundException("read only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(
+            String[] attributes) {
+
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException ex) {
+                // skip
+            }
+        }
+
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(
+            AttributeList attributes) {
+
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(
+            String actionName,
+            Object[] params,
+            String[] signature) {
+
+        throw new UnsupportedOperationException(actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (String name : counters.keySet()) {
+            attributes.add(new MBeanAttributeInfo(name, "long", "counter", true, false, false));
+        }
+        for (String name : gauges.keySet()) {
+            attributes.add(new MBeanAttributeInfo(name, "long", "gauge", true, false, false));
+        }
+        for (String name : histograms.keySet()) {
+            for (String suffix : new String[] {"count", "max_ns", "p50_ns", "p99_ns", "p999_ns"}) {
+                attributes.add(new MBeanAttributeInfo(name + "_" + suffix, "long", "histogram", true, false, false));
+            }
+        }
+
+        return new MBeanInfo(
+                getClass().getName(),
+                "receive→route→process pipeline metrics",
+                attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+                null,
+                new MBeanOperationInfo[0],
+                new MBeanNotificationInfo[0]);
+    }
+
+    private static final class Labeled {
+
+        @Nonnull final String label;
+        @Nonnull final Supplier<Map<String, Long>> supplier;
+
+        Labeled(
+                @Nonnull String label,
+                @Nonnull Supplier<Map<String, Long>> supplier) {
+
+            this.label = label;
+            this.supplier = supplier;
+        }
+
+    }
+
+}
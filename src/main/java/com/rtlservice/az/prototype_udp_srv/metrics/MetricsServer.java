@@ -0,0 +1,138 @@
+package com.rtlservice.az.prototype_udp_srv.metrics;
+
+import com.rtlservice.az.prototype_udp_srv.HandlerLoggable;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Objects;
+
+/**
+ * Serves {@link MetricsRegistry} as Prometheus text on {@code GET /metrics} and registers it in JMX.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class MetricsServer
+        extends AbstractVerticle {
+
+    private static final Logger _LOG = LoggerFactory.getLogger(MetricsServer.class);
+
+    public static final String OBJECT_NAME = "com.rtlservice.az.prototype_udp_srv:type=Metrics";
+
+    @Nonnull private final MetricsRegistry registry;
+    @Nonnull private final String host;
+    private final int port;
+
+    @Nullable private volatile HttpServer server = null;
+    @Nullable private volatile ObjectName objectName = null;
+
+    public MetricsServer(
+            @Nonnull MetricsRegistry registry,
+            @Nonnull String host,
+            int port) {
+
+        this.registry = registry;
+        this.host = host;
+        this.port = port;
+    }
+
+    public void start(
+            @Nonnull Future<Void> start)
+            throws Exception {
+
+        try {
+
+            _LOG.debug("{0}: try start metrics server: host={1}, port={2,number,#}",
+                    deploymentID(),
+                    host,
+                    port);
+
+            MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!mbeans.isRegistered(name)) {
+                mbeans.registerMBean(registry, name);
+                objectName = name;
+            }
+
+            assert server == null;
+            server = getVertx().createHttpServer()
+                    .requestHandler((HandlerLoggable<HttpServerRequest>) (request) -> {
+                        if ("/metrics".equals(request.path())) {
+                            request.response()
+                                    .putHeader("Content-Type", "text/plain; version=0.0.4")
+                                    .end(registry.toPrometheus(new StringBuilder(4096)).toString());
+                        } else {
+                            request.response()
+                                    .setStatusCode(404)
+                                    .end();
+                        }
+                    })
+                    .listen(
+                            port,
+                            host,
+                            (HandlerLoggable<AsyncResult<HttpServer>>) (async) -> {
+                                if (async.succeeded()) {
+
+                                    start.complete();
+
+                                    _LOG.info("{0}: metrics server successfully started: host={1}, port={2,number,#}",
+                                            deploymentID(),
+                                            host,
+                                            port);
+
+                                } else {
+                                    start.fail(async.cause());
+                                }
+                            });
+
+        } catch (Throwable ex) {
+
+            start.fail(ex);
+
+            _LOG.warn("{0}: metrics server starting fail: host={1}, port={2,number,#}",
+                    ex,
+                    deploymentID(),
+                    host,
+                    port);
+        }
+    }
+
+    @Override
+    public void stop(
+            @Nonnull Future<Void> stop)
+            throws Exception {
+
+        try {
+
+            ObjectName name = objectName;
+            if (name != null) {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            }
+
+            Objects.requireNonNull(server).close();
+
+            super.stop(stop);
+
+            _LOG.info("{0}: metrics server successfully stopped",
+                    deploymentID());
+
+        } catch (Throwable ex) {
+
+            stop.fail(ex);
+
+            _LOG.warn("{0}: metrics server stopping fail",
+                    ex,
+                    deploymentID());
+        }
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.rtlservice.az.prototype_udp_srv.metrics;
+
+/**
+ * Message which carries timestamps ({@link System#nanoTime()}) of pipeline stages,
+ * so latency of stages is measured without headers or other allocations.
+ * 0 means stage timestamp is unknown.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public interface Traced {
+
+    long getReceivedNanos();
+
+    void setReceivedNanos(long nanos);
+
+    long getRoutedNanos();
+
+    void setRoutedNanos(long nanos);
+
+}
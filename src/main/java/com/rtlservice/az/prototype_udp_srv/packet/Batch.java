@@ -0,0 +1,144 @@
+package com.rtlservice.az.prototype_udp_srv.packet;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+/**
+ * Several messages sent over event bus as one message.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@NotThreadSafe
+public class Batch<T> {
+
+    @Nonnull private Object[] items;
+    private int size = 0;
+
+    public Batch(
+            int capacity) {
+
+        this.items = new Object[Math.max(capacity, 1)];
+    }
+
+    public @Nonnull Batch<T> add(
+            @Nullable T item) {
+
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+        }
+
+        items[size++] = item;
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public @Nullable T get(
+            int index) {
+
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+        }
+
+        return (T) items[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append("BATCH[")
+                .append("size=")
+                .append(size)
+                .append("]")
+                .toString();
+    }
+
+    /**
+     * Local delivery passes batch as is, wire format is count followed by
+     * length-prefixed items encoded by item codec.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static class Codec
+            implements MessageCodec<Batch, Batch> {
+
+        @Nonnull private final MessageCodec<Object, Object> itemCodec;
+
+        public Codec(
+                @Nonnull MessageCodec<?, ?> itemCodec) {
+
+            this.itemCodec = (MessageCodec<Object, Object>) itemCodec;
+        }
+
+        @Override
+        public void encodeToWire(
+                Buffer buffer,
+                Batch batch) {
+
+            buffer.appendInt(batch.size);
+
+            for (int i = 0; i < batch.size; i++) {
+
+                int pos = buffer.length();
+                buffer.appendInt(0);
+
+                itemCodec.encodeToWire(buffer, batch.items[i]);
+
+                buffer.setInt(pos, buffer.length() - pos - 4);
+            }
+
+        }
+
+        @Override
+        public Batch decodeFromWire(
+                int pos,
+                Buffer buffer) {
+
+            int size = buffer.getInt(pos);
+            pos += 4;
+
+            Batch batch = new Batch(size);
+            for (int i = 0; i < size; i++) {
+
+                int length = buffer.getInt(pos);
+                pos += 4;
+
+                batch.add(itemCodec.decodeFromWire(0, buffer.slice(pos, pos + length)));
+                pos += length;
+            }
+
+            return batch;
+
+        }
+
+        @Override
+        public Batch transform(
+                Batch batch) {
+
+            return batch;
+        }
+
+        @Override
+        public String name() {
+            return this.getClass().getName();
+
+        }
+
+        @Override
+        public byte systemCodecID() {
+            return -1;
+        }
+    }
+
+}
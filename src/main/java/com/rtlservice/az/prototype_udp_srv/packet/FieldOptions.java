@@ -0,0 +1,133 @@
+package com.rtlservice.az.prototype_udp_srv.packet;
+
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Definition of field of {@link PacketLayout}.
+ *
+ * @see LayoutOptions
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class FieldOptions {
+
+    /**
+     * Length of {@link FieldType#BYTES} field, which lasts till end of packet.
+     */
+    public static final int REST = -1;
+
+    /**
+     * Default offset of field = 0.
+     */
+    public static final int DEFAULT_OFFSET = 0;
+
+    /**
+     * Default length of field = 8 bytes.
+     */
+    public static final int DEFAULT_LENGTH = 8;
+
+    /**
+     * Default type of field = {@link FieldType#UINT}.
+     */
+    public static final FieldType DEFAULT_TYPE = FieldType.UINT;
+
+    @Nullable private String name;
+    private int offset;
+    private int length;
+    @Nonnull private FieldType type;
+
+    public FieldOptions() {
+        this.name = null;
+        this.offset = DEFAULT_OFFSET;
+        this.length = DEFAULT_LENGTH;
+        this.type = DEFAULT_TYPE;
+    }
+
+    public FieldOptions(
+            @Nonnull FieldOptions other) {
+
+        this.name = other.name;
+        this.offset = other.offset;
+        this.length = other.length;
+        this.type = other.type;
+    }
+
+    public FieldOptions(
+            @Nonnull JsonObject json) {
+
+        this(new FieldOptions()
+                .setName(json.getString("name"))
+                .setOffset(json.getInteger("offset", DEFAULT_OFFSET))
+                .setLength(json.getInteger("length", DEFAULT_LENGTH))
+                .setType(FieldType.valueOf(json.getString("type", DEFAULT_TYPE.name()))));
+    }
+
+    public @Nullable String getName() {
+        return name;
+    }
+
+    /**
+     * Set name of field, unique in layout, must be set.
+     */
+    public @Nonnull FieldOptions setName(
+            @Nonnull String name) {
+
+        this.name = name;
+        return this;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Set offset (bytes) of field from start of packet.
+     */
+    public @Nonnull FieldOptions setOffset(
+            int offset) {
+
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset must be >= 0");
+        }
+
+        this.offset = offset;
+        return this;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Set length (bytes) of field: 1..8 for numbers, {@link #REST} means {@link FieldType#BYTES}
+     * field till end of packet.
+     */
+    public @Nonnull FieldOptions setLength(
+            int length) {
+
+        if (length < 0 && length != REST) {
+            throw new IllegalArgumentException("length must be >= 0");
+        }
+
+        this.length = length;
+        return this;
+    }
+
+    public @Nonnull FieldType getType() {
+        return type;
+    }
+
+    /**
+     * Set type of field, see {@link FieldType}.
+     */
+    public @Nonnull FieldOptions setType(
+            @Nonnull FieldType type) {
+
+        this.type = type;
+        return this;
+    }
+
+}
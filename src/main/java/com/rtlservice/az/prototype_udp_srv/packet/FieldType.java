@@ -0,0 +1,37 @@
+package com.rtlservice.az.prototype_udp_srv.packet;
+
+/**
+ * Type of field of {@link PacketLayout}: numbers are 1..8 bytes long and are read as {@code long}.
+ *
+ * @see FieldOptions#setType(FieldType)
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public enum FieldType {
+
+    /**
+     * Unsigned big-endian number.
+     */
+    UINT,
+
+    /**
+     * Signed (two's complement) big-endian number.
+     */
+    INT,
+
+    /**
+     * Unsigned little-endian number.
+     */
+    UINT_LE,
+
+    /**
+     * Signed (two's complement) little-endian number.
+     */
+    INT_LE,
+
+    /**
+     * Raw bytes, e.g. payload.
+     */
+    BYTES
+
+}
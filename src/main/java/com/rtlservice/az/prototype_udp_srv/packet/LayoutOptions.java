@@ -0,0 +1,147 @@
+package com.rtlservice.az.prototype_udp_srv.packet;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Declarative definition of {@link PacketLayout}: fields, routing key and payload.
+ * <p>
+ * JSON: {@code { "fields": [ { "name": ..., "offset": ..., "length": ..., "type": ... }, ... ],
+ * "key": ..., "payload": ..., "minLength": ... }}.
+ *
+ * @see PacketLayout
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class LayoutOptions {
+
+    /**
+     * Default name of field, which is routing key of packet = mac.
+     */
+    public static final String DEFAULT_KEY = "mac";
+
+    /**
+     * Default name of field, which is payload (data) of packet = data.
+     */
+    public static final String DEFAULT_PAYLOAD = "data";
+
+    /**
+     * Default minimal length of packet = 0 (end of last fixed field).
+     */
+    public static final int DEFAULT_MIN_LENGTH = 0;
+
+    @Nonnull private final List<FieldOptions> fields;
+    @Nonnull private String key;
+    @Nullable private String payload;
+    private int minLength;
+
+    public LayoutOptions() {
+        this.fields = new ArrayList<>();
+        this.key = DEFAULT_KEY;
+        this.payload = DEFAULT_PAYLOAD;
+        this.minLength = DEFAULT_MIN_LENGTH;
+    }
+
+    public LayoutOptions(
+            @Nonnull LayoutOptions other) {
+
+        this.fields = new ArrayList<>();
+        for (FieldOptions field : other.fields) {
+            this.fields.add(new FieldOptions(field));
+        }
+        this.key = other.key;
+        this.payload = other.payload;
+        this.minLength = other.minLength;
+    }
+
+    public LayoutOptions(
+            @Nonnull JsonObject json) {
+
+        this(fromJson(json));
+    }
+
+    private static @Nonnull LayoutOptions fromJson(
+            @Nonnull JsonObject json) {
+
+        LayoutOptions options = new LayoutOptions()
+                .setKey(json.getString("key", DEFAULT_KEY))
+                .setPayload(json.getString("payload", DEFAULT_PAYLOAD))
+                .setMinLength(json.getInteger("minLength", DEFAULT_MIN_LENGTH));
+
+        JsonArray fields = json.getJsonArray("fields", new JsonArray());
+        for (int i = 0; i < fields.size(); i++) {
+            options.addField(new FieldOptions(fields.getJsonObject(i)));
+        }
+
+        return options;
+    }
+
+    public @Nonnull List<FieldOptions> getFields() {
+        return Collections.unmodifiableList(fields);
+    }
+
+    /**
+     * Add field, at most 64 fields.
+     */
+    public @Nonnull LayoutOptions addField(
+            @Nonnull FieldOptions field) {
+
+        this.fields.add(new FieldOptions(field));
+        return this;
+    }
+
+    public @Nonnull String getKey() {
+        return key;
+    }
+
+    /**
+     * Set name of number field, which is routing key of packet.
+     */
+    public @Nonnull LayoutOptions setKey(
+            @Nonnull String key) {
+
+        this.key = key;
+        return this;
+    }
+
+    public @Nullable String getPayload() {
+        return payload;
+    }
+
+    /**
+     * Set name of {@link FieldType#BYTES} field, which is data of packet ({@code PacketView.getData*}),
+     * null (or absent field) means packet has no data.
+     */
+    public @Nonnull LayoutOptions setPayload(
+            @Nullable String payload) {
+
+        this.payload = payload;
+        return this;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * Set minimal length (bytes) of packet, shorter datagrams are not packets. 0 means end of
+     * last fixed field, fields which end beyond minimal length are optional (key field must not).
+     */
+    public @Nonnull LayoutOptions setMinLength(
+            int minLength) {
+
+        if (minLength < 0) {
+            throw new IllegalArgumentException("minLength must be >= 0");
+        }
+
+        this.minLength = minLength;
+        return this;
+    }
+
+}
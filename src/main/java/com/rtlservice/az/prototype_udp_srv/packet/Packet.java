@@ -6,25 +6,39 @@ import io.vertx.core.eventbus.MessageCodec;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
-import javax.xml.bind.DatatypeConverter;
 
+/**
+ * Packet, copied out of received datagram.
+ * <p>
+ * Layout: 18 bytes header (6 bytes mac at offset 12) followed by data ({@link PacketLayout#DEFAULT}),
+ * packets of other layouts are read by {@link PacketView} only.
+ *
+ * @see PacketView
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
 @Immutable
 public class Packet {
 
+    public static final int MAC_OFFSET = 12;
+    public static final int HEADER_LENGTH = 18;
+
+    private static final char[] _HEX = "0123456789ABCDEF".toCharArray();
+
     public final long mac;
     public final byte[] data;
 
     private Packet(
             Buffer buffer) {
 
-        this.mac = buffer.getLong(12) >> 16;
-        this.data = buffer.getBytes(18, buffer.length());
+        this.mac = buffer.getLong(MAC_OFFSET) >>> 16;
+        this.data = buffer.getBytes(HEADER_LENGTH, buffer.length());
     }
 
     public static @Nullable Packet fromBinary(
             Buffer buffer) {
 
-        if (buffer.length() <= 18) return null;
+        if (buffer.length() <= HEADER_LENGTH) return null;
 
         return new Packet(buffer);
     }
@@ -39,12 +53,23 @@ public class Packet {
             Packet packet,
             Buffer buffer) {
 
-        buffer.setLong(12, packet.mac << 16);
-        buffer.setBytes(18, packet.data);
+        buffer.setLong(MAC_OFFSET, packet.mac << 16);
+        buffer.setBytes(HEADER_LENGTH, packet.data);
 
         return buffer;
     }
 
+    private static @Nonnull String hex(
+            @Nonnull byte[] data) {
+
+        char[] chars = new char[2 * data.length];
+        for (int i = 0; i < data.length; i++) {
+            chars[2 * i] = _HEX[(data[i] >> 4) & 0x0F];
+            chars[2 * i + 1] = _HEX[data[i] & 0x0F];
+        }
+        return new String(chars);
+    }
+
     @Override
     public String toString() {
         return new StringBuilder()
@@ -54,11 +79,15 @@ public class Packet {
                 .append(String.format("%012X", mac))
                 .append("} ")
                 .append("data=")
-                .append(DatatypeConverter.printHexBinary(data))
+                .append(hex(data))
                 .append("]")
                 .toString();
     }
 
+    /**
+     * Wire format is length-prefixed binary packet (same as {@link PacketView.Codec}), it is
+     * appended to message frame, so several packets can be encoded into one buffer.
+     */
     public static class Codec
             implements MessageCodec<Packet, Packet> {
 
@@ -67,7 +96,10 @@ public class Packet {
                 Buffer buffer,
                 Packet packet) {
 
-            Packet.toBinary(packet, buffer);
+            Buffer binary = Packet.toBinary(packet);
+
+            buffer.appendInt(binary.length());
+            buffer.appendBuffer(binary);
 
         }
 
@@ -76,8 +108,10 @@ public class Packet {
                 int pos,
                 Buffer buffer) {
 
+            int length = buffer.getInt(pos);
+
             return Packet.fromBinary(
-                    buffer.slice(pos, buffer.length()));
+                    buffer.slice(pos + 4, pos + 4 + length));
 
         }
 
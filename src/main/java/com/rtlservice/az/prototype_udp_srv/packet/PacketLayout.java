@@ -0,0 +1,364 @@
+package com.rtlservice.az.prototype_udp_srv.packet;
+
+import io.netty.buffer.ByteBuf;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiled {@link LayoutOptions layout} of packet: every field is resolved into fixed offset and
+ * reader of its width and byte order chosen once, so reading field from raw datagram is one or two
+ * buffer reads without allocation. {@link PacketView} decodes fields of its layout lazily, on first
+ * access, and keeps decoded numbers.
+ * <p>
+ * {@link #DEFAULT} is layout of {@link Packet}: 6 bytes mac at offset 12 (routing key), data from
+ * offset 18.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@Immutable
+public final class PacketLayout {
+
+    /**
+     * Layout of {@link Packet}.
+     */
+    public static final PacketLayout DEFAULT = new PacketLayout(new LayoutOptions()
+            .addField(new FieldOptions()
+                    .setName("mac")
+                    .setOffset(Packet.MAC_OFFSET)
+                    .setLength(6))
+            .addField(new FieldOptions()
+                    .setName("data")
+                    .setOffset(Packet.HEADER_LENGTH)
+                    .setLength(FieldOptions.REST)
+                    .setType(FieldType.BYTES))
+            .setMinLength(Packet.HEADER_LENGTH + 1));
+
+    private static final int MAX_FIELDS = 64;
+
+    @Nonnull private final Field[] fields;
+    @Nonnull private final Map<String, Field> byName = new HashMap<>();
+    @Nonnull private final Field key;
+    @Nullable private final Field payload;
+    @Nullable private final Field mac;
+    private final int minLength;
+
+    public PacketLayout(
+            @Nonnull LayoutOptions options) {
+
+        if (options.getFields().size() > MAX_FIELDS) {
+            throw new IllegalArgumentException("fields must be <= " + MAX_FIELDS);
+        }
+
+        this.fields = new Field[options.getFields().size()];
+
+        int end = 0;
+        for (int i = 0; i < fields.length; i++) {
+
+            Field field = new Field(this, i, options.getFields().get(i));
+            if (byName.put(field.name, field) != null) {
+                throw new IllegalArgumentException("Duplicate field: " + field.name);
+            }
+
+            fields[i] = field;
+            end = Math.max(end, field.end());
+        }
+
+        this.key = field(options.getKey());
+        if (!key.isNumber()) {
+            throw new IllegalArgumentException("Key field must be number: " + key.name);
+        }
+        // key is read from every packet, so it is not optional
+        if (options.getMinLength() > 0 && options.getMinLength() < key.end()) {
+            throw new IllegalArgumentException("Key field must end within minLength: " + key.name);
+        }
+
+        Field payload = options.getPayload() != null ? byName.get(options.getPayload()) : null;
+        if (payload != null && payload.isNumber()) {
+            throw new IllegalArgumentException("Payload field must be bytes: " + payload.name);
+        }
+        this.payload = payload;
+
+        Field mac = byName.get("mac");
+        this.mac = mac != null && mac.isNumber() ? mac : null;
+
+        this.minLength = options.getMinLength() > 0 ? options.getMinLength() : end;
+    }
+
+    /**
+     * Field of layout by name.
+     *
+     * @throws IllegalArgumentException if there is no such field
+     */
+    public @Nonnull Field field(
+            @Nonnull String name) {
+
+        Field field = byName.get(name);
+        if (field == null) {
+            throw new IllegalArgumentException("Unknown field: " + name);
+        }
+
+        return field;
+    }
+
+    public int size() {
+        return fields.length;
+    }
+
+    public @Nonnull Field field(
+            int index) {
+
+        return fields[index];
+    }
+
+    /**
+     * Field which is routing key of packet.
+     */
+    public @Nonnull Field getKey() {
+        return key;
+    }
+
+    /**
+     * Field which is data of packet, null if packet has no data.
+     */
+    public @Nullable Field getPayload() {
+        return payload;
+    }
+
+    /**
+     * Number field named mac, null if there is none.
+     */
+    public @Nullable Field getMac() {
+        return mac;
+    }
+
+    /**
+     * Minimal length of packet, bytes.
+     */
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * Routing key of raw datagram ({@code readableBytes} of buffer) without wrapping it, buffer
+     * indexes are not changed.
+     *
+     * @return {@code absent} if datagram is shorter than key field
+     */
+    public long keyOf(
+            @Nonnull ByteBuf datagram,
+            long absent) {
+
+        return datagram.readableBytes() >= key.end()
+                ? key.decode(datagram, datagram.readerIndex())
+                : absent;
+    }
+
+    /**
+     * Field of layout with its reader.
+     */
+    @Immutable
+    public static final class Field {
+
+        // readers: width for big-endian numbers, width + LE for little-endian ones
+        private static final int LE = 16;
+        private static final int BYTES = 0;
+
+        @Nonnull private final PacketLayout layout;
+        private final int index;
+        @Nonnull private final String name;
+        private final int offset;
+        private final int length;
+        @Nonnull private final FieldType type;
+        private final int reader;
+        // shift which extends sign of signed number, 0 for unsigned
+        private final int signShift;
+
+        private Field(
+                @Nonnull PacketLayout layout,
+                int index,
+                @Nonnull FieldOptions options) {
+
+            String name = options.getName();
+            if (name == null) {
+                throw new IllegalArgumentException("Field name must be set");
+            }
+
+            FieldType type = options.getType();
+            int length = options.getLength();
+
+            if (type != FieldType.BYTES && (length < 1 || length > 8)) {
+                throw new IllegalArgumentException("Length of number field must be in [1, 8]: " + name);
+            }
+
+            this.layout = layout;
+            this.index = index;
+            this.name = name;
+            this.offset = options.getOffset();
+            this.length = length;
+            this.type = type;
+
+            switch (type) {
+                case UINT:
+                    this.reader = length;
+                    this.signShift = 0;
+                    break;
+                case INT:
+                    this.reader = length;
+                    this.signShift = 64 - 8 * length;
+                    break;
+                case UINT_LE:
+                    this.reader = LE + length;
+                    this.signShift = 0;
+                    break;
+                case INT_LE:
+                    this.reader = LE + length;
+                    this.signShift = 64 - 8 * length;
+                    break;
+                case BYTES:
+                default:
+                    this.reader = BYTES;
+                    this.signShift = 0;
+                    break;
+            }
+        }
+
+        public @Nonnull PacketLayout getLayout() {
+            return layout;
+        }
+
+        /**
+         * Index of field in layout.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public @Nonnull String getName() {
+            return name;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * Length of field, bytes ({@link FieldOptions#REST} for bytes till end of packet).
+         */
+        public int getLength() {
+            return length;
+        }
+
+        public @Nonnull FieldType getType() {
+            return type;
+        }
+
+        public boolean isNumber() {
+            return type != FieldType.BYTES;
+        }
+
+        /**
+         * End of field (bytes from start of packet), packet must be at least that long to have it.
+         */
+        int end() {
+            return length == FieldOptions.REST ? offset : offset + length;
+        }
+
+        /**
+         * Length of field in packet of given length.
+         */
+        int lengthIn(
+                int packetLength) {
+
+            return length == FieldOptions.REST ? packetLength - offset : length;
+        }
+
+        /**
+         * Read number field of packet which starts at {@code base} of buffer, field must be in buffer.
+         */
+        public long decode(
+                @Nonnull ByteBuf buffer,
+                int base) {
+
+            int i = base + offset;
+
+            long value;
+            switch (reader) {
+                case 1:
+                case LE + 1:
+                    value = buffer.getUnsignedByte(i);
+                    break;
+                case 2:
+                    value = buffer.getUnsignedShort(i);
+                    break;
+                case LE + 2:
+                    value = buffer.getUnsignedShortLE(i);
+                    break;
+                case 3:
+                    value = buffer.getUnsignedMedium(i);
+                    break;
+                case LE + 3:
+                    value = buffer.getUnsignedMediumLE(i);
+                    break;
+                case 4:
+                    value = buffer.getUnsignedInt(i);
+                    break;
+                case LE + 4:
+                    value = buffer.getUnsignedIntLE(i);
+                    break;
+                case 6:
+                    value = (long) buffer.getUnsignedShort(i) << 32 | buffer.getUnsignedInt(i + 2);
+                    break;
+                case LE + 6:
+                    value = buffer.getUnsignedIntLE(i) | (long) buffer.getUnsignedShortLE(i + 4) << 32;
+                    break;
+                case 8:
+                    value = buffer.getLong(i);
+                    break;
+                case LE + 8:
+                    value = buffer.getLongLE(i);
+                    break;
+                case BYTES:
+                    throw new IllegalStateException("Field is not number: " + name);
+                default:
+                    value = reader > LE ? readLE(buffer, i) : readBE(buffer, i);
+                    break;
+            }
+
+            return signShift == 0 ? value : value << signShift >> signShift;
+        }
+
+        private long readBE(
+                @Nonnull ByteBuf buffer,
+                int i) {
+
+            long value = 0L;
+            for (int j = 0; j < length; j++) {
+                value = (value << 8) | buffer.getUnsignedByte(i + j);
+            }
+
+            return value;
+        }
+
+        private long readLE(
+                @Nonnull ByteBuf buffer,
+                int i) {
+
+            long value = 0L;
+            for (int j = length - 1; j >= 0; j--) {
+                value = (value << 8) | buffer.getUnsignedByte(i + j);
+            }
+
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+}
@@ -0,0 +1,476 @@
+package com.rtlservice.az.prototype_udp_srv.packet;
+
+import com.rtlservice.az.prototype_udp_srv.metrics.Traced;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.Recycler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Zero-copy flyweight over received datagram of {@link PacketLayout layout} ({@link PacketLayout#DEFAULT}
+ * of {@link Packet} by default).
+ * <p>
+ * Nothing is copied: number field is decoded from underlying buffer on first access
+ * ({@link #get(PacketLayout.Field)}) and kept in view, fields which are never read are never
+ * decoded; data is read from payload field of layout on every access.
+ * View is reference counted: it is created with refCnt=1 and returned to pool (together
+ * with underlying buffer reference) when refCnt drops to 0, so it must not be touched after
+ * last {@link #release()}. {@code ParallelProcessor} releases message body after processing,
+ * processor which holds packet after return must {@link #retain()} it or make {@link #copy()}.
+ * View which is never released is simply garbage collected.
+ *
+ * @see Packet
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public final class PacketView
+        extends AbstractReferenceCounted
+        implements Traced {
+
+    private static final Recycler<PacketView> _RECYCLER = new Recycler<PacketView>() {
+        @Override
+        protected PacketView newObject(
+                Handle<PacketView> handle) {
+
+            return new PacketView(handle);
+        }
+    };
+
+    private static final char[] _HEX = "0123456789ABCDEF".toCharArray();
+
+    @Nonnull private final Recycler.Handle<PacketView> handle;
+
+    @Nullable private ByteBuf buffer;
+    @Nonnull private PacketLayout layout = PacketLayout.DEFAULT;
+
+    // decoded number fields, bit of field index is set when field is decoded
+    @Nonnull private long[] values = new long[8];
+    private long decoded = 0L;
+
+    private long receivedNanos;
+    private long routedNanos;
+
+    private PacketView(
+            @Nonnull Recycler.Handle<PacketView> handle) {
+
+        this.handle = handle;
+    }
+
+    /**
+     * Wrap datagram of {@link PacketLayout#DEFAULT default layout}, view holds its own reference of buffer.
+     */
+    public static @Nullable PacketView wrap(
+            @Nonnull ByteBuf buffer) {
+
+        return wrap(buffer, PacketLayout.DEFAULT);
+    }
+
+    /**
+     * Wrap datagram of layout, view holds its own reference of buffer.
+     *
+     * @return null if datagram is shorter than {@link PacketLayout#getMinLength() minimal length} of layout
+     */
+    public static @Nullable PacketView wrap(
+            @Nonnull ByteBuf buffer,
+            @Nonnull PacketLayout layout) {
+
+        if (buffer.readableBytes() < layout.getMinLength()) return null;
+
+        PacketView view = _RECYCLER.get();
+        view.setRefCnt(1);
+        view.buffer = buffer.retain();
+        view.layout = layout;
+        view.decoded = 0L;
+        view.receivedNanos = 0L;
+        view.routedNanos = 0L;
+
+        if (view.values.length < layout.size()) {
+            view.values = Arrays.copyOf(view.values, layout.size());
+        }
+
+        return view;
+    }
+
+    /**
+     * Wrap datagram, see {@link #wrap(ByteBuf)}.
+     */
+    public static @Nullable PacketView wrap(
+            @Nonnull Buffer buffer) {
+
+        return wrap(buffer, PacketLayout.DEFAULT);
+    }
+
+    /**
+     * Wrap datagram, see {@link #wrap(ByteBuf, PacketLayout)}.
+     */
+    public static @Nullable PacketView wrap(
+            @Nonnull Buffer buffer,
+            @Nonnull PacketLayout layout) {
+
+        // vert.x returns duplicate, which shares content and reference count with buffer
+        return wrap(buffer.getByteBuf(), layout);
+    }
+
+    private @Nonnull ByteBuf buffer() {
+
+        ByteBuf buffer = this.buffer;
+        if (buffer == null) {
+            throw new IllegalStateException("Packet view is released");
+        }
+
+        return buffer;
+    }
+
+    public @Nonnull PacketLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Whether packet is long enough to have field (fields beyond minimal length of layout are optional).
+     */
+    public boolean has(
+            @Nonnull PacketLayout.Field field) {
+
+        return field.end() <= buffer().readableBytes();
+    }
+
+    /**
+     * Number field of layout of packet, decoded on first access.
+     *
+     * @throws IllegalArgumentException if field is not number field of layout of packet
+     * @throws IndexOutOfBoundsException if packet does not have optional field
+     */
+    public long get(
+            @Nonnull PacketLayout.Field field) {
+
+        int index = field.getIndex();
+        long bit = 1L << index;
+
+        if ((decoded & bit) != 0L && field.getLayout() == layout) {
+            return values[index];
+        }
+
+        if (field.getLayout() != layout || !field.isNumber()) {
+            throw new IllegalArgumentException("Not a number field of packet layout: " + field.getName());
+        }
+
+        ByteBuf buffer = buffer();
+        if (field.end() > buffer.readableBytes()) {
+            throw new IndexOutOfBoundsException("Packet has no field: " + field.getName());
+        }
+
+        long value = field.decode(buffer, buffer.readerIndex());
+        values[index] = value;
+        decoded |= bit;
+
+        return value;
+    }
+
+    /**
+     * Number field of layout of packet by name, see {@link #get(PacketLayout.Field)}.
+     */
+    public long get(
+            @Nonnull String name) {
+
+        return get(layout.field(name));
+    }
+
+    /**
+     * Length of field in packet, bytes.
+     */
+    public int length(
+            @Nonnull PacketLayout.Field field) {
+
+        return field.lengthIn(buffer().readableBytes());
+    }
+
+    /**
+     * Copy bytes of field into {@code dst}.
+     */
+    public @Nonnull PacketView getBytes(
+            @Nonnull PacketLayout.Field field,
+            @Nonnull byte[] dst,
+            int dstIndex) {
+
+        ByteBuf buffer = buffer();
+        buffer.getBytes(buffer.readerIndex() + field.getOffset(), dst, dstIndex, length(field));
+        return this;
+    }
+
+    /**
+     * Routing key of packet, see {@link PacketLayout#getKey()}.
+     */
+    public long key() {
+        return get(layout.getKey());
+    }
+
+    /**
+     * Field mac of layout of packet.
+     *
+     * @throws IllegalStateException if layout has no mac
+     */
+    public long mac() {
+
+        PacketLayout.Field mac = layout.getMac();
+        if (mac == null) {
+            throw new IllegalStateException("Packet layout has no mac");
+        }
+
+        return get(mac);
+    }
+
+    /**
+     * Offset of data, data of packet without payload is empty.
+     */
+    private int dataOffset() {
+
+        PacketLayout.Field payload = layout.getPayload();
+        return payload != null ? payload.getOffset() : buffer().readableBytes();
+    }
+
+    public int dataLength() {
+        return Math.max(0, buffer().readableBytes() - dataOffset());
+    }
+
+    public byte getData(
+            int index) {
+
+        ByteBuf buffer = buffer();
+        return buffer.getByte(buffer.readerIndex() + dataOffset() + index);
+    }
+
+    /**
+     * Copy data (starting from {@code index}) into {@code dst}.
+     */
+    public @Nonnull PacketView getData(
+            int index,
+            @Nonnull byte[] dst,
+            int dstIndex,
+            int length) {
+
+        ByteBuf buffer = buffer();
+        buffer.getBytes(buffer.readerIndex() + dataOffset() + index, dst, dstIndex, length);
+        return this;
+    }
+
+    /**
+     * Unsigned big-endian number of {@code length} (1..8) bytes of data starting from {@code index},
+     * e.g. sequence number.
+     */
+    public long getDataLong(
+            int index,
+            int length) {
+
+        if (length < 1 || length > 8) {
+            throw new IllegalArgumentException("length must be in [1, 8]");
+        }
+
+        ByteBuf buffer = buffer();
+        int from = buffer.readerIndex() + dataOffset() + index;
+
+        long value = 0L;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (buffer.getByte(from + i) & 0xFF);
+        }
+
+        return value;
+    }
+
+    /**
+     * 64-bit hash of data.
+     */
+    public long dataHash() {
+
+        ByteBuf buffer = buffer();
+        int from = buffer.readerIndex() + dataOffset();
+        int to = buffer.writerIndex();
+
+        long h = 0xCBF29CE484222325L ^ (to - from);
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            h = (h ^ buffer.getLong(i)) * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 29;
+        }
+        for (; i < to; i++) {
+            h = (h ^ buffer.getByte(i)) * 0x100000001B3L;
+        }
+
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * Raw datagram (header and data), shares content with view.
+     */
+    public @Nonnull ByteBuf content() {
+        return buffer();
+    }
+
+    /**
+     * Copying packet, which stays valid after view is released, {@link Packet} has
+     * {@link PacketLayout#DEFAULT default layout}.
+     */
+    public @Nonnull Packet copy() {
+
+        ByteBuf buffer = buffer();
+
+        byte[] raw = new byte[buffer.readableBytes()];
+        buffer.getBytes(buffer.readerIndex(), raw);
+
+        Packet packet = Packet.fromBinary(Buffer.buffer(raw));
+        assert packet != null;
+
+        return packet;
+    }
+
+    @Override
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    @Override
+    public void setReceivedNanos(
+            long nanos) {
+
+        this.receivedNanos = nanos;
+    }
+
+    @Override
+    public long getRoutedNanos() {
+        return routedNanos;
+    }
+
+    @Override
+    public void setRoutedNanos(
+            long nanos) {
+
+        this.routedNanos = nanos;
+    }
+
+    @Override
+    public @Nonnull PacketView retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public @Nonnull PacketView touch(
+            Object hint) {
+
+        return this;
+    }
+
+    @Override
+    protected void deallocate() {
+
+        ByteBuf buffer = this.buffer;
+        this.buffer = null;
+
+        if (buffer != null) {
+            buffer.release();
+        }
+
+        handle.recycle(this);
+    }
+
+    @Override
+    public String toString() {
+
+        int length = dataLength();
+
+        StringBuilder sb = new StringBuilder(32 + 2 * length)
+                .append("PACKET[")
+                .append("header={");
+
+        String separator = "";
+        for (int i = 0; i < layout.size(); i++) {
+
+            PacketLayout.Field field = layout.field(i);
+            if (!field.isNumber() || !has(field)) continue;
+
+            sb.append(separator)
+                    .append(field.getName())
+                    .append('=')
+                    .append(String.format("%0" + 2 * field.getLength() + "X", get(field)));
+            separator = ", ";
+        }
+
+        sb.append("} ")
+                .append("data=");
+
+        for (int i = 0; i < length; i++) {
+            byte b = getData(i);
+            sb.append(_HEX[(b >> 4) & 0x0F]).append(_HEX[b & 0x0F]);
+        }
+
+        return sb.append("]").toString();
+    }
+
+    /**
+     * Local delivery passes view as is, wire format is length-prefixed raw datagram, which is
+     * decoded with layout of codec.
+     */
+    public static class Codec
+            implements MessageCodec<PacketView, PacketView> {
+
+        @Nonnull private final PacketLayout layout;
+
+        public Codec() {
+            this(PacketLayout.DEFAULT);
+        }
+
+        public Codec(
+                @Nonnull PacketLayout layout) {
+
+            this.layout = layout;
+        }
+
+        @Override
+        public void encodeToWire(
+                Buffer buffer,
+                PacketView packet) {
+
+            ByteBuf content = packet.content();
+
+            buffer.appendInt(content.readableBytes());
+            buffer.appendBuffer(Buffer.buffer(content.slice()));
+
+        }
+
+        @Override
+        public PacketView decodeFromWire(
+                int pos,
+                Buffer buffer) {
+
+            int length = buffer.getInt(pos);
+
+            return PacketView.wrap(
+                    buffer.slice(pos + 4, pos + 4 + length),
+                    layout);
+
+        }
+
+        @Override
+        public PacketView transform(
+                PacketView packet) {
+
+            return packet;
+        }
+
+        @Override
+        public String name() {
+            return this.getClass().getName();
+
+        }
+
+        @Override
+        public byte systemCodecID() {
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Options of {@link Deduplicator}.
+ *
+ * @see Deduplicator
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class DedupOptions {
+
+    /**
+     * Default count of recent message IDs remembered per key = 16.
+     */
+    public static final int DEFAULT_WINDOW = 16;
+
+    /**
+     * Default count of keys remembered = 65536.
+     */
+    public static final int DEFAULT_MAX_KEYS = 65536;
+
+    private int window;
+    private int maxKeys;
+
+    public DedupOptions() {
+        this.window = DEFAULT_WINDOW;
+        this.maxKeys = DEFAULT_MAX_KEYS;
+    }
+
+    public DedupOptions(
+            @Nonnull DedupOptions other) {
+
+        this.window = other.window;
+        this.maxKeys = other.maxKeys;
+    }
+
+    public DedupOptions(
+            @Nonnull JsonObject json) {
+
+        this(new DedupOptions()
+                .setWindow(json.getInteger("window", DEFAULT_WINDOW))
+                .setMaxKeys(json.getInteger("maxKeys", DEFAULT_MAX_KEYS)));
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Set count of recent message IDs remembered per key, message with ID out of window
+     * is not recognized as duplicate.
+     */
+    public @Nonnull DedupOptions setWindow(
+            int window) {
+
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be >= 1");
+        }
+
+        this.window = window;
+        return this;
+    }
+
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    /**
+     * Set count of keys remembered, least recently seen key is forgotten when it is reached.
+     * Memory is about {@code maxKeys * (window * 8 + 48)} bytes at most.
+     */
+    public @Nonnull DedupOptions setMaxKeys(
+            int maxKeys) {
+
+        if (maxKeys < 1) {
+            throw new IllegalArgumentException("maxKeys must be >= 1");
+        }
+
+        this.maxKeys = maxKeys;
+        return this;
+    }
+
+}
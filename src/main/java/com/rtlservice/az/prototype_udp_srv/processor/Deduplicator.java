@@ -0,0 +1,222 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Suppresses duplicate messages (e.g. retransmitted datagrams): message is duplicate if its ID
+ * is among last {@link DedupOptions#setWindow(int) window} IDs of its key.
+ * <p>
+ * IDs of key are kept in ring, rings of all keys are slices of one array, keys are evicted in
+ * least recently seen order when {@link DedupOptions#setMaxKeys(int) max keys} is reached.
+ * Used from router context only.
+ *
+ * @see Router#setDeduplicator(Deduplicator)
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@NotThreadSafe
+public final class Deduplicator<I> {
+
+    private static final int NONE = -1;
+
+    @Nonnull private final ToLongFunction<I> keyMapper;
+    @Nonnull private final ToLongFunction<I> idMapper;
+    private final int window;
+    private final int maxKeys;
+
+    @Nonnull private final LongIntMap index = new LongIntMap();
+
+    // per slot: key, ring of IDs, next ring position, count of IDs, neighbours in order of use
+    @Nonnull private long[] keys;
+    @Nonnull private long[] ids;
+    @Nonnull private int[] heads;
+    @Nonnull private int[] counts;
+    @Nonnull private int[] previous;
+    @Nonnull private int[] next;
+
+    private volatile int used = 0;
+    private int oldest = NONE;
+    private int newest = NONE;
+
+    @Nonnull private final LongAdder hits = new LongAdder();
+    @Nonnull private final LongAdder misses = new LongAdder();
+    @Nonnull private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param keyMapper key of message (e.g. MAC)
+     * @param idMapper  ID of message within key (e.g. sequence number or payload hash)
+     */
+    public Deduplicator(
+            @Nonnull ToLongFunction<I> keyMapper,
+            @Nonnull ToLongFunction<I> idMapper,
+            @Nonnull DedupOptions options) {
+
+        this.keyMapper = keyMapper;
+        this.idMapper = idMapper;
+        this.window = options.getWindow();
+        this.maxKeys = options.getMaxKeys();
+
+        int capacity = Math.min(maxKeys, 1024);
+        this.keys = new long[capacity];
+        this.ids = new long[capacity * window];
+        this.heads = new int[capacity];
+        this.counts = new int[capacity];
+        this.previous = new int[capacity];
+        this.next = new int[capacity];
+    }
+
+    /**
+     * Remember ID of message.
+     *
+     * @return false if message is duplicate
+     */
+    public boolean accept(
+            @Nonnull I message) {
+
+        long key = keyMapper.applyAsLong(message);
+        long id = idMapper.applyAsLong(message);
+
+        int slot = index.get(key);
+        if (slot == LongIntMap.MISSING) {
+
+            slot = allocate(key);
+
+        } else {
+
+            int base = slot * window;
+            for (int i = 0; i < counts[slot]; i++) {
+                if (ids[base + i] == id) {
+                    touch(slot);
+                    hits.increment();
+                    return false;
+                }
+            }
+
+            touch(slot);
+        }
+
+        ids[slot * window + heads[slot]] = id;
+        heads[slot] = (heads[slot] + 1) % window;
+        if (counts[slot] < window) {
+            counts[slot]++;
+        }
+
+        misses.increment();
+        return true;
+    }
+
+    private int allocate(
+            long key) {
+
+        int slot;
+        if (used < maxKeys) {
+
+            if (used == keys.length) {
+                grow(Math.min(maxKeys, keys.length * 2));
+            }
+
+            slot = used++;
+
+        } else {
+
+            // forget least recently seen key
+            slot = oldest;
+            unlink(slot);
+            index.remove(keys[slot]);
+            evictions.increment();
+        }
+
+        keys[slot] = key;
+        heads[slot] = 0;
+        counts[slot] = 0;
+        index.put(key, slot);
+
+        previous[slot] = NONE;
+        next[slot] = NONE;
+        link(slot);
+
+        return slot;
+    }
+
+    private void touch(
+            int slot) {
+
+        if (newest != slot) {
+            unlink(slot);
+            link(slot);
+        }
+    }
+
+    private void link(
+            int slot) {
+
+        previous[slot] = newest;
+        next[slot] = NONE;
+        if (newest != NONE) {
+            next[newest] = slot;
+        } else {
+            oldest = slot;
+        }
+        newest = slot;
+    }
+
+    private void unlink(
+            int slot) {
+
+        if (previous[slot] != NONE) {
+            next[previous[slot]] = next[slot];
+        } else {
+            oldest = next[slot];
+        }
+
+        if (next[slot] != NONE) {
+            previous[next[slot]] = previous[slot];
+        } else {
+            newest = previous[slot];
+        }
+    }
+
+    private void grow(
+            int capacity) {
+
+        keys = Arrays.copyOf(keys, capacity);
+        ids = Arrays.copyOf(ids, capacity * window);
+        heads = Arrays.copyOf(heads, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        previous = Arrays.copyOf(previous, capacity);
+        next = Arrays.copyOf(next, capacity);
+    }
+
+    /**
+     * Count of keys remembered.
+     */
+    public int size() {
+        return used;
+    }
+
+    /**
+     * Count of duplicates suppressed.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Count of messages accepted.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Count of keys forgotten to make room for new ones.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+}
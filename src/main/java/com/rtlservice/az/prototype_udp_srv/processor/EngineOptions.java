@@ -0,0 +1,138 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Options of {@link StripedEngine}.
+ *
+ * @see StripedEngine
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class EngineOptions {
+
+    /**
+     * Default number of stripes = count of available processors.
+     */
+    public static final int DEFAULT_STRIPES = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Default capacity of ring of stripe = 4096.
+     */
+    public static final int DEFAULT_RING_SIZE = 4096;
+
+    /**
+     * Default count of empty polls of ring before consumer thread parks = 1000.
+     */
+    public static final int DEFAULT_IDLE_SPINS = 1000;
+
+    /**
+     * Default overflow policy = {@link OverflowPolicy#REJECT}.
+     */
+    public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.REJECT;
+
+    private int stripes;
+    private int ringSize;
+    private int idleSpins;
+    @Nonnull private OverflowPolicy overflowPolicy;
+
+    public EngineOptions() {
+        this.stripes = DEFAULT_STRIPES;
+        this.ringSize = DEFAULT_RING_SIZE;
+        this.idleSpins = DEFAULT_IDLE_SPINS;
+        this.overflowPolicy = DEFAULT_OVERFLOW_POLICY;
+    }
+
+    public EngineOptions(
+            @Nonnull EngineOptions other) {
+
+        this.stripes = other.stripes;
+        this.ringSize = other.ringSize;
+        this.idleSpins = other.idleSpins;
+        this.overflowPolicy = other.overflowPolicy;
+    }
+
+    public EngineOptions(
+            @Nonnull JsonObject json) {
+
+        this(new EngineOptions()
+                .setStripes(json.getInteger("stripes", DEFAULT_STRIPES))
+                .setRingSize(json.getInteger("ringSize", DEFAULT_RING_SIZE))
+                .setIdleSpins(json.getInteger("idleSpins", DEFAULT_IDLE_SPINS))
+                .setOverflowPolicy(OverflowPolicy.valueOf(json.getString("overflowPolicy", DEFAULT_OVERFLOW_POLICY.name()))));
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
+    /**
+     * Set number of stripes, keys are hashed onto stripes, every stripe has its own ring
+     * and consumer thread.
+     */
+    public @Nonnull EngineOptions setStripes(
+            int stripes) {
+
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes must be >= 1");
+        }
+
+        this.stripes = stripes;
+        return this;
+    }
+
+    public int getRingSize() {
+        return ringSize;
+    }
+
+    /**
+     * Set capacity of ring of stripe, power of 2.
+     */
+    public @Nonnull EngineOptions setRingSize(
+            int ringSize) {
+
+        if (ringSize < 2 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("ringSize must be power of 2 and >= 2");
+        }
+
+        this.ringSize = ringSize;
+        return this;
+    }
+
+    public int getIdleSpins() {
+        return idleSpins;
+    }
+
+    /**
+     * Set count of empty polls of ring before consumer thread parks, spinning keeps latency
+     * low under steady load but burns CPU.
+     */
+    public @Nonnull EngineOptions setIdleSpins(
+            int idleSpins) {
+
+        if (idleSpins < 0) {
+            throw new IllegalArgumentException("idleSpins must be >= 0");
+        }
+
+        this.idleSpins = idleSpins;
+        return this;
+    }
+
+    public @Nonnull OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Set what to do with item when ring of its stripe is full, {@link OverflowPolicy#DROP_OLDEST}
+     * is handled as {@link OverflowPolicy#DROP_NEWEST} (ring is consumed by its thread only).
+     */
+    public @Nonnull EngineOptions setOverflowPolicy(
+            @Nonnull OverflowPolicy overflowPolicy) {
+
+        this.overflowPolicy = overflowPolicy;
+        return this;
+    }
+
+}
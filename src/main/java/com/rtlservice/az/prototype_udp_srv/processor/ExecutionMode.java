@@ -0,0 +1,25 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+/**
+ * Where processors of {@link Router} run, in both modes messages of one processor (key or lane)
+ * are processed one by one in order of arrival.
+ *
+ * @see RouterOptions#setExecutionMode(ExecutionMode)
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public enum ExecutionMode {
+
+    /**
+     * Processor is worker verticle, it runs on shared worker pool, so blocking processors
+     * can exhaust pool and delay processors of other keys.
+     */
+    WORKER,
+
+    /**
+     * Processor runs on virtual thread started when it has messages, blocking processor
+     * parks only its own virtual thread.
+     */
+    VIRTUAL_THREAD
+
+}
@@ -0,0 +1,128 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Message view of single item of batch (or of item dispatched by {@link StripedEngine}),
+ * passed to processor.
+ * <p>
+ * Same instance is reused for all items, so processor must not hold it after return.
+ * Item has no reply address: output of processor is collected into reply of batch.
+ *
+ * @see ParallelProcessor
+ * @see StripedEngine
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@NotThreadSafe
+class ItemMessage<T>
+        implements Message<T> {
+
+    @Nullable private final Message<?> batch;
+    @Nonnull private final String address;
+    @Nullable private MultiMap headers = null;
+    @Nullable private T body = null;
+
+    ItemMessage(
+            @Nonnull Message<?> batch) {
+
+        this.batch = batch;
+        this.address = batch.address();
+    }
+
+    ItemMessage(
+            @Nonnull String address) {
+
+        this.batch = null;
+        this.address = address;
+    }
+
+    @Nonnull ItemMessage<T> set(
+            @Nullable T body) {
+
+        this.body = body;
+        return this;
+    }
+
+    @Override
+    public String address() {
+        return address;
+    }
+
+    @Override
+    public MultiMap headers() {
+
+        if (batch != null) {
+            return batch.headers();
+        }
+
+        if (headers == null) {
+            headers = MultiMap.caseInsensitiveMultiMap();
+        }
+        return headers;
+    }
+
+    @Override
+    public T body() {
+        return body;
+    }
+
+    @Override
+    public String replyAddress() {
+        return null;
+    }
+
+    @Override
+    public boolean isSend() {
+        return batch == null || batch.isSend();
+    }
+
+    @Override
+    public void reply(
+            Object message) {
+
+        throw new UnsupportedOperationException("item can't be replied");
+    }
+
+    @Override
+    public <R> void reply(
+            Object message,
+            Handler<AsyncResult<Message<R>>> replyHandler) {
+
+        throw new UnsupportedOperationException("item can't be replied");
+    }
+
+    @Override
+    public void reply(
+            Object message,
+            DeliveryOptions options) {
+
+        throw new UnsupportedOperationException("item can't be replied");
+    }
+
+    @Override
+    public <R> void reply(
+            Object message,
+            DeliveryOptions options,
+            Handler<AsyncResult<Message<R>>> replyHandler) {
+
+        throw new UnsupportedOperationException("item can't be replied");
+    }
+
+    @Override
+    public void fail(
+            int failureCode,
+            String message) {
+
+        throw new UnsupportedOperationException("item can't be replied");
+    }
+
+}
@@ -0,0 +1,195 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Keys of messages and state of {@link Router} per key.
+ * <p>
+ * Lookup by message ({@link #get(Object)}, {@link #itemHash(Object)}) is the per-message path,
+ * lookup by key object is used for new keys, batches and redispatch only.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+abstract class KeyMap<K, I, V> {
+
+    /**
+     * Key of message, may allocate.
+     */
+    abstract @Nonnull K key(
+            @Nonnull I item);
+
+    /**
+     * Hash of key of message, same as {@link #hash(Object) hash of key}.
+     */
+    abstract int itemHash(
+            @Nonnull I item);
+
+    abstract int hash(
+            @Nonnull K key);
+
+    abstract @Nullable V get(
+            @Nonnull I item);
+
+    abstract @Nullable V find(
+            @Nonnull K key);
+
+    abstract void put(
+            @Nonnull K key,
+            @Nonnull V value);
+
+    abstract boolean remove(
+            @Nonnull K key,
+            @Nonnull V value);
+
+    abstract int size();
+
+    /**
+     * Keys of any type, {@link HashMap} of keys produced by mapper.
+     */
+    static final class ObjectKeys<K, I, V>
+            extends KeyMap<K, I, V> {
+
+        @Nonnull private final Function<I, K> mapper;
+        @Nonnull private final Map<K, V> map = new HashMap<>();
+
+        ObjectKeys(
+                @Nonnull Function<I, K> mapper) {
+
+            this.mapper = mapper;
+        }
+
+        @Override
+        @Nonnull K key(
+                @Nonnull I item) {
+
+            return mapper.apply(item);
+        }
+
+        @Override
+        int itemHash(
+                @Nonnull I item) {
+
+            return hash(mapper.apply(item));
+        }
+
+        @Override
+        int hash(
+                @Nonnull K key) {
+
+            return key.hashCode();
+        }
+
+        @Override
+        @Nullable V get(
+                @Nonnull I item) {
+
+            return map.get(mapper.apply(item));
+        }
+
+        @Override
+        @Nullable V find(
+                @Nonnull K key) {
+
+            return map.get(key);
+        }
+
+        @Override
+        void put(
+                @Nonnull K key,
+                @Nonnull V value) {
+
+            map.put(key, value);
+        }
+
+        @Override
+        boolean remove(
+                @Nonnull K key,
+                @Nonnull V value) {
+
+            return map.remove(key, value);
+        }
+
+        @Override
+        int size() {
+            return map.size();
+        }
+    }
+
+    /**
+     * Primitive {@code long} keys, {@link LongMap}: per-message lookup does not box or allocate.
+     */
+    static final class LongKeys<I, V>
+            extends KeyMap<Long, I, V> {
+
+        @Nonnull private final ToLongFunction<I> mapper;
+        @Nonnull private final LongMap<V> map = new LongMap<>();
+
+        LongKeys(
+                @Nonnull ToLongFunction<I> mapper) {
+
+            this.mapper = mapper;
+        }
+
+        @Override
+        @Nonnull Long key(
+                @Nonnull I item) {
+
+            return mapper.applyAsLong(item);
+        }
+
+        @Override
+        int itemHash(
+                @Nonnull I item) {
+
+            return Long.hashCode(mapper.applyAsLong(item));
+        }
+
+        @Override
+        int hash(
+                @Nonnull Long key) {
+
+            return Long.hashCode(key);
+        }
+
+        @Override
+        @Nullable V get(
+                @Nonnull I item) {
+
+            return map.get(mapper.applyAsLong(item));
+        }
+
+        @Override
+        @Nullable V find(
+                @Nonnull Long key) {
+
+            return map.get(key);
+        }
+
+        @Override
+        void put(
+                @Nonnull Long key,
+                @Nonnull V value) {
+
+            map.put(key, value);
+        }
+
+        @Override
+        boolean remove(
+                @Nonnull Long key,
+                @Nonnull V value) {
+
+            return map.remove(key, value);
+        }
+
+        @Override
+        int size() {
+            return map.size();
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keys of {@link Router} and their last seen times, which are written into warm start file
+ * (see {@link RouterOptions#setWarmStartFile(String)}), keys are kept as text of router key codec.
+ * <p>
+ * Format: magic, version (ints), count of keys (long), then key (modified UTF-8) and last seen time
+ * (long, ms) of every key, in order of use, least recently used first.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@NotThreadSafe
+final class KnownKeys {
+
+    private static final int MAGIC = 0x5741524D;
+    private static final int VERSION = 1;
+
+    @Nonnull private final List<String> keys = new ArrayList<>();
+    private long[] lastSeen = new long[16];
+
+    void add(
+            @Nonnull String key,
+            long lastSeen) {
+
+        if (keys.size() == this.lastSeen.length) {
+            this.lastSeen = Arrays.copyOf(this.lastSeen, this.lastSeen.length * 2);
+        }
+
+        this.lastSeen[keys.size()] = lastSeen;
+        keys.add(key);
+    }
+
+    int size() {
+        return keys.size();
+    }
+
+    @Nonnull String key(
+            int index) {
+
+        return keys.get(index);
+    }
+
+    long lastSeen(
+            int index) {
+
+        return lastSeen[index];
+    }
+
+    /**
+     * Write keys into file (replaced atomically).
+     */
+    void write(
+            @Nonnull Path file)
+            throws IOException {
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(keys.size());
+
+            for (int i = 0; i < keys.size(); i++) {
+                out.writeUTF(keys.get(i));
+                out.writeLong(lastSeen[i]);
+            }
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read keys written by {@link #write(Path)} which were seen not before {@code since} (ms).
+     */
+    static @Nonnull KnownKeys read(
+            @Nonnull Path file,
+            long since)
+            throws IOException {
+
+        KnownKeys known = new KnownKeys();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a warm start file: " + file);
+            }
+
+            long count = in.readLong();
+            for (long n = 0; n < count; n++) {
+
+                String key = in.readUTF();
+                long lastSeen = in.readLong();
+
+                if (lastSeen >= since) {
+                    known.add(key, lastSeen);
+                }
+            }
+        }
+
+        return known;
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Open-addressing hash map from primitive {@code long} keys to non-negative {@code int} values,
+ * see {@link LongMap}.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@NotThreadSafe
+public final class LongIntMap {
+
+    /**
+     * Returned by {@link #get(long)} and {@link #remove(long)} for absent key.
+     */
+    public static final int MISSING = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    // value + 1, 0 is empty slot
+    private int[] values;
+    private int mask;
+    private int size = 0;
+
+    public LongIntMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    public LongIntMap(
+            int expectedSize) {
+
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(
+            long key) {
+
+        for (int i = LongMap.hash(key) & mask; values[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i] - 1;
+            }
+        }
+
+        return MISSING;
+    }
+
+    /**
+     * @return previous value of key or {@link #MISSING}
+     */
+    public int put(
+            long key,
+            int value) {
+
+        if (value < 0) {
+            throw new IllegalArgumentException("value must be >= 0");
+        }
+
+        int i = LongMap.hash(key) & mask;
+        for (; values[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                int previous = values[i] - 1;
+                values[i] = value + 1;
+                return previous;
+            }
+        }
+
+        keys[i] = key;
+        values[i] = value + 1;
+
+        if (++size * 2 > values.length) {
+            resize(values.length * 2);
+        }
+
+        return MISSING;
+    }
+
+    /**
+     * @return removed value of key or {@link #MISSING}
+     */
+    public int remove(
+            long key) {
+
+        for (int i = LongMap.hash(key) & mask; values[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                int value = values[i] - 1;
+                shiftBack(i);
+                size--;
+                return value;
+            }
+        }
+
+        return MISSING;
+    }
+
+    private void shiftBack(
+            int gap) {
+
+        int i = gap;
+        while (true) {
+
+            i = (i + 1) & mask;
+            if (values[i] == 0) {
+                break;
+            }
+
+            int home = LongMap.hash(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+
+        keys[gap] = 0L;
+        values[gap] = 0;
+    }
+
+    private void resize(
+            int capacity) {
+
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldValues[j] != 0) {
+                int i = LongMap.hash(oldKeys[j]) & mask;
+                while (values[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+}
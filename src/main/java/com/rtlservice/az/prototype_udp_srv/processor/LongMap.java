@@ -0,0 +1,208 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map with primitive {@code long} keys: lookups do not box and do not allocate.
+ * <p>
+ * Linear probing, capacity is power of two and map grows at 1/2 load, removal shifts following
+ * entries back (no tombstones). Null values are not supported.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@NotThreadSafe
+public final class LongMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    @Nonnull private long[] keys;
+    @Nonnull private Object[] values;
+    private int mask;
+    private int size = 0;
+
+    public LongMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    public LongMap(
+            int expectedSize) {
+
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+    static int hash(
+            long key) {
+
+        // fibonacci hashing, high bits are well mixed
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public @Nullable V get(
+            long key) {
+
+        int i = hash(key) & mask;
+        Object value;
+        while ((value = values[i]) != null) {
+            if (keys[i] == key) {
+                return (V) value;
+            }
+            i = (i + 1) & mask;
+        }
+
+        return null;
+    }
+
+    public boolean containsKey(
+            long key) {
+
+        return get(key) != null;
+    }
+
+    /**
+     * @return previous value of key
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable V put(
+            long key,
+            @Nonnull V value) {
+
+        int i = hash(key) & mask;
+        Object previous;
+        while ((previous = values[i]) != null) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return (V) previous;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = key;
+        values[i] = value;
+
+        if (++size * 2 > values.length) {
+            resize(values.length * 2);
+        }
+
+        return null;
+    }
+
+    /**
+     * @return removed value of key
+     */
+    public @Nullable V remove(
+            long key) {
+
+        return delete(key, null);
+    }
+
+    /**
+     * Remove key only if it is mapped to {@code value} (by identity).
+     */
+    public boolean remove(
+            long key,
+            @Nonnull V value) {
+
+        return delete(key, value) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private @Nullable V delete(
+            long key,
+            @Nullable Object expected) {
+
+        int i = hash(key) & mask;
+        Object value;
+        while ((value = values[i]) != null) {
+            if (keys[i] == key) {
+
+                if (expected != null && expected != value) {
+                    return null;
+                }
+
+                shiftBack(i);
+                size--;
+                return (V) value;
+            }
+            i = (i + 1) & mask;
+        }
+
+        return null;
+    }
+
+    /**
+     * Fill slot {@code gap} with following entries of same probe chain, so lookups never meet a hole.
+     */
+    private void shiftBack(
+            int gap) {
+
+        int i = gap;
+        while (true) {
+
+            i = (i + 1) & mask;
+            if (values[i] == null) {
+                break;
+            }
+
+            int home = hash(keys[i]) & mask;
+            // entry can move to gap only if gap lies cyclically between its home slot and i
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+
+        keys[gap] = 0L;
+        values[gap] = null;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private void resize(
+            int capacity) {
+
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+
+        for (int j = 0; j < oldValues.length; j++) {
+            Object value = oldValues[j];
+            if (value != null) {
+                int i = hash(oldKeys[j]) & mask;
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = value;
+            }
+        }
+    }
+
+}
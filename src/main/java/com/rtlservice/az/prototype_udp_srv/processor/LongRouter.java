@@ -0,0 +1,164 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import com.rtlservice.az.prototype_udp_srv.state.State;
+import com.rtlservice.az.prototype_udp_srv.state.StateStore;
+import io.vertx.core.eventbus.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * {@link Router} with primitive {@code long} keys (e.g. MAC): key of incoming message is
+ * looked up in {@link LongMap}, so routing of message of known key does not box or allocate.
+ * <p>
+ * With {@link StatefulProcessor} every key has fixed-size off-heap {@link State} in {@link StateStore},
+ * owned by processing of key, so it needs no locks: in lanes mode every lane has its own partition
+ * of store, in per-key mode state of key is resolved by router when processor of key is deployed
+ * and is freed with its processor (idle eviction), keys of lanes are capped by
+ * {@link StateStore#setMaxKeys(long) max keys} of store. Lanes of stateful router are not
+ * autoscaled: key would move to other lane while its state stays in partition of old lane.
+ * <p>
+ * Keys are written into warm start file as hex.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class LongRouter<I, O>
+    extends Router<Long, I, O> {
+
+    @Nullable private final StateStore store;
+    @Nullable private final StatefulProcessor<I, O> stateful;
+
+    public LongRouter(
+            @Nonnull String endpointBase,
+            @Nonnull LongFunction<String> endpointMapper,
+            @Nonnull ToLongFunction<I> mapper,
+            @Nonnull Function<Message<I>, O> processor) {
+
+        this(endpointBase, endpointMapper, mapper, processor, new RouterOptions());
+    }
+
+    public LongRouter(
+            @Nonnull String endpointBase,
+            @Nonnull LongFunction<String> endpointMapper,
+            @Nonnull ToLongFunction<I> mapper,
+            @Nonnull Function<Message<I>, O> processor,
+            @Nonnull RouterOptions options) {
+
+        super(
+                endpointBase,
+                endpointMapper::apply,
+                new KeyMap.LongKeys<>(mapper),
+                processor,
+                Long::toHexString,
+                LongRouter::parseKey,
+                options);
+
+        this.store = null;
+        this.stateful = null;
+    }
+
+    /**
+     * @param stateSize size of state of key, bytes
+     * @throws IllegalArgumentException if options enable autoscaling of lanes
+     */
+    public LongRouter(
+            @Nonnull String endpointBase,
+            @Nonnull LongFunction<String> endpointMapper,
+            @Nonnull ToLongFunction<I> mapper,
+            @Nonnull StatefulProcessor<I, O> processor,
+            int stateSize,
+            @Nonnull RouterOptions options) {
+
+        this(
+                endpointBase,
+                endpointMapper,
+                mapper,
+                processor,
+                new StateStore(
+                        stateSize,
+                        partitionsOf(options),
+                        options.getLanes() == 0
+                                ? key -> 0
+                                : key -> laneOf(Long.hashCode(key), options.getLanes())),
+                options);
+    }
+
+    private LongRouter(
+            @Nonnull String endpointBase,
+            @Nonnull LongFunction<String> endpointMapper,
+            @Nonnull ToLongFunction<I> mapper,
+            @Nonnull StatefulProcessor<I, O> processor,
+            @Nonnull StateStore store,
+            @Nonnull RouterOptions options) {
+
+        super(
+                endpointBase,
+                endpointMapper::apply,
+                new KeyMap.LongKeys<>(mapper),
+                // lanes mode: called on lane of key, which owns partition of key
+                in -> {
+                    long key = mapper.applyAsLong(in.body());
+                    return processor.process(in, store.partitionOf(key).get(key));
+                },
+                Long::toHexString,
+                LongRouter::parseKey,
+                options);
+
+        this.store = store;
+        this.stateful = processor;
+    }
+
+    /**
+     * One partition per lane (one for per-key mode), number of lanes must be fixed.
+     */
+    private static int partitionsOf(
+            @Nonnull RouterOptions options) {
+
+        if (options.getLanes() > 0 && options.getMaxLanes() > options.getLanes()) {
+            throw new IllegalArgumentException("maxLanes of stateful router must be <= lanes");
+        }
+
+        return Math.max(1, options.getLanes());
+    }
+
+    private static @Nonnull Long parseKey(
+            @Nonnull String text) {
+
+        return Long.parseUnsignedLong(text, 16);
+    }
+
+    /**
+     * Store of states of keys, null if processor is stateless. Snapshot and restore it only
+     * while router is not deployed.
+     */
+    public @Nullable StateStore getStateStore() {
+        return store;
+    }
+
+    @Override
+    @Nonnull Function<Message<I>, O> processorOf(
+            @Nonnull Long id) {
+
+        StatefulProcessor<I, O> stateful = this.stateful;
+        if (stateful == null) {
+            return super.processorOf(id);
+        }
+
+        // per-key mode: router context is the only user of partition, processor owns its state
+        State state = store.partition(0).handle(id);
+        return in -> stateful.process(in, state);
+    }
+
+    @Override
+    void processorRemoved(
+            @Nonnull Long id) {
+
+        if (store != null) {
+            store.partition(0).remove(id);
+        }
+    }
+
+}
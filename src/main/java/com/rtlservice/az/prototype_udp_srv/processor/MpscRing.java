@@ -0,0 +1,154 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.BiConsumer;
+
+/**
+ * Bounded lock-free ring of pairs, many producers and one consumer.
+ * <p>
+ * Every slot has sequence number: producer claims slot by CAS of tail and publishes it by
+ * sequence, consumer frees it by sequence (Vyukov's bounded queue), so neither side allocates.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@ThreadSafe
+public final class MpscRing<A, B> {
+
+    private static final VarHandle _SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle _TAIL;
+    private static final VarHandle _HEAD;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            _TAIL = lookup.findVarHandle(MpscRing.class, "tail", long.class);
+            _HEAD = lookup.findVarHandle(MpscRing.class, "head", long.class);
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private final int mask;
+    @Nonnull private final long[] sequences;
+    @Nonnull private final Object[] firsts;
+    @Nonnull private final Object[] seconds;
+
+    // written by producers
+    @SuppressWarnings("unused")
+    private volatile long tail = 0L;
+
+    // written by consumer only
+    @SuppressWarnings("unused")
+    private volatile long head = 0L;
+
+    /**
+     * @param capacity power of 2
+     */
+    public MpscRing(
+            int capacity) {
+
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be power of 2");
+        }
+
+        this.mask = capacity - 1;
+        this.sequences = new long[capacity];
+        this.firsts = new Object[capacity];
+        this.seconds = new Object[capacity];
+
+        for (int i = 0; i < capacity; i++) {
+            sequences[i] = i;
+        }
+    }
+
+    /**
+     * Add pair, returns false if ring is full.
+     */
+    public boolean offer(
+            @Nonnull A first,
+            @Nullable B second) {
+
+        long t;
+        for (;;) {
+
+            t = (long) _TAIL.getVolatile(this);
+            long sequence = (long) _SEQUENCE.getAcquire(sequences, (int) t & mask);
+
+            if (sequence == t) {
+                if (_TAIL.compareAndSet(this, t, t + 1)) break;
+            } else if (sequence < t) {
+                // slot is not yet freed by consumer
+                return false;
+            }
+            // else slot is claimed by other producer
+        }
+
+        int i = (int) t & mask;
+        firsts[i] = first;
+        seconds[i] = second;
+
+        // volatile publication is ordered before producer reads consumer's parking flag
+        _SEQUENCE.setVolatile(sequences, i, t + 1);
+        return true;
+    }
+
+    /**
+     * Hand at most limit pairs to consumer in order of publication, returns count of pairs.
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(
+            @Nonnull BiConsumer<A, B> consumer,
+            int limit) {
+
+        long h = (long) _HEAD.getOpaque(this);
+
+        int n = 0;
+        while (n < limit) {
+
+            int i = (int) h & mask;
+            if ((long) _SEQUENCE.getAcquire(sequences, i) != h + 1) {
+                // empty or next slot is not yet published
+                break;
+            }
+
+            A first = (A) firsts[i];
+            B second = (B) seconds[i];
+            firsts[i] = null;
+            seconds[i] = null;
+
+            _SEQUENCE.setRelease(sequences, i, h + mask + 1);
+            h++;
+            _HEAD.setRelease(this, h);
+
+            consumer.accept(first, second);
+            n++;
+        }
+
+        return n;
+    }
+
+    /**
+     * True if there is no published pair, called by consumer.
+     */
+    public boolean isEmpty() {
+
+        long h = (long) _HEAD.getOpaque(this);
+        return (long) _SEQUENCE.getVolatile(sequences, (int) h & mask) != h + 1;
+    }
+
+    /**
+     * Approximate count of pairs in ring.
+     */
+    public int size() {
+        return (int) Math.max(0L, (long) _TAIL.getVolatile(this) - (long) _HEAD.getVolatile(this));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+/**
+ * What {@link Router} does with message when limit of pending messages is reached.
+ * Items of batch are admitted one by one: items over limit are handled by policy and
+ * replied with null outputs, others go on.
+ *
+ * @see RouterOptions#setOverflowPolicy(OverflowPolicy)
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Incoming message is dropped (replied with null).
+     */
+    DROP_NEWEST,
+
+    /**
+     * Oldest message of same key, which is not yet handed to processor, is dropped
+     * (replied with null); if there is no such message incoming one is dropped.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Incoming message is failed with {@link Router#REPLY_FAIL}.
+     */
+    REJECT
+
+}
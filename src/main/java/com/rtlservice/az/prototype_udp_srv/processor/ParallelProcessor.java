@@ -1,8 +1,13 @@
 package com.rtlservice.az.prototype_udp_srv.processor;
 
 import com.rtlservice.az.prototype_udp_srv.HandlerLoggable;
+import com.rtlservice.az.prototype_udp_srv.metrics.Metrics;
+import com.rtlservice.az.prototype_udp_srv.metrics.Traced;
+import com.rtlservice.az.prototype_udp_srv.packet.Batch;
+import io.netty.util.ReferenceCountUtil;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.eventbus.MessageConsumer;
@@ -12,12 +17,16 @@ import io.vertx.core.logging.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Objects;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 import static com.rtlservice.az.prototype_udp_srv.processor.Router.REPLY_FAIL;
 
 /**
+ * Processes messages of one key (or lane) one by one: on worker context or, with
+ * {@link ExecutionMode#VIRTUAL_THREAD}, on virtual thread, handler only queues messages then.
  *
  * @see Router
  *
@@ -28,30 +37,96 @@ class ParallelProcessor<K, I, O>
 
     private static final Logger _LOG = LoggerFactory.getLogger(ParallelProcessor.class);
 
+    private static final ThreadFactory _VIRTUAL_THREADS = Thread.ofVirtual()
+            .name("processor-", 0L)
+            .factory();
+
     @Nonnull private final K id;
     @Nonnull private final String endpoint;
     @Nonnull private final Function<I, K> mapper;
     @Nonnull private final Function<Message<I>, O> processor;
+    @Nullable private final Executor executor;
 
-    private final CountDownLatch init = new CountDownLatch(1);
     @Nullable private volatile MessageConsumer<I> handler = null;
 
+    // messages sent by router (written on its context) and messages processed or lost,
+    // processed message may have reply timed out long before
+    private long sent = 0L;
+    @Nonnull private final AtomicLong finished = new AtomicLong();
+
     public ParallelProcessor(
             @Nonnull K id,
             @Nonnull String endpoint,
             @Nonnull Function<I, K> mapper,
             @Nonnull Function<Message<I>, O> processor) {
 
+        this(id, endpoint, mapper, processor, ExecutionMode.WORKER);
+    }
+
+    public ParallelProcessor(
+            @Nonnull K id,
+            @Nonnull String endpoint,
+            @Nonnull Function<I, K> mapper,
+            @Nonnull Function<Message<I>, O> processor,
+            @Nonnull ExecutionMode executionMode) {
+
         this.id = id;
         this.endpoint = endpoint;
         this.processor = processor;
         this.mapper = mapper;
+        this.executor = executionMode == ExecutionMode.VIRTUAL_THREAD
+                ? new SerialExecutor(_VIRTUAL_THREADS)
+                : null;
+    }
+
+    /**
+     * Deployment options of processor in execution mode.
+     */
+    static @Nonnull DeploymentOptions deploymentOptions(
+            @Nonnull ExecutionMode executionMode) {
+
+        // in virtual thread mode handler only queues messages, so it runs on event loop
+        return new DeploymentOptions().setWorker(executionMode == ExecutionMode.WORKER);
     }
 
     public @Nonnull String getEndpoint() {
         return endpoint;
     }
 
+    /**
+     * Count message sent to processor, until it is processed. Router counts every message it
+     * sends to processor, on its context.
+     *
+     * @return sequence number of message, see {@link #isFinished(long)}
+     */
+    long sent() {
+        return ++sent;
+    }
+
+    /**
+     * Count message sent to processor, which was not delivered to it, as finished.
+     */
+    void lost() {
+        finished.incrementAndGet();
+    }
+
+    /**
+     * Whether processor has messages sent to it and not yet processed, it must not be undeployed then.
+     */
+    boolean isBusy() {
+        return finished.get() < sent;
+    }
+
+    /**
+     * Whether message of sequence number is processed: processor handles messages one by one in
+     * order they are sent.
+     */
+    boolean isFinished(
+            long sequence) {
+
+        return finished.get() >= sequence;
+    }
+
     public void start(
             @Nonnull Future<Void> start)
             throws Exception {
@@ -64,21 +139,13 @@ class ParallelProcessor<K, I, O>
                     id.toString());
 
             assert handler == null;
-            handler = getVertx().eventBus().consumer(
+            handler = getVertx().eventBus().localConsumer(
                     endpoint,
                     (HandlerLoggable<Message<I>>) (in) -> {
-                        try {
-
-                            assert id.equals(mapper.apply(in.body()));
-
-                            O out = processor.apply(in);
-
-                            if (in.replyAddress() != null) {
-                                in.reply(out);
-                            }
-
-                        } catch (Throwable ex) {
-                            REPLY_FAIL.accept(in, ex);
+                        if (executor != null) {
+                            executor.execute(() -> handle(in));
+                        } else {
+                            handle(in);
                         }
                     });
 
@@ -98,9 +165,6 @@ class ParallelProcessor<K, I, O>
                     deploymentID(),
                     endpoint,
                     id.toString());
-
-        } finally {
-            init.countDown();
         }
     }
 
@@ -146,11 +210,135 @@ class ParallelProcessor<K, I, O>
         }
     }
 
-    @Deprecated
-    void _waitStart()
-            throws InterruptedException {
+    private void handle(
+            @Nonnull Message<I> in) {
+
+        try {
+            if (in.body() instanceof Batch) {
+                processBatch(in);
+            } else {
+                processOne(in);
+            }
+        } finally {
+            finished.incrementAndGet();
+        }
+    }
+
+    private void processOne(
+            @Nonnull Message<I> in) {
+
+        try {
+
+            assert id.equals(mapper.apply(in.body()));
+
+            O out = process(in);
 
-        init.await();
+            reply(in, out);
+
+        } catch (Throwable ex) {
+            fail(in, ex);
+        } finally {
+            // processor which needs body after return must retain or copy it
+            ReferenceCountUtil.release(in.body());
+        }
+    }
+
+    /**
+     * Reply from context of processor, vert.x creates new context for every message sent from
+     * thread without context (virtual thread).
+     *
+     * @see #fail(Message, Throwable)
+     */
+    private void reply(
+            @Nonnull Message<I> in,
+            @Nullable Object out) {
+
+        if (in.replyAddress() == null) return;
+
+        if (executor != null) {
+            context.runOnContext((HandlerLoggable<Void>) (v) -> in.reply(out));
+        } else {
+            in.reply(out);
+        }
+    }
+
+    /**
+     * Reply with failure from context of processor, as {@link #reply(Message, Object)} does.
+     */
+    private void fail(
+            @Nonnull Message<I> in,
+            @Nonnull Throwable ex) {
+
+        if (executor != null) {
+            context.runOnContext((HandlerLoggable<Void>) (v) -> REPLY_FAIL.accept(in, ex));
+        } else {
+            REPLY_FAIL.accept(in, ex);
+        }
+    }
+
+    private @Nullable O process(
+            @Nonnull Message<I> in) {
+
+        long start = System.nanoTime();
+
+        I body = in.body();
+        if (body instanceof Traced && ((Traced) body).getRoutedNanos() != 0L) {
+            Metrics.ROUTED_TO_START.record(start - ((Traced) body).getRoutedNanos());
+        }
+
+        try {
+            return processor.apply(in);
+        } catch (Throwable ex) {
+            Metrics.PROCESSOR_FAILURES.increment();
+            throw ex;
+        } finally {
+            Metrics.PROCESSING.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Process items of batch one by one, reply with batch of outputs (null for failed item).
+     */
+    private void processBatch(
+            @Nonnull Message<I> in) {
+
+        @SuppressWarnings("unchecked")
+        Batch<I> batch = (Batch<I>) in.body();
+
+        Batch<O> outs = new Batch<>(batch.size());
+        ItemMessage<I> item = new ItemMessage<>(in);
+
+        for (int i = 0; i < batch.size(); i++) {
+
+            item.set(batch.get(i));
+
+            O out = null;
+            try {
+
+                assert id.equals(mapper.apply(item.body()));
+
+                out = process(item);
+
+            } catch (Throwable ex) {
+                // item has no reply address, its output stays null
+                Metrics.BATCH_ITEM_FAILURES.increment();
+                _LOG.debug("{0}: batch item processing fail: endpoint={1}, id={2}",
+                        ex,
+                        deploymentID(),
+                        endpoint,
+                        id.toString());
+            } finally {
+                ReferenceCountUtil.release(item.body());
+            }
+
+            outs.add(out);
+        }
+
+        try {
+            reply(in, outs);
+        } catch (Throwable ex) {
+            fail(in, ex);
+        }
     }
 
-}
\ No newline at end of file
+}
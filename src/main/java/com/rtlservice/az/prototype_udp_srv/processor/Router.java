@@ -1,24 +1,97 @@
 package com.rtlservice.az.prototype_udp_srv.processor;
 
 import com.rtlservice.az.prototype_udp_srv.HandlerLoggable;
+import com.rtlservice.az.prototype_udp_srv.cluster.ClusterOptions;
+import com.rtlservice.az.prototype_udp_srv.cluster.Membership;
+import com.rtlservice.az.prototype_udp_srv.metrics.Metrics;
+import com.rtlservice.az.prototype_udp_srv.metrics.MetricsRegistry;
+import com.rtlservice.az.prototype_udp_srv.metrics.Traced;
+import com.rtlservice.az.prototype_udp_srv.packet.Batch;
+import io.netty.util.ReferenceCountUtil;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 /**
+ * Routes incoming messages to processors by key.
+ * <p>
+ * Two modes are supported (see {@link RouterOptions#setLanes(int)}):
+ * <ul>
+ *     <li>one {@link ParallelProcessor} per key, deployed asynchronously on first message
+ *     (messages are queued until deploy completes) and optionally undeployed after
+ *     {@link RouterOptions#setIdleTimeout(long) idle timeout};</li>
+ *     <li>number of lanes, every key is hashed onto one lane, so count of deployed
+ *     processors does not depend on count of keys.</li>
+ * </ul>
+ * In both modes messages of same key are processed one by one in order of arrival, processors run
+ * on worker pool or on virtual threads (see {@link RouterOptions#setExecutionMode(ExecutionMode)}).
+ * <p>
+ * Number of lanes can be fixed or scaled between bounds (see {@link RouterOptions#setMaxLanes(int)})
+ * by mean count of messages in flight per lane and their latency. Key moves to its lane of new number
+ * of lanes when its messages in flight on old lane are processed (new ones wait in router), so its
+ * messages stay in order; lanes are removed when they have nothing in flight. Message of lane, reply
+ * of which timed out, stays in flight until lane processes it. With
+ * {@link ExecutionMode#WORKER} lanes run on own worker pool of max lanes size, idle threads of which end.
+ * <p>
+ * With {@link SchedulingPolicy#FAIR fair scheduling} lane gets few messages at once, the rest
+ * wait in router and keys of lane take turns in deficit round robin order by their
+ * {@link #setWeights(ToIntFunction) weights}, so burst of one key does not delay other keys.
+ * <p>
+ * Incoming message may be a {@link Batch} of items, it is split into one batch per processor
+ * and answered with batch of outputs (in order of items) after all items are processed.
+ * <p>
+ * Count of accepted and not yet processed messages can be limited per key and in total,
+ * messages over limit are dropped or rejected according to {@link OverflowPolicy}.
+ * <p>
+ * Keys are compared with {@code equals}, see {@link LongRouter} for primitive {@code long} keys.
+ * <p>
+ * Duplicate messages can be suppressed before routing with {@link #setDeduplicator(Deduplicator)},
+ * they are answered as dropped.
+ * <p>
+ * On clustered vert.x every key can be owned by exactly one node (see {@link #setCluster(ClusterOptions,
+ * Function, Function) cluster mode}): messages of keys owned by other nodes are forwarded to router
+ * of owner node over clustered event bus one by one and answered with its result. Router endpoint
+ * itself is local to node.
+ * <p>
+ * Per-key processors can be warm started (see {@link RouterOptions#setWarmStartFile(String)}): router
+ * writes its keys and their last seen times into file periodically and on stop, and on next start
+ * deploys processors of keys seen recently, all at once, before start completes, so first messages of
+ * reconnecting keys do not wait for deploy. Keys are written as text by {@link #setKeyCodec(Function,
+ * Function) key codec}.
  *
  * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
  */
@@ -27,6 +100,12 @@ public class Router<K, I, O>
 
     private static final Logger _LOG = LoggerFactory.getLogger(Router.class);
 
+    // count of checks with low load of lanes before one lane is removed
+    private static final int SCALE_DOWN_CHECKS = 5;
+
+    // period of checks whether lanes processed messages, replies of which timed out, ms
+    private static final long TIMED_OUT_CHECK_PERIOD = 100L;
+
     public static final BiConsumer<Message<?>, Throwable> REPLY_FAIL = (msg, ex) -> {
         if (msg.replyAddress() != null) {
             msg.fail(-1, ex.toString());
@@ -37,10 +116,51 @@ public class Router<K, I, O>
 
     @Nonnull private final String endpointBase;
     @Nonnull private final Function<K, String> endpointMapper;
-    @Nonnull private final Function<I, K> mapper;
+    @Nonnull private final KeyMap<K, I, Entry<K>> keys;
     @Nonnull private final Function<Message<I>, O> processor;
+    @Nonnull private final RouterOptions options;
+
+    private final boolean limited;
+    private final boolean autoscaling;
+    private final boolean fair;
+    private final boolean tracked;
+    private final int window;
+
+    @Nullable private Deduplicator<I> deduplicator = null;
+    @Nullable private ToIntFunction<K> weights = null;
+    @Nullable private Function<K, String> keyEncoder;
+    @Nullable private Function<String, K> keyDecoder;
+    @Nonnull private MetricsRegistry registry = Metrics.REGISTRY;
+
+    @Nullable private ClusterOptions clusterOptions = null;
+    @Nullable private Function<I, ?> toWire = null;
+    @Nullable private Function<Object, I> fromWire = null;
+    @Nullable private Membership membership = null;
+
+    // per-key processors in order of use, least recently used first
+    @Nullable private Entry<K> oldest = null;
+    @Nullable private Entry<K> newest = null;
+    @Nonnull private final List<Lane<K>> lanes = new ArrayList<>();
+
+    // keys are hashed onto first active lanes, lanes above are removed when they have nothing in flight
+    private int activeLanes = 0;
+    private boolean scaling = false;
+    private int calm = 0;
+    @Nullable private WorkerExecutor lanePool = null;
+
+    private volatile int pending = 0;
+    private volatile int deployedProcessors = 0;
+    @Nonnull private final LongAdder droppedNewest = new LongAdder();
+    @Nonnull private final LongAdder droppedOldest = new LongAdder();
+    @Nonnull private final LongAdder rejected = new LongAdder();
+    @Nonnull private final LongAdder rescales = new LongAdder();
 
-    @Nullable private volatile MessageConsumer<I> handler = null;
+    @Nullable private volatile MessageConsumer<Object> handler = null;
+    @Nullable private volatile MessageConsumer<Object> nodeHandler = null;
+    private volatile long idleTimer = -1L;
+    private volatile long scaleTimer = -1L;
+    private volatile long warmTimer = -1L;
+    private volatile long timedOutTimer = -1L;
 
     public Router(
             @Nonnull String endpointBase,
@@ -48,87 +168,287 @@ public class Router<K, I, O>
             @Nonnull Function<I, K> mapper,
             @Nonnull Function<Message<I>, O> processor) {
 
+        this(endpointBase, endpointMapper, mapper, processor, new RouterOptions());
+    }
+
+    public Router(
+            @Nonnull String endpointBase,
+            @Nonnull Function<K, String> endpointMapper,
+            @Nonnull Function<I, K> mapper,
+            @Nonnull Function<Message<I>, O> processor,
+            @Nonnull RouterOptions options) {
+
+        this(endpointBase, endpointMapper, new KeyMap.ObjectKeys<>(mapper), processor, null, null, options);
+    }
+
+    /**
+     * @param keyEncoder conversion of keys to text for warm start file, see {@link #setKeyCodec(Function, Function)}
+     * @param keyDecoder conversion of text back to keys
+     */
+    protected Router(
+            @Nonnull String endpointBase,
+            @Nonnull Function<K, String> endpointMapper,
+            @Nonnull KeyMap<K, I, Entry<K>> keys,
+            @Nonnull Function<Message<I>, O> processor,
+            @Nullable Function<K, String> keyEncoder,
+            @Nullable Function<String, K> keyDecoder,
+            @Nonnull RouterOptions options) {
+
         this.endpointBase = endpointBase;
         this.endpointMapper = endpointMapper;
         this.processor = processor;
-        this.mapper = mapper;
+        this.keys = keys;
+        this.keyEncoder = keyEncoder;
+        this.keyDecoder = keyDecoder;
+        this.options = new RouterOptions(options);
+
+        this.limited = options.getMaxPendingPerKey() > 0 || options.getMaxPending() > 0;
+        this.autoscaling = options.getLanes() > 0 && options.getMaxLanes() > options.getLanes();
+        this.fair = options.getLanes() > 0 && options.getSchedulingPolicy() == SchedulingPolicy.FAIR;
+        // key can't move to other lane while it has messages in flight, fair lanes schedule keys
+        this.tracked = limited || autoscaling || fair;
+        this.window = limited && options.getOverflowPolicy() == OverflowPolicy.DROP_OLDEST
+                ? options.getKeyWindow()
+                : Integer.MAX_VALUE;
     }
 
     public @Nonnull String getEndpoint() {
         return endpointBase;
     }
 
+    /**
+     * Set stage which suppresses duplicate messages before routing, must be called before deploy.
+     */
+    public @Nonnull Router<K, I, O> setDeduplicator(
+            @Nullable Deduplicator<I> deduplicator) {
+
+        this.deduplicator = deduplicator;
+        return this;
+    }
+
+    /**
+     * Set weights of keys for {@link SchedulingPolicy#FAIR fair scheduling}, key of weight
+     * {@code w} hands {@code w} times more messages per round (weight of key is 1 by default);
+     * must be called before deploy.
+     */
+    public @Nonnull Router<K, I, O> setWeights(
+            @Nullable ToIntFunction<K> weights) {
+
+        this.weights = weights;
+        return this;
+    }
+
+    /**
+     * Set conversion of keys to text and back for {@link RouterOptions#setWarmStartFile(String)
+     * warm start file}, must be called before deploy when warm start file is set.
+     */
+    public @Nonnull Router<K, I, O> setKeyCodec(
+            @Nonnull Function<K, String> encoder,
+            @Nonnull Function<String, K> decoder) {
+
+        this.keyEncoder = encoder;
+        this.keyDecoder = decoder;
+        return this;
+    }
+
+    /**
+     * Set registry of metrics, e.g. {@link MetricsRegistry#withLabel(String, String) labeled} by node
+     * when several nodes run in one JVM ({@link Metrics#REGISTRY} by default); must be called before deploy.
+     */
+    public @Nonnull Router<K, I, O> setMetricsRegistry(
+            @Nonnull MetricsRegistry registry) {
+
+        this.registry = registry;
+        return this;
+    }
+
+    /**
+     * Set cluster mode, must be called before deploy on clustered vert.x.
+     *
+     * @param toWire   converts item forwarded to owner node into message body with wire codec,
+     *                 item is released after conversion
+     * @param fromWire converts message body received from other node back into item
+     */
+    public @Nonnull Router<K, I, O> setCluster(
+            @Nonnull ClusterOptions options,
+            @Nonnull Function<I, ?> toWire,
+            @Nonnull Function<Object, I> fromWire) {
+
+        this.clusterOptions = new ClusterOptions(options);
+        this.toWire = toWire;
+        this.fromWire = fromWire;
+        return this;
+    }
+
+    /**
+     * Endpoint of router of node, messages sent there are processed by that node.
+     */
+    public @Nonnull String getNodeEndpoint(
+            @Nonnull String nodeID) {
+
+        return endpointBase + "node/" + nodeID + "/";
+    }
+
     public void start(
             @Nonnull Future<Void> start)
             throws Exception {
 
         try {
 
-            _LOG.debug("{0}: try start router: endpoint={1}",
+            _LOG.debug("{0}: try start router: endpoint={1}, lanes={2,number,#}",
                     deploymentID(),
-                    endpointBase);
+                    endpointBase,
+                    options.getLanes());
 
-            Map<K, ParallelProcessor<K, I, O>> processors = new HashMap<>();
+            @SuppressWarnings("rawtypes")
+            List<Future> deployed = new ArrayList<>();
 
-            assert handler == null;
-            handler = getVertx().eventBus().consumer(
-                    endpointBase,
-                    (HandlerLoggable<Message<I>>) (in) -> {
-                        try {
+            if (autoscaling && options.getExecutionMode() == ExecutionMode.WORKER) {
+                lanePool = getVertx().createSharedWorkerExecutor(lanePoolName(), options.getMaxLanes());
+                if (!shrinkable(lanePool, options.getScaleCheckPeriod())) {
+                    _LOG.warn("{0}: worker pool executor is not available, idle lane threads stay",
+                            deploymentID());
+                }
+            }
 
-                            K id = mapper.apply(in.body());
+            assert lanes.isEmpty();
+            for (int i = 0; i < options.getLanes(); i++) {
+                deployed.add(deployLane());
+            }
+            activeLanes = options.getLanes();
 
-                            ParallelProcessor<K, I, O> pp = processors.get(id);
-                            if (pp == null) {
+            // lanes serve any key, only per-key processors are warm started
+            Path warmStartFile = warmStartFile();
+            if (warmStartFile != null && Files.exists(warmStartFile)) {
+                try {
+                    warmStart(warmStartFile, deployed);
+                } catch (IOException | RuntimeException ex) {
+                    // malformed file or key: processors are deployed on first messages
+                    _LOG.warn("{0}: router warm start fail: file={1}",
+                            ex,
+                            deploymentID(),
+                            warmStartFile);
+                }
+            }
 
-                                pp = new ParallelProcessor<>(
-                                        id,
-                                        endpointMapper.apply(id),
-                                        mapper,
-                                        processor);
+            CompositeFuture.all(deployed).setHandler((HandlerLoggable<AsyncResult<CompositeFuture>>) (async) -> {
+                try {
 
-                                ParallelProcessor<K, I, O> _pp = processors.put(id, pp);
-                                assert _pp == null;
+                    if (async.failed()) {
+                        throw async.cause();
+                    }
 
-                                getVertx().deployVerticle(
-                                        processors.get(id),
-                                        new DeploymentOptions().setWorker(true));
+                    if (clusterOptions != null) {
 
-                                // костыль, жертвуем задержкой при инициализации в пользу простоты кода
-                                pp._waitStart();
-                            }
+                        Membership membership = new Membership(getVertx(), clusterOptions);
+                        membership.start();
+                        this.membership = membership;
 
-                            if (in.replyAddress() != null) {
-                                getVertx().eventBus().send(
-                                        pp.getEndpoint(),
-                                        in.body(),
-                                        (HandlerLoggable<AsyncResult<Message<O>>>) (out) -> {
-                                            try {
-                                                if (out.succeeded()) {
-                                                    in.reply(out.result().body());
-                                                } else {
-                                                    REPLY_FAIL.accept(in, out.cause());
-                                                }
-                                            } catch (Throwable ex) {
-                                                REPLY_FAIL.accept(in, ex);
-                                            }
-                                        });
-                            } else {
-                                getVertx().eventBus().send(
-                                        pp.getEndpoint(),
-                                        in.body());
-                            }
+                        // messages forwarded by other nodes are processed here whatever ring says
+                        assert nodeHandler == null;
+                        nodeHandler = getVertx().eventBus().consumer(
+                                getNodeEndpoint(membership.getNodeID()),
+                                (HandlerLoggable<Message<Object>>) (in) -> {
+                                    try {
 
-                        } catch (Throwable ex) {
-                            REPLY_FAIL.accept(in, ex);
-                        }
-                    });
+                                        Metrics.CLUSTER_RECEIVED.increment();
 
-            start.complete();
+                                        I item = Objects.requireNonNull(fromWire).apply(in.body());
+                                        if (item == null) {
+                                            throw new IllegalArgumentException("Bad forwarded message");
+                                        }
 
-            _LOG.info("{0}: router successfully started: endpoint={1}",
-                    deploymentID(),
-                    endpointBase);
+                                        traceRouted(item);
+                                        accept(item, in);
+
+                                    } catch (Throwable ex) {
+                                        REPLY_FAIL.accept(in, ex);
+                                    }
+                                });
+
+                        registry.gauge("cluster_nodes", membership::size);
+                        registry.counter("cluster_rebalances_total", membership::getRebalances);
+                    }
+
+                    // datagrams are received by every node, so endpoint is not shared by cluster
+                    assert handler == null;
+                    handler = getVertx().eventBus().localConsumer(
+                            endpointBase,
+                            (HandlerLoggable<Message<Object>>) (in) -> {
+                                try {
+
+                                    Object body = in.body();
+                                    traceRouted(body);
+
+                                    if (body instanceof Batch) {
+                                        @SuppressWarnings("unchecked")
+                                        Batch<I> batch = (Batch<I>) body;
+                                        dispatchBatch(batch, in);
+                                    } else {
+                                        @SuppressWarnings("unchecked")
+                                        I item = (I) body;
+                                        if (membership != null && !membership.isLocal(keys.itemHash(item))) {
+                                            toOwner(item, (out) -> reply(in, out));
+                                        } else {
+                                            accept(item, in);
+                                        }
+                                    }
+
+                                } catch (Throwable ex) {
+                                    REPLY_FAIL.accept(in, ex);
+                                }
+                            });
+
+                    registry.gauge("router_active_processors", () -> lanes.isEmpty() ? deployedProcessors : activeLanes);
+                    registry.gauge("router_pending", this::getPending);
+                    registry.counter("router_dropped_newest_total", this::getDroppedNewest);
+                    registry.counter("router_dropped_oldest_total", this::getDroppedOldest);
+                    registry.counter("router_rejected_total", this::getRejected);
+
+                    Deduplicator<I> deduplicator = this.deduplicator;
+                    if (deduplicator != null) {
+                        registry.counter("dedup_hits_total", deduplicator::getHits);
+                        registry.counter("dedup_misses_total", deduplicator::getMisses);
+                        registry.counter("dedup_evictions_total", deduplicator::getEvictions);
+                        registry.gauge("dedup_keys", deduplicator::size);
+                    }
+
+                    if (lanes.isEmpty() && options.getIdleTimeout() > 0) {
+                        idleTimer = getVertx().setPeriodic(
+                                options.getIdleCheckPeriod(),
+                                (HandlerLoggable<Long>) (timer) -> evictIdle());
+                    }
+
+                    if (autoscaling) {
+                        registry.counter("router_lane_rescales_total", rescales::sum);
+                        scaleTimer = getVertx().setPeriodic(
+                                options.getScaleCheckPeriod(),
+                                (HandlerLoggable<Long>) (timer) -> scale());
+                    }
+
+                    if (warmStartFile != null) {
+                        warmTimer = getVertx().setPeriodic(
+                                options.getWarmStartPeriod(),
+                                (HandlerLoggable<Long>) (timer) -> writeKeys(warmStartFile));
+                    }
+
+                    start.complete();
+
+                    _LOG.info("{0}: router successfully started: endpoint={1}, lanes={2,number,#}",
+                            deploymentID(),
+                            endpointBase,
+                            lanes.size());
+
+                } catch (Throwable ex) {
+
+                    start.fail(ex);
+
+                    _LOG.warn("{0}: router starting fail: endpoint={1}",
+                            ex,
+                            deploymentID(),
+                            endpointBase);
+                }
+            });
 
         } catch (Throwable ex) {
 
@@ -152,6 +472,36 @@ public class Router<K, I, O>
                     deploymentID(),
                     endpointBase);
 
+            if (idleTimer != -1L) {
+                getVertx().cancelTimer(idleTimer);
+            }
+
+            if (scaleTimer != -1L) {
+                getVertx().cancelTimer(scaleTimer);
+            }
+
+            if (timedOutTimer != -1L) {
+                getVertx().cancelTimer(timedOutTimer);
+            }
+
+            // last write while processors are known
+            Path warmStartFile = null;
+            KnownKeys known = null;
+            if (warmTimer != -1L) {
+                getVertx().cancelTimer(warmTimer);
+                warmStartFile = Objects.requireNonNull(warmStartFile());
+                known = knownKeys();
+            }
+
+            if (membership != null) {
+                membership.stop();
+            }
+
+            MessageConsumer<Object> nodeHandler = this.nodeHandler;
+            if (nodeHandler != null) {
+                nodeHandler.unregister();
+            }
+
             Objects.requireNonNull(handler).unregister((HandlerLoggable<AsyncResult<Void>>) (async) -> {
                 if (async.succeeded()) {
                     _LOG.trace("{0}: router handler successfully stopped",
@@ -163,11 +513,47 @@ public class Router<K, I, O>
                 }
             });
 
-            super.stop(stop);
+            // pool ends when lanes using it are undeployed
+            if (lanePool != null) {
+                lanePool.close();
+            }
 
-            _LOG.info("{0}: router successfully stopped: endpoint={1}",
-                    deploymentID(),
-                    endpointBase);
+            // processors (and lanes) are child deployments and will be undeployed by vert.x
+            if (known == null) {
+
+                super.stop(stop);
+
+                _LOG.info("{0}: router successfully stopped: endpoint={1}",
+                        deploymentID(),
+                        endpointBase);
+
+            } else {
+
+                // stop completes when keys are written (after periodic writes), off event loop
+                Path file = warmStartFile;
+                writeKeys(file, known, (HandlerLoggable<AsyncResult<Void>>) (async) -> {
+                    if (async.succeeded()) {
+
+                        stop.complete();
+
+                        _LOG.info("{0}: router keys written: file={1}",
+                                deploymentID(),
+                                file);
+                        _LOG.info("{0}: router successfully stopped: endpoint={1}",
+                                deploymentID(),
+                                endpointBase);
+
+                    } else {
+
+                        stop.fail(async.cause());
+
+                        _LOG.warn("{0}: router stopping fail: endpoint={1}",
+                                async.cause(),
+                                deploymentID(),
+                                endpointBase);
+                    }
+                });
+            }
 
         } catch (Throwable ex) {
 
@@ -180,4 +566,1430 @@ public class Router<K, I, O>
         }
     }
 
-}
\ No newline at end of file
+    private int laneOf(
+            int h) {
+
+        return laneOf(h, activeLanes);
+    }
+
+    /**
+     * Lane of key with given hash.
+     */
+    static int laneOf(
+            int h,
+            int lanes) {
+
+        return Math.floorMod(h ^ (h >>> 16), lanes);
+    }
+
+    /**
+     * Processor function of per-key processor, called on router context when processor is deployed.
+     */
+    @Nonnull Function<Message<I>, O> processorOf(
+            @Nonnull K id) {
+
+        return processor;
+    }
+
+    /**
+     * Called on router context when per-key processor of key is undeployed as idle or its deploy
+     * fails, processor function of key is not used any more.
+     */
+    void processorRemoved(
+            @Nonnull K id) {
+    }
+
+    /**
+     * Suppress duplicate or route item of local key.
+     */
+    private void accept(
+            @Nonnull I item,
+            @Nonnull Message<Object> in) {
+
+        if (deduplicator != null && !deduplicator.accept(item)) {
+            // duplicate is answered as dropped
+            release(item);
+            reply(in, Future.succeededFuture());
+        } else {
+            route(item, (out) -> reply(in, out));
+        }
+    }
+
+    /**
+     * Forward item to router of node which owns its key, owner deduplicates it.
+     */
+    private void toOwner(
+            @Nonnull I item,
+            @Nonnull Handler<AsyncResult<Object>> done) {
+
+        try {
+
+            String owner = Objects.requireNonNull(membership).owner(keys.itemHash(item));
+
+            Object body;
+            try {
+                body = Objects.requireNonNull(toWire).apply(item);
+            } finally {
+                release(item);
+            }
+
+            Metrics.CLUSTER_FORWARDED.increment();
+
+            getVertx().eventBus().send(
+                    getNodeEndpoint(owner),
+                    body,
+                    new DeliveryOptions().setSendTimeout(Objects.requireNonNull(clusterOptions).getSendTimeout()),
+                    (HandlerLoggable<AsyncResult<Message<Object>>>) (out) -> done.handle(out.succeeded()
+                            ? Future.succeededFuture(out.result().body())
+                            : Future.failedFuture(out.cause())));
+
+        } catch (Throwable ex) {
+            done.handle(Future.failedFuture(ex));
+        }
+    }
+
+    private static void reply(
+            @Nonnull Message<?> in,
+            @Nonnull AsyncResult<Object> out) {
+
+        try {
+            if (out.succeeded()) {
+                if (in.replyAddress() != null) {
+                    in.reply(out.result());
+                }
+            } else {
+                REPLY_FAIL.accept(in, out.cause());
+            }
+        } catch (Throwable ex) {
+            REPLY_FAIL.accept(in, ex);
+        }
+    }
+
+    /**
+     * Split batch into one batch per target processor (lane or key), reply with batch of
+     * outputs in order of items when all of them are processed (null for duplicates and
+     * failed items, so outputs of others are still replied).
+     * Items of keys owned by other nodes are forwarded one by one.
+     */
+    private void dispatchBatch(
+            @Nonnull Batch<I> batch,
+            @Nonnull Message<Object> in) {
+
+        Map<Object, Group<K, I>> groups = new HashMap<>();
+        List<Integer> remote = null;
+        for (int i = 0; i < batch.size(); i++) {
+
+            I item = batch.get(i);
+
+            if (membership != null && !membership.isLocal(keys.itemHash(item))) {
+                if (remote == null) {
+                    remote = new ArrayList<>();
+                }
+                remote.add(i);
+                continue;
+            }
+
+            if (deduplicator != null && !deduplicator.accept(item)) {
+                // duplicate, its output stays null
+                ReferenceCountUtil.release(item);
+                continue;
+            }
+
+            K id = keys.key(item);
+
+            // tracked key (pending limits, autoscaling or fair scheduling) is charged to own entry
+            Object target = lanes.isEmpty() || tracked ? id : laneOf(keys.hash(id));
+
+            Group<K, I> group = groups.get(target);
+            if (group == null) {
+                group = new Group<>(id);
+                groups.put(target, group);
+            }
+
+            group.add(item, i);
+        }
+
+        Object[] outs = new Object[batch.size()];
+
+        int[] remaining = {groups.size() + (remote != null ? remote.size() : 0)};
+
+        if (remaining[0] == 0) {
+            // all items are duplicates
+            Batch<Object> results = new Batch<>(outs.length);
+            for (Object o : outs) {
+                results.add(o);
+            }
+            reply(in, Future.succeededFuture(results));
+            return;
+        }
+
+        Runnable completed = () -> {
+            if (--remaining[0] == 0) {
+
+                Batch<Object> results = new Batch<>(outs.length);
+                for (Object o : outs) {
+                    results.add(o);
+                }
+
+                reply(in, Future.succeededFuture(results));
+            }
+        };
+
+        if (remote != null) {
+            for (int index : remote) {
+                toOwner(batch.get(index), (out) -> {
+
+                    if (out.succeeded()) {
+                        outs[index] = out.result();
+                    } else {
+                        batchItemFailed(out.cause(), 1);
+                    }
+
+                    completed.run();
+                });
+            }
+        }
+
+        for (Group<K, I> group : groups.values()) {
+            dispatch(group.id, group.items, (out) -> {
+
+                if (out.succeeded() && out.result() == null) {
+                    // dropped by overflow policy, outputs stay null
+                } else if (out.succeeded()) {
+                    @SuppressWarnings("unchecked")
+                    Batch<Object> results = (Batch<Object>) out.result();
+                    for (int i = 0; i < results.size(); i++) {
+                        outs[group.indexes[i]] = results.get(i);
+                    }
+                } else {
+                    batchItemFailed(out.cause(), group.items.size());
+                }
+
+                completed.run();
+            });
+        }
+    }
+
+    /**
+     * Count items of batch, which failed and are replied with null output.
+     */
+    private void batchItemFailed(
+            @Nonnull Throwable cause,
+            int count) {
+
+        Metrics.BATCH_ITEM_FAILURES.add(count);
+
+        _LOG.debug("{0}: batch items processing fail: count={1,number,#}",
+                cause,
+                deploymentID(),
+                count);
+    }
+
+    /**
+     * Dispatch incoming item to processor of its key, per-message path: key is not materialized
+     * unless it is new.
+     */
+    private void route(
+            @Nonnull I item,
+            @Nonnull Handler<AsyncResult<Object>> done) {
+
+        try {
+
+            if (!lanes.isEmpty() && !tracked) {
+                // nothing to track per key
+                forward(laneProcessor(keys.itemHash(item)), item, done, null, 0L);
+                return;
+            }
+
+            Entry<K> entry = keys.get(item);
+            dispatch(entry != null ? entry : create(keys.key(item)), item, done);
+
+        } catch (Throwable ex) {
+            done.handle(Future.failedFuture(ex));
+        }
+    }
+
+    /**
+     * Dispatch message body (item or batch of items of same target) to processor.
+     */
+    private void dispatch(
+            @Nonnull K id,
+            @Nonnull Object body,
+            @Nonnull Handler<AsyncResult<Object>> done) {
+
+        try {
+
+            if (!lanes.isEmpty() && !tracked) {
+                // nothing to track per key
+                forward(laneProcessor(keys.hash(id)), body, done, null, 0L);
+                return;
+            }
+
+            Entry<K> entry = keys.find(id);
+            dispatch(entry != null ? entry : create(id), body, done);
+
+        } catch (Throwable ex) {
+            done.handle(Future.failedFuture(ex));
+        }
+    }
+
+    private void dispatch(
+            @Nonnull Entry<K> entry,
+            @Nonnull Object body,
+            @Nonnull Handler<AsyncResult<Object>> done) {
+
+        if (!entry.active && entry.queued() >= options.getPendingLimit()) {
+            // processor is starting or stopping
+            throw new IllegalStateException("Pending queue overflow: id=" + entry.key);
+        }
+
+        if (limited) {
+            body = admit(entry, body, done);
+            if (body == null) {
+                if (!lanes.isEmpty() && entry.inFlight == 0 && entry.queued() == 0) {
+                    // lane entry only tracks pending messages of key
+                    keys.remove(entry.key, entry);
+                }
+                return;
+            }
+        }
+
+        int size = sizeOf(body);
+        entry.lastSeen = System.currentTimeMillis();
+        entry.items += size;
+        pending += size;
+
+        if (lanes.isEmpty()) {
+            touch(entry);
+        }
+
+        if (fair) {
+            // lane takes messages of its keys in turn
+            entry.queue().add(new Pending(body, done, System.nanoTime()));
+            activate(entry);
+            return;
+        }
+
+        if (entry.active && entry.queued() == 0 && entry.inFlight < window && ready(entry)) {
+            forward(targetOf(entry), body, done, entry, System.nanoTime());
+        } else {
+            // processor is not ready, window is full or key moves to other lane, message will be dispatched later
+            entry.queue().add(new Pending(body, done, System.nanoTime()));
+            drain(entry);
+        }
+    }
+
+    /**
+     * Entry of new key: per-key processor is deployed, lane entry is active at once.
+     */
+    private @Nonnull Entry<K> create(
+            @Nonnull K id) {
+
+        if (lanes.isEmpty()) {
+            return deploy(id);
+        }
+
+        int hash = keys.hash(id);
+        int lane = laneOf(hash);
+
+        Entry<K> entry = new Entry<>(id, true);
+        entry.hash = hash;
+        entry.lane = lane;
+        if (fair && weights != null) {
+            entry.weight = Math.max(1, weights.applyAsInt(id));
+        }
+        keys.put(id, entry);
+        return entry;
+    }
+
+    /**
+     * Apply overflow policy to items of incoming message (item or batch of items of key),
+     * items are admitted one by one: batch which does not fit into limits is cut to its first
+     * items which do.
+     *
+     * @return accepted part of message, null if nothing is accepted
+     */
+    private @Nullable Object admit(
+            @Nonnull Entry<K> entry,
+            @Nonnull Object body,
+            @Nonnull Handler<AsyncResult<Object>> done) {
+
+        int size = sizeOf(body);
+        int room = room(entry);
+
+        if (room >= size) {
+            return body;
+        }
+
+        switch (options.getOverflowPolicy()) {
+
+            case REJECT:
+                return reject(body, room, done);
+
+            case DROP_OLDEST:
+                Pending oldest;
+                while (room < size && (oldest = entry.queued() > 0 ? entry.queue().poll() : null) != null) {
+                    int dropped = sizeOf(oldest.body);
+                    entry.items -= dropped;
+                    pending -= dropped;
+                    droppedOldest.add(dropped);
+                    release(oldest.body);
+                    oldest.done.handle(Future.succeededFuture());
+                    room = room(entry);
+                }
+                // nothing more to drop but incoming
+                return room >= size ? body : dropNewest(body, room, done);
+
+            case DROP_NEWEST:
+            default:
+                return dropNewest(body, room, done);
+        }
+    }
+
+    /**
+     * Count of items key can take before one of pending limits is reached.
+     */
+    private int room(
+            @Nonnull Entry<K> entry) {
+
+        int room = Integer.MAX_VALUE;
+        if (options.getMaxPendingPerKey() > 0) {
+            room = Math.min(room, options.getMaxPendingPerKey() - entry.items);
+        }
+        if (options.getMaxPending() > 0) {
+            room = Math.min(room, options.getMaxPending() - pending);
+        }
+
+        return room;
+    }
+
+    /**
+     * Drop incoming items over {@code room}, message is replied with no output
+     * (dropped items of batch with null outputs).
+     *
+     * @return accepted part of message, null if nothing is accepted
+     */
+    private @Nullable Object dropNewest(
+            @Nonnull Object body,
+            int room,
+            @Nonnull Handler<AsyncResult<Object>> done) {
+
+        if (room <= 0) {
+            droppedNewest.add(sizeOf(body));
+            release(body);
+            done.handle(Future.succeededFuture());
+            return null;
+        }
+
+        droppedNewest.add(sizeOf(body) - room);
+        return cut(body, room);
+    }
+
+    /**
+     * Reject incoming items over {@code room}, message is failed
+     * (rejected items of batch are replied with null outputs, as failed items of batch are).
+     *
+     * @return accepted part of message, null if nothing is accepted
+     */
+    private @Nullable Object reject(
+            @Nonnull Object body,
+            int room,
+            @Nonnull Handler<AsyncResult<Object>> done) {
+
+        if (room <= 0) {
+            rejected.add(sizeOf(body));
+            release(body);
+            done.handle(Future.failedFuture(new IllegalStateException("Pending limit reached")));
+            return null;
+        }
+
+        rejected.add(sizeOf(body) - room);
+        return cut(body, room);
+    }
+
+    /**
+     * First {@code count} items of batch, others are released.
+     */
+    private static @Nonnull Batch<Object> cut(
+            @Nonnull Object body,
+            int count) {
+
+        @SuppressWarnings("unchecked")
+        Batch<Object> batch = (Batch<Object>) body;
+
+        Batch<Object> head = new Batch<>(count);
+        for (int i = 0; i < batch.size(); i++) {
+            if (i < count) {
+                head.add(batch.get(i));
+            } else {
+                ReferenceCountUtil.release(batch.get(i));
+            }
+        }
+
+        return head;
+    }
+
+    /**
+     * Count of items in message, which is charged against pending limits.
+     */
+    private static int sizeOf(
+            @Nonnull Object body) {
+
+        return body instanceof Batch ? ((Batch<?>) body).size() : 1;
+    }
+
+    /**
+     * Hand queued messages of key to processor while it is ready and window is not full
+     * (and key does not move to other lane).
+     */
+    private void drain(
+            @Nonnull Entry<K> entry) {
+
+        if (fair) {
+            activate(entry);
+            return;
+        }
+
+        while (entry.active && entry.queued() > 0 && entry.inFlight < window && ready(entry)) {
+            Pending p = entry.queue().poll();
+            forward(targetOf(entry), p.body, p.done, entry, p.since);
+        }
+    }
+
+    private @Nonnull Entry<K> deploy(
+            @Nonnull K id) {
+
+        return deploy(id, null);
+    }
+
+    /**
+     * @param deployed completed when processor is deployed or its deploy fails (fail is logged)
+     */
+    private @Nonnull Entry<K> deploy(
+            @Nonnull K id,
+            @Nullable Future<Void> deployed) {
+
+        ParallelProcessor<K, I, O> pp = new ParallelProcessor<>(
+                id,
+                endpointMapper.apply(id),
+                keys::key,
+                processorOf(id),
+                options.getExecutionMode());
+
+        Entry<K> entry = new Entry<>(id, false);
+        entry.processor = pp;
+
+        assert keys.find(id) == null;
+        keys.put(id, entry);
+        touch(entry);
+
+        getVertx().deployVerticle(
+                pp,
+                ParallelProcessor.deploymentOptions(options.getExecutionMode()),
+                (HandlerLoggable<AsyncResult<String>>) (async) -> {
+
+                    if (async.succeeded()) {
+
+                        entry.deploymentID = async.result();
+                        entry.lastSeen = System.currentTimeMillis();
+                        entry.active = true;
+                        deployedProcessors++;
+
+                        drain(entry);
+
+                    } else {
+
+                        _LOG.warn("{0}: parallel processor deploying fail: id={1}",
+                                async.cause(),
+                                deploymentID(),
+                                id.toString());
+
+                        keys.remove(id, entry);
+                        unlink(entry);
+                        processorRemoved(id);
+
+                        // queued messages never reach processor, which would release them
+                        Pending p;
+                        while ((p = entry.queue().poll()) != null) {
+                            entry.items -= sizeOf(p.body);
+                            pending -= sizeOf(p.body);
+                            release(p.body);
+                            p.done.handle(Future.failedFuture(async.cause()));
+                        }
+                    }
+
+                    if (deployed != null) {
+                        deployed.complete();
+                    }
+                });
+
+        return entry;
+    }
+
+    /**
+     * Warm start file of per-key mode, null if it is not set.
+     */
+    private @Nullable Path warmStartFile() {
+
+        String file = options.getWarmStartFile();
+        if (file == null || options.getLanes() > 0) {
+            return null;
+        }
+
+        if (keyEncoder == null || keyDecoder == null) {
+            throw new IllegalStateException("Key codec is not set");
+        }
+
+        return Paths.get(file);
+    }
+
+    /**
+     * Deploy processors of keys of warm start file seen recently, least recently used first,
+     * so order of use is kept.
+     */
+    @SuppressWarnings("rawtypes")
+    private void warmStart(
+            @Nonnull Path file,
+            @Nonnull List<Future> deployed)
+            throws IOException {
+
+        KnownKeys known = KnownKeys.read(file, System.currentTimeMillis() - options.getWarmStartMaxAge());
+        Function<String, K> decoder = Objects.requireNonNull(keyDecoder);
+
+        // all keys are decoded before any deploy, so malformed key means cold start
+        List<K> ids = new ArrayList<>(known.size());
+        for (int i = 0; i < known.size(); i++) {
+            ids.add(Objects.requireNonNull(decoder.apply(known.key(i))));
+        }
+
+        List<Future> warmed = new ArrayList<>(ids.size());
+        for (K id : ids) {
+
+            if (keys.find(id) != null) continue;
+
+            Future<Void> warm = Future.future();
+            deploy(id, warm);
+            warmed.add(warm);
+        }
+
+        long started = System.nanoTime();
+        Future<Void> done = Future.future();
+        deployed.add(done);
+
+        // warm deploys do not fail
+        CompositeFuture.all(warmed).setHandler((HandlerLoggable<AsyncResult<CompositeFuture>>) (async) -> {
+
+            _LOG.info("{0}: router warm started: file={1}, processors={2,number,#}, took={3,number,#} ms",
+                    deploymentID(),
+                    file,
+                    deployedProcessors,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+            done.complete();
+        });
+    }
+
+    /**
+     * Keys of per-key processors in order of use, least recently used first.
+     */
+    private @Nonnull KnownKeys knownKeys() {
+
+        Function<K, String> encoder = Objects.requireNonNull(keyEncoder);
+
+        KnownKeys known = new KnownKeys();
+        for (Entry<K> entry = oldest; entry != null; entry = entry.next) {
+            known.add(encoder.apply(entry.key), entry.lastSeen);
+        }
+
+        return known;
+    }
+
+    /**
+     * Write keys into warm start file on worker thread, writes do not overlap.
+     */
+    private void writeKeys(
+            @Nonnull Path file) {
+
+        KnownKeys known = knownKeys();
+
+        writeKeys(file, known, (HandlerLoggable<AsyncResult<Void>>) (async) -> {
+            if (async.succeeded()) {
+                _LOG.debug("{0}: router keys written: file={1}, keys={2,number,#}",
+                        deploymentID(),
+                        file,
+                        known.size());
+            } else {
+                _LOG.warn("{0}: router keys writing fail: file={1}",
+                        async.cause(),
+                        deploymentID(),
+                        file);
+            }
+        });
+    }
+
+    private void writeKeys(
+            @Nonnull Path file,
+            @Nonnull KnownKeys known,
+            @Nonnull Handler<AsyncResult<Void>> done) {
+
+        getVertx().<Void>executeBlocking(
+                (written) -> {
+                    try {
+                        known.write(file);
+                        written.complete();
+                    } catch (IOException ex) {
+                        written.fail(ex);
+                    }
+                },
+                true,
+                done);
+    }
+
+    /**
+     * Per-key processor or lane processor of entry.
+     */
+    private @Nonnull ParallelProcessor<?, ?, ?> targetOf(
+            @Nonnull Entry<K> entry) {
+
+        return entry.processor != null
+                ? entry.processor
+                : lanes.get(entry.lane).processor;
+    }
+
+    /**
+     * @param since time (ns) message was accepted by router, latency of lane is counted from it
+     */
+    private void forward(
+            @Nonnull ParallelProcessor<?, ?, ?> processor,
+            @Nonnull Object body,
+            @Nonnull Handler<AsyncResult<Object>> done,
+            @Nullable Entry<K> entry,
+            long since) {
+
+        int size = sizeOf(body);
+        if (entry != null) {
+            entry.inFlight++;
+        }
+
+        // processor is counted busy till it processes message, even after reply timeout
+        long sequence = processor.sent();
+
+        Lane<K> lane = entry != null && entry.lane >= 0 ? lanes.get(entry.lane) : null;
+        if (lane != null) {
+            lane.inFlight++;
+        }
+
+        getVertx().eventBus().send(
+                processor.getEndpoint(),
+                body,
+                (HandlerLoggable<AsyncResult<Message<Object>>>) (out) -> {
+
+                    if (out.failed()
+                            && out.cause() instanceof ReplyException
+                            && ((ReplyException) out.cause()).failureType() == ReplyFailure.NO_HANDLERS) {
+                        processor.lost();
+                    }
+
+                    if (lane != null
+                            && out.failed()
+                            && out.cause() instanceof ReplyException
+                            && ((ReplyException) out.cause()).failureType() == ReplyFailure.TIMEOUT
+                            && !processor.isFinished(sequence)) {
+                        // lane still runs message, key must not move to other lane till it ends
+                        lane.timedOut.add(new TimedOut<>(sequence, Objects.requireNonNull(entry), size, since));
+                        checkTimedOut();
+                    } else {
+                        finished(lane, entry, size, since);
+                    }
+
+                    done.handle(out.succeeded()
+                            ? Future.succeededFuture(out.result().body())
+                            : Future.failedFuture(out.cause()));
+                });
+    }
+
+    /**
+     * Message sent to processor is processed (or lost) and its reply is handled.
+     */
+    private void finished(
+            @Nullable Lane<K> lane,
+            @Nullable Entry<K> entry,
+            int size,
+            long since) {
+
+        if (lane != null) {
+            lane.inFlight--;
+            lane.latencyNanos += System.nanoTime() - since;
+            lane.replies++;
+        }
+
+        if (entry != null) {
+
+            entry.inFlight--;
+            entry.items -= size;
+            pending -= size;
+
+            drain(entry);
+
+            if (!lanes.isEmpty() && entry.inFlight == 0 && entry.queued() == 0) {
+                // lane entry only tracks pending messages of key
+                keys.remove(entry.key, entry);
+            }
+        }
+
+        if (fair && lane != null) {
+            schedule(lane);
+        }
+
+        if (lane != null && lane.inFlight == 0 && lanes.size() > activeLanes) {
+            retire();
+        }
+    }
+
+    /**
+     * Finish messages of lanes, replies of which timed out, which lanes processed since last
+     * check, check again later while some are left.
+     */
+    private void checkTimedOut() {
+
+        if (timedOutTimer != -1L) {
+            // already scheduled
+            return;
+        }
+
+        timedOutTimer = getVertx().setTimer(
+                TIMED_OUT_CHECK_PERIOD,
+                (HandlerLoggable<Long>) (timer) -> {
+
+                    timedOutTimer = -1L;
+
+                    // finishing may retire lanes
+                    boolean left = false;
+                    for (Lane<K> lane : new ArrayList<>(lanes)) {
+
+                        TimedOut<K> t;
+                        while ((t = lane.timedOut.peek()) != null && lane.processor.isFinished(t.sequence)) {
+                            lane.timedOut.poll();
+                            finished(lane, t.entry, t.size, t.since);
+                        }
+
+                        left |= !lane.timedOut.isEmpty();
+                    }
+
+                    if (left) {
+                        checkTimedOut();
+                    }
+                });
+    }
+
+    private void evictIdle() {
+
+        long now = System.currentTimeMillis();
+
+        Entry<K> next;
+        for (Entry<K> entry = oldest; entry != null; entry = next) {
+
+            next = entry.next;
+
+            if (now - entry.lastSeen < options.getIdleTimeout()) {
+                // all following entries are used more recently
+                break;
+            }
+
+            if (!entry.active || entry.inFlight > 0 || entry.queued() > 0) {
+                continue;
+            }
+
+            if (entry.processor != null && entry.processor.isBusy()) {
+                // reply timed out, but processor still runs message
+                continue;
+            }
+
+            entry.active = false;
+
+            K id = entry.key;
+            Entry<K> idle = entry;
+
+            _LOG.debug("{0}: try undeploy idle parallel processor: id={1}",
+                    deploymentID(),
+                    id.toString());
+
+            getVertx().undeploy(
+                    Objects.requireNonNull(entry.deploymentID),
+                    (HandlerLoggable<AsyncResult<Void>>) (async) -> {
+
+                        if (async.failed()) {
+                            _LOG.warn("{0}: idle parallel processor undeploying fail: id={1}",
+                                    async.cause(),
+                                    deploymentID(),
+                                    id.toString());
+                        }
+
+                        boolean _removed = keys.remove(id, idle);
+                        assert _removed;
+                        unlink(idle);
+                        deployedProcessors--;
+                        processorRemoved(id);
+
+                        // messages queued while stopping go to newly deployed processor
+                        Pending p;
+                        while ((p = idle.queue().poll()) != null) {
+                            idle.items -= sizeOf(p.body);
+                            pending -= sizeOf(p.body);
+                            dispatch(id, p.body, p.done);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Move per-key processor to most recently used end.
+     */
+    private void touch(
+            @Nonnull Entry<K> entry) {
+
+        if (newest == entry) {
+            return;
+        }
+
+        unlink(entry);
+
+        entry.previous = newest;
+        if (newest != null) {
+            newest.next = entry;
+        } else {
+            oldest = entry;
+        }
+        newest = entry;
+    }
+
+    private void unlink(
+            @Nonnull Entry<K> entry) {
+
+        if (entry.previous != null) {
+            entry.previous.next = entry.next;
+        } else if (oldest == entry) {
+            oldest = entry.next;
+        }
+
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        } else if (newest == entry) {
+            newest = entry.previous;
+        }
+
+        entry.previous = null;
+        entry.next = null;
+    }
+
+    private @Nonnull ParallelProcessor<?, ?, ?> laneProcessor(
+            int hash) {
+
+        return lanes.get(laneOf(hash)).processor;
+    }
+
+    /**
+     * Deploy next lane, it is not active until number of active lanes includes it.
+     */
+    private @Nonnull Future<String> deployLane() {
+
+        int index = lanes.size();
+
+        ParallelProcessor<Integer, I, O> pp = new ParallelProcessor<>(
+                index,
+                String.format("%slane/%d/", endpointBase, index),
+                // with autoscaling key stays on its lane while it has messages in flight
+                autoscaling ? in -> index : in -> laneOf(keys.itemHash(in)),
+                processor,
+                options.getExecutionMode());
+
+        Lane<K> lane = new Lane<>(pp);
+        lanes.add(lane);
+
+        DeploymentOptions deploymentOptions = ParallelProcessor.deploymentOptions(options.getExecutionMode());
+        if (lanePool != null) {
+            deploymentOptions
+                    .setWorkerPoolName(lanePoolName())
+                    .setWorkerPoolSize(options.getMaxLanes());
+        }
+
+        Future<String> deployed = Future.future();
+        getVertx().deployVerticle(
+                pp,
+                deploymentOptions,
+                (HandlerLoggable<AsyncResult<String>>) (async) -> {
+                    if (async.succeeded()) {
+                        lane.deploymentID = async.result();
+                    }
+                    deployed.handle(async);
+                });
+
+        return deployed;
+    }
+
+    private @Nonnull String lanePoolName() {
+        return endpointBase + "lanes";
+    }
+
+    /**
+     * Add lanes when they are loaded, remove one lane when load stays low for several checks.
+     */
+    private void scale() {
+
+        int active = activeLanes;
+
+        long latencyNanos = 0L;
+        long replies = 0L;
+        for (Lane<K> lane : lanes) {
+            latencyNanos += lane.latencyNanos;
+            replies += lane.replies;
+            lane.latencyNanos = 0L;
+            lane.replies = 0;
+        }
+
+        // lanes are tracked, so pending are messages in flight and waiting in router
+        double depth = (double) pending / active;
+        double latency = replies > 0 ? latencyNanos / 1e6 / replies : 0.0;
+
+        retire();
+
+        if (scaling) return;
+
+        int minLanes = Math.min(options.getMinLanes(), options.getLanes());
+
+        if ((depth > options.getScaleUpDepth() || latency > options.getScaleUpLatency())
+                && active < options.getMaxLanes()) {
+
+            calm = 0;
+            resize(Math.min(options.getMaxLanes(), active * 2), depth, latency);
+
+        } else if (depth < options.getScaleUpDepth() / 4.0
+                && latency < options.getScaleUpLatency() / 4.0
+                && active > minLanes) {
+
+            if (++calm >= SCALE_DOWN_CHECKS) {
+                calm = 0;
+                resize(active - 1, depth, latency);
+            }
+
+        } else {
+            calm = 0;
+        }
+    }
+
+    private void resize(
+            int target,
+            double depth,
+            double latency) {
+
+        int active = activeLanes;
+
+        if (target < active) {
+
+            // keys of removed lanes move when they have nothing in flight
+            activeLanes = target;
+            rescales.increment();
+            retire();
+
+            _LOG.info("{0}: router lanes removed: lanes={1,number,#}, depth={2,number,#.#}, latency={3,number,#.#} ms",
+                    deploymentID(),
+                    target,
+                    depth,
+                    latency);
+            return;
+        }
+
+        // lanes being removed are reused
+        @SuppressWarnings("rawtypes")
+        List<Future> deployed = new ArrayList<>();
+        while (lanes.size() < target) {
+            deployed.add(deployLane());
+        }
+
+        scaling = true;
+        CompositeFuture.all(deployed).setHandler((HandlerLoggable<AsyncResult<CompositeFuture>>) (async) -> {
+
+            scaling = false;
+
+            if (async.failed()) {
+                _LOG.warn("{0}: router lanes adding fail: lanes={1,number,#}",
+                        async.cause(),
+                        deploymentID(),
+                        target);
+                retire();
+                return;
+            }
+
+            activeLanes = target;
+            rescales.increment();
+
+            _LOG.info("{0}: router lanes added: lanes={1,number,#}, depth={2,number,#.#}, latency={3,number,#.#} ms",
+                    deploymentID(),
+                    target,
+                    depth,
+                    latency);
+        });
+    }
+
+    /**
+     * Undeploy inactive lanes from last one while they have nothing in flight.
+     */
+    private void retire() {
+
+        if (scaling) return;
+
+        while (lanes.size() > activeLanes) {
+
+            Lane<K> lane = lanes.get(lanes.size() - 1);
+            if (lane.inFlight > 0) {
+                break;
+            }
+
+            lanes.remove(lanes.size() - 1);
+
+            String laneDeploymentID = lane.deploymentID;
+            if (laneDeploymentID != null) {
+                getVertx().undeploy(
+                        laneDeploymentID,
+                        (HandlerLoggable<AsyncResult<Void>>) (async) -> {
+                            if (async.failed()) {
+                                _LOG.warn("{0}: lane undeploying fail: endpoint={1}",
+                                        async.cause(),
+                                        deploymentID(),
+                                        lane.processor.getEndpoint());
+                            }
+                        });
+            }
+        }
+    }
+
+    /**
+     * Let idle threads of worker pool end, vert.x creates fixed pool of threads which never end,
+     * so its executor is taken from implementation. Returns false if it is not available.
+     */
+    private static boolean shrinkable(
+            @Nonnull WorkerExecutor pool,
+            long keepAlive) {
+
+        try {
+
+            Method getPool = pool.getClass().getMethod("getPool");
+            getPool.setAccessible(true);
+            Object workerPool = getPool.invoke(pool);
+
+            // shared pool is subclass of WorkerPool
+            Class<?> type = workerPool.getClass();
+            while (!type.getSimpleName().equals("WorkerPool")) {
+                type = type.getSuperclass();
+            }
+
+            Method executor = type.getDeclaredMethod("executor");
+            executor.setAccessible(true);
+            ExecutorService service = (ExecutorService) executor.invoke(workerPool);
+
+            if (service instanceof ThreadPoolExecutor) {
+                ((ThreadPoolExecutor) service).setKeepAliveTime(keepAlive, TimeUnit.MILLISECONDS);
+                ((ThreadPoolExecutor) service).allowCoreThreadTimeOut(true);
+                return true;
+            }
+
+            return false;
+
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Put lane entry, which has messages to send, into backlog of its lane and hand them to lane.
+     */
+    private void activate(
+            @Nonnull Entry<K> entry) {
+
+        if (entry.scheduled || entry.queued() == 0 || entry.inFlight >= window || !ready(entry)) {
+            // it is activated again when it can send
+            return;
+        }
+
+        entry.scheduled = true;
+        entry.deficit = options.getFairQuantum() * entry.weight;
+
+        Lane<K> lane = lanes.get(entry.lane);
+        lane.backlog.add(entry);
+        schedule(lane);
+    }
+
+    /**
+     * Hand messages of backlog to lane while its window is not full, deficit round robin: key at
+     * head of backlog hands up to quantum times its weight messages, then goes to tail.
+     */
+    private void schedule(
+            @Nonnull Lane<K> lane) {
+
+        Entry<K> entry;
+        while (lane.inFlight < options.getLaneWindow() && (entry = lane.backlog.peek()) != null) {
+
+            if (entry.queued() == 0 || entry.inFlight >= window || !ready(entry) || lanes.get(entry.lane) != lane) {
+                // nothing to send (messages are dropped), window of key is full or key moves to other lane
+                lane.backlog.poll();
+                entry.scheduled = false;
+                activate(entry);
+                continue;
+            }
+
+            Pending p = entry.queue().poll();
+            forward(targetOf(entry), p.body, p.done, entry, p.since);
+
+            if (entry.queued() == 0) {
+                lane.backlog.poll();
+                entry.scheduled = false;
+            } else if (--entry.deficit <= 0) {
+                lane.backlog.poll();
+                entry.deficit = options.getFairQuantum() * entry.weight;
+                lane.backlog.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Whether messages of entry can be forwarded now: with autoscaling lane entry moves to lane
+     * of its key when it has nothing in flight, until then its messages wait in router.
+     */
+    private boolean ready(
+            @Nonnull Entry<K> entry) {
+
+        if (!autoscaling || entry.lane < 0) {
+            return true;
+        }
+
+        int lane = laneOf(entry.hash);
+        if (lane == entry.lane) {
+            return true;
+        }
+
+        if (entry.inFlight > 0) {
+            return false;
+        }
+
+        entry.lane = lane;
+        return true;
+    }
+
+    private static void traceRouted(
+            @Nullable Object body) {
+
+        if (body instanceof Batch) {
+            Batch<?> batch = (Batch<?>) body;
+            for (int i = 0; i < batch.size(); i++) {
+                traceRouted(batch.get(i));
+            }
+        } else if (body instanceof Traced) {
+
+            Traced traced = (Traced) body;
+            long now = System.nanoTime();
+
+            if (traced.getReceivedNanos() != 0L) {
+                Metrics.RECEIVE_TO_ROUTED.record(now - traced.getReceivedNanos());
+            }
+
+            traced.setRoutedNanos(now);
+        }
+    }
+
+    private static void release(
+            @Nonnull Object body) {
+
+        if (body instanceof Batch) {
+            Batch<?> batch = (Batch<?>) body;
+            for (int i = 0; i < batch.size(); i++) {
+                ReferenceCountUtil.release(batch.get(i));
+            }
+        } else {
+            ReferenceCountUtil.release(body);
+        }
+    }
+
+    /**
+     * Count of items accepted by router and not yet processed, batch counts its items
+     * (in lanes mode it is tracked only when pending limits are set).
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    /**
+     * Count of incoming items dropped by {@link OverflowPolicy#DROP_NEWEST}
+     * (or by {@link OverflowPolicy#DROP_OLDEST} when there was nothing older to drop).
+     */
+    public long getDroppedNewest() {
+        return droppedNewest.sum();
+    }
+
+    /**
+     * Count of queued items dropped by {@link OverflowPolicy#DROP_OLDEST}.
+     */
+    public long getDroppedOldest() {
+        return droppedOldest.sum();
+    }
+
+    /**
+     * Count of items failed by {@link OverflowPolicy#REJECT}.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * State of key, accessed from router context only: per-key processor or, in lanes mode,
+     * pending messages of key (removed when there are none).
+     */
+    static class Entry<K> {
+
+        @Nonnull final K key;
+
+        @Nullable String deploymentID = null;
+        boolean active;
+
+        // per-key processor only
+        @Nullable ParallelProcessor<K, ?, ?> processor = null;
+
+        // lane entry only: hash of key and its current lane
+        int hash = 0;
+        int lane = -1;
+
+        // fair scheduling only: weight of key, messages left in its turn, whether it is in backlog of lane
+        int weight = 1;
+        int deficit = 0;
+        boolean scheduled = false;
+        long lastSeen = System.currentTimeMillis();
+        int inFlight = 0;
+
+        // items of key accepted and not yet processed, batch counts its items
+        int items = 0;
+
+        // neighbours in order of use (per-key processors only)
+        @Nullable Entry<K> previous = null;
+        @Nullable Entry<K> next = null;
+
+        // messages waiting for processor start/stop or free window
+        @Nullable private Queue<Pending> queue = null;
+
+        Entry(
+                @Nonnull K key,
+                boolean active) {
+
+            this.key = key;
+            this.active = active;
+        }
+
+        int queued() {
+            return queue == null ? 0 : queue.size();
+        }
+
+        @Nonnull Queue<Pending> queue() {
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+            }
+            return queue;
+        }
+    }
+
+    /**
+     * Lane processor and its load, accessed from router context only.
+     */
+    private static class Lane<K> {
+
+        @Nonnull final ParallelProcessor<Integer, ?, ?> processor;
+
+        // fair scheduling only: keys of lane, which have messages waiting in router
+        @Nonnull final Queue<Entry<K>> backlog = new ArrayDeque<>();
+
+        @Nullable String deploymentID = null;
+        int inFlight = 0;
+
+        // messages in flight, replies of which timed out before lane processed them, in order of sending
+        @Nonnull final Queue<TimedOut<K>> timedOut = new ArrayDeque<>();
+
+        // since last load check
+        long latencyNanos = 0L;
+        int replies = 0;
+
+        Lane(
+                @Nonnull ParallelProcessor<Integer, ?, ?> processor) {
+
+            this.processor = processor;
+        }
+    }
+
+    /**
+     * Message of lane, reply of which timed out, it is in flight until lane processes it.
+     */
+    private static class TimedOut<K> {
+
+        final long sequence;
+        @Nonnull final Entry<K> entry;
+        final int size;
+        final long since;
+
+        TimedOut(
+                long sequence,
+                @Nonnull Entry<K> entry,
+                int size,
+                long since) {
+
+            this.sequence = sequence;
+            this.entry = entry;
+            this.size = size;
+            this.since = since;
+        }
+    }
+
+    /**
+     * Message waiting for its processor.
+     */
+    private static class Pending {
+
+        @Nonnull final Object body;
+        @Nonnull final Handler<AsyncResult<Object>> done;
+        final long since;
+
+        Pending(
+                @Nonnull Object body,
+                @Nonnull Handler<AsyncResult<Object>> done,
+                long since) {
+
+            this.body = body;
+            this.done = done;
+            this.since = since;
+        }
+    }
+
+    /**
+     * Items of batch going to same processor, with their positions in batch.
+     */
+    private static class Group<K, I> {
+
+        @Nonnull final K id;
+        @Nonnull final Batch<I> items = new Batch<>(8);
+        @Nonnull int[] indexes = new int[8];
+
+        Group(
+                @Nonnull K id) {
+
+            this.id = id;
+        }
+
+        void add(
+                @Nullable I item,
+                int index) {
+
+            if (items.size() == indexes.length) {
+                indexes = Arrays.copyOf(indexes, indexes.length * 2);
+            }
+
+            indexes[items.size()] = index;
+            items.add(item);
+        }
+    }
+
+}
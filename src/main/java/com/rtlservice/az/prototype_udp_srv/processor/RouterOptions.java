@@ -0,0 +1,570 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Options of {@link Router}.
+ *
+ * @see Router
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class RouterOptions {
+
+    /**
+     * Default number of processing lanes = 0 (one processor per key).
+     */
+    public static final int DEFAULT_LANES = 0;
+
+    /**
+     * Default idle timeout of per-key processor = 0 (never evicted).
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = 0L;
+
+    /**
+     * Default period of idle processors check = 1000 ms.
+     */
+    public static final long DEFAULT_IDLE_CHECK_PERIOD = 1000L;
+
+    /**
+     * Default limit of messages queued for key while its processor is starting or stopping = 64.
+     */
+    public static final int DEFAULT_PENDING_LIMIT = 64;
+
+    /**
+     * Default limit of pending messages of one key = 0 (unlimited).
+     */
+    public static final int DEFAULT_MAX_PENDING_PER_KEY = 0;
+
+    /**
+     * Default limit of pending messages of all keys = 0 (unlimited).
+     */
+    public static final int DEFAULT_MAX_PENDING = 0;
+
+    /**
+     * Default overflow policy = {@link OverflowPolicy#REJECT}.
+     */
+    public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.REJECT;
+
+    /**
+     * Default count of messages of one key handed to processor at once = 8.
+     */
+    public static final int DEFAULT_KEY_WINDOW = 8;
+
+    /**
+     * Default execution mode of processors = {@link ExecutionMode#WORKER}.
+     */
+    public static final ExecutionMode DEFAULT_EXECUTION_MODE = ExecutionMode.WORKER;
+
+    /**
+     * Default minimal number of lanes with autoscaling = 1.
+     */
+    public static final int DEFAULT_MIN_LANES = 1;
+
+    /**
+     * Default maximal number of lanes = 0 (number of lanes is fixed).
+     */
+    public static final int DEFAULT_MAX_LANES = 0;
+
+    /**
+     * Default period of lanes load check = 1000 ms.
+     */
+    public static final long DEFAULT_SCALE_CHECK_PERIOD = 1000L;
+
+    /**
+     * Default mean count of messages in flight per lane, which adds lanes = 16.
+     */
+    public static final int DEFAULT_SCALE_UP_DEPTH = 16;
+
+    /**
+     * Default mean latency of lane, which adds lanes = 50 ms.
+     */
+    public static final long DEFAULT_SCALE_UP_LATENCY = 50L;
+
+    /**
+     * Default scheduling policy of lanes = {@link SchedulingPolicy#FIFO}.
+     */
+    public static final SchedulingPolicy DEFAULT_SCHEDULING_POLICY = SchedulingPolicy.FIFO;
+
+    /**
+     * Default count of messages in flight per lane with fair scheduling = 4.
+     */
+    public static final int DEFAULT_LANE_WINDOW = 4;
+
+    /**
+     * Default count of messages of key of weight 1 per round of fair scheduling = 1.
+     */
+    public static final int DEFAULT_FAIR_QUANTUM = 1;
+
+    /**
+     * Default file of known keys for warm start = null (no warm start).
+     */
+    public static final String DEFAULT_WARM_START_FILE = null;
+
+    /**
+     * Default period of writing known keys into warm start file = 60000 ms.
+     */
+    public static final long DEFAULT_WARM_START_PERIOD = 60000L;
+
+    /**
+     * Default age of key, above which its processor is not deployed by warm start = 3600000 ms.
+     */
+    public static final long DEFAULT_WARM_START_MAX_AGE = 3600000L;
+
+    private int lanes;
+    private long idleTimeout;
+    private long idleCheckPeriod;
+    private int pendingLimit;
+    private int maxPendingPerKey;
+    private int maxPending;
+    @Nonnull private OverflowPolicy overflowPolicy;
+    private int keyWindow;
+    @Nonnull private ExecutionMode executionMode;
+    private int minLanes;
+    private int maxLanes;
+    private long scaleCheckPeriod;
+    private int scaleUpDepth;
+    private long scaleUpLatency;
+    @Nonnull private SchedulingPolicy schedulingPolicy;
+    private int laneWindow;
+    private int fairQuantum;
+    @Nullable private String warmStartFile;
+    private long warmStartPeriod;
+    private long warmStartMaxAge;
+
+    public RouterOptions() {
+        this.lanes = DEFAULT_LANES;
+        this.idleTimeout = DEFAULT_IDLE_TIMEOUT;
+        this.idleCheckPeriod = DEFAULT_IDLE_CHECK_PERIOD;
+        this.pendingLimit = DEFAULT_PENDING_LIMIT;
+        this.maxPendingPerKey = DEFAULT_MAX_PENDING_PER_KEY;
+        this.maxPending = DEFAULT_MAX_PENDING;
+        this.overflowPolicy = DEFAULT_OVERFLOW_POLICY;
+        this.keyWindow = DEFAULT_KEY_WINDOW;
+        this.executionMode = DEFAULT_EXECUTION_MODE;
+        this.minLanes = DEFAULT_MIN_LANES;
+        this.maxLanes = DEFAULT_MAX_LANES;
+        this.scaleCheckPeriod = DEFAULT_SCALE_CHECK_PERIOD;
+        this.scaleUpDepth = DEFAULT_SCALE_UP_DEPTH;
+        this.scaleUpLatency = DEFAULT_SCALE_UP_LATENCY;
+        this.schedulingPolicy = DEFAULT_SCHEDULING_POLICY;
+        this.laneWindow = DEFAULT_LANE_WINDOW;
+        this.fairQuantum = DEFAULT_FAIR_QUANTUM;
+        this.warmStartFile = DEFAULT_WARM_START_FILE;
+        this.warmStartPeriod = DEFAULT_WARM_START_PERIOD;
+        this.warmStartMaxAge = DEFAULT_WARM_START_MAX_AGE;
+    }
+
+    public RouterOptions(
+            @Nonnull RouterOptions other) {
+
+        this.lanes = other.lanes;
+        this.idleTimeout = other.idleTimeout;
+        this.idleCheckPeriod = other.idleCheckPeriod;
+        this.pendingLimit = other.pendingLimit;
+        this.maxPendingPerKey = other.maxPendingPerKey;
+        this.maxPending = other.maxPending;
+        this.overflowPolicy = other.overflowPolicy;
+        this.keyWindow = other.keyWindow;
+        this.executionMode = other.executionMode;
+        this.minLanes = other.minLanes;
+        this.maxLanes = other.maxLanes;
+        this.scaleCheckPeriod = other.scaleCheckPeriod;
+        this.scaleUpDepth = other.scaleUpDepth;
+        this.scaleUpLatency = other.scaleUpLatency;
+        this.schedulingPolicy = other.schedulingPolicy;
+        this.laneWindow = other.laneWindow;
+        this.fairQuantum = other.fairQuantum;
+        this.warmStartFile = other.warmStartFile;
+        this.warmStartPeriod = other.warmStartPeriod;
+        this.warmStartMaxAge = other.warmStartMaxAge;
+    }
+
+    public RouterOptions(
+            @Nonnull JsonObject json) {
+
+        this(new RouterOptions()
+                .setLanes(json.getInteger("lanes", DEFAULT_LANES))
+                .setIdleTimeout(json.getLong("idleTimeout", DEFAULT_IDLE_TIMEOUT))
+                .setIdleCheckPeriod(json.getLong("idleCheckPeriod", DEFAULT_IDLE_CHECK_PERIOD))
+                .setPendingLimit(json.getInteger("pendingLimit", DEFAULT_PENDING_LIMIT))
+                .setMaxPendingPerKey(json.getInteger("maxPendingPerKey", DEFAULT_MAX_PENDING_PER_KEY))
+                .setMaxPending(json.getInteger("maxPending", DEFAULT_MAX_PENDING))
+                .setOverflowPolicy(OverflowPolicy.valueOf(json.getString("overflowPolicy", DEFAULT_OVERFLOW_POLICY.name())))
+                .setKeyWindow(json.getInteger("keyWindow", DEFAULT_KEY_WINDOW))
+                .setExecutionMode(ExecutionMode.valueOf(json.getString("executionMode", DEFAULT_EXECUTION_MODE.name())))
+                .setMinLanes(json.getInteger("minLanes", DEFAULT_MIN_LANES))
+                .setMaxLanes(json.getInteger("maxLanes", DEFAULT_MAX_LANES))
+                .setScaleCheckPeriod(json.getLong("scaleCheckPeriod", DEFAULT_SCALE_CHECK_PERIOD))
+                .setScaleUpDepth(json.getInteger("scaleUpDepth", DEFAULT_SCALE_UP_DEPTH))
+                .setScaleUpLatency(json.getLong("scaleUpLatency", DEFAULT_SCALE_UP_LATENCY))
+                .setSchedulingPolicy(SchedulingPolicy.valueOf(json.getString("schedulingPolicy", DEFAULT_SCHEDULING_POLICY.name())))
+                .setLaneWindow(json.getInteger("laneWindow", DEFAULT_LANE_WINDOW))
+                .setFairQuantum(json.getInteger("fairQuantum", DEFAULT_FAIR_QUANTUM))
+                .setWarmStartFile(json.getString("warmStartFile", DEFAULT_WARM_START_FILE))
+                .setWarmStartPeriod(json.getLong("warmStartPeriod", DEFAULT_WARM_START_PERIOD))
+                .setWarmStartMaxAge(json.getLong("warmStartMaxAge", DEFAULT_WARM_START_MAX_AGE)));
+    }
+
+    public int getLanes() {
+        return lanes;
+    }
+
+    /**
+     * Set number of ordered processing lanes, keys are hashed onto lanes.
+     * 0 means one processor deployed per key.
+     */
+    public @Nonnull RouterOptions setLanes(
+            int lanes) {
+
+        if (lanes < 0) {
+            throw new IllegalArgumentException("lanes must be >= 0");
+        }
+
+        this.lanes = lanes;
+        return this;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Set time (ms) after which per-key processor without traffic is undeployed.
+     * 0 means never.
+     */
+    public @Nonnull RouterOptions setIdleTimeout(
+            long idleTimeout) {
+
+        if (idleTimeout < 0) {
+            throw new IllegalArgumentException("idleTimeout must be >= 0");
+        }
+
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    public long getIdleCheckPeriod() {
+        return idleCheckPeriod;
+    }
+
+    /**
+     * Set period (ms) of idle processors check.
+     */
+    public @Nonnull RouterOptions setIdleCheckPeriod(
+            long idleCheckPeriod) {
+
+        if (idleCheckPeriod < 1) {
+            throw new IllegalArgumentException("idleCheckPeriod must be >= 1");
+        }
+
+        this.idleCheckPeriod = idleCheckPeriod;
+        return this;
+    }
+
+    public int getPendingLimit() {
+        return pendingLimit;
+    }
+
+    /**
+     * Set limit of messages queued for key while its processor is starting or stopping,
+     * messages over limit are failed.
+     */
+    public @Nonnull RouterOptions setPendingLimit(
+            int pendingLimit) {
+
+        if (pendingLimit < 1) {
+            throw new IllegalArgumentException("pendingLimit must be >= 1");
+        }
+
+        this.pendingLimit = pendingLimit;
+        return this;
+    }
+
+    public int getMaxPendingPerKey() {
+        return maxPendingPerKey;
+    }
+
+    /**
+     * Set limit of messages of one key accepted by router and not yet processed,
+     * 0 means unlimited. Batch counts its items, items of batch are admitted one by one.
+     */
+    public @Nonnull RouterOptions setMaxPendingPerKey(
+            int maxPendingPerKey) {
+
+        if (maxPendingPerKey < 0) {
+            throw new IllegalArgumentException("maxPendingPerKey must be >= 0");
+        }
+
+        this.maxPendingPerKey = maxPendingPerKey;
+        return this;
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    /**
+     * Set limit of messages of all keys accepted by router and not yet processed,
+     * 0 means unlimited. Batch counts its items, items of batch are admitted one by one.
+     */
+    public @Nonnull RouterOptions setMaxPending(
+            int maxPending) {
+
+        if (maxPending < 0) {
+            throw new IllegalArgumentException("maxPending must be >= 0");
+        }
+
+        this.maxPending = maxPending;
+        return this;
+    }
+
+    public @Nonnull OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Set what to do with message when pending limit is reached.
+     */
+    public @Nonnull RouterOptions setOverflowPolicy(
+            @Nonnull OverflowPolicy overflowPolicy) {
+
+        this.overflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    public int getKeyWindow() {
+        return keyWindow;
+    }
+
+    /**
+     * Set count of messages of one key handed to processor at once with
+     * {@link OverflowPolicy#DROP_OLDEST}, the rest wait in router and can be dropped.
+     */
+    public @Nonnull RouterOptions setKeyWindow(
+            int keyWindow) {
+
+        if (keyWindow < 1) {
+            throw new IllegalArgumentException("keyWindow must be >= 1");
+        }
+
+        this.keyWindow = keyWindow;
+        return this;
+    }
+
+    public @Nonnull ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Set where processors run, see {@link ExecutionMode}.
+     */
+    public @Nonnull RouterOptions setExecutionMode(
+            @Nonnull ExecutionMode executionMode) {
+
+        this.executionMode = executionMode;
+        return this;
+    }
+
+    public int getMinLanes() {
+        return minLanes;
+    }
+
+    /**
+     * Set number of lanes, below which autoscaling does not remove lanes.
+     */
+    public @Nonnull RouterOptions setMinLanes(
+            int minLanes) {
+
+        if (minLanes < 1) {
+            throw new IllegalArgumentException("minLanes must be >= 1");
+        }
+
+        this.minLanes = minLanes;
+        return this;
+    }
+
+    public int getMaxLanes() {
+        return maxLanes;
+    }
+
+    /**
+     * Set number of lanes, above which autoscaling does not add lanes. 0 means number of
+     * lanes is fixed, otherwise router starts with {@link #setLanes(int) lanes} and adds or
+     * removes lanes by their load.
+     */
+    public @Nonnull RouterOptions setMaxLanes(
+            int maxLanes) {
+
+        if (maxLanes < 0) {
+            throw new IllegalArgumentException("maxLanes must be >= 0");
+        }
+
+        this.maxLanes = maxLanes;
+        return this;
+    }
+
+    public long getScaleCheckPeriod() {
+        return scaleCheckPeriod;
+    }
+
+    /**
+     * Set period (ms) of lanes load check.
+     */
+    public @Nonnull RouterOptions setScaleCheckPeriod(
+            long scaleCheckPeriod) {
+
+        if (scaleCheckPeriod < 1) {
+            throw new IllegalArgumentException("scaleCheckPeriod must be >= 1");
+        }
+
+        this.scaleCheckPeriod = scaleCheckPeriod;
+        return this;
+    }
+
+    public int getScaleUpDepth() {
+        return scaleUpDepth;
+    }
+
+    /**
+     * Set mean count of messages in flight (or waiting in router) per lane, above which lanes are added;
+     * lanes are removed when it stays below quarter of it.
+     */
+    public @Nonnull RouterOptions setScaleUpDepth(
+            int scaleUpDepth) {
+
+        if (scaleUpDepth < 1) {
+            throw new IllegalArgumentException("scaleUpDepth must be >= 1");
+        }
+
+        this.scaleUpDepth = scaleUpDepth;
+        return this;
+    }
+
+    public long getScaleUpLatency() {
+        return scaleUpLatency;
+    }
+
+    /**
+     * Set mean latency (ms) of messages of lanes (queueing and processing), above which
+     * lanes are added; lanes are removed when it stays below quarter of it.
+     */
+    public @Nonnull RouterOptions setScaleUpLatency(
+            long scaleUpLatency) {
+
+        if (scaleUpLatency < 1) {
+            throw new IllegalArgumentException("scaleUpLatency must be >= 1");
+        }
+
+        this.scaleUpLatency = scaleUpLatency;
+        return this;
+    }
+
+    public @Nonnull SchedulingPolicy getSchedulingPolicy() {
+        return schedulingPolicy;
+    }
+
+    /**
+     * Set order in which lanes take messages of their keys, see {@link SchedulingPolicy}.
+     */
+    public @Nonnull RouterOptions setSchedulingPolicy(
+            @Nonnull SchedulingPolicy schedulingPolicy) {
+
+        this.schedulingPolicy = schedulingPolicy;
+        return this;
+    }
+
+    public int getLaneWindow() {
+        return laneWindow;
+    }
+
+    /**
+     * Set count of messages handed to lane at once with {@link SchedulingPolicy#FAIR},
+     * the rest wait in router; less is fairer, more hides event bus latency.
+     */
+    public @Nonnull RouterOptions setLaneWindow(
+            int laneWindow) {
+
+        if (laneWindow < 1) {
+            throw new IllegalArgumentException("laneWindow must be >= 1");
+        }
+
+        this.laneWindow = laneWindow;
+        return this;
+    }
+
+    public int getFairQuantum() {
+        return fairQuantum;
+    }
+
+    /**
+     * Set count of messages of key of weight 1 handed to lane per round of
+     * {@link SchedulingPolicy#FAIR} scheduling.
+     */
+    public @Nonnull RouterOptions setFairQuantum(
+            int fairQuantum) {
+
+        if (fairQuantum < 1) {
+            throw new IllegalArgumentException("fairQuantum must be >= 1");
+        }
+
+        this.fairQuantum = fairQuantum;
+        return this;
+    }
+
+    public @Nullable String getWarmStartFile() {
+        return warmStartFile;
+    }
+
+    /**
+     * Set file of known keys (per-key mode only): router writes its keys and their last seen
+     * times into it periodically and on stop, and on start deploys processors of keys seen
+     * recently before it accepts messages. Null means no warm start.
+     */
+    public @Nonnull RouterOptions setWarmStartFile(
+            @Nullable String warmStartFile) {
+
+        this.warmStartFile = warmStartFile;
+        return this;
+    }
+
+    public long getWarmStartPeriod() {
+        return warmStartPeriod;
+    }
+
+    /**
+     * Set period (ms) of writing known keys into {@link #setWarmStartFile(String) warm start file}.
+     */
+    public @Nonnull RouterOptions setWarmStartPeriod(
+            long warmStartPeriod) {
+
+        if (warmStartPeriod < 1) {
+            throw new IllegalArgumentException("warmStartPeriod must be >= 1");
+        }
+
+        this.warmStartPeriod = warmStartPeriod;
+        return this;
+    }
+
+    public long getWarmStartMaxAge() {
+        return warmStartMaxAge;
+    }
+
+    /**
+     * Set time (ms) since key was last seen, after which its processor is not deployed by warm start.
+     */
+    public @Nonnull RouterOptions setWarmStartMaxAge(
+            long warmStartMaxAge) {
+
+        if (warmStartMaxAge < 1) {
+            throw new IllegalArgumentException("warmStartMaxAge must be >= 1");
+        }
+
+        this.warmStartMaxAge = warmStartMaxAge;
+        return this;
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+/**
+ * Order in which lane of {@link Router} takes messages of its keys, in both policies messages
+ * of one key are processed in order of arrival.
+ *
+ * @see RouterOptions#setSchedulingPolicy(SchedulingPolicy)
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public enum SchedulingPolicy {
+
+    /**
+     * Messages are handed to lane in order of arrival, burst of one key delays all keys
+     * of lane.
+     */
+    FIFO,
+
+    /**
+     * Messages wait in router and lane takes them in deficit round robin order of keys:
+     * every round key hands up to {@link RouterOptions#setFairQuantum(int) quantum} times
+     * its weight messages, so burst of one key delays others by its share only.
+     */
+    FAIR
+
+}
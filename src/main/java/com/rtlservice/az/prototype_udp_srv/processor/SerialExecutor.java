@@ -0,0 +1,60 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks one by one in order of submission, on thread created by factory when first task
+ * arrives, which ends when there are no more tasks; with virtual threads idle executor costs
+ * no thread.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@ThreadSafe
+final class SerialExecutor
+    implements Executor {
+
+    private static final Logger _LOG = LoggerFactory.getLogger(SerialExecutor.class);
+
+    @Nonnull private final ThreadFactory factory;
+
+    @Nonnull private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    @Nonnull private final AtomicInteger size = new AtomicInteger();
+
+    SerialExecutor(
+            @Nonnull ThreadFactory factory) {
+
+        this.factory = factory;
+    }
+
+    @Override
+    public void execute(
+            @Nonnull Runnable task) {
+
+        tasks.add(task);
+
+        if (size.getAndIncrement() == 0) {
+            factory.newThread(this::drain).start();
+        }
+    }
+
+    private void drain() {
+
+        do {
+            try {
+                tasks.remove().run();
+            } catch (Throwable ex) {
+                _LOG.error("UNCAUGHT EXCEPTION", ex);
+            }
+        } while (size.decrementAndGet() > 0);
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import com.rtlservice.az.prototype_udp_srv.state.State;
+import io.vertx.core.eventbus.Message;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Processor with state of key of message.
+ * <p>
+ * State belongs to processor of key (or lane of key), it is never accessed concurrently
+ * and must not be kept after return.
+ *
+ * @see LongRouter
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@FunctionalInterface
+public interface StatefulProcessor<I, O> {
+
+    O process(
+            @Nonnull Message<I> message,
+            @Nonnull State state);
+
+}
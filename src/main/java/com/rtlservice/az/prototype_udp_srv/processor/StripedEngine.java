@@ -0,0 +1,613 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import com.rtlservice.az.prototype_udp_srv.HandlerLoggable;
+import com.rtlservice.az.prototype_udp_srv.metrics.Metrics;
+import com.rtlservice.az.prototype_udp_srv.metrics.MetricsRegistry;
+import com.rtlservice.az.prototype_udp_srv.metrics.Traced;
+import com.rtlservice.az.prototype_udp_srv.packet.Batch;
+import com.rtlservice.az.prototype_udp_srv.state.StateStore;
+import io.netty.util.ReferenceCountUtil;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Local alternative of {@link Router}, which does not use event bus: items are published
+ * by {@link #offer(Object, Handler)} straight into lock-free ring of stripe of their key
+ * (see {@link MpscRing}), every stripe is drained by its own thread.
+ * <p>
+ * Semantics are the same as of router in lanes mode: keys are hashed onto stripes, so items
+ * of same key are processed one by one in order of offer, processor gets item as
+ * {@link Message} (without reply address) and item is released after processing.
+ * When ring is full item is rejected or dropped according to {@link EngineOptions#setOverflowPolicy(OverflowPolicy)
+ * overflow policy}.
+ * <p>
+ * Engine also listens on its endpoint (local to node), so senders of event bus messages
+ * (single items or {@link Batch batches}) work with it as with router.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@ThreadSafe
+public class StripedEngine<I, O>
+    extends AbstractVerticle {
+
+    private static final Logger _LOG = LoggerFactory.getLogger(StripedEngine.class);
+
+    private static final int BURST = 256;
+
+    @Nonnull private final String endpoint;
+    @Nonnull private final ToLongFunction<I> mapper;
+    @Nonnull private final Function<Message<I>, O> processor;
+    @Nonnull private final EngineOptions options;
+    @Nullable private final StateStore store;
+
+    @Nullable private Supplier<Deduplicator<I>> deduplicators = null;
+    @Nonnull private MetricsRegistry registry = Metrics.REGISTRY;
+
+    @Nonnull private final Stripe<I, O>[] stripes;
+
+    @Nonnull private final LongAdder droppedNewest = new LongAdder();
+    @Nonnull private final LongAdder rejected = new LongAdder();
+
+    @Nullable private volatile MessageConsumer<Object> handler = null;
+
+    public StripedEngine(
+            @Nonnull String endpoint,
+            @Nonnull ToLongFunction<I> mapper,
+            @Nonnull Function<Message<I>, O> processor,
+            @Nonnull EngineOptions options) {
+
+        this(endpoint, mapper, processor, null, options);
+    }
+
+    /**
+     * @param stateSize size of state of key, bytes
+     */
+    public StripedEngine(
+            @Nonnull String endpoint,
+            @Nonnull ToLongFunction<I> mapper,
+            @Nonnull StatefulProcessor<I, O> processor,
+            int stateSize,
+            @Nonnull EngineOptions options) {
+
+        this(
+                endpoint,
+                mapper,
+                processor,
+                new StateStore(
+                        stateSize,
+                        options.getStripes(),
+                        key -> Router.laneOf(Long.hashCode(key), options.getStripes())),
+                options);
+    }
+
+    private StripedEngine(
+            @Nonnull String endpoint,
+            @Nonnull ToLongFunction<I> mapper,
+            @Nonnull Object processor,
+            @Nullable StateStore store,
+            @Nonnull EngineOptions options) {
+
+        this.endpoint = endpoint;
+        this.mapper = mapper;
+        this.options = new EngineOptions(options);
+        this.store = store;
+
+        if (store != null) {
+            // called on thread of stripe of key, which owns partition of key
+            @SuppressWarnings("unchecked")
+            StatefulProcessor<I, O> stateful = (StatefulProcessor<I, O>) processor;
+            this.processor = in -> {
+                long key = mapper.applyAsLong(in.body());
+                return stateful.process(in, store.partitionOf(key).get(key));
+            };
+        } else {
+            @SuppressWarnings("unchecked")
+            Function<Message<I>, O> stateless = (Function<Message<I>, O>) processor;
+            this.processor = stateless;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Stripe<I, O>[] stripes = new Stripe[options.getStripes()];
+        this.stripes = stripes;
+    }
+
+    public @Nonnull String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Store of states of keys, null if processor is stateless. Snapshot and restore it only
+     * while engine is not deployed.
+     */
+    public @Nullable StateStore getStateStore() {
+        return store;
+    }
+
+    /**
+     * Set factory of stages which suppress duplicate items, one stage per stripe is created
+     * on deploy; must be called before deploy.
+     */
+    public @Nonnull StripedEngine<I, O> setDeduplicator(
+            @Nullable Supplier<Deduplicator<I>> deduplicators) {
+
+        this.deduplicators = deduplicators;
+        return this;
+    }
+
+    /**
+     * Set registry of metrics, e.g. {@link MetricsRegistry#withLabel(String, String) labeled} by node
+     * when several nodes run in one JVM ({@link Metrics#REGISTRY} by default); must be called before deploy.
+     */
+    public @Nonnull StripedEngine<I, O> setMetricsRegistry(
+            @Nonnull MetricsRegistry registry) {
+
+        this.registry = registry;
+        return this;
+    }
+
+    @Override
+    public void start(
+            @Nonnull Future<Void> start)
+            throws Exception {
+
+        try {
+
+            _LOG.debug("{0}: try start engine: endpoint={1}, stripes={2,number,#}",
+                    deploymentID(),
+                    endpoint,
+                    stripes.length);
+
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i] = new Stripe<>(
+                        String.format("engine-stripe-%d", i),
+                        endpoint,
+                        processor,
+                        deduplicators != null ? deduplicators.get() : null,
+                        options);
+            }
+
+            for (Stripe<I, O> stripe : stripes) {
+                stripe.thread.start();
+            }
+
+            Context context = this.context;
+
+            assert handler == null;
+            handler = getVertx().eventBus().localConsumer(
+                    endpoint,
+                    (HandlerLoggable<Message<Object>>) (in) -> {
+                        try {
+
+                            Object body = in.body();
+
+                            if (body instanceof Batch) {
+                                @SuppressWarnings("unchecked")
+                                Batch<I> batch = (Batch<I>) body;
+                                offerBatch(batch, in, context);
+                            } else {
+                                @SuppressWarnings("unchecked")
+                                I item = (I) body;
+                                offer(item, (out) -> context.runOnContext((HandlerLoggable<Void>) (v) -> reply(in, out)));
+                            }
+
+                        } catch (Throwable ex) {
+                            Router.REPLY_FAIL.accept(in, ex);
+                        }
+                    });
+
+            registry.gauge("engine_queued", this::getQueued);
+            registry.counter("engine_dropped_total", this::getDroppedNewest);
+            registry.counter("engine_rejected_total", this::getRejected);
+
+            if (deduplicators != null) {
+                registry.counter("dedup_hits_total", () -> sum(Deduplicator::getHits));
+                registry.counter("dedup_misses_total", () -> sum(Deduplicator::getMisses));
+                registry.counter("dedup_evictions_total", () -> sum(Deduplicator::getEvictions));
+                registry.gauge("dedup_keys", () -> sum(d -> d.size()));
+            }
+
+            start.complete();
+
+            _LOG.info("{0}: engine successfully started: endpoint={1}, stripes={2,number,#}",
+                    deploymentID(),
+                    endpoint,
+                    stripes.length);
+
+        } catch (Throwable ex) {
+
+            start.fail(ex);
+
+            _LOG.warn("{0}: engine starting fail: endpoint={1}",
+                    ex,
+                    deploymentID(),
+                    endpoint);
+        }
+    }
+
+    @Override
+    public void stop(
+            @Nonnull Future<Void> stop)
+            throws Exception {
+
+        try {
+
+            _LOG.debug("{0}: try stop engine: endpoint={1}",
+                    deploymentID(),
+                    endpoint);
+
+            Objects.requireNonNull(handler).unregister((HandlerLoggable<AsyncResult<Void>>) (async) -> {
+                if (async.failed()) {
+                    _LOG.warn("{0}: engine handler stopping fail",
+                            async.cause(),
+                            deploymentID());
+                }
+            });
+
+            // threads finish items already in rings, they are joined off event loop
+            for (Stripe<I, O> stripe : stripes) {
+                stripe.running = false;
+                LockSupport.unpark(stripe.thread);
+            }
+
+            getVertx().<Void>executeBlocking(
+                    (joined) -> {
+                        try {
+                            for (Stripe<I, O> stripe : stripes) {
+                                stripe.thread.join(TimeUnit.SECONDS.toMillis(10L));
+                                // items which raced with stop
+                                stripe.ring.drain(
+                                        (item, done) -> {
+                                            ReferenceCountUtil.release(item);
+                                            complete(done, Future.failedFuture(new IllegalStateException("Engine is stopped")));
+                                        },
+                                        Integer.MAX_VALUE);
+                            }
+                            joined.complete();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                            joined.fail(ex);
+                        }
+                    },
+                    false,
+                    (HandlerLoggable<AsyncResult<Void>>) (async) -> {
+                        if (async.succeeded()) {
+
+                            stop.complete();
+
+                            _LOG.info("{0}: engine successfully stopped: endpoint={1}",
+                                    deploymentID(),
+                                    endpoint);
+
+                        } else {
+
+                            stop.fail(async.cause());
+
+                            _LOG.warn("{0}: engine stopping fail: endpoint={1}",
+                                    async.cause(),
+                                    deploymentID(),
+                                    endpoint);
+                        }
+                    });
+
+        } catch (Throwable ex) {
+
+            stop.fail(ex);
+
+            _LOG.warn("{0}: engine stopping fail: endpoint={1}",
+                    ex,
+                    deploymentID(),
+                    endpoint);
+        }
+    }
+
+    /**
+     * Publish item to stripe of its key, can be called from any thread.
+     * <p>
+     * Done handler is called on thread of stripe with output of processor (null if item is
+     * duplicate or dropped), or on calling thread if item is not accepted.
+     */
+    public void offer(
+            @Nonnull I item,
+            @Nullable Handler<AsyncResult<O>> done) {
+
+        if (item instanceof Traced) {
+
+            Traced traced = (Traced) item;
+            long now = System.nanoTime();
+
+            if (traced.getReceivedNanos() != 0L) {
+                Metrics.RECEIVE_TO_ROUTED.record(now - traced.getReceivedNanos());
+            }
+
+            traced.setRoutedNanos(now);
+        }
+
+        Stripe<I, O> stripe = stripes[Router.laneOf(Long.hashCode(mapper.applyAsLong(item)), stripes.length)];
+        if (stripe == null || !stripe.running) {
+            ReferenceCountUtil.release(item);
+            complete(done, Future.failedFuture(new IllegalStateException("Engine is not started")));
+            return;
+        }
+
+        if (stripe.ring.offer(item, done)) {
+            stripe.wakeUp();
+            return;
+        }
+
+        ReferenceCountUtil.release(item);
+
+        if (options.getOverflowPolicy() == OverflowPolicy.REJECT) {
+            rejected.increment();
+            complete(done, Future.failedFuture(new IllegalStateException("Ring overflow")));
+        } else {
+            droppedNewest.increment();
+            complete(done, Future.succeededFuture());
+        }
+    }
+
+    /**
+     * Offer items of batch, reply with batch of outputs in order of items when all of them
+     * are processed (null for dropped and failed items, so outputs of others are still replied).
+     */
+    private void offerBatch(
+            @Nonnull Batch<I> batch,
+            @Nonnull Message<Object> in,
+            @Nonnull Context context) {
+
+        Object[] outs = new Object[batch.size()];
+        AtomicInteger remaining = new AtomicInteger(outs.length);
+
+        if (outs.length == 0) {
+            reply(in, Future.succeededFuture(new Batch<>(0)));
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+
+            int index = i;
+            offer(batch.get(i), (out) -> {
+
+                // written before decrement, read after last one
+                if (out.succeeded()) {
+                    outs[index] = out.result();
+                } else {
+                    batchItemFailed(out.cause());
+                }
+
+                if (remaining.decrementAndGet() == 0) {
+                    context.runOnContext((HandlerLoggable<Void>) (v) -> {
+
+                        Batch<Object> results = new Batch<>(outs.length);
+                        for (Object o : outs) {
+                            results.add(o);
+                        }
+
+                        reply(in, Future.succeededFuture(results));
+                    });
+                }
+            });
+        }
+    }
+
+    /**
+     * Count item of batch, which failed and is replied with null output.
+     */
+    private void batchItemFailed(
+            @Nonnull Throwable cause) {
+
+        Metrics.BATCH_ITEM_FAILURES.increment();
+
+        _LOG.debug("{0}: batch item processing fail",
+                cause,
+                deploymentID());
+    }
+
+    private static void reply(
+            @Nonnull Message<?> in,
+            @Nonnull AsyncResult<?> out) {
+
+        try {
+            if (out.succeeded()) {
+                if (in.replyAddress() != null) {
+                    in.reply(out.result());
+                }
+            } else {
+                Router.REPLY_FAIL.accept(in, out.cause());
+            }
+        } catch (Throwable ex) {
+            Router.REPLY_FAIL.accept(in, ex);
+        }
+    }
+
+    private static <O> void complete(
+            @Nullable Handler<AsyncResult<O>> done,
+            @Nonnull AsyncResult<O> out) {
+
+        if (done == null) return;
+
+        try {
+            done.handle(out);
+        } catch (Throwable ex) {
+            _LOG.error("UNCAUGHT EXCEPTION", ex);
+        }
+    }
+
+    private long sum(
+            @Nonnull ToLongFunction<Deduplicator<I>> metric) {
+
+        long sum = 0L;
+        for (Stripe<I, O> stripe : stripes) {
+            if (stripe != null && stripe.deduplicator != null) {
+                sum += metric.applyAsLong(stripe.deduplicator);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Count of items in rings, not yet handed to processor.
+     */
+    public int getQueued() {
+
+        int queued = 0;
+        for (Stripe<I, O> stripe : stripes) {
+            if (stripe != null) {
+                queued += stripe.ring.size();
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Count of items dropped because ring was full.
+     */
+    public long getDroppedNewest() {
+        return droppedNewest.sum();
+    }
+
+    /**
+     * Count of items rejected because ring was full.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Ring and its consumer thread, processor and deduplicator of stripe are used by that
+     * thread only.
+     */
+    private static final class Stripe<I, O>
+        implements Runnable, BiConsumer<I, Handler<AsyncResult<O>>> {
+
+        @Nonnull final MpscRing<I, Handler<AsyncResult<O>>> ring;
+        @Nonnull final Thread thread;
+        @Nullable final Deduplicator<I> deduplicator;
+
+        @Nonnull private final Function<Message<I>, O> processor;
+        @Nonnull private final ItemMessage<I> message;
+        private final int idleSpins;
+
+        volatile boolean running = true;
+        private volatile boolean parked = false;
+
+        Stripe(
+                @Nonnull String name,
+                @Nonnull String endpoint,
+                @Nonnull Function<Message<I>, O> processor,
+                @Nullable Deduplicator<I> deduplicator,
+                @Nonnull EngineOptions options) {
+
+            this.ring = new MpscRing<>(options.getRingSize());
+            this.processor = processor;
+            this.deduplicator = deduplicator;
+            this.message = new ItemMessage<>(endpoint);
+            this.idleSpins = options.getIdleSpins();
+
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        void wakeUp() {
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+
+            int idle = 0;
+            while (running) {
+
+                if (ring.drain(this, BURST) > 0) {
+                    idle = 0;
+                    continue;
+                }
+
+                if (idle++ < idleSpins) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+
+                // producer publishes before it checks flag, so it can't be missed
+                parked = true;
+                if (ring.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                parked = false;
+                idle = 0;
+            }
+
+            // items accepted before stop
+            while (ring.drain(this, BURST) > 0) {
+                // continue
+            }
+        }
+
+        @Override
+        public void accept(
+                @Nonnull I item,
+                @Nullable Handler<AsyncResult<O>> done) {
+
+            AsyncResult<O> out;
+            try {
+
+                if (deduplicator != null && !deduplicator.accept(item)) {
+                    // duplicate is answered as dropped
+                    out = Future.succeededFuture();
+                } else {
+                    out = Future.succeededFuture(process(item));
+                }
+
+            } catch (Throwable ex) {
+                out = Future.failedFuture(ex);
+            } finally {
+                // processor which needs item after return must retain or copy it
+                ReferenceCountUtil.release(item);
+            }
+
+            complete(done, out);
+        }
+
+        private @Nullable O process(
+                @Nonnull I item) {
+
+            long start = System.nanoTime();
+
+            if (item instanceof Traced && ((Traced) item).getRoutedNanos() != 0L) {
+                Metrics.ROUTED_TO_START.record(start - ((Traced) item).getRoutedNanos());
+            }
+
+            try {
+                return processor.apply(message.set(item));
+            } catch (Throwable ex) {
+                Metrics.PROCESSOR_FAILURES.increment();
+                throw ex;
+            } finally {
+                message.set(null);
+                Metrics.PROCESSING.record(System.nanoTime() - start);
+            }
+        }
+    }
+
+}
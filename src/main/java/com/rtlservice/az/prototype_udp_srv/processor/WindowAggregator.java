@@ -0,0 +1,218 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import com.rtlservice.az.prototype_udp_srv.state.State;
+import io.vertx.core.eventbus.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Stateful processor which aggregates values of messages of key over tumbling or sliding
+ * window (count, sum, min, max and percentiles) and calls downstream once per window instead
+ * of once per message. Output of message which does not close window is null.
+ * <p>
+ * Aggregates are updated incrementally in {@link State} of key, which has constant size
+ * ({@link #getStateSize()}): sliding window is ring of panes of one slide each, window is
+ * merge of its panes. Percentiles are counted in log buckets of fixed
+ * {@link WindowOptions#setAccuracy(double) relative accuracy}.
+ * <p>
+ * Window is closed by first message of key after its end, so last window of key which went
+ * silent is emitted when key sends again, and window ending with slide without messages is not
+ * emitted. Late message (time before current slide) is counted into current slide.
+ *
+ * @see WindowOptions
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@ThreadSafe
+public class WindowAggregator<I, O>
+        implements StatefulProcessor<I, O> {
+
+    // layout of state: current slide (number + 1, 0 for new key), then panes
+    private static final int CURRENT = 0;
+    private static final int PANES = 8;
+
+    // layout of pane: count, sum, min, max, buckets
+    private static final int COUNT = 0;
+    private static final int SUM = 8;
+    private static final int MIN = 16;
+    private static final int MAX = 24;
+    private static final int BUCKETS = 32;
+
+    @Nonnull private final ToDoubleFunction<I> value;
+    @Nonnull private final ToLongFunction<I> time;
+    @Nonnull private final Function<WindowStats, O> downstream;
+
+    private final long slide;
+    private final int panes;
+    private final int buckets;
+    private final int paneSize;
+    private final double minValue;
+    private final double gamma;
+    private final double logGamma;
+
+    /**
+     * @param value      value of message
+     * @param time       time (ms) of message, e.g. {@link System#currentTimeMillis()}
+     * @param downstream called with aggregates of every closed window of key
+     */
+    public WindowAggregator(
+            @Nonnull ToDoubleFunction<I> value,
+            @Nonnull ToLongFunction<I> time,
+            @Nonnull Function<WindowStats, O> downstream,
+            @Nonnull WindowOptions options) {
+
+        long slide = options.getSlide() > 0 ? options.getSlide() : options.getSize();
+        if (options.getSize() % slide != 0) {
+            throw new IllegalArgumentException("size must be multiple of slide");
+        }
+
+        this.value = value;
+        this.time = time;
+        this.downstream = downstream;
+        this.slide = slide;
+        this.panes = (int) (options.getSize() / slide);
+        this.buckets = options.getBuckets();
+        this.paneSize = BUCKETS + 4 * buckets;
+        this.minValue = options.getMinValue();
+        this.gamma = 1.0 + 2.0 * options.getAccuracy();
+        this.logGamma = Math.log(gamma);
+    }
+
+    /**
+     * Size (bytes) of state of key, state store of router (or engine) must have it at least.
+     */
+    public int getStateSize() {
+        return PANES + panes * paneSize;
+    }
+
+    @Override
+    public @Nullable O process(
+            @Nonnull Message<I> message,
+            @Nonnull State state) {
+
+        I body = message.body();
+        long number = Math.floorDiv(time.applyAsLong(body), slide) + 1;
+        double v = value.applyAsDouble(body);
+
+        long current = state.getLong(CURRENT);
+
+        O out = null;
+        if (current == 0L) {
+
+            state.putLong(CURRENT, number);
+
+        } else if (number > current) {
+
+            out = downstream.apply(stats(state, current));
+
+            // panes of slides which left window are reused
+            for (long n = current + 1; n <= number && n <= current + panes; n++) {
+                clear(state, pane(n));
+            }
+            state.putLong(CURRENT, number);
+
+        } else {
+            number = current;
+        }
+
+        add(state, pane(number), v);
+
+        return out;
+    }
+
+    private int pane(
+            long number) {
+
+        return PANES + (int) (number % panes) * paneSize;
+    }
+
+    private int bucket(
+            double v) {
+
+        if (!(v > minValue)) {
+            return 0;
+        }
+
+        return (int) Math.min(buckets - 1, 1L + (long) (Math.log(v / minValue) / logGamma));
+    }
+
+    private void add(
+            @Nonnull State state,
+            int pane,
+            double v) {
+
+        long count = state.addLong(pane + COUNT, 1L);
+        state.putDouble(pane + SUM, state.getDouble(pane + SUM) + v);
+
+        if (count == 1L || v < state.getDouble(pane + MIN)) {
+            state.putDouble(pane + MIN, v);
+        }
+        if (count == 1L || v > state.getDouble(pane + MAX)) {
+            state.putDouble(pane + MAX, v);
+        }
+
+        int bucket = pane + BUCKETS + 4 * bucket(v);
+        state.putInt(bucket, state.getInt(bucket) + 1);
+    }
+
+    private void clear(
+            @Nonnull State state,
+            int pane) {
+
+        for (int offset = 0; offset < paneSize; offset += 8) {
+            if (offset + 8 <= paneSize) {
+                state.putLong(pane + offset, 0L);
+            } else {
+                state.putInt(pane + offset, 0);
+            }
+        }
+    }
+
+    /**
+     * Merge panes of window ending with slide {@code current}.
+     */
+    private @Nonnull WindowStats stats(
+            @Nonnull State state,
+            long current) {
+
+        long count = 0L;
+        double sum = 0.0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        long[] merged = new long[buckets];
+
+        for (long n = Math.max(1L, current - panes + 1); n <= current; n++) {
+
+            int pane = pane(n);
+            long paneCount = state.getLong(pane + COUNT);
+            if (paneCount == 0L) continue;
+
+            count += paneCount;
+            sum += state.getDouble(pane + SUM);
+            min = Math.min(min, state.getDouble(pane + MIN));
+            max = Math.max(max, state.getDouble(pane + MAX));
+
+            for (int i = 0; i < buckets; i++) {
+                merged[i] += state.getInt(pane + BUCKETS + 4 * i);
+            }
+        }
+
+        return new WindowStats(
+                state.key(),
+                (current - panes) * slide,
+                current * slide,
+                count,
+                sum,
+                min,
+                max,
+                merged,
+                minValue,
+                gamma);
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Options of {@link WindowAggregator}.
+ *
+ * @see WindowAggregator
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class WindowOptions {
+
+    /**
+     * Default size (ms) of window = 60000 ms.
+     */
+    public static final long DEFAULT_SIZE = 60000L;
+
+    /**
+     * Default slide (ms) of window = 0 (tumbling window).
+     */
+    public static final long DEFAULT_SLIDE = 0L;
+
+    /**
+     * Default relative accuracy of percentiles = 0.05.
+     */
+    public static final double DEFAULT_ACCURACY = 0.05;
+
+    /**
+     * Default count of percentile buckets = 256.
+     */
+    public static final int DEFAULT_BUCKETS = 256;
+
+    /**
+     * Default lower bound of percentile buckets = 0.001.
+     */
+    public static final double DEFAULT_MIN_VALUE = 0.001;
+
+    private long size;
+    private long slide;
+    private double accuracy;
+    private int buckets;
+    private double minValue;
+
+    public WindowOptions() {
+        this.size = DEFAULT_SIZE;
+        this.slide = DEFAULT_SLIDE;
+        this.accuracy = DEFAULT_ACCURACY;
+        this.buckets = DEFAULT_BUCKETS;
+        this.minValue = DEFAULT_MIN_VALUE;
+    }
+
+    public WindowOptions(
+            @Nonnull WindowOptions other) {
+
+        this.size = other.size;
+        this.slide = other.slide;
+        this.accuracy = other.accuracy;
+        this.buckets = other.buckets;
+        this.minValue = other.minValue;
+    }
+
+    public WindowOptions(
+            @Nonnull JsonObject json) {
+
+        this(new WindowOptions()
+                .setSize(json.getLong("size", DEFAULT_SIZE))
+                .setSlide(json.getLong("slide", DEFAULT_SLIDE))
+                .setAccuracy(json.getDouble("accuracy", DEFAULT_ACCURACY))
+                .setBuckets(json.getInteger("buckets", DEFAULT_BUCKETS))
+                .setMinValue(json.getDouble("minValue", DEFAULT_MIN_VALUE)));
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Set size (ms) of window.
+     */
+    public @Nonnull WindowOptions setSize(
+            long size) {
+
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be >= 1");
+        }
+
+        this.size = size;
+        return this;
+    }
+
+    public long getSlide() {
+        return slide;
+    }
+
+    /**
+     * Set slide (ms) of sliding window, size must be multiple of it. 0 means tumbling window
+     * (slide equal to size).
+     */
+    public @Nonnull WindowOptions setSlide(
+            long slide) {
+
+        if (slide < 0) {
+            throw new IllegalArgumentException("slide must be >= 0");
+        }
+
+        this.slide = slide;
+        return this;
+    }
+
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    /**
+     * Set relative accuracy of percentiles within range of buckets, bucket {@code i} holds values
+     * from {@code minValue * (1 + 2 * accuracy)^(i - 1)}.
+     */
+    public @Nonnull WindowOptions setAccuracy(
+            double accuracy) {
+
+        if (!(accuracy > 0.0 && accuracy < 1.0)) {
+            throw new IllegalArgumentException("accuracy must be in (0, 1)");
+        }
+
+        this.accuracy = accuracy;
+        return this;
+    }
+
+    public int getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * Set count of percentile buckets, state of key takes {@code 4 * buckets + 32} bytes per slide.
+     */
+    public @Nonnull WindowOptions setBuckets(
+            int buckets) {
+
+        if (buckets < 2) {
+            throw new IllegalArgumentException("buckets must be >= 2");
+        }
+
+        this.buckets = buckets;
+        return this;
+    }
+
+    public double getMinValue() {
+        return minValue;
+    }
+
+    /**
+     * Set lower bound of percentile buckets, lesser (and negative) values fall into first bucket.
+     */
+    public @Nonnull WindowOptions setMinValue(
+            double minValue) {
+
+        if (!(minValue > 0.0)) {
+            throw new IllegalArgumentException("minValue must be > 0");
+        }
+
+        this.minValue = minValue;
+        return this;
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Aggregates of values of one key over one window, emitted by {@link WindowAggregator}.
+ *
+ * @see WindowAggregator
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@Immutable
+public final class WindowStats {
+
+    public final long key;
+
+    /**
+     * Start (ms, inclusive) of window.
+     */
+    public final long start;
+
+    /**
+     * End (ms, exclusive) of window.
+     */
+    public final long end;
+
+    public final long count;
+    public final double sum;
+    public final double min;
+    public final double max;
+
+    @Nonnull private final long[] buckets;
+    private final double minValue;
+    private final double gamma;
+
+    WindowStats(
+            long key,
+            long start,
+            long end,
+            long count,
+            double sum,
+            double min,
+            double max,
+            @Nonnull long[] buckets,
+            double minValue,
+            double gamma) {
+
+        this.key = key;
+        this.start = start;
+        this.end = end;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.buckets = buckets;
+        this.minValue = minValue;
+        this.gamma = gamma;
+    }
+
+    public double getMean() {
+        return count > 0 ? sum / count : 0.0;
+    }
+
+    /**
+     * Value at percentile ({@code 0.0 < p <= 1.0}), approximated by middle of its bucket and
+     * bounded by min and max.
+     */
+    public double getPercentile(
+            double p) {
+
+        long rank = Math.max(1L, (long) Math.ceil(count * p));
+        long seen = 0L;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                double value = i == 0
+                        ? minValue
+                        : minValue * Math.pow(gamma, i - 1) * (1.0 + gamma) / 2.0;
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "WindowStats{key=%012X, start=%d, end=%d, count=%d, sum=%s, min=%s, max=%s, p50=%s, p99=%s}",
+                key,
+                start,
+                end,
+                count,
+                sum,
+                min,
+                max,
+                getPercentile(0.5),
+                getPercentile(0.99));
+    }
+
+}
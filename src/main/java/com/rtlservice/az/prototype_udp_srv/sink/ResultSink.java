@@ -0,0 +1,497 @@
+package com.rtlservice.az.prototype_udp_srv.sink;
+
+import com.rtlservice.az.prototype_udp_srv.metrics.Metrics;
+import com.rtlservice.az.prototype_udp_srv.processor.StatefulProcessor;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Writes results of processors (key, time, encoded output) into compact binary segment files,
+ * see {@link #wrap(ToLongFunction, StatefulProcessor)} to plug it after processor.
+ * <p>
+ * Results are buffered in memory and written by background thread in groups: buffered results
+ * become one segment when they reach {@link SinkOptions#setFlushSize(int) flush size} or
+ * {@link SinkOptions#setFlushInterval(long) flush interval} passes, segment is forced to disk
+ * once and renamed into place, so it is visible complete or not at all. Results are buffered
+ * into second buffer while first one is written.
+ * <p>
+ * Memory of buffered results is {@link SinkOptions#setMaxPendingBytes(int) limited}: when it is
+ * reached appending thread (processor) waits, so processing slows down to rate of disk and
+ * messages queue before processors (where router or engine limits apply), result is dropped
+ * only after {@link SinkOptions#setBlockTimeout(long) block timeout}. Results must not be
+ * appended from event loop then.
+ * <p>
+ * Segment: header (magic, version, count of records (ints), base time (long, ms)), then records
+ * sorted by key and time: key delta from previous record, time delta from previous record of
+ * same key (from base time for first record of key), length of output (unsigned varints), output.
+ * Segments are named by sequence number.
+ *
+ * @see SinkReader
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@ThreadSafe
+public class ResultSink<O>
+        implements Closeable {
+
+    private static final Logger _LOG = LoggerFactory.getLogger(ResultSink.class);
+
+    static final int MAGIC = 0x52534C54;
+    static final int VERSION = 1;
+    static final int SEGMENT_HEADER_LENGTH = 20;
+    static final String SEGMENT_SUFFIX = ".results";
+
+    // memory of record besides output: key, time, offset and length
+    private static final int RECORD_OVERHEAD = 24;
+
+    @Nonnull private final Path directory;
+    @Nonnull private final BiConsumer<O, ByteBuf> encoder;
+    private final int flushSize;
+    private final long flushIntervalNanos;
+    private final int maxPendingBytes;
+    private final long blockTimeoutNanos;
+
+    @Nonnull private final ReentrantLock lock = new ReentrantLock();
+    @Nonnull private final Condition notFull = lock.newCondition();
+    @Nonnull private final Condition ready = lock.newCondition();
+
+    // guarded by lock, spare is null while it is written
+    @Nonnull private Buffered filling = new Buffered();
+    @Nullable private Buffered spare = new Buffered();
+    private int pendingBytes = 0;
+    private boolean closed = false;
+
+    @Nonnull private final Thread io;
+
+    // accessed from io thread only
+    private long nextIndex;
+    @Nonnull private final ByteBuf out = Unpooled.directBuffer(64 * 1024);
+    @Nonnull private int[] order = new int[0];
+    @Nonnull private int[] merged = new int[0];
+
+    /**
+     * @param encoder writes output into buffer
+     */
+    public ResultSink(
+            @Nonnull BiConsumer<O, ByteBuf> encoder,
+            @Nonnull SinkOptions options)
+            throws IOException {
+
+        this.directory = Paths.get(options.getDirectory());
+        this.encoder = encoder;
+        this.flushSize = options.getFlushSize();
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(options.getFlushInterval());
+        this.maxPendingBytes = options.getMaxPendingBytes();
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(options.getBlockTimeout());
+
+        Files.createDirectories(directory);
+        try (Stream<Path> segments = Files.list(directory)) {
+            this.nextIndex = segments
+                    .map(SinkReader::indexOf)
+                    .filter(index -> index >= 0)
+                    .mapToLong(index -> index + 1)
+                    .max()
+                    .orElse(0L);
+        }
+
+        this.io = new Thread(this::flushLoop, "sink-io");
+        this.io.setDaemon(true);
+        this.io.start();
+
+        _LOG.info("result sink opened: directory={0}",
+                directory);
+    }
+
+    /**
+     * Processor which appends every non-null output of {@code processor} with key of message
+     * and time of processing, output is returned as is.
+     */
+    public @Nonnull <I> StatefulProcessor<I, O> wrap(
+            @Nonnull ToLongFunction<I> key,
+            @Nonnull StatefulProcessor<I, O> processor) {
+
+        return (message, state) -> {
+
+            O out = processor.process(message, state);
+            if (out != null) {
+                append(key.applyAsLong(message.body()), System.currentTimeMillis(), out);
+            }
+
+            return out;
+        };
+    }
+
+    /**
+     * Buffer result, waits while memory limit is reached.
+     *
+     * @param time time of result, ms
+     * @return false if result is dropped (sink is closed or memory limit stays reached for block timeout)
+     */
+    public boolean append(
+            long key,
+            long time,
+            @Nonnull O result) {
+
+        lock.lock();
+        try {
+
+            if (pendingBytes >= maxPendingBytes && !closed) {
+
+                Metrics.SINK_BLOCKED.increment();
+
+                long nanos = blockTimeoutNanos;
+                while (pendingBytes >= maxPendingBytes && !closed && nanos > 0L) {
+                    nanos = notFull.awaitNanos(nanos);
+                }
+            }
+
+            if (closed || pendingBytes >= maxPendingBytes) {
+                Metrics.SINK_DROPPED.increment();
+                return false;
+            }
+
+            Buffered buffered = filling;
+            pendingBytes += buffered.add(key, time, result, encoder);
+
+            if (buffered.size == 1) {
+                buffered.firstNanos = System.nanoTime();
+                ready.signal();
+            } else if (buffered.bytes >= flushSize) {
+                ready.signal();
+            }
+
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            Metrics.SINK_DROPPED.increment();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+
+        Metrics.SINK_APPENDED.increment();
+        return true;
+    }
+
+    /**
+     * Bytes of buffered results and results being written.
+     */
+    public int getPendingBytes() {
+
+        lock.lock();
+        try {
+            return pendingBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+
+        while (true) {
+
+            Buffered writing;
+
+            lock.lock();
+            try {
+
+                // group is flushed when it is big or old enough, or on close
+                while (!closed) {
+
+                    Buffered buffered = filling;
+                    if (buffered.size > 0 && buffered.bytes >= flushSize) break;
+
+                    long nanos = buffered.size > 0
+                            ? buffered.firstNanos + flushIntervalNanos - System.nanoTime()
+                            : Long.MAX_VALUE;
+                    if (nanos <= 0L) break;
+
+                    ready.awaitNanos(nanos);
+                }
+
+                if (filling.size == 0) {
+                    // closed and everything is written
+                    return;
+                }
+
+                writing = filling;
+                filling = Objects.requireNonNull(spare);
+                spare = null;
+
+            } catch (InterruptedException ex) {
+                _LOG.warn("result sink flushing interrupted: directory={0}", ex, directory);
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            long start = System.nanoTime();
+            int count = writing.size;
+            int bytes = writing.bytes;
+
+            try {
+                write(writing);
+                Metrics.SINK_SEGMENTS.increment();
+            } catch (Throwable ex) {
+                Metrics.SINK_DROPPED.add(count);
+                _LOG.warn("result segment writing fail: directory={0}, records={1,number,#}",
+                        ex,
+                        directory,
+                        count);
+            }
+
+            Metrics.SINK_FLUSH.record(System.nanoTime() - start);
+
+            writing.clear();
+
+            lock.lock();
+            try {
+                spare = writing;
+                pendingBytes -= bytes;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Sort results and write them as next segment, forced to disk before it is renamed into place.
+     */
+    private void write(
+            @Nonnull Buffered buffered)
+            throws IOException {
+
+        int size = buffered.size;
+        sort(buffered);
+
+        long base = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            base = Math.min(base, buffered.times[i]);
+        }
+
+        out.clear();
+        out.writeInt(MAGIC).writeInt(VERSION).writeInt(size).writeLong(base);
+
+        long previousKey = 0L;
+        long previousTime = base;
+        for (int n = 0; n < size; n++) {
+
+            int i = order[n];
+            long key = buffered.keys[i];
+            long time = buffered.times[i];
+
+            if (n == 0 || key != previousKey) {
+                previousTime = base;
+            }
+
+            writeVarLong(out, key - previousKey);
+            writeVarLong(out, time - previousTime);
+            writeVarLong(out, buffered.lengths[i]);
+            out.writeBytes(buffered.data, buffered.offsets[i], buffered.lengths[i]);
+
+            previousKey = key;
+            previousTime = time;
+        }
+
+        Path path = directory.resolve(SinkReader.nameOf(nextIndex++));
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(
+                temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+
+            while (out.isReadable()) {
+                out.readBytes(channel, out.readableBytes());
+            }
+            channel.force(false);
+        }
+
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+
+        _LOG.debug("result segment written: segment={0}, records={1,number,#}, bytes={2,number,#}",
+                path.getFileName(),
+                size,
+                out.writerIndex());
+    }
+
+    /**
+     * Order of results by key and time, stable (bottom-up merge sort), so results of same key and
+     * time stay in order of append.
+     */
+    private void sort(
+            @Nonnull Buffered buffered) {
+
+        int size = buffered.size;
+        if (order.length < size) {
+            order = new int[buffered.keys.length];
+            merged = new int[buffered.keys.length];
+        }
+
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+
+        for (int width = 1; width < size; width *= 2) {
+
+            for (int from = 0; from < size; from += 2 * width) {
+
+                int middle = Math.min(from + width, size);
+                int to = Math.min(from + 2 * width, size);
+
+                int a = from;
+                int b = middle;
+                for (int n = from; n < to; n++) {
+                    if (a < middle && (b >= to || !less(buffered, order[b], order[a]))) {
+                        merged[n] = order[a++];
+                    } else {
+                        merged[n] = order[b++];
+                    }
+                }
+            }
+
+            int[] sorted = merged;
+            merged = order;
+            order = sorted;
+        }
+    }
+
+    private static boolean less(
+            @Nonnull Buffered buffered,
+            int a,
+            int b) {
+
+        long keyA = buffered.keys[a];
+        long keyB = buffered.keys[b];
+
+        return keyA < keyB || (keyA == keyB && buffered.times[a] < buffered.times[b]);
+    }
+
+    private static void writeVarLong(
+            @Nonnull ByteBuf out,
+            long value) {
+
+        while ((value & ~0x7FL) != 0L) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Write buffered results and stop, results appended after close are dropped.
+     */
+    @Override
+    public void close()
+            throws IOException {
+
+        lock.lock();
+        try {
+
+            if (closed) return;
+            closed = true;
+
+            ready.signal();
+            notFull.signalAll();
+
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            io.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Result sink closing interrupted", ex);
+        } finally {
+            out.release();
+        }
+
+        _LOG.info("result sink closed: directory={0}",
+                directory);
+    }
+
+    /**
+     * Results of one segment in order of append.
+     */
+    private static final class Buffered {
+
+        @Nonnull final ByteBuf data = Unpooled.buffer(64 * 1024);
+        @Nonnull long[] keys = new long[1024];
+        @Nonnull long[] times = new long[1024];
+        @Nonnull int[] offsets = new int[1024];
+        @Nonnull int[] lengths = new int[1024];
+
+        int size = 0;
+        // memory of results, outputs and overhead
+        int bytes = 0;
+        long firstNanos = 0L;
+
+        /**
+         * @return memory of result, bytes
+         */
+        <O> int add(
+                long key,
+                long time,
+                @Nonnull O result,
+                @Nonnull BiConsumer<O, ByteBuf> encoder) {
+
+            int offset = data.writerIndex();
+            try {
+                encoder.accept(result, data);
+            } catch (RuntimeException ex) {
+                data.writerIndex(offset);
+                throw ex;
+            }
+
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                times = Arrays.copyOf(times, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+            }
+
+            int length = data.writerIndex() - offset;
+
+            keys[size] = key;
+            times[size] = time;
+            offsets[size] = offset;
+            lengths[size] = length;
+            size++;
+            bytes += length + RECORD_OVERHEAD;
+
+            return length + RECORD_OVERHEAD;
+        }
+
+        void clear() {
+            data.clear();
+            size = 0;
+            bytes = 0;
+            firstNanos = 0L;
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.rtlservice.az.prototype_udp_srv.sink;
+
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Options of {@link ResultSink}.
+ *
+ * @see ResultSink
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class SinkOptions {
+
+    /**
+     * Default directory of segment files = results.
+     */
+    public static final String DEFAULT_DIRECTORY = "results";
+
+    /**
+     * Default size of buffered results, which makes segment written at once = 1 MiB.
+     */
+    public static final int DEFAULT_FLUSH_SIZE = 1024 * 1024;
+
+    /**
+     * Default time buffered result waits for segment = 1000 ms.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000L;
+
+    /**
+     * Default limit of memory of buffered and being written results = 16 MiB.
+     */
+    public static final int DEFAULT_MAX_PENDING_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Default time appending thread waits for memory before result is dropped = 1000 ms.
+     */
+    public static final long DEFAULT_BLOCK_TIMEOUT = 1000L;
+
+    @Nonnull private String directory;
+    private int flushSize;
+    private long flushInterval;
+    private int maxPendingBytes;
+    private long blockTimeout;
+
+    public SinkOptions() {
+        this.directory = DEFAULT_DIRECTORY;
+        this.flushSize = DEFAULT_FLUSH_SIZE;
+        this.flushInterval = DEFAULT_FLUSH_INTERVAL;
+        this.maxPendingBytes = DEFAULT_MAX_PENDING_BYTES;
+        this.blockTimeout = DEFAULT_BLOCK_TIMEOUT;
+    }
+
+    public SinkOptions(
+            @Nonnull SinkOptions other) {
+
+        this.directory = other.directory;
+        this.flushSize = other.flushSize;
+        this.flushInterval = other.flushInterval;
+        this.maxPendingBytes = other.maxPendingBytes;
+        this.blockTimeout = other.blockTimeout;
+    }
+
+    public SinkOptions(
+            @Nonnull JsonObject json) {
+
+        this(new SinkOptions()
+                .setDirectory(json.getString("directory", DEFAULT_DIRECTORY))
+                .setFlushSize(json.getInteger("flushSize", DEFAULT_FLUSH_SIZE))
+                .setFlushInterval(json.getLong("flushInterval", DEFAULT_FLUSH_INTERVAL))
+                .setMaxPendingBytes(json.getInteger("maxPendingBytes", DEFAULT_MAX_PENDING_BYTES))
+                .setBlockTimeout(json.getLong("blockTimeout", DEFAULT_BLOCK_TIMEOUT)));
+    }
+
+    public @Nonnull String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Set directory of segment files, created if absent.
+     */
+    public @Nonnull SinkOptions setDirectory(
+            @Nonnull String directory) {
+
+        this.directory = directory;
+        return this;
+    }
+
+    public int getFlushSize() {
+        return flushSize;
+    }
+
+    /**
+     * Set size (bytes) of buffered results, at which they are written as segment without
+     * waiting for {@link #setFlushInterval(long) flush interval}.
+     */
+    public @Nonnull SinkOptions setFlushSize(
+            int flushSize) {
+
+        if (flushSize < 1) {
+            throw new IllegalArgumentException("flushSize must be >= 1");
+        }
+
+        this.flushSize = flushSize;
+        return this;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Set time (ms) since first buffered result, after which buffered results are written as
+     * segment whatever their size.
+     */
+    public @Nonnull SinkOptions setFlushInterval(
+            long flushInterval) {
+
+        if (flushInterval < 1) {
+            throw new IllegalArgumentException("flushInterval must be >= 1");
+        }
+
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+    public int getMaxPendingBytes() {
+        return maxPendingBytes;
+    }
+
+    /**
+     * Set limit (bytes) of memory of buffered results and results being written, appending
+     * thread waits when it is reached, so it should be few times {@link #setFlushSize(int) flush size}.
+     */
+    public @Nonnull SinkOptions setMaxPendingBytes(
+            int maxPendingBytes) {
+
+        if (maxPendingBytes < 1) {
+            throw new IllegalArgumentException("maxPendingBytes must be >= 1");
+        }
+
+        this.maxPendingBytes = maxPendingBytes;
+        return this;
+    }
+
+    public long getBlockTimeout() {
+        return blockTimeout;
+    }
+
+    /**
+     * Set time (ms) appending thread waits for memory when {@link #setMaxPendingBytes(int) limit}
+     * is reached, result is dropped after it. 0 means result is dropped at once.
+     */
+    public @Nonnull SinkOptions setBlockTimeout(
+            long blockTimeout) {
+
+        if (blockTimeout < 0) {
+            throw new IllegalArgumentException("blockTimeout must be >= 0");
+        }
+
+        this.blockTimeout = blockTimeout;
+        return this;
+    }
+
+}
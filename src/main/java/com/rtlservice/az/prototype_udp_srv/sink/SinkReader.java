@@ -0,0 +1,188 @@
+package com.rtlservice.az.prototype_udp_srv.sink;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.rtlservice.az.prototype_udp_srv.sink.ResultSink.MAGIC;
+import static com.rtlservice.az.prototype_udp_srv.sink.ResultSink.SEGMENT_HEADER_LENGTH;
+import static com.rtlservice.az.prototype_udp_srv.sink.ResultSink.SEGMENT_SUFFIX;
+import static com.rtlservice.az.prototype_udp_srv.sink.ResultSink.VERSION;
+
+/**
+ * Sequential reader of {@link ResultSink} records, segment by segment in order of their sequence
+ * numbers, records of segment are sorted by key and time.
+ * <p>
+ * <pre>
+ * while (reader.next()) {
+ *     reader.key(); reader.time(); reader.result();
+ * }
+ * </pre>
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@NotThreadSafe
+public class SinkReader
+        implements Closeable {
+
+    @Nonnull private final Iterator<Path> segments;
+
+    @Nullable private ByteBuf segment = null;
+    private int remaining = 0;
+    private long base = 0L;
+
+    private long key = 0L;
+    private long time = 0L;
+    @Nullable private ByteBuf result = null;
+
+    public SinkReader(
+            @Nonnull String directory)
+            throws IOException {
+
+        try (Stream<Path> files = Files.list(Paths.get(directory))) {
+            this.segments = files
+                    .filter(path -> indexOf(path) >= 0)
+                    .sorted((a, b) -> Long.compare(indexOf(a), indexOf(b)))
+                    .collect(Collectors.toList())
+                    .iterator();
+        }
+    }
+
+    static @Nonnull String nameOf(
+            long index) {
+
+        return String.format("%020d%s", index, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * @return sequence number of segment file, -1 if it is not segment
+     */
+    static long indexOf(
+            @Nonnull Path path) {
+
+        String name = path.getFileName().toString();
+        if (!name.endsWith(SEGMENT_SUFFIX)) {
+            return -1L;
+        }
+
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException ex) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Move to next record.
+     *
+     * @return false if there are no more records
+     */
+    public boolean next()
+            throws IOException {
+
+        while (remaining == 0) {
+            if (!segments.hasNext()) {
+                segment = null;
+                result = null;
+                return false;
+            }
+            open(segments.next());
+        }
+
+        ByteBuf segment = this.segment;
+        assert segment != null;
+
+        long keyDelta = readVarLong(segment);
+        long timeDelta = readVarLong(segment);
+        int length = (int) readVarLong(segment);
+
+        if (keyDelta != 0L || result == null) {
+            time = base;
+        }
+
+        key += keyDelta;
+        time += timeDelta;
+        result = segment.readSlice(length);
+        remaining--;
+
+        return true;
+    }
+
+    private void open(
+            @Nonnull Path path)
+            throws IOException {
+
+        ByteBuf segment = Unpooled.wrappedBuffer(Files.readAllBytes(path));
+        if (segment.readableBytes() < SEGMENT_HEADER_LENGTH
+                || segment.readInt() != MAGIC
+                || segment.readInt() != VERSION) {
+
+            throw new IOException("Not a result segment: " + path);
+        }
+
+        this.segment = segment;
+        this.remaining = segment.readInt();
+        this.base = segment.readLong();
+        this.key = 0L;
+        this.time = base;
+        this.result = null;
+    }
+
+    private static long readVarLong(
+            @Nonnull ByteBuf in) {
+
+        long value = 0L;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Key of current record.
+     */
+    public long key() {
+        return key;
+    }
+
+    /**
+     * Time of current record, ms.
+     */
+    public long time() {
+        return time;
+    }
+
+    /**
+     * Encoded output of current record, valid until {@link #next()}.
+     */
+    public @Nonnull ByteBuf result() {
+
+        ByteBuf result = this.result;
+        if (result == null) {
+            throw new IllegalStateException("No current record");
+        }
+
+        return result;
+    }
+
+    @Override
+    public void close() {
+        segment = null;
+        result = null;
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.rtlservice.az.prototype_udp_srv.state;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-size state of one key, flyweight over slot of {@link StateStore}.
+ * <p>
+ * Layout of slot is up to processor, offsets are bytes from start of slot and are checked
+ * against slot size. Slot is zeroed when key is seen first time.
+ *
+ * @see StateStore
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@NotThreadSafe
+public final class State {
+
+    private final int size;
+
+    private ByteBuffer buffer;
+    private int base;
+    private long key;
+
+    State(
+            int size) {
+
+        this.size = size;
+    }
+
+    @Nonnull State set(
+            @Nonnull ByteBuffer buffer,
+            int base,
+            long key) {
+
+        this.buffer = buffer;
+        this.base = base;
+        this.key = key;
+        return this;
+    }
+
+    private int index(
+            int offset,
+            int length) {
+
+        if (offset < 0 || offset + length > size) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length + ", size=" + size);
+        }
+
+        return base + offset;
+    }
+
+    public long key() {
+        return key;
+    }
+
+    /**
+     * Size of slot, bytes.
+     */
+    public int size() {
+        return size;
+    }
+
+    public byte getByte(
+            int offset) {
+
+        return buffer.get(index(offset, 1));
+    }
+
+    public @Nonnull State putByte(
+            int offset,
+            byte value) {
+
+        buffer.put(index(offset, 1), value);
+        return this;
+    }
+
+    public int getInt(
+            int offset) {
+
+        return buffer.getInt(index(offset, 4));
+    }
+
+    public @Nonnull State putInt(
+            int offset,
+            int value) {
+
+        buffer.putInt(index(offset, 4), value);
+        return this;
+    }
+
+    public long getLong(
+            int offset) {
+
+        return buffer.getLong(index(offset, 8));
+    }
+
+    public @Nonnull State putLong(
+            int offset,
+            long value) {
+
+        buffer.putLong(index(offset, 8), value);
+        return this;
+    }
+
+    public double getDouble(
+            int offset) {
+
+        return buffer.getDouble(index(offset, 8));
+    }
+
+    public @Nonnull State putDouble(
+            int offset,
+            double value) {
+
+        buffer.putDouble(index(offset, 8), value);
+        return this;
+    }
+
+    /**
+     * Increment long at {@code offset}, returns new value.
+     */
+    public long addLong(
+            int offset,
+            long delta) {
+
+        int index = index(offset, 8);
+        long value = buffer.getLong(index) + delta;
+        buffer.putLong(index, value);
+        return value;
+    }
+
+}
@@ -0,0 +1,556 @@
+package com.rtlservice.az.prototype_udp_srv.state;
+
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Off-heap store of fixed-size per-key {@link State}s, keys are {@code long} (e.g. MAC).
+ * <p>
+ * Slots live in direct memory chunks and never move, index is a pair of primitive arrays,
+ * so millions of keys cost a handful of heap objects. Store is split into partitions, key goes to
+ * partition given by partitioner. Partition is not thread safe, it must be used by one thread at a
+ * time (its owner, e.g. processing lane).
+ * <p>
+ * Count of keys is capped by {@link #setMaxKeys(long) max keys}, split evenly between partitions.
+ * New key of full partition evicts key not used recently (CLOCK: every key gets second chance), its
+ * slot is zeroed and reused. Keys whose state is kept by owner ({@link Partition#handle(long) handle})
+ * are not evicted, owner frees them by {@link Partition#remove(long)}.
+ * <p>
+ * {@link #snapshot(Path)}, {@link #restore(Path)} and {@link #setMaxKeys(long)} must not run
+ * concurrently with owners.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class StateStore {
+
+    private static final Logger _LOG = LoggerFactory.getLogger(StateStore.class);
+
+    private static final int MAGIC = 0x53544154;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 20;
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    /**
+     * Default max count of keys.
+     */
+    public static final long DEFAULT_MAX_KEYS = 1L << 22;
+
+    private final int slotSize;
+    @Nonnull private final LongToIntFunction partitioner;
+    @Nonnull private final Partition[] partitions;
+    private long maxKeys = DEFAULT_MAX_KEYS;
+
+    /**
+     * @param slotSize    size of state of key, bytes (rounded up to 8)
+     * @param partitions  count of partitions
+     * @param partitioner key to partition in {@code [0, partitions)}
+     */
+    public StateStore(
+            int slotSize,
+            int partitions,
+            @Nonnull LongToIntFunction partitioner) {
+
+        if (slotSize < 1) {
+            throw new IllegalArgumentException("slotSize must be >= 1");
+        }
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be >= 1");
+        }
+
+        this.slotSize = (slotSize + 7) & ~7;
+        this.partitioner = partitioner;
+        this.partitions = new Partition[partitions];
+        for (int i = 0; i < partitions; i++) {
+            this.partitions[i] = new Partition(this.slotSize, maxKeysOf(DEFAULT_MAX_KEYS, partitions));
+        }
+    }
+
+    private static int maxKeysOf(
+            long maxKeys,
+            int partitions) {
+
+        return (int) Math.min(Integer.MAX_VALUE / 2, (maxKeys + partitions - 1) / partitions);
+    }
+
+    public int getSlotSize() {
+        return slotSize;
+    }
+
+    public long getMaxKeys() {
+        return maxKeys;
+    }
+
+    /**
+     * Set max count of keys, keys over it are evicted on next new key of partition.
+     */
+    public @Nonnull StateStore setMaxKeys(
+            long maxKeys) {
+
+        if (maxKeys < partitions.length) {
+            throw new IllegalArgumentException("maxKeys must be >= partitions");
+        }
+
+        this.maxKeys = maxKeys;
+        for (Partition partition : partitions) {
+            partition.maxSize = maxKeysOf(maxKeys, partitions.length);
+        }
+        return this;
+    }
+
+    public int partitions() {
+        return partitions.length;
+    }
+
+    public @Nonnull Partition partition(
+            int index) {
+
+        return partitions[index];
+    }
+
+    /**
+     * Partition of key.
+     */
+    public @Nonnull Partition partitionOf(
+            long key) {
+
+        return partitions[partitioner.applyAsInt(key)];
+    }
+
+    /**
+     * Count of keys.
+     */
+    public long size() {
+
+        long size = 0L;
+        for (Partition partition : partitions) {
+            size += partition.size();
+        }
+
+        return size;
+    }
+
+    /**
+     * Count of keys evicted by cap of {@link #setMaxKeys(long) max keys}.
+     */
+    public long getEvictions() {
+
+        long evictions = 0L;
+        for (Partition partition : partitions) {
+            evictions += partition.evictions;
+        }
+
+        return evictions;
+    }
+
+    /**
+     * Write all states into file (replaced atomically).
+     * <p>
+     * Format: magic, version, slot size (ints), count of keys (long), then key (long) and slot of every key.
+     */
+    public void snapshot(
+            @Nonnull Path file)
+            throws IOException {
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(
+                temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+
+            ByteBuffer out = ByteBuffer.allocateDirect(Math.max(CHUNK_BYTES, HEADER_LENGTH + 8 + slotSize));
+            out.putInt(MAGIC).putInt(VERSION).putInt(slotSize).putLong(size());
+
+            for (Partition partition : partitions) {
+                for (int i = 0; i < partition.keys.length; i++) {
+
+                    int slot = partition.slots[i] - 1;
+                    if (slot < 0) continue;
+
+                    if (out.remaining() < 8 + slotSize) {
+                        write(channel, out);
+                    }
+
+                    out.putLong(partition.keys[i]);
+                    ByteBuffer chunk = partition.chunk(slot);
+                    int base = partition.base(slot);
+                    for (int j = 0; j < slotSize; j += 8) {
+                        out.putLong(chunk.getLong(base + j));
+                    }
+                }
+            }
+
+            write(channel, out);
+            channel.force(true);
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        _LOG.info("state snapshot written: file={0}, keys={1,number,#}",
+                file,
+                size());
+    }
+
+    /**
+     * Load states from file written by {@link #snapshot(Path)}, states of same keys are overwritten.
+     * Keys are distributed by partitioner of this store, so count of partitions may differ.
+     */
+    public void restore(
+            @Nonnull Path file)
+            throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            ByteBuffer in = ByteBuffer.allocateDirect(Math.max(CHUNK_BYTES, HEADER_LENGTH + 8 + slotSize));
+            in.limit(0);
+
+            read(channel, in, HEADER_LENGTH);
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Not a state snapshot: " + file);
+            }
+            if (in.getInt() != slotSize) {
+                throw new IOException("Slot size of snapshot differs from store: " + file);
+            }
+
+            long count = in.getLong();
+            for (long n = 0; n < count; n++) {
+
+                read(channel, in, 8 + slotSize);
+
+                long key = in.getLong();
+                State state = partitionOf(key).get(key);
+                for (int j = 0; j < slotSize; j += 8) {
+                    state.putLong(j, in.getLong());
+                }
+            }
+        }
+
+        _LOG.info("state snapshot restored: file={0}, keys={1,number,#}",
+                file,
+                size());
+    }
+
+    private static void write(
+            @Nonnull FileChannel channel,
+            @Nonnull ByteBuffer out)
+            throws IOException {
+
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Make at least {@code length} bytes available in buffer.
+     */
+    private static void read(
+            @Nonnull FileChannel channel,
+            @Nonnull ByteBuffer in,
+            int length)
+            throws IOException {
+
+        if (in.remaining() >= length) {
+            return;
+        }
+
+        in.compact();
+        while (in.position() < length) {
+            if (channel.read(in) < 0) {
+                throw new IOException("Unexpected end of state snapshot");
+            }
+        }
+        in.flip();
+    }
+
+    /**
+     * Keys and slots of one owner.
+     */
+    @NotThreadSafe
+    public static final class Partition {
+
+        // flags of slot
+        private static final byte REFERENCED = 1;
+        private static final byte PINNED = 2;
+        private static final byte FREE = 4;
+
+        private final int slotSize;
+        private final int chunkSlots;
+        @Nonnull private final State flyweight;
+
+        // open addressing: key and slot + 1 (0 is empty)
+        @Nonnull private long[] keys = new long[16];
+        @Nonnull private int[] slots = new int[16];
+        private int size = 0;
+
+        @Nonnull private ByteBuffer[] chunks = new ByteBuffer[0];
+
+        // by slot: key, flags; freed slots are reused first
+        @Nonnull private long[] slotKeys = new long[0];
+        @Nonnull private byte[] flags = new byte[0];
+        @Nonnull private int[] free = new int[0];
+        private int freeCount = 0;
+        private int allocated = 0;
+
+        private int maxSize;
+        // CLOCK hand over allocated slots
+        private int hand = 0;
+        private volatile long evictions = 0L;
+
+        Partition(
+                int slotSize,
+                int maxSize) {
+
+            this.slotSize = slotSize;
+            this.chunkSlots = Math.max(1, CHUNK_BYTES / slotSize);
+            this.flyweight = new State(slotSize);
+            this.maxSize = maxSize;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * State of key, created (zeroed) if absent. Returned flyweight is shared by partition and
+         * is valid until next {@code get} on it.
+         */
+        public @Nonnull State get(
+                long key) {
+
+            int slot = slotOf(key);
+            flags[slot] |= REFERENCED;
+            return flyweight.set(chunk(slot), base(slot), key);
+        }
+
+        /**
+         * State of key, created (zeroed) if absent, as own flyweight which may be kept by owner of key.
+         * Key is not evicted until owner {@link #remove(long) removes} it.
+         *
+         * @throws IllegalStateException if partition is full of keys kept by owners
+         */
+        public @Nonnull State handle(
+                long key) {
+
+            int slot = slotOf(key);
+            flags[slot] |= PINNED;
+            return new State(slotSize).set(chunk(slot), base(slot), key);
+        }
+
+        public boolean contains(
+                long key) {
+
+            return indexOf(key) >= 0;
+        }
+
+        /**
+         * Free state of key, its slot is reused by new key. Handle of key must not be used after it.
+         *
+         * @return false if key is absent
+         */
+        public boolean remove(
+                long key) {
+
+            int i = indexOf(key);
+            if (i < 0) {
+                return false;
+            }
+
+            int slot = slots[i] - 1;
+            shiftBack(i);
+            size--;
+
+            flags[slot] = FREE;
+            free[freeCount++] = slot;
+            return true;
+        }
+
+        private static int hash(
+                long key) {
+
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        private int indexOf(
+                long key) {
+
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; slots[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        private int slotOf(
+                long key) {
+
+            int i = indexOf(key);
+            if (i >= 0) {
+                return slots[i] - 1;
+            }
+
+            while (size >= maxSize) {
+                evict();
+            }
+
+            int slot = allocate(key);
+
+            int mask = keys.length - 1;
+            i = hash(key) & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            slots[i] = slot + 1;
+
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+
+            return slot;
+        }
+
+        /**
+         * Zeroed slot of new key, freed one or next one.
+         */
+        private int allocate(
+                long key) {
+
+            int slot;
+            if (freeCount > 0) {
+
+                slot = free[--freeCount];
+
+                ByteBuffer chunk = chunk(slot);
+                int base = base(slot);
+                for (int j = 0; j < slotSize; j += 8) {
+                    chunk.putLong(base + j, 0L);
+                }
+
+            } else {
+
+                slot = allocated++;
+                if (slot / chunkSlots == chunks.length) {
+                    chunks = Arrays.copyOf(chunks, chunks.length + 1);
+                    chunks[chunks.length - 1] = ByteBuffer.allocateDirect(chunkSlots * slotSize).order(ByteOrder.nativeOrder());
+
+                    int capacity = chunks.length * chunkSlots;
+                    slotKeys = Arrays.copyOf(slotKeys, capacity);
+                    flags = Arrays.copyOf(flags, capacity);
+                    free = Arrays.copyOf(free, capacity);
+                }
+            }
+
+            slotKeys[slot] = key;
+            flags[slot] = 0;
+            return slot;
+        }
+
+        /**
+         * Remove first key not referenced since hand passed it last time, references are cleared on the way.
+         */
+        private void evict() {
+
+            for (int n = 0; n < 2 * allocated; n++) {
+
+                int slot = hand;
+                hand = hand + 1 == allocated ? 0 : hand + 1;
+
+                byte f = flags[slot];
+                if ((f & (PINNED | FREE)) != 0) {
+                    continue;
+                }
+                if ((f & REFERENCED) != 0) {
+                    flags[slot] = (byte) (f & ~REFERENCED);
+                    continue;
+                }
+
+                remove(slotKeys[slot]);
+                evictions++;
+                return;
+            }
+
+            throw new IllegalStateException("State store partition is full of keys kept by owners: keys=" + size);
+        }
+
+        /**
+         * Fill index slot {@code gap} with following entries of same probe chain.
+         */
+        private void shiftBack(
+                int gap) {
+
+            int mask = keys.length - 1;
+            int i = gap;
+            while (true) {
+
+                i = (i + 1) & mask;
+                if (slots[i] == 0) {
+                    break;
+                }
+
+                int home = hash(keys[i]) & mask;
+                if (((i - home) & mask) >= ((i - gap) & mask)) {
+                    keys[gap] = keys[i];
+                    slots[gap] = slots[i];
+                    gap = i;
+                }
+            }
+
+            keys[gap] = 0L;
+            slots[gap] = 0;
+        }
+
+        private @Nonnull ByteBuffer chunk(
+                int slot) {
+
+            return chunks[slot / chunkSlots];
+        }
+
+        private int base(
+                int slot) {
+
+            return (slot % chunkSlots) * slotSize;
+        }
+
+        private void resize() {
+
+            long[] oldKeys = keys;
+            int[] oldSlots = slots;
+
+            keys = new long[oldKeys.length * 2];
+            slots = new int[oldSlots.length * 2];
+            int mask = keys.length - 1;
+
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldSlots[j] != 0) {
+                    int i = hash(oldKeys[j]) & mask;
+                    while (slots[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    slots[i] = oldSlots[j];
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.rtlservice.az.prototype_udp_srv.udp;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.datagram.DatagramPacket;
+import io.vertx.core.net.SocketAddress;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.net.InetSocketAddress;
+
+/**
+ * Datagram received by {@link ReceiveEngine#NIO} engine, flyweight reused for every datagram of
+ * server, so decoder must not keep it.
+ * <p>
+ * Content is pooled direct buffer, which is released after decoder returns: decoder which keeps
+ * it must retain it (as {@code PacketView} does). {@link #content()} and {@link #senderAddress()}
+ * do not allocate, {@link #data()} and {@link #sender()} wrap them into new vert.x objects.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@NotThreadSafe
+public final class NioDatagram
+        implements DatagramPacket {
+
+    @Nullable private ByteBuf content;
+    @Nullable private InetSocketAddress sender;
+
+    NioDatagram() {
+    }
+
+    @Nonnull NioDatagram set(
+            @Nonnull ByteBuf content,
+            @Nonnull InetSocketAddress sender) {
+
+        this.content = content;
+        this.sender = sender;
+        return this;
+    }
+
+    void clear() {
+        this.content = null;
+        this.sender = null;
+    }
+
+    public @Nonnull ByteBuf content() {
+
+        ByteBuf content = this.content;
+        if (content == null) {
+            throw new IllegalStateException("Datagram is handled");
+        }
+
+        return content;
+    }
+
+    public @Nonnull InetSocketAddress senderAddress() {
+
+        InetSocketAddress sender = this.sender;
+        if (sender == null) {
+            throw new IllegalStateException("Datagram is handled");
+        }
+
+        return sender;
+    }
+
+    @Override
+    public @Nonnull SocketAddress sender() {
+        InetSocketAddress sender = senderAddress();
+        return SocketAddress.inetSocketAddress(sender.getPort(), sender.getAddress().getHostAddress());
+    }
+
+    @Override
+    public @Nonnull Buffer data() {
+        return Buffer.buffer(content());
+    }
+
+}
@@ -0,0 +1,287 @@
+package com.rtlservice.az.prototype_udp_srv.udp;
+
+import com.rtlservice.az.prototype_udp_srv.HandlerLoggable;
+import com.rtlservice.az.prototype_udp_srv.metrics.Metrics;
+import com.rtlservice.az.prototype_udp_srv.processor.MpscRing;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.datagram.DatagramPacket;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.net.SocketAddress;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link ReceiveEngine#NIO} engine of {@link UDPServer}: own thread receives datagrams from
+ * blocking NIO channel in tight loop into one direct buffer, copies every datagram into pooled
+ * direct buffer of its size and offers it to {@link MpscRing}. Event loop of server drains ring
+ * in bursts and hands datagrams to server handler as {@link NioDatagram} flyweight, so neither
+ * receive buffer nor datagram wrapper is allocated per datagram. Source address still is:
+ * {@link DatagramChannel#receive(ByteBuffer)} returns new {@link InetSocketAddress} for every
+ * datagram. Datagrams over ring capacity are dropped.
+ * <p>
+ * Receiving thread is plain daemon thread, it is not pinned to CPU.
+ * <p>
+ * Replies are sent through same channel by own reply thread, so full send buffer never blocks
+ * event loop: event loop offers them to other ring and wakes reply thread once at end of current
+ * task (or every {@link UDPServerOptions#setReplyBatchSize(int) reply batch size} replies), like
+ * {@link ReplySender} flushes. Every reply allocates its destination address and NIO view of its
+ * buffer. Replies over ring capacity are dropped.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@ThreadSafe
+class NioReceiver {
+
+    private static final Logger _LOG = LoggerFactory.getLogger(NioReceiver.class);
+
+    private static final int MAX_DATAGRAM = 65536;
+
+    // datagrams handled by one event loop task
+    private static final int BURST = 256;
+
+    @Nonnull private final DatagramChannel channel;
+    @Nonnull private final Context context;
+    @Nonnull private final Handler<DatagramPacket> handler;
+    @Nonnull private final MpscRing<ByteBuf, InetSocketAddress> ring;
+    @Nonnull private final Thread thread;
+    @Nonnull private final MpscRing<ByteBuf, InetSocketAddress> replies;
+    @Nonnull private final Thread replyThread;
+    private final int replyBatchSize;
+
+    @Nonnull private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    @Nonnull private final Handler<Void> drain = (HandlerLoggable<Void>) (v) -> drain();
+    @Nonnull private final BiConsumer<ByteBuf, InetSocketAddress> handle = this::handle;
+    @Nonnull private final BiConsumer<ByteBuf, InetSocketAddress> sendReply = this::sendReply;
+
+    // accessed from server context only
+    @Nonnull private final NioDatagram datagram = new NioDatagram();
+    private int unflushed = 0;
+
+    private volatile boolean running = true;
+    private volatile boolean replyParked = false;
+
+    /**
+     * Bind channel, datagrams are handled on {@code context} after {@link #start()}.
+     */
+    NioReceiver(
+            @Nonnull UDPServerOptions options,
+            @Nonnull Context context,
+            @Nonnull Handler<DatagramPacket> handler)
+            throws IOException {
+
+        this.context = context;
+        this.handler = handler;
+        this.ring = new MpscRing<>(options.getReceiveQueueSize());
+        this.replies = new MpscRing<>(options.getReceiveQueueSize());
+        this.replyBatchSize = options.getReplyBatchSize();
+
+        this.channel = DatagramChannel.open();
+        try {
+
+            if (options.isReusePort()) {
+                channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            if (options.getReceiveBufferSize() != -1) {
+                channel.setOption(StandardSocketOptions.SO_RCVBUF, options.getReceiveBufferSize());
+            }
+            channel.bind(new InetSocketAddress(options.getHost(), options.getPort()));
+
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+
+        this.thread = new Thread(this::receive, "udp-receiver-" + options.getPort());
+        this.thread.setDaemon(true);
+
+        this.replyThread = new Thread(this::sendReplies, "udp-replier-" + options.getPort());
+        this.replyThread.setDaemon(true);
+    }
+
+    void start() {
+        replyThread.start();
+        thread.start();
+    }
+
+    /**
+     * Close channel, datagrams not yet handled and replies not yet sent are dropped, must be called
+     * on server context. Done handler is called on server context when receiving and reply threads
+     * are stopped.
+     */
+    void close(
+            @Nonnull Handler<AsyncResult<Void>> done)
+            throws IOException {
+
+        running = false;
+        channel.close();
+        LockSupport.unpark(replyThread);
+
+        // receiving thread stops on closed channel, threads are joined off event loop
+        context.<Void>executeBlocking(
+                (joined) -> {
+                    try {
+                        thread.join(1000L);
+                        replyThread.join(1000L);
+                        joined.complete();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        joined.fail(ex);
+                    }
+                },
+                false,
+                (HandlerLoggable<AsyncResult<Void>>) (async) -> {
+                    ring.drain((content, sender) -> content.release(), Integer.MAX_VALUE);
+                    Metrics.REPLY_FAILURES.add(replies.drain((reply, to) -> reply.release(), Integer.MAX_VALUE));
+                    done.handle(async);
+                });
+    }
+
+    /**
+     * Queue reply to address for reply thread, must be called on server context.
+     */
+    void send(
+            @Nonnull Buffer reply,
+            @Nonnull SocketAddress to) {
+
+        ByteBuf content = reply.getByteBuf();
+        if (!replies.offer(content, new InetSocketAddress(to.host(), to.port()))) {
+            content.release();
+            Metrics.REPLY_FAILURES.increment();
+            return;
+        }
+
+        if (++unflushed >= replyBatchSize) {
+            flush();
+        } else if (unflushed == 1) {
+            // end of current task (burst of replies)
+            context.runOnContext((HandlerLoggable<Void>) (v) -> flush());
+        }
+    }
+
+    /**
+     * Wake reply thread for replies queued so far, must be called on server context.
+     */
+    void flush() {
+
+        if (unflushed == 0) return;
+        unflushed = 0;
+
+        // reply is published before flag is read, so it can't be missed
+        if (replyParked) {
+            LockSupport.unpark(replyThread);
+        }
+    }
+
+    private void sendReplies() {
+
+        while (running) {
+
+            if (replies.drain(sendReply, BURST) > 0) {
+                continue;
+            }
+
+            replyParked = true;
+            if (replies.isEmpty() && running) {
+                LockSupport.park(this);
+            }
+            replyParked = false;
+        }
+    }
+
+    private void sendReply(
+            @Nonnull ByteBuf reply,
+            @Nonnull InetSocketAddress to) {
+
+        try {
+
+            channel.send(reply.nioBuffer(), to);
+            Metrics.REPLIES_SENT.increment();
+
+        } catch (IOException ex) {
+            Metrics.REPLY_FAILURES.increment();
+            if (running) {
+                _LOG.debug("NIO reply sending fail: to={0}",
+                        ex,
+                        to);
+            }
+        } finally {
+            reply.release();
+        }
+    }
+
+    private void receive() {
+
+        ByteBuffer received = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+
+        while (running) {
+            try {
+
+                received.clear();
+                InetSocketAddress sender = (InetSocketAddress) channel.receive(received);
+                received.flip();
+
+                ByteBuf content = PooledByteBufAllocator.DEFAULT.directBuffer(received.remaining());
+                content.writeBytes(received);
+
+                if (!ring.offer(content, sender)) {
+                    content.release();
+                    Metrics.RECEIVE_DROPPED.increment();
+                    continue;
+                }
+
+                // one task per burst: flag is reset by task before it drains ring
+                if (scheduled.compareAndSet(false, true)) {
+                    context.runOnContext(drain);
+                }
+
+            } catch (ClosedChannelException ex) {
+                return;
+            } catch (IOException ex) {
+                _LOG.warn("NIO datagram receiving fail: port={0,number,#}",
+                        ex,
+                        channel.socket().getLocalPort());
+            } catch (Throwable ex) {
+                _LOG.error("NIO datagram receiving fail", ex);
+            }
+        }
+    }
+
+    private void drain() {
+
+        scheduled.set(false);
+
+        // rest of ring is left to next task, so event loop serves other tasks (replies, timers)
+        if (ring.drain(handle, BURST) == BURST && scheduled.compareAndSet(false, true)) {
+            context.runOnContext(drain);
+        }
+    }
+
+    private void handle(
+            @Nonnull ByteBuf content,
+            @Nonnull InetSocketAddress sender) {
+
+        try {
+            handler.handle(datagram.set(content, sender));
+        } finally {
+            datagram.clear();
+            content.release();
+        }
+    }
+
+}
@@ -0,0 +1,276 @@
+package com.rtlservice.az.prototype_udp_srv.udp;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Token bucket per key (e.g. MAC): key gets {@link RateLimiterOptions#setRate(long) rate}
+ * messages per second and at most {@link RateLimiterOptions#setBurst(int) burst} at once,
+ * messages over it are dropped.
+ * <p>
+ * Bucket is kept as one {@code long} (theoretical arrival time of next message, GCRA) and
+ * updated by CAS, keys are slots of open-addressing table of atomic arrays, so limiter is
+ * shared by all receiving sockets without locks and allocation. Key is never removed, slot of
+ * key idle for {@link RateLimiterOptions#setIdleTimeout(long) idle timeout} is taken over by
+ * new key. Message of key which finds no free or idle slot is not limited.
+ * <p>
+ * Races of takeover may briefly charge message to wrong key, limiter is approximate by design.
+ *
+ * @see UDPServer#setRateLimiter(RateLimiter)
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@ThreadSafe
+public final class RateLimiter<I> {
+
+    /**
+     * Key of messages which are not limited (e.g. datagram too short to have MAC), also marks free slot.
+     */
+    public static final long UNLIMITED = Long.MIN_VALUE;
+
+    // slots probed for key, its free or idle slot
+    private static final int PROBES = 16;
+
+    @Nonnull private final ToLongFunction<I> keyMapper;
+    private final long interval;
+    private final long tolerance;
+    private final long idleTimeout;
+    private final int topOffenders;
+    private final long origin = System.nanoTime();
+
+    // per slot: key, theoretical arrival time (ns since origin), dropped messages
+    @Nonnull private final AtomicLongArray keys;
+    @Nonnull private final AtomicLongArray arrivals;
+    @Nonnull private final AtomicLongArray drops;
+    private final int mask;
+
+    @Nonnull private final LongAdder size = new LongAdder();
+    @Nonnull private final LongAdder dropped = new LongAdder();
+    @Nonnull private final LongAdder untracked = new LongAdder();
+    @Nonnull private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param keyMapper key of message (e.g. MAC), {@link #UNLIMITED} if message is not limited
+     */
+    public RateLimiter(
+            @Nonnull ToLongFunction<I> keyMapper,
+            @Nonnull RateLimiterOptions options) {
+
+        this.keyMapper = keyMapper;
+        this.interval = Math.max(1L, TimeUnit.SECONDS.toNanos(1L) / options.getRate());
+        this.tolerance = interval * options.getBurst();
+        this.idleTimeout = TimeUnit.MILLISECONDS.toNanos(options.getIdleTimeout());
+        this.topOffenders = options.getTopOffenders();
+
+        int capacity = PROBES;
+        while (capacity < options.getMaxKeys()) {
+            capacity <<= 1;
+        }
+
+        this.keys = new AtomicLongArray(capacity);
+        this.arrivals = new AtomicLongArray(capacity);
+        this.drops = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+
+        for (int i = 0; i < capacity; i++) {
+            keys.set(i, UNLIMITED);
+        }
+    }
+
+    private static int hash(
+            long key) {
+
+        // fibonacci hashing, high bits are well mixed
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Take token of key of message.
+     *
+     * @param now {@link System#nanoTime()} of receiving
+     * @return false if message is over rate of its key
+     */
+    public boolean accept(
+            @Nonnull I message,
+            long now) {
+
+        long key = keyMapper.applyAsLong(message);
+        if (key == UNLIMITED) {
+            return true;
+        }
+
+        long time = now - origin;
+
+        int slot = slot(key, time);
+        if (slot < 0) {
+            untracked.increment();
+            return true;
+        }
+
+        while (true) {
+
+            long arrival = arrivals.get(slot);
+            long next = Math.max(arrival, time) + interval;
+
+            if (next - time > tolerance) {
+                drops.incrementAndGet(slot);
+                dropped.increment();
+                return false;
+            }
+
+            if (arrivals.compareAndSet(slot, arrival, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return slot of key (taken if needed), -1 if there is no free or idle slot for it
+     */
+    private int slot(
+            long key,
+            long time) {
+
+        int start = hash(key);
+        int idle = -1;
+
+        for (int i = 0; i < PROBES; i++) {
+
+            int slot = (start + i) & mask;
+            long current = keys.get(slot);
+
+            if (current == key) {
+                return slot;
+            }
+
+            if (current == UNLIMITED) {
+
+                // keys are never removed, so key is not among following slots
+                if (keys.compareAndSet(slot, UNLIMITED, key)) {
+                    arrivals.set(slot, time);
+                    size.increment();
+                    return slot;
+                }
+
+                if (keys.get(slot) == key) {
+                    return slot;
+                }
+
+            } else if (idle < 0 && time - arrivals.get(slot) > idleTimeout) {
+                idle = slot;
+            }
+        }
+
+        if (idle >= 0) {
+
+            long current = keys.get(idle);
+            if (time - arrivals.get(idle) > idleTimeout && keys.compareAndSet(idle, current, key)) {
+                arrivals.set(idle, time);
+                drops.set(idle, 0L);
+                evictions.increment();
+                return idle;
+            }
+
+            if (keys.get(idle) == key) {
+                return idle;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Count of dropped messages of key since it is tracked.
+     */
+    public long getDropped(
+            long key) {
+
+        int start = hash(key);
+        for (int i = 0; i < PROBES; i++) {
+
+            int slot = (start + i) & mask;
+            long current = keys.get(slot);
+
+            if (current == key) {
+                return drops.get(slot);
+            }
+            if (current == UNLIMITED) {
+                break;
+            }
+        }
+
+        return 0L;
+    }
+
+    /**
+     * Keys with most dropped messages and their counts, in descending order of counts.
+     * Scans whole table.
+     */
+    public @Nonnull Map<Long, Long> getTopOffenders() {
+
+        List<long[]> top = new ArrayList<>(topOffenders + 1);
+
+        for (int slot = 0; slot <= mask && topOffenders > 0; slot++) {
+
+            long count = drops.get(slot);
+            if (count == 0L || (top.size() == topOffenders && count <= top.get(top.size() - 1)[1])) {
+                continue;
+            }
+
+            int i = top.size();
+            while (i > 0 && top.get(i - 1)[1] < count) {
+                i--;
+            }
+            top.add(i, new long[] {keys.get(slot), count});
+
+            if (top.size() > topOffenders) {
+                top.remove(top.size() - 1);
+            }
+        }
+
+        Map<Long, Long> offenders = new LinkedHashMap<>();
+        for (long[] offender : top) {
+            offenders.put(offender[0], offender[1]);
+        }
+
+        return offenders;
+    }
+
+    /**
+     * Count of keys tracked.
+     */
+    public long size() {
+        return size.sum();
+    }
+
+    /**
+     * Count of messages dropped.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Count of messages not limited since there was no free or idle slot for their keys.
+     */
+    public long getUntracked() {
+        return untracked.sum();
+    }
+
+    /**
+     * Count of idle keys whose slots are taken over by new keys.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+}
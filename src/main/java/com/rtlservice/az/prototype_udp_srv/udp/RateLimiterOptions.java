@@ -0,0 +1,167 @@
+package com.rtlservice.az.prototype_udp_srv.udp;
+
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Options of {@link RateLimiter}.
+ *
+ * @see RateLimiter
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class RateLimiterOptions {
+
+    /**
+     * Default rate (messages per second) per key = 100.
+     */
+    public static final long DEFAULT_RATE = 100L;
+
+    /**
+     * Default burst (messages accepted at once after idle period) per key = 100.
+     */
+    public static final int DEFAULT_BURST = 100;
+
+    /**
+     * Default count of keys tracked = 65536.
+     */
+    public static final int DEFAULT_MAX_KEYS = 65536;
+
+    /**
+     * Default idle timeout (ms) of key = 60000 ms.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = 60000L;
+
+    /**
+     * Default count of top offenders exported = 10.
+     */
+    public static final int DEFAULT_TOP_OFFENDERS = 10;
+
+    private long rate;
+    private int burst;
+    private int maxKeys;
+    private long idleTimeout;
+    private int topOffenders;
+
+    public RateLimiterOptions() {
+        this.rate = DEFAULT_RATE;
+        this.burst = DEFAULT_BURST;
+        this.maxKeys = DEFAULT_MAX_KEYS;
+        this.idleTimeout = DEFAULT_IDLE_TIMEOUT;
+        this.topOffenders = DEFAULT_TOP_OFFENDERS;
+    }
+
+    public RateLimiterOptions(
+            @Nonnull RateLimiterOptions other) {
+
+        this.rate = other.rate;
+        this.burst = other.burst;
+        this.maxKeys = other.maxKeys;
+        this.idleTimeout = other.idleTimeout;
+        this.topOffenders = other.topOffenders;
+    }
+
+    public RateLimiterOptions(
+            @Nonnull JsonObject json) {
+
+        this(new RateLimiterOptions()
+                .setRate(json.getLong("rate", DEFAULT_RATE))
+                .setBurst(json.getInteger("burst", DEFAULT_BURST))
+                .setMaxKeys(json.getInteger("maxKeys", DEFAULT_MAX_KEYS))
+                .setIdleTimeout(json.getLong("idleTimeout", DEFAULT_IDLE_TIMEOUT))
+                .setTopOffenders(json.getInteger("topOffenders", DEFAULT_TOP_OFFENDERS)));
+    }
+
+    public long getRate() {
+        return rate;
+    }
+
+    /**
+     * Set sustained rate (messages per second) per key.
+     */
+    public @Nonnull RateLimiterOptions setRate(
+            long rate) {
+
+        if (rate < 1) {
+            throw new IllegalArgumentException("rate must be >= 1");
+        }
+
+        this.rate = rate;
+        return this;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+     * Set size of bucket: count of messages of key accepted at once after idle period.
+     */
+    public @Nonnull RateLimiterOptions setBurst(
+            int burst) {
+
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be >= 1");
+        }
+
+        this.burst = burst;
+        return this;
+    }
+
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    /**
+     * Set count of keys tracked, messages of keys over it are not limited until some key is idle.
+     * Memory is at most {@code maxKeys * 48} bytes.
+     */
+    public @Nonnull RateLimiterOptions setMaxKeys(
+            int maxKeys) {
+
+        if (maxKeys < 1) {
+            throw new IllegalArgumentException("maxKeys must be >= 1");
+        }
+
+        this.maxKeys = maxKeys;
+        return this;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Set time (ms) after which key with full bucket may be evicted to make room for new key.
+     */
+    public @Nonnull RateLimiterOptions setIdleTimeout(
+            long idleTimeout) {
+
+        if (idleTimeout < 1) {
+            throw new IllegalArgumentException("idleTimeout must be >= 1");
+        }
+
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    public int getTopOffenders() {
+        return topOffenders;
+    }
+
+    /**
+     * Set count of keys with most dropped messages exported as metrics.
+     */
+    public @Nonnull RateLimiterOptions setTopOffenders(
+            int topOffenders) {
+
+        if (topOffenders < 0) {
+            throw new IllegalArgumentException("topOffenders must be >= 0");
+        }
+
+        this.topOffenders = topOffenders;
+        return this;
+    }
+
+}
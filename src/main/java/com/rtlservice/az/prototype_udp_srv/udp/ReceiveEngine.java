@@ -0,0 +1,25 @@
+package com.rtlservice.az.prototype_udp_srv.udp;
+
+/**
+ * How {@link UDPServer} receives datagrams, in both engines they are decoded and routed on
+ * event loop of server.
+ *
+ * @see UDPServerOptions#setReceiveEngine(ReceiveEngine)
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public enum ReceiveEngine {
+
+    /**
+     * Vert.x {@code DatagramSocket}: every datagram is copied into new heap buffer and wrapped
+     * into new packet and address objects.
+     */
+    VERTX,
+
+    /**
+     * NIO {@code DatagramChannel} drained by own receive thread into pooled direct buffers,
+     * which are handed to event loop through lock-free ring, see {@link NioDatagram}.
+     */
+    NIO
+
+}
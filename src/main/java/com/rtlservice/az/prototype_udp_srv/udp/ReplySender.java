@@ -0,0 +1,126 @@
+package com.rtlservice.az.prototype_udp_srv.udp;
+
+import com.rtlservice.az.prototype_udp_srv.HandlerLoggable;
+import com.rtlservice.az.prototype_udp_srv.metrics.Metrics;
+import io.netty.channel.Channel;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.datagram.DatagramSocket;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.net.SocketAddress;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+
+/**
+ * Sends replies from socket of {@link UDPServer}, coalesced on its event loop: replies are written
+ * to channel without flush and flushed once at end of current event loop task (or every
+ * {@link UDPServerOptions#setReplyBatchSize(int) reply batch size} replies), so burst of replies
+ * costs one flush (one {@code sendmmsg} with native transport).
+ * <p>
+ * Vert.x {@link DatagramSocket#send(Buffer, int, String, io.vertx.core.Handler)} resolves address
+ * and flushes on every call, so channel is taken from socket implementation; if it is not available,
+ * replies are sent through vert.x API.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@NotThreadSafe
+class ReplySender {
+
+    private static final Logger _LOG = LoggerFactory.getLogger(ReplySender.class);
+
+    @Nonnull private final DatagramSocket socket;
+    @Nullable private final Channel channel;
+    @Nonnull private final Context context;
+    private final int batchSize;
+
+    // accessed from server context only
+    private int unflushed = 0;
+
+    ReplySender(
+            @Nonnull DatagramSocket socket,
+            @Nonnull Context context,
+            int batchSize) {
+
+        this.socket = socket;
+        this.channel = channelOf(socket);
+        this.context = context;
+        this.batchSize = batchSize;
+
+        // channel is private field of vert.x socket, so path of replies is always logged
+        if (channel != null) {
+            _LOG.info("replies are coalesced: channel={0}, socket={1}",
+                    channel.getClass().getSimpleName(),
+                    socket.getClass().getName());
+        } else {
+            _LOG.warn("socket channel is not available, replies are sent through vert.x API and not coalesced: socket={0}",
+                    socket.getClass().getName());
+        }
+    }
+
+    private static @Nullable Channel channelOf(
+            @Nonnull DatagramSocket socket) {
+
+        try {
+            Field field = socket.getClass().getDeclaredField("channel");
+            field.setAccessible(true);
+            return (Channel) field.get(socket);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            _LOG.debug("socket channel taking fail", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Send reply to address, must be called on server context.
+     */
+    void send(
+            @Nonnull Buffer reply,
+            @Nonnull SocketAddress to) {
+
+        Channel channel = this.channel;
+        if (channel == null) {
+            socket.send(reply, to.port(), to.host(), (HandlerLoggable<AsyncResult<DatagramSocket>>) (async) -> {
+                if (async.succeeded()) {
+                    Metrics.REPLIES_SENT.increment();
+                } else {
+                    Metrics.REPLY_FAILURES.increment();
+                }
+            });
+            return;
+        }
+
+        // failures reach socket exception handler
+        channel.write(
+                new io.netty.channel.socket.DatagramPacket(
+                        reply.getByteBuf(),
+                        new InetSocketAddress(to.host(), to.port())),
+                channel.voidPromise());
+
+        Metrics.REPLIES_SENT.increment();
+
+        if (++unflushed >= batchSize) {
+            flush();
+        } else if (unflushed == 1) {
+            // end of current task (burst of replies)
+            context.runOnContext((HandlerLoggable<Void>) (v) -> flush());
+        }
+    }
+
+    void flush() {
+
+        if (unflushed == 0) return;
+        unflushed = 0;
+
+        Channel channel = this.channel;
+        if (channel != null) {
+            channel.flush();
+        }
+    }
+
+}
@@ -1,21 +1,55 @@
 package com.rtlservice.az.prototype_udp_srv.udp;
 
 import com.rtlservice.az.prototype_udp_srv.HandlerLoggable;
+import com.rtlservice.az.prototype_udp_srv.metrics.Metrics;
+import com.rtlservice.az.prototype_udp_srv.metrics.MetricsRegistry;
+import com.rtlservice.az.prototype_udp_srv.metrics.Traced;
+import com.rtlservice.az.prototype_udp_srv.packet.Batch;
+import com.rtlservice.az.prototype_udp_srv.processor.StripedEngine;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.datagram.DatagramPacket;
 import io.vertx.core.datagram.DatagramSocket;
+import io.vertx.core.datagram.DatagramSocketOptions;
 import io.vertx.core.eventbus.Message;
+import io.vertx.core.impl.ContextInternal;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.net.SocketAddress;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
+ * Receives datagrams, decodes and sends them to processor endpoint.
+ * <p>
+ * Several servers can share same address with {@link UDPServerOptions#setReusePort(boolean)
+ * SO_REUSEPORT}, every server has its own socket and event loop.
+ * <p>
+ * With {@link UDPServerOptions#setBatchSize(int) batching} decoded datagrams are sent as
+ * {@link Batch}, flushed when it is full or after {@link UDPServerOptions#setBatchDelay(long)
+ * batch delay}.
+ * <p>
+ * With reply encoder processor output is encoded and sent back to source address of datagram
+ * (null output or failure means no reply), replies are coalesced on event loop of server.
+ * <p>
+ * With {@link StripedEngine} decoded datagrams are offered to engine directly, bypassing
+ * event bus (batching is not used).
+ * <p>
+ * With {@link ReceiveEngine#NIO} engine datagrams are received by own thread of server from NIO
+ * channel, see {@link NioReceiver}.
+ * <p>
+ * With {@link #setRateLimiter(RateLimiter) rate limiter} datagrams over rate of their key are
+ * dropped before decoding, one limiter can be shared by all servers.
  *
  * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
  */
@@ -28,15 +62,97 @@ public class UDPServer<I, O>
 
     @Nonnull private final Function<DatagramPacket, I> decoder;
     @Nonnull private final String incomingProcessorEndpoint;
+    @Nonnull private final UDPServerOptions options;
+    @Nullable private final Function<O, Buffer> replyEncoder;
+    @Nullable private final StripedEngine<I, O> engine;
+
+    @Nullable private RateLimiter<DatagramPacket> rateLimiter = null;
+    @Nonnull private MetricsRegistry registry = Metrics.REGISTRY;
 
     @Nullable private volatile DatagramSocket inSocket = null;
+    @Nullable private volatile NioReceiver receiver = null;
+
+    // accessed from server context only
+    @Nullable private ReplySender replySender = null;
+    @Nullable private Batch<I> batch = null;
+    @Nullable private SocketAddress[] batchSenders = null;
+    private long batchGeneration = 0L;
 
     public UDPServer(
             @Nonnull Function<DatagramPacket, I> decoder,
             @Nonnull String incomingProcessorEndpoint) {
 
+        this(decoder, incomingProcessorEndpoint, new UDPServerOptions());
+    }
+
+    public UDPServer(
+            @Nonnull Function<DatagramPacket, I> decoder,
+            @Nonnull String incomingProcessorEndpoint,
+            @Nonnull UDPServerOptions options) {
+
+        this(decoder, incomingProcessorEndpoint, options, null);
+    }
+
+    /**
+     * @param replyEncoder encoder of processor output sent back to source of datagram,
+     *                     null means no replies
+     */
+    public UDPServer(
+            @Nonnull Function<DatagramPacket, I> decoder,
+            @Nonnull String incomingProcessorEndpoint,
+            @Nonnull UDPServerOptions options,
+            @Nullable Function<O, Buffer> replyEncoder) {
+
+        this(decoder, incomingProcessorEndpoint, null, options, replyEncoder);
+    }
+
+    /**
+     * @param engine engine, which decoded datagrams are offered to
+     * @param replyEncoder encoder of processor output sent back to source of datagram,
+     *                     null means no replies
+     */
+    public UDPServer(
+            @Nonnull Function<DatagramPacket, I> decoder,
+            @Nonnull StripedEngine<I, O> engine,
+            @Nonnull UDPServerOptions options,
+            @Nullable Function<O, Buffer> replyEncoder) {
+
+        this(decoder, engine.getEndpoint(), engine, options, replyEncoder);
+    }
+
+    private UDPServer(
+            @Nonnull Function<DatagramPacket, I> decoder,
+            @Nonnull String incomingProcessorEndpoint,
+            @Nullable StripedEngine<I, O> engine,
+            @Nonnull UDPServerOptions options,
+            @Nullable Function<O, Buffer> replyEncoder) {
+
         this.decoder = decoder;
         this.incomingProcessorEndpoint = incomingProcessorEndpoint;
+        this.engine = engine;
+        this.options = new UDPServerOptions(options);
+        this.replyEncoder = replyEncoder;
+    }
+
+    /**
+     * Set limiter of datagrams per key, must be called before deploy.
+     */
+    public @Nonnull UDPServer<I, O> setRateLimiter(
+            @Nullable RateLimiter<DatagramPacket> rateLimiter) {
+
+        this.rateLimiter = rateLimiter;
+        return this;
+    }
+
+    /**
+     * Set registry of metrics, e.g. {@link MetricsRegistry#withLabel(String, String) labeled} by node
+     * when several nodes run in one JVM ({@link Metrics#REGISTRY} by default); must be called before deploy.
+     */
+    public @Nonnull UDPServer<I, O> setMetricsRegistry(
+            @Nonnull MetricsRegistry registry) {
+
+        this.registry = registry;
+        return this;
     }
 
     public void start(
@@ -45,31 +161,77 @@ public class UDPServer<I, O>
 
         try {
 
-            _LOG.debug("{0}: try start UDP server: port={1,number,#}",
+            _LOG.debug("{0}: try start UDP server: host={1}, port={2,number,#}, reusePort={3}",
                     deploymentID(),
-                    PORT);
+                    options.getHost(),
+                    options.getPort(),
+                    options.isReusePort());
+
+            RateLimiter<DatagramPacket> rateLimiter = this.rateLimiter;
+            if (rateLimiter != null) {
+                registry.counter("udp_rate_limited_total", rateLimiter::getDropped);
+                registry.counter("udp_rate_untracked_total", rateLimiter::getUntracked);
+                registry.counter("udp_rate_evictions_total", rateLimiter::getEvictions);
+                registry.gauge("udp_rate_keys", rateLimiter::size);
+                registry.counters("udp_rate_limited_by_key_total", "key", () -> {
+                    Map<String, Long> offenders = new LinkedHashMap<>();
+                    rateLimiter.getTopOffenders().forEach((key, count) -> offenders.put(String.format("%012X", key), count));
+                    return offenders;
+                });
+            }
+
+            if (options.getReceiveEngine() == ReceiveEngine.NIO) {
+
+                assert receiver == null;
+                NioReceiver receiver = new NioReceiver(
+                        options,
+                        context,
+                        (HandlerLoggable<DatagramPacket>) this::handle);
+                this.receiver = receiver;
+                receiver.start();
+
+                start.complete();
+
+                _LOG.info("{0}: UDP server successfully started: host={1}, port={2,number,#}, engine=NIO",
+                        deploymentID(),
+                        options.getHost(),
+                        options.getPort());
+                return;
+            }
+
+            // without native transport every socket but first would fail to bind shared port
+            if (options.isReusePort() && !getVertx().isNativeTransportEnabled()) {
+                throw new IllegalStateException("SO_REUSEPORT requires native transport, which is not enabled");
+            }
+
+            DatagramSocketOptions socketOptions = new DatagramSocketOptions()
+                    .setReusePort(options.isReusePort());
+            if (options.getReceiveBufferSize() != -1) {
+                socketOptions.setReceiveBufferSize(options.getReceiveBufferSize());
+            }
 
             assert inSocket == null;
-            inSocket = getVertx().createDatagramSocket().listen(
-                    PORT,
-                    "localhost",
+            inSocket = getVertx().createDatagramSocket(socketOptions).listen(
+                    options.getPort(),
+                    options.getHost(),
                     (HandlerLoggable<AsyncResult<DatagramSocket>>) (socket) -> {
                         try {
                             if (socket.succeeded()) {
 
-                                socket.result().handler((HandlerLoggable<DatagramPacket>) (packet) -> {
-
-                                    I in = decoder.apply(packet);
-
-                                    getVertx().eventBus().send(
-                                            incomingProcessorEndpoint,
-                                            in,
-                                            (HandlerLoggable<AsyncResult<Message<Object>>>) (async) -> {
-                                                if (async.failed()) {
-                                                    _LOG.warn("UNEXPECTED EXCEPTION", async.cause());
-                                                }
-                                            });
-                                });
+                                if (replyEncoder != null) {
+                                    replySender = new ReplySender(
+                                            socket.result(),
+                                            context,
+                                            options.getReplyBatchSize());
+                                    socket.result().exceptionHandler((HandlerLoggable<Throwable>) (ex) -> {
+                                        Metrics.REPLY_FAILURES.increment();
+                                        _LOG.debug("{0}: UDP server reply sending fail",
+                                                ex,
+                                                deploymentID());
+                                    });
+                                }
+
+                                socket.result().handler((HandlerLoggable<DatagramPacket>) this::handle);
 
                                 start.complete();
 
@@ -81,18 +243,20 @@ public class UDPServer<I, O>
                         }
                     });
 
-            _LOG.info("{0}: UDP server successfully started: port={1,number,#}",
+            _LOG.info("{0}: UDP server successfully started: host={1}, port={2,number,#}",
                     deploymentID(),
-                    PORT);
+                    options.getHost(),
+                    options.getPort());
 
         } catch (Throwable ex) {
 
             start.fail(ex);
 
-            _LOG.warn("{0}: UDP server starting fail: port={1,number,#}",
+            _LOG.warn("{0}: UDP server starting fail: host={1}, port={2,number,#}",
                     ex,
                     deploymentID(),
-                    PORT);
+                    options.getHost(),
+                    options.getPort());
         }
     }
 
@@ -105,24 +269,52 @@ public class UDPServer<I, O>
 
             _LOG.debug("{0}: try stop UDP server: port={1}",
                     deploymentID(),
-                    PORT);
-
-            Objects.requireNonNull(inSocket).close((HandlerLoggable<AsyncResult<Void>>) (async) -> {
-                if (async.succeeded()) {
-                    _LOG.trace("{0}: UDP server socket successfully closed",
-                            deploymentID());
-                } else {
-                    _LOG.warn("{0}: UDP server socket closing fail",
-                            async.cause(),
-                            deploymentID());
-                }
-            });
+                    options.getPort());
 
-            super.stop(stop);
+            flush();
 
-            _LOG.info("{0}: UDP server successfully stopped: port={1}",
-                    deploymentID(),
-                    PORT);
+            NioReceiver receiver = this.receiver;
+            if (receiver != null) {
+
+                receiver.close((HandlerLoggable<AsyncResult<Void>>) (async) -> {
+                    if (async.succeeded()) {
+
+                        stop.complete();
+
+                        _LOG.info("{0}: UDP server successfully stopped: port={1}",
+                                deploymentID(),
+                                options.getPort());
+
+                    } else {
+
+                        stop.fail(async.cause());
+
+                        _LOG.warn("{0}: UDP server stopping fail: port={1}",
+                                async.cause(),
+                                deploymentID(),
+                                options.getPort());
+                    }
+                });
+
+            } else {
+
+                Objects.requireNonNull(inSocket).close((HandlerLoggable<AsyncResult<Void>>) (async) -> {
+                    if (async.succeeded()) {
+                        _LOG.trace("{0}: UDP server socket successfully closed",
+                                deploymentID());
+                    } else {
+                        _LOG.warn("{0}: UDP server socket closing fail",
+                                async.cause(),
+                                deploymentID());
+                    }
+                });
+
+                super.stop(stop);
+
+                _LOG.info("{0}: UDP server successfully stopped: port={1}",
+                        deploymentID(),
+                        options.getPort());
+            }
 
         } catch (Throwable ex) {
 
@@ -131,8 +323,204 @@ public class UDPServer<I, O>
             _LOG.warn("{0}: UDP server stopping fail: port={1}",
                     ex,
                     deploymentID(),
-                    PORT);
+                    options.getPort());
+        }
+    }
+
+    private void handle(
+            @Nonnull DatagramPacket packet) {
+
+        long received = System.nanoTime();
+        Metrics.RECEIVED.increment();
+
+        // flood is dropped before it costs decoding
+        RateLimiter<DatagramPacket> rateLimiter = this.rateLimiter;
+        if (rateLimiter != null && !rateLimiter.accept(packet, received)) {
+            return;
+        }
+
+        I in;
+        try {
+            in = decoder.apply(packet);
+        } catch (Throwable ex) {
+            Metrics.DECODE_FAILURES.increment();
+            throw ex;
+        }
+
+        if (in == null) {
+            Metrics.DECODE_FAILURES.increment();
+            return;
+        }
+
+        if (in instanceof Traced) {
+            ((Traced) in).setReceivedNanos(received);
+        }
+
+        // sender is wrapped only if it is replied
+        SocketAddress sender = replyEncoder != null ? packet.sender() : null;
+
+        if (engine != null) {
+            offer(in, sender);
+        } else if (options.getBatchSize() > 1) {
+            batch(in, sender);
+        } else {
+            send(in, sender);
+        }
+    }
+
+    /**
+     * @param senders source address of item or of every item of batch, null means no replies
+     */
+    private void send(
+            @Nonnull Object in,
+            @Nullable Object senders) {
+
+        getVertx().eventBus().send(
+                incomingProcessorEndpoint,
+                in,
+                (HandlerLoggable<AsyncResult<Message<Object>>>) (async) -> {
+                    if (async.succeeded()) {
+                        Metrics.REPLIES.increment();
+                        if (senders != null) {
+                            reply(async.result().body(), senders);
+                        }
+                    } else {
+                        Metrics.FAILURES.increment();
+                        _LOG.warn("UNEXPECTED EXCEPTION", async.cause());
+                    }
+                });
+    }
+
+    /**
+     * @param sender source address of item, null means no replies
+     */
+    private void offer(
+            @Nonnull I in,
+            @Nullable SocketAddress sender) {
+
+        Context context = this.context;
+
+        // called on thread of stripe
+        Objects.requireNonNull(engine).offer(
+                in,
+                (HandlerLoggable<AsyncResult<O>>) (async) -> {
+                    if (async.succeeded()) {
+                        Metrics.REPLIES.increment();
+                        if (sender != null && async.result() != null) {
+                            O out = async.result();
+                            context.runOnContext((HandlerLoggable<Void>) (v) -> reply(sender, out));
+                        }
+                    } else {
+                        Metrics.FAILURES.increment();
+                        _LOG.debug("{0}: engine offering fail",
+                                async.cause(),
+                                deploymentID());
+                    }
+                });
+    }
+
+    private void reply(
+            @Nullable Object out,
+            @Nonnull Object senders) {
+
+        if (senders instanceof SocketAddress) {
+            @SuppressWarnings("unchecked")
+            O result = (O) out;
+            reply((SocketAddress) senders, result);
+        } else if (out != null) {
+            // outputs of batch are in order of items
+            SocketAddress[] addresses = (SocketAddress[]) senders;
+            Batch<?> results = (Batch<?>) out;
+            for (int i = 0; i < results.size(); i++) {
+                @SuppressWarnings("unchecked")
+                O result = (O) results.get(i);
+                reply(addresses[i], result);
+            }
         }
     }
 
-}
\ No newline at end of file
+    private void reply(
+            @Nonnull SocketAddress to,
+            @Nullable O out) {
+
+        if (out == null) return;
+
+        Buffer buffer;
+        try {
+            buffer = Objects.requireNonNull(replyEncoder).apply(out);
+        } catch (Throwable ex) {
+            Metrics.REPLY_FAILURES.increment();
+            _LOG.warn("{0}: reply encoding fail",
+                    ex,
+                    deploymentID());
+            return;
+        }
+
+        if (buffer == null) return;
+
+        NioReceiver receiver = this.receiver;
+        if (receiver != null) {
+            receiver.send(buffer, to);
+        } else {
+            Objects.requireNonNull(replySender).send(buffer, to);
+        }
+    }
+
+    /**
+     * @param sender source address of item, null means no replies
+     */
+    private void batch(
+            @Nonnull I in,
+            @Nullable SocketAddress sender) {
+
+        if (batch == null) {
+
+            batch = new Batch<>(options.getBatchSize());
+            if (replyEncoder != null) {
+                batchSenders = new SocketAddress[options.getBatchSize()];
+            }
+
+            long generation = ++batchGeneration;
+            Handler<Void> deadline = (HandlerLoggable<Void>) (v) -> {
+                if (generation == batchGeneration) {
+                    flush();
+                }
+            };
+
+            if (options.getBatchDelay() == 0L) {
+                // end of current read burst
+                context.runOnContext(deadline);
+            } else {
+                Context context = this.context;
+                ((ContextInternal) context).nettyEventLoop().schedule(
+                        () -> context.runOnContext(deadline),
+                        options.getBatchDelay(),
+                        TimeUnit.MICROSECONDS);
+            }
+        }
+
+        if (batchSenders != null) {
+            batchSenders[batch.size()] = sender;
+        }
+        batch.add(in);
+
+        if (batch.size() >= options.getBatchSize()) {
+            flush();
+        }
+    }
+
+    private void flush() {
+
+        Batch<I> batch = this.batch;
+        if (batch == null) return;
+
+        SocketAddress[] senders = this.batchSenders;
+
+        this.batch = null;
+        this.batchSenders = null;
+        batchGeneration++;
+
+        send(batch, senders);
+    }
+
+}
@@ -0,0 +1,266 @@
+package com.rtlservice.az.prototype_udp_srv.udp;
+
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Options of {@link UDPServer}.
+ *
+ * @see UDPServer
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class UDPServerOptions {
+
+    /**
+     * Default bind address = localhost.
+     */
+    public static final String DEFAULT_HOST = "localhost";
+
+    /**
+     * Default bind port = {@link UDPServer#PORT}.
+     */
+    public static final int DEFAULT_PORT = UDPServer.PORT;
+
+    /**
+     * Default receive buffer size = -1 (OS default).
+     */
+    public static final int DEFAULT_RECEIVE_BUFFER_SIZE = -1;
+
+    /**
+     * Default SO_REUSEPORT = false.
+     */
+    public static final boolean DEFAULT_REUSE_PORT = false;
+
+    /**
+     * Default batch size = 1 (no batching).
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1;
+
+    /**
+     * Default batch delay = 200 us.
+     */
+    public static final long DEFAULT_BATCH_DELAY = 200L;
+
+    /**
+     * Default max count of replies written to socket before flush = 64.
+     */
+    public static final int DEFAULT_REPLY_BATCH_SIZE = 64;
+
+    /**
+     * Default receive engine = {@link ReceiveEngine#VERTX}.
+     */
+    public static final ReceiveEngine DEFAULT_RECEIVE_ENGINE = ReceiveEngine.VERTX;
+
+    /**
+     * Default count of datagrams received by {@link ReceiveEngine#NIO} engine and not yet handled = 4096.
+     */
+    public static final int DEFAULT_RECEIVE_QUEUE_SIZE = 4096;
+
+    @Nonnull private String host;
+    private int port;
+    private int receiveBufferSize;
+    private boolean reusePort;
+    private int batchSize;
+    private long batchDelay;
+    private int replyBatchSize;
+    @Nonnull private ReceiveEngine receiveEngine;
+    private int receiveQueueSize;
+
+    public UDPServerOptions() {
+        this.host = DEFAULT_HOST;
+        this.port = DEFAULT_PORT;
+        this.receiveBufferSize = DEFAULT_RECEIVE_BUFFER_SIZE;
+        this.reusePort = DEFAULT_REUSE_PORT;
+        this.batchSize = DEFAULT_BATCH_SIZE;
+        this.batchDelay = DEFAULT_BATCH_DELAY;
+        this.replyBatchSize = DEFAULT_REPLY_BATCH_SIZE;
+        this.receiveEngine = DEFAULT_RECEIVE_ENGINE;
+        this.receiveQueueSize = DEFAULT_RECEIVE_QUEUE_SIZE;
+    }
+
+    public UDPServerOptions(
+            @Nonnull UDPServerOptions other) {
+
+        this.host = other.host;
+        this.port = other.port;
+        this.receiveBufferSize = other.receiveBufferSize;
+        this.reusePort = other.reusePort;
+        this.batchSize = other.batchSize;
+        this.batchDelay = other.batchDelay;
+        this.replyBatchSize = other.replyBatchSize;
+        this.receiveEngine = other.receiveEngine;
+        this.receiveQueueSize = other.receiveQueueSize;
+    }
+
+    public UDPServerOptions(
+            @Nonnull JsonObject json) {
+
+        this(new UDPServerOptions()
+                .setHost(json.getString("host", DEFAULT_HOST))
+                .setPort(json.getInteger("port", DEFAULT_PORT))
+                .setReceiveBufferSize(json.getInteger("receiveBufferSize", DEFAULT_RECEIVE_BUFFER_SIZE))
+                .setReusePort(json.getBoolean("reusePort", DEFAULT_REUSE_PORT))
+                .setBatchSize(json.getInteger("batchSize", DEFAULT_BATCH_SIZE))
+                .setBatchDelay(json.getLong("batchDelay", DEFAULT_BATCH_DELAY))
+                .setReplyBatchSize(json.getInteger("replyBatchSize", DEFAULT_REPLY_BATCH_SIZE))
+                .setReceiveEngine(ReceiveEngine.valueOf(json.getString("receiveEngine", DEFAULT_RECEIVE_ENGINE.name())))
+                .setReceiveQueueSize(json.getInteger("receiveQueueSize", DEFAULT_RECEIVE_QUEUE_SIZE)));
+    }
+
+    public @Nonnull String getHost() {
+        return host;
+    }
+
+    /**
+     * Set bind address.
+     */
+    public @Nonnull UDPServerOptions setHost(
+            @Nonnull String host) {
+
+        this.host = host;
+        return this;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Set bind port.
+     */
+    public @Nonnull UDPServerOptions setPort(
+            int port) {
+
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("port must be in [0, 65535]");
+        }
+
+        this.port = port;
+        return this;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    /**
+     * Set SO_RCVBUF of socket (bytes), -1 means OS default.
+     */
+    public @Nonnull UDPServerOptions setReceiveBufferSize(
+            int receiveBufferSize) {
+
+        if (receiveBufferSize < 1 && receiveBufferSize != -1) {
+            throw new IllegalArgumentException("receiveBufferSize must be >= 1 or -1");
+        }
+
+        this.receiveBufferSize = receiveBufferSize;
+        return this;
+    }
+
+    public boolean isReusePort() {
+        return reusePort;
+    }
+
+    /**
+     * Set SO_REUSEPORT, so several servers can bind same address and kernel spreads flows
+     * between them. Requires vert.x native (epoll) transport or {@link ReceiveEngine#NIO} engine.
+     */
+    public @Nonnull UDPServerOptions setReusePort(
+            boolean reusePort) {
+
+        this.reusePort = reusePort;
+        return this;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set max count of datagrams sent to processor endpoint as one batch, 1 means no batching.
+     */
+    public @Nonnull UDPServerOptions setBatchSize(
+            int batchSize) {
+
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be >= 1");
+        }
+
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public long getBatchDelay() {
+        return batchDelay;
+    }
+
+    /**
+     * Set max time (us) datagram waits in not full batch,
+     * 0 means batch is flushed at end of current read burst.
+     */
+    public @Nonnull UDPServerOptions setBatchDelay(
+            long batchDelay) {
+
+        if (batchDelay < 0) {
+            throw new IllegalArgumentException("batchDelay must be >= 0");
+        }
+
+        this.batchDelay = batchDelay;
+        return this;
+    }
+
+    public int getReplyBatchSize() {
+        return replyBatchSize;
+    }
+
+    /**
+     * Set max count of replies written to socket before flush, replies are flushed at end of
+     * current event loop task anyway.
+     */
+    public @Nonnull UDPServerOptions setReplyBatchSize(
+            int replyBatchSize) {
+
+        if (replyBatchSize < 1) {
+            throw new IllegalArgumentException("replyBatchSize must be >= 1");
+        }
+
+        this.replyBatchSize = replyBatchSize;
+        return this;
+    }
+
+    public @Nonnull ReceiveEngine getReceiveEngine() {
+        return receiveEngine;
+    }
+
+    /**
+     * Set engine which receives datagrams.
+     */
+    public @Nonnull UDPServerOptions setReceiveEngine(
+            @Nonnull ReceiveEngine receiveEngine) {
+
+        this.receiveEngine = receiveEngine;
+        return this;
+    }
+
+    public int getReceiveQueueSize() {
+        return receiveQueueSize;
+    }
+
+    /**
+     * Set count (power of 2) of datagrams received by {@link ReceiveEngine#NIO} engine and not yet
+     * handled by event loop, datagrams over it are dropped.
+     */
+    public @Nonnull UDPServerOptions setReceiveQueueSize(
+            int receiveQueueSize) {
+
+        if (receiveQueueSize < 2 || Integer.bitCount(receiveQueueSize) != 1) {
+            throw new IllegalArgumentException("receiveQueueSize must be power of 2 >= 2");
+        }
+
+        this.receiveQueueSize = receiveQueueSize;
+        return this;
+    }
+
+}
@@ -0,0 +1,279 @@
+package com.rtlservice.az.prototype_udp_srv.cluster;
+
+import com.rtlservice.az.prototype_udp_srv.metrics.MetricsRegistry;
+import com.rtlservice.az.prototype_udp_srv.packet.Packet;
+import com.rtlservice.az.prototype_udp_srv.processor.LongRouter;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.impl.VertxInternal;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Ownership of keys by nodes of {@link LocalClusterManager local cluster} and forwarding of
+ * packets to owner node.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@RunWith(VertxUnitRunner.class)
+public class ClusterTest {
+
+    private static final int KEYS = 10_000;
+
+    private static final ClusterOptions OPTIONS = new ClusterOptions()
+            .setMembershipCheckPeriod(50L);
+
+    // own cluster per test, so nodes of other tests are not members
+    private final String cluster = UUID.randomUUID().toString();
+    private final List<Vertx> nodes = new ArrayList<>();
+
+    @After
+    public void tearDown(
+            TestContext context) {
+
+        for (Vertx vertx : nodes) {
+            Async closed = context.async();
+            vertx.close(context.asyncAssertSuccess((v) -> closed.complete()));
+            closed.awaitSuccess(10_000L);
+        }
+    }
+
+    @Test
+    public void everyKeyHasSingleOwner(
+            TestContext context) {
+
+        List<Membership> memberships = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            memberships.add(membership(context, join(context)));
+        }
+        await(context, () -> memberships.stream().allMatch((m) -> m.size() == 3));
+
+        for (long key = 0; key < KEYS; key++) {
+
+            int hash = Long.hashCode(key);
+            String owner = memberships.get(0).owner(hash);
+
+            int local = 0;
+            for (Membership membership : memberships) {
+                context.assertEquals(owner, membership.owner(hash), "owner of key " + key);
+                if (membership.isLocal(hash)) {
+                    local++;
+                }
+            }
+            context.assertEquals(1, local, "owners of key " + key);
+        }
+    }
+
+    @Test
+    public void joinAndLeaveMoveAboutOneNthOfKeys(
+            TestContext context) {
+
+        join(context);
+        Membership membership = membership(context, join(context));
+        await(context, () -> membership.size() == 2);
+
+        String[] before = owners(membership);
+
+        // third node takes about 1/3 of keys from others
+        Vertx third = join(context);
+        String joined = nodeID(third);
+        await(context, () -> membership.size() == 3);
+
+        String[] after = owners(membership);
+
+        int moved = 0;
+        for (int key = 0; key < KEYS; key++) {
+            if (!before[key].equals(after[key])) {
+                context.assertEquals(joined, after[key], "new owner of key " + key);
+                moved++;
+            }
+        }
+        assertAboutOneNth(context, moved, 3);
+
+        // and gives them back when it leaves
+        Async closed = context.async();
+        nodes.remove(third);
+        third.close(context.asyncAssertSuccess((v) -> closed.complete()));
+        closed.awaitSuccess(10_000L);
+        await(context, () -> membership.size() == 2);
+
+        String[] left = owners(membership);
+
+        moved = 0;
+        for (int key = 0; key < KEYS; key++) {
+            context.assertEquals(before[key], left[key], "owner of key " + key);
+            if (!after[key].equals(left[key])) {
+                moved++;
+            }
+        }
+        assertAboutOneNth(context, moved, 3);
+    }
+
+    @Test
+    public void packetIsProcessedByOwnerNode(
+            TestContext context) {
+
+        int keys = 1_000;
+
+        // metrics of all nodes go to one registry, labeled by node
+        MetricsRegistry registry = new MetricsRegistry();
+
+        List<String> nodeIDs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+
+            Vertx vertx = join(context);
+            String nodeID = nodeID(vertx);
+            nodeIDs.add(nodeID);
+
+            vertx.eventBus().registerDefaultCodec(
+                    Packet.class,
+                    new Packet.Codec());
+
+            LongRouter<Packet, String> router = new LongRouter<Packet, String>(
+                    "/in/",
+                    (mac) -> "/in/" + mac + "/",
+                    (packet) -> packet.mac,
+                    (in) -> nodeID);
+
+            router.setCluster(OPTIONS, (packet) -> packet, (body) -> (Packet) body)
+                    .setMetricsRegistry(registry.withLabel("node", String.valueOf(i)));
+
+            Async deployed = context.async();
+            vertx.deployVerticle(router, context.asyncAssertSuccess((id) -> deployed.complete()));
+            deployed.awaitSuccess(10_000L);
+        }
+
+        await(context, () -> {
+            String metrics = registry.toPrometheus(new StringBuilder()).toString();
+            return metrics.contains("cluster_nodes{node=\"0\"} 3\n")
+                    && metrics.contains("cluster_nodes{node=\"1\"} 3\n")
+                    && metrics.contains("cluster_nodes{node=\"2\"} 3\n");
+        });
+
+        HashRing ring = new HashRing(nodeIDs, OPTIONS.getVirtualNodes());
+        Set<String> processedBy = new HashSet<>();
+
+        // packets received by node 0 are forwarded through Packet.Codec to their owners
+        Async replied = context.async(keys);
+        for (long mac = 0; mac < keys; mac++) {
+            String owner = ring.owner(Long.hashCode(mac));
+            nodes.get(0).eventBus().<String>send(
+                    "/in/",
+                    packet(mac),
+                    context.asyncAssertSuccess((reply) -> {
+                        context.assertEquals(owner, reply.body());
+                        processedBy.add(reply.body());
+                        replied.countDown();
+                    }));
+        }
+        replied.awaitSuccess(30_000L);
+
+        context.assertEquals(3, processedBy.size(), "nodes which processed packets");
+
+        String metrics = registry.toPrometheus(new StringBuilder()).toString();
+        context.assertEquals(metrics.indexOf("# TYPE router_pending gauge"), metrics.lastIndexOf("# TYPE router_pending gauge"),
+                "type of metric is exported once for all nodes");
+    }
+
+    private Vertx join(
+            TestContext context) {
+
+        AtomicReference<Vertx> node = new AtomicReference<>();
+
+        Async joined = context.async();
+        Vertx.clusteredVertx(
+                new VertxOptions()
+                        .setClusterManager(new LocalClusterManager(cluster))
+                        .setClusterHost("localhost"),
+                context.asyncAssertSuccess((vertx) -> {
+                    node.set(vertx);
+                    joined.complete();
+                }));
+        joined.awaitSuccess(10_000L);
+
+        nodes.add(node.get());
+        return node.get();
+    }
+
+    private static Membership membership(
+            TestContext context,
+            Vertx vertx) {
+
+        Membership membership = new Membership(vertx, OPTIONS);
+
+        Async started = context.async();
+        vertx.runOnContext((v) -> {
+            membership.start();
+            started.complete();
+        });
+        started.awaitSuccess(10_000L);
+
+        return membership;
+    }
+
+    private static String nodeID(
+            Vertx vertx) {
+
+        return ((VertxInternal) vertx).getClusterManager().getNodeID();
+    }
+
+    private static String[] owners(
+            Membership membership) {
+
+        String[] owners = new String[KEYS];
+        for (int key = 0; key < KEYS; key++) {
+            owners[key] = membership.owner(Long.hashCode(key));
+        }
+        return owners;
+    }
+
+    private static Packet packet(
+            long mac) {
+
+        Buffer buffer = Buffer.buffer(new byte[Packet.HEADER_LENGTH + 1]);
+        buffer.setLong(Packet.MAC_OFFSET, mac << 16);
+        return Packet.fromBinary(buffer);
+    }
+
+    private static void assertAboutOneNth(
+            TestContext context,
+            int moved,
+            int nodes) {
+
+        // virtual nodes keep share of node within few percent of 1/N
+        double share = (double) moved / KEYS;
+        context.assertTrue(Math.abs(share - 1.0 / nodes) < 0.1, "share of moved keys: " + share);
+    }
+
+    private static void await(
+            TestContext context,
+            BooleanSupplier condition) {
+
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                context.fail("condition is not met in 10 s");
+            }
+            try {
+                Thread.sleep(10L);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                context.fail(ex);
+            }
+        }
+    }
+
+}
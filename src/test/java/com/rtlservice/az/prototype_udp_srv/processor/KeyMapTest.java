@@ -0,0 +1,92 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import org.junit.Test;
+
+import static com.rtlservice.az.prototype_udp_srv.processor.LongMapTest.MASK;
+import static com.rtlservice.az.prototype_udp_srv.processor.LongMapTest.collidingKeys;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Lookup of {@link KeyMap.LongKeys} by message and by key.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class KeyMapTest {
+
+    // message is array of its key, mapper reads it without boxing
+    private final KeyMap<Long, long[], String> map = new KeyMap.LongKeys<>((item) -> item[0]);
+
+    @Test
+    public void collidingKeysAreRemovedAndReinserted() {
+
+        long[] keys = collidingKeys(5, 4);
+        String[] values = new String[keys.length];
+
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = "v" + i;
+            map.put(keys[i], values[i]);
+        }
+        assertEquals(4, map.size());
+
+        assertTrue(map.remove(keys[0], values[0]));
+        assertNull(map.get(new long[] {keys[0]}));
+        assertNull(map.find(keys[0]));
+        for (int i = 1; i < keys.length; i++) {
+            assertSame(values[i], map.get(new long[] {keys[i]}));
+            assertSame(values[i], map.find(keys[i]));
+        }
+
+        // entry replaced by other value is not removed
+        map.put(keys[1], "w");
+        assertFalse(map.remove(keys[1], values[1]));
+        assertEquals("w", map.find(keys[1]));
+
+        map.put(keys[0], values[0]);
+        assertEquals(4, map.size());
+        assertSame(values[0], map.get(new long[] {keys[0]}));
+    }
+
+    @Test
+    public void probeChainWrapsAroundEndOfTable() {
+
+        long[] last = collidingKeys(MASK, 3);
+        long first = collidingKeys(0, 1)[0];
+
+        String[] values = {"a", "b", "c"};
+        for (int i = 0; i < last.length; i++) {
+            map.put(last[i], values[i]);
+        }
+        map.put(first, "first");
+
+        assertTrue(map.remove(last[0], values[0]));
+        assertSame(values[1], map.get(new long[] {last[1]}));
+        assertSame(values[2], map.get(new long[] {last[2]}));
+        assertEquals("first", map.get(new long[] {first}));
+
+        assertTrue(map.remove(last[1], values[1]));
+        assertSame(values[2], map.find(last[2]));
+        assertEquals("first", map.find(first));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void resizeKeepsAllKeys() {
+
+        int keys = 10_000;
+        for (long key = 0; key < keys; key++) {
+            map.put(key, String.valueOf(key));
+        }
+        assertEquals(keys, map.size());
+
+        for (long key = 0; key < keys; key++) {
+            assertEquals(String.valueOf(key), map.get(new long[] {key}));
+            assertEquals(Long.valueOf(key), map.key(new long[] {key}));
+            assertEquals(map.hash(key), map.itemHash(new long[] {key}));
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static com.rtlservice.az.prototype_udp_srv.processor.LongMapTest.MASK;
+import static com.rtlservice.az.prototype_udp_srv.processor.LongMapTest.collidingKeys;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Probing, removal with shifting back and resize of {@link LongIntMap}.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class LongIntMapTest {
+
+    @Test
+    public void collidingKeysAreRemovedAndReinserted() {
+
+        long[] keys = collidingKeys(5, 4);
+        LongIntMap map = new LongIntMap();
+
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(LongIntMap.MISSING, map.put(keys[i], i));
+        }
+
+        assertEquals(0, map.remove(keys[0]));
+        assertEquals(LongIntMap.MISSING, map.get(keys[0]));
+        assertEquals(LongIntMap.MISSING, map.remove(keys[0]));
+        for (int i = 1; i < keys.length; i++) {
+            assertEquals(i, map.get(keys[i]));
+        }
+
+        assertEquals(2, map.remove(keys[2]));
+        assertEquals(1, map.get(keys[1]));
+        assertEquals(3, map.get(keys[3]));
+
+        // zero value is not empty slot
+        assertEquals(LongIntMap.MISSING, map.put(keys[0], 0));
+        assertEquals(LongIntMap.MISSING, map.put(keys[2], 20));
+        assertEquals(20, map.put(keys[2], 21));
+
+        assertEquals(4, map.size());
+        assertEquals(0, map.get(keys[0]));
+        assertEquals(1, map.get(keys[1]));
+        assertEquals(21, map.get(keys[2]));
+        assertEquals(3, map.get(keys[3]));
+    }
+
+    @Test
+    public void probeChainWrapsAroundEndOfTable() {
+
+        long[] last = collidingKeys(MASK, 3);
+        long first = collidingKeys(0, 1)[0];
+
+        LongIntMap map = new LongIntMap();
+        for (int i = 0; i < last.length; i++) {
+            map.put(last[i], i);
+        }
+        map.put(first, 100);
+
+        assertEquals(0, map.remove(last[0]));
+        assertEquals(1, map.get(last[1]));
+        assertEquals(2, map.get(last[2]));
+        assertEquals(100, map.get(first));
+
+        assertEquals(1, map.remove(last[1]));
+        assertEquals(2, map.get(last[2]));
+        assertEquals(100, map.get(first));
+
+        assertEquals(100, map.remove(first));
+        assertEquals(2, map.get(last[2]));
+        assertEquals(1, map.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeValueIsRejected() {
+        new LongIntMap().put(1L, -1);
+    }
+
+    @Test
+    public void resizeKeepsAllKeys() {
+
+        LongIntMap map = new LongIntMap();
+        int keys = 10_000;
+
+        for (int key = 0; key < keys; key++) {
+            map.put(key * 31L, key);
+        }
+        assertEquals(keys, map.size());
+
+        for (int key = 0; key < keys; key += 2) {
+            assertEquals(key, map.remove(key * 31L));
+        }
+        for (int key = 0; key < keys; key++) {
+            assertEquals(key % 2 == 0 ? LongIntMap.MISSING : key, map.get(key * 31L));
+        }
+        assertEquals(keys / 2, map.size());
+    }
+
+    @Test
+    public void matchesHashMap() {
+
+        Random random = new Random(42L);
+        LongIntMap map = new LongIntMap();
+        Map<Long, Integer> expected = new HashMap<>();
+
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(64) - 8;
+            if (random.nextBoolean()) {
+                assertEquals((int) expected.getOrDefault(key, LongIntMap.MISSING), map.put(key, i));
+                expected.put(key, i);
+            } else {
+                assertEquals((int) expected.getOrDefault(key, LongIntMap.MISSING), map.remove(key));
+                expected.remove(key);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (long key = -8; key < 56; key++) {
+            assertEquals((int) expected.getOrDefault(key, LongIntMap.MISSING), map.get(key));
+        }
+    }
+
+}
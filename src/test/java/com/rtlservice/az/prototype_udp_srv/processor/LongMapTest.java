@@ -0,0 +1,160 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Probing, removal with shifting back and resize of {@link LongMap}.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class LongMapTest {
+
+    // capacity of default map, it grows after 8 keys
+    static final int MASK = 15;
+
+    @Test
+    public void collidingKeysAreRemovedAndReinserted() {
+
+        long[] keys = collidingKeys(5, 4);
+        LongMap<String> map = new LongMap<>();
+
+        for (long key : keys) {
+            assertNull(map.put(key, "v" + key));
+        }
+
+        // removing head of probe chain shifts others back, all stay reachable
+        assertEquals("v" + keys[0], map.remove(keys[0]));
+        assertNull(map.get(keys[0]));
+        for (int i = 1; i < keys.length; i++) {
+            assertEquals("v" + keys[i], map.get(keys[i]));
+        }
+
+        // and from the middle
+        assertEquals("v" + keys[2], map.remove(keys[2]));
+        assertEquals("v" + keys[1], map.get(keys[1]));
+        assertEquals("v" + keys[3], map.get(keys[3]));
+
+        assertNull(map.put(keys[0], "w"));
+        assertNull(map.put(keys[2], "w"));
+        assertEquals("w", map.put(keys[2], "x"));
+
+        assertEquals(4, map.size());
+        assertEquals("w", map.get(keys[0]));
+        assertEquals("v" + keys[1], map.get(keys[1]));
+        assertEquals("x", map.get(keys[2]));
+        assertEquals("v" + keys[3], map.get(keys[3]));
+    }
+
+    @Test
+    public void probeChainWrapsAroundEndOfTable() {
+
+        // three keys of last slot take slots 15, 0, 1, key of slot 0 is pushed to 2
+        long[] last = collidingKeys(MASK, 3);
+        long first = collidingKeys(0, 1)[0];
+
+        LongMap<String> map = new LongMap<>();
+        for (long key : last) {
+            map.put(key, "last" + key);
+        }
+        map.put(first, "first");
+
+        // gap at slot 15 is filled across end of table
+        assertEquals("last" + last[0], map.remove(last[0]));
+        assertEquals("last" + last[1], map.get(last[1]));
+        assertEquals("last" + last[2], map.get(last[2]));
+        assertEquals("first", map.get(first));
+
+        // gap at slot 0 takes key of slot 0 back to its home
+        assertEquals("last" + last[1], map.remove(last[1]));
+        assertEquals("last" + last[2], map.get(last[2]));
+        assertEquals("first", map.get(first));
+
+        assertEquals("first", map.remove(first));
+        assertEquals("last" + last[2], map.get(last[2]));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void removeByValueComparesIdentity() {
+
+        LongMap<String> map = new LongMap<>();
+        String value = new String("v");
+
+        map.put(1L, value);
+        assertFalse(map.remove(1L, new String("v")));
+        assertSame(value, map.get(1L));
+        assertTrue(map.remove(1L, value));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void resizeKeepsAllKeys() {
+
+        LongMap<Long> map = new LongMap<>();
+        int keys = 10_000;
+
+        for (long key = 0; key < keys; key++) {
+            map.put(key * 31, key);
+        }
+        assertEquals(keys, map.size());
+
+        for (long key = 0; key < keys; key += 2) {
+            assertEquals(Long.valueOf(key), map.remove(key * 31));
+        }
+        for (long key = 0; key < keys; key++) {
+            assertEquals(key % 2 == 0 ? null : Long.valueOf(key), map.get(key * 31));
+        }
+        assertEquals(keys / 2, map.size());
+    }
+
+    @Test
+    public void matchesHashMap() {
+
+        Random random = new Random(42L);
+        LongMap<Integer> map = new LongMap<>();
+        Map<Long, Integer> expected = new HashMap<>();
+
+        // small key space makes long probe chains, removals and reinsertions
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(64) - 8;
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (long key = -8; key < 56; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    /**
+     * Keys with home {@code slot} in table of default capacity.
+     */
+    static long[] collidingKeys(
+            int slot,
+            int count) {
+
+        long[] keys = new long[count];
+        int found = 0;
+        for (long key = 1; found < count; key++) {
+            if ((LongMap.hash(key) & MASK) == slot) {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+
+}
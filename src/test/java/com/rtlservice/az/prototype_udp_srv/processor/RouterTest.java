@@ -0,0 +1,197 @@
+package com.rtlservice.az.prototype_udp_srv.processor;
+
+import com.rtlservice.az.prototype_udp_srv.packet.Batch;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.eventbus.impl.codecs.LongMessageCodec;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Lazy deployment of per-key processors of {@link Router}.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+@RunWith(VertxUnitRunner.class)
+public class RouterTest {
+
+    private static final int KEYS = 10_000;
+
+    // logger of vert.x blocked thread warnings
+    private final Logger checker = Logger.getLogger("io.vertx.core.impl.BlockedThreadChecker");
+    private final BlockedThreads blocked = new BlockedThreads();
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+
+        checker.addHandler(blocked);
+
+        // above GC pauses of loaded machine, far below deploy of 10k processors
+        vertx = Vertx.vertx(new VertxOptions()
+                .setBlockedThreadCheckInterval(20L)
+                .setMaxEventLoopExecuteTime(TimeUnit.MILLISECONDS.toNanos(200L)));
+    }
+
+    @After
+    public void tearDown(
+            TestContext context) {
+
+        vertx.close(context.asyncAssertSuccess());
+        checker.removeHandler(blocked);
+    }
+
+    @Test
+    public void floodOfNewKeysDoesNotBlockEventLoop(
+            TestContext context) {
+
+        Router<Long, Long, Long> router = new Router<>(
+                "/in/",
+                (id) -> "/in/" + id + "/",
+                (in) -> in,
+                (in) -> in.body());
+
+        Async deployed = context.async();
+        vertx.deployVerticle(router, context.asyncAssertSuccess((id) -> deployed.complete()));
+        deployed.awaitSuccess(10_000L);
+
+        Async replied = context.async(KEYS);
+        for (long key = 0; key < KEYS; key++) {
+            long expected = key;
+            vertx.eventBus().<Long>send(
+                    "/in/",
+                    key,
+                    context.asyncAssertSuccess((reply) -> {
+                        context.assertEquals(expected, reply.body());
+                        replied.countDown();
+                    }));
+        }
+        replied.awaitSuccess(60_000L);
+
+        context.assertEquals(0, blocked.count.get(), "event loop blocked");
+    }
+
+    @Test
+    public void itemsOfBatchAreAdmittedOneByOne(
+            TestContext context) {
+
+        vertx.eventBus().registerDefaultCodec(Batch.class, new Batch.Codec(new LongMessageCodec()));
+
+        Router<Long, Long, Long> router = new Router<>(
+                "/in/",
+                (id) -> "/in/" + id + "/",
+                (in) -> 1L,
+                (in) -> in.body(),
+                new RouterOptions()
+                        .setMaxPendingPerKey(4)
+                        .setOverflowPolicy(OverflowPolicy.DROP_NEWEST));
+
+        Async deployed = context.async();
+        vertx.deployVerticle(router, context.asyncAssertSuccess((id) -> deployed.complete()));
+        deployed.awaitSuccess(10_000L);
+
+        // one key, so whole batch is one group, which is over limit of key
+        Batch<Long> batch = new Batch<>(10);
+        for (long item = 0; item < 10; item++) {
+            batch.add(item);
+        }
+
+        Async replied = context.async();
+        vertx.eventBus().<Batch<Long>>send(
+                "/in/",
+                batch,
+                context.asyncAssertSuccess((reply) -> {
+                    Batch<Long> outs = reply.body();
+                    context.assertEquals(10, outs.size());
+                    for (int i = 0; i < outs.size(); i++) {
+                        context.assertEquals(i < 4 ? (Long) (long) i : null, outs.get(i), "output of item " + i);
+                    }
+                    replied.complete();
+                }));
+        replied.awaitSuccess(10_000L);
+
+        context.assertEquals(6L, router.getDroppedNewest(), "dropped items");
+        context.assertEquals(0, router.getPending(), "pending items");
+    }
+
+    @Test
+    public void itemsOfBatchAreChargedToOwnKeysInLanesMode(
+            TestContext context) {
+
+        vertx.eventBus().registerDefaultCodec(Batch.class, new Batch.Codec(new LongMessageCodec()));
+
+        Router<Long, Long, Long> router = new Router<>(
+                "/in/",
+                (id) -> "/in/" + id + "/",
+                (in) -> in,
+                (in) -> in.body(),
+                new RouterOptions()
+                        .setLanes(1)
+                        .setMaxPendingPerKey(4)
+                        .setOverflowPolicy(OverflowPolicy.DROP_NEWEST));
+
+        Async deployed = context.async();
+        vertx.deployVerticle(router, context.asyncAssertSuccess((id) -> deployed.complete()));
+        deployed.awaitSuccess(10_000L);
+
+        // one lane, but every key has one item, far below limit of key
+        Batch<Long> batch = new Batch<>(10);
+        for (long item = 0; item < 10; item++) {
+            batch.add(item);
+        }
+
+        Async replied = context.async();
+        vertx.eventBus().<Batch<Long>>send(
+                "/in/",
+                batch,
+                context.asyncAssertSuccess((reply) -> {
+                    Batch<Long> outs = reply.body();
+                    context.assertEquals(10, outs.size());
+                    for (int i = 0; i < outs.size(); i++) {
+                        context.assertEquals((Long) (long) i, outs.get(i), "output of item " + i);
+                    }
+                    replied.complete();
+                }));
+        replied.awaitSuccess(10_000L);
+
+        context.assertEquals(0L, router.getDroppedNewest(), "dropped items");
+        context.assertEquals(0, router.getPending(), "pending items");
+    }
+
+    private static class BlockedThreads
+            extends Handler {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void publish(
+                LogRecord record) {
+
+            if (record.getLevel().intValue() >= Level.WARNING.intValue()) {
+                count.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.rtlservice.az.prototype_udp_srv.state;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Snapshot and restore, freeing and cap of keys of {@link StateStore}.
+ *
+ * @author Zaitsev Alexei (az) / alexei.zaycev@gmail.com
+ */
+public class StateStoreTest {
+
+    private static final int KEYS = 100_000;
+
+    @Test
+    public void snapshotIsRestoredIntoOtherPartitioning()
+            throws IOException {
+
+        StateStore store = new StateStore(20, 4, (key) -> (int) Math.floorMod(key, 4L));
+        for (long key = 0; key < KEYS; key++) {
+            store.partitionOf(key).get(key)
+                    .putLong(0, key * 3)
+                    .putInt(8, (int) key)
+                    .putByte(19, (byte) key);
+        }
+
+        Path file = Files.createTempFile("state", ".bin");
+        try {
+            store.snapshot(file);
+
+            // keys of snapshot are distributed by partitioner of restoring store
+            StateStore restored = new StateStore(20, 3, (key) -> (int) Math.floorMod(key, 3L));
+            restored.restore(file);
+
+            assertEquals(KEYS, restored.size());
+            for (long key = 0; key < KEYS; key++) {
+                StateStore.Partition partition = restored.partitionOf(key);
+                assertTrue(partition.contains(key));
+                State state = partition.get(key);
+                assertEquals(key * 3, state.getLong(0));
+                assertEquals((int) key, state.getInt(8));
+                assertEquals((byte) key, state.getByte(19));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void snapshotOfOtherSlotSizeIsNotRestored()
+            throws IOException {
+
+        StateStore store = new StateStore(8, 1, (key) -> 0);
+        store.partition(0).get(1L).putLong(0, 1L);
+
+        Path file = Files.createTempFile("state", ".bin");
+        try {
+            store.snapshot(file);
+            new StateStore(16, 1, (key) -> 0).restore(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void removedKeyFreesItsSlotForNewKey() {
+
+        StateStore store = new StateStore(16, 1, (key) -> 0);
+        StateStore.Partition partition = store.partition(0);
+
+        State handle = partition.handle(1L);
+        handle.putLong(0, 42L).putLong(8, 43L);
+
+        assertTrue(partition.remove(1L));
+        assertFalse(partition.remove(1L));
+        assertFalse(partition.contains(1L));
+        assertEquals(0, partition.size());
+
+        // new key takes freed slot, zeroed
+        State state = partition.get(2L);
+        assertEquals(0L, state.getLong(0));
+        assertEquals(0L, state.getLong(8));
+        assertEquals(0L, handle.getLong(0));
+
+        // and key seen again starts from zero
+        assertEquals(0L, partition.get(1L).getLong(0));
+        assertEquals(2, partition.size());
+    }
+
+    @Test
+    public void keysOverMaxAreEvictedNotUsedRecentlyFirst() {
+
+        StateStore store = new StateStore(8, 2, (key) -> (int) (key & 1L)).setMaxKeys(8);
+        StateStore.Partition partition = store.partition(0);
+
+        // 4 keys per partition
+        for (long key = 0; key < 8; key += 2) {
+            partition.get(key).putLong(0, key + 100);
+        }
+
+        // hand clears references of all, then evicts first one
+        partition.get(8L);
+        assertFalse(partition.contains(0L));
+        assertEquals(4, partition.size());
+        assertEquals(1L, store.getEvictions());
+
+        // key used since hand passed it gets second chance, next one is evicted
+        partition.get(2L);
+        partition.get(10L);
+        assertTrue(partition.contains(2L));
+        assertFalse(partition.contains(4L));
+        assertEquals(102L, partition.get(2L).getLong(0));
+        assertEquals(0L, partition.get(10L).getLong(0));
+
+        assertEquals(4, partition.size());
+        assertEquals(0, store.partition(1).size());
+        assertEquals(2L, store.getEvictions());
+    }
+
+    @Test
+    public void keysKeptByOwnersAreNotEvicted() {
+
+        StateStore store = new StateStore(8, 1, (key) -> 0).setMaxKeys(3);
+        StateStore.Partition partition = store.partition(0);
+
+        partition.handle(1L);
+        partition.get(2L);
+        partition.handle(3L);
+
+        partition.get(4L);
+        assertTrue(partition.contains(1L));
+        assertFalse(partition.contains(2L));
+        assertTrue(partition.contains(3L));
+
+        partition.handle(4L);
+        try {
+            partition.get(5L);
+            fail("new key of partition full of kept keys");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+
+        // freed by owner
+        partition.remove(3L);
+        partition.get(5L);
+        assertEquals(3, partition.size());
+    }
+
+}